@@ -39,6 +39,20 @@ public abstract class StoredFieldsReader implements Cloneable, Closeable, Accoun
   /** Visit the stored fields for document <code>n</code> */
   public abstract void visitDocument(int n, StoredFieldVisitor visitor) throws IOException;
 
+  /** Visit the stored fields for several documents: <code>visitors[i]</code>
+   *  visits the stored fields of document <code>docIDs[i]</code>. Document IDs
+   *  must be in strictly increasing order. The default implementation calls
+   *  {@link #visitDocument(int, StoredFieldVisitor)} for every document;
+   *  implementations should override it if they can share work among
+   *  documents that are stored close to each other. */
+  public void visitDocuments(int[] docIDs, StoredFieldVisitor[] visitors) throws IOException {
+    assert docIDs.length == visitors.length;
+    for (int i = 0; i < docIDs.length; ++i) {
+      assert i == 0 || docIDs[i - 1] < docIDs[i];
+      visitDocument(docIDs[i], visitors[i]);
+    }
+  }
+
   @Override
   public abstract StoredFieldsReader clone();
   
@@ -34,9 +34,11 @@ import org.apache.lucene.index.FieldInfos;
 import org.apache.lucene.index.IndexFileNames;
 import org.apache.lucene.index.SegmentInfo;
 import org.apache.lucene.index.Terms;
+import org.apache.lucene.store.BufferedIndexInput;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.IOContext;
 import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.RandomAccessInput;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Accountables;
 import org.apache.lucene.util.BytesRef;
@@ -95,11 +97,42 @@ public final class BlockTreeTermsReader extends FieldsProducer {
   
   private final int version;
 
-  /** Sole constructor. */
+  /** How terms index FSTs are loaded. */
+  public static enum FSTLoadMode {
+    /** Copy the terms index FSTs to the heap. This makes terms lookups as
+     *  fast as possible but requires as much heap as the size of the terms
+     *  index file. */
+    ON_HEAP,
+    /** Keep the terms index FSTs on disk and read them in place. This saves
+     *  heap and speeds up opening segments, at the cost of slower terms
+     *  lookups unless the terms index file is memory-mapped. */
+    OFF_HEAP,
+    /** Keep the terms index FSTs on disk if the terms index file supports
+     *  fast random access, like files opened by
+     *  {@link org.apache.lucene.store.MMapDirectory}, and load them on the
+     *  heap otherwise. */
+    AUTO
+  }
+
+  /** Open input to the terms index file (_X.tip), if terms index FSTs
+   *  are read in place, or null if they were loaded on the heap. */
+  private final IndexInput indexIn;
+
+  /** Create a new reader that loads terms index FSTs according to
+   *  {@link FSTLoadMode#AUTO}. */
   public BlockTreeTermsReader(Directory dir, FieldInfos fieldInfos, SegmentInfo info,
                               PostingsReaderBase postingsReader, IOContext ioContext,
                               String segmentSuffix)
     throws IOException {
+    this(dir, fieldInfos, info, postingsReader, ioContext, segmentSuffix, FSTLoadMode.AUTO);
+  }
+
+  /** Create a new reader that loads terms index FSTs according to the
+   *  given {@link FSTLoadMode}. */
+  public BlockTreeTermsReader(Directory dir, FieldInfos fieldInfos, SegmentInfo info,
+                              PostingsReaderBase postingsReader, IOContext ioContext,
+                              String segmentSuffix, FSTLoadMode fstLoadMode)
+    throws IOException {
     
     this.postingsReader = postingsReader;
 
@@ -119,9 +152,30 @@ public final class BlockTreeTermsReader extends FieldsProducer {
         throw new CorruptIndexException("mixmatched version files: " + in + "=" + version + "," + indexIn + "=" + indexVersion, indexIn);
       }
       
+      final boolean offHeap;
+      switch (fstLoadMode) {
+        case ON_HEAP:
+          offHeap = false;
+          break;
+        case OFF_HEAP:
+          offHeap = true;
+          break;
+        case AUTO:
+          offHeap = supportsFastRandomAccess(indexIn);
+          break;
+        default:
+          throw new AssertionError();
+      }
+
       // verify
       if (version >= BlockTreeTermsWriter.VERSION_CHECKSUM) {
-        CodecUtil.checksumEntireFile(indexIn);
+        if (offHeap) {
+          // the terms index is not read entirely anymore: only check the
+          // structure of the footer, the checksum is verified by checkIntegrity()
+          CodecUtil.retrieveChecksum(indexIn);
+        } else {
+          CodecUtil.checksumEntireFile(indexIn);
+        }
       }
 
       // Have PostingsReader init itself
@@ -188,12 +242,17 @@ public final class BlockTreeTermsReader extends FieldsProducer {
         final long indexStartFP = indexIn.readVLong();
         FieldReader previous = fields.put(fieldInfo.name,       
                                           new FieldReader(this, fieldInfo, numTerms, rootCode, sumTotalTermFreq, sumDocFreq, docCount,
-                                                          indexStartFP, longsSize, indexIn, minTerm, maxTerm));
+                                                          indexStartFP, longsSize, indexIn, offHeap, minTerm, maxTerm));
         if (previous != null) {
           throw new CorruptIndexException("duplicate field: " + fieldInfo.name, in);
         }
       }
-      indexIn.close();
+      if (offHeap) {
+        this.indexIn = indexIn;
+      } else {
+        this.indexIn = null;
+        indexIn.close();
+      }
 
       success = true;
     } finally {
@@ -204,6 +263,13 @@ public final class BlockTreeTermsReader extends FieldsProducer {
     }
   }
 
+  /** Whether absolute reads on the given input are cheap in any order,
+   *  rather than only for positions that are close to the previous read. */
+  private static boolean supportsFastRandomAccess(IndexInput input) {
+    // eg. memory-mapped inputs, while buffered inputs refill their buffer on every jump
+    return input instanceof RandomAccessInput && !(input instanceof BufferedIndexInput);
+  }
+
   private static BytesRef readBytesRef(IndexInput in) throws IOException {
     BytesRef bytes = new BytesRef();
     bytes.length = in.readVInt();
@@ -255,7 +321,7 @@ public final class BlockTreeTermsReader extends FieldsProducer {
   @Override
   public void close() throws IOException {
     try {
-      IOUtils.close(in, postingsReader);
+      IOUtils.close(in, indexIn, postingsReader);
     } finally { 
       // Clear so refs to terms index is GCable even if
       // app hangs onto us:
@@ -317,6 +383,11 @@ public final class BlockTreeTermsReader extends FieldsProducer {
     if (version >= BlockTreeTermsWriter.VERSION_CHECKSUM) {      
       // term dictionary
       CodecUtil.checksumEntireFile(in);
+
+      // terms index, if it was not verified on open
+      if (indexIn != null) {
+        CodecUtil.checksumEntireFile(indexIn);
+      }
       
       // postings
       postingsReader.checkIntegrity();
@@ -61,6 +61,7 @@ import org.apache.lucene.util.Accountables;
 import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.IntsRef;
 import org.apache.lucene.util.packed.PackedInts;
 
 /**
@@ -80,8 +81,9 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
   private final int chunkSize;
   private final int packedIntsVersion;
   private final CompressionMode compressionMode;
+  private final byte[] dictionary;
   private final Decompressor decompressor;
-  private final BytesRef bytes;
+  private final BlockState state;
   private final int numDocs;
   private boolean closed;
 
@@ -95,9 +97,10 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
     this.chunkSize = reader.chunkSize;
     this.packedIntsVersion = reader.packedIntsVersion;
     this.compressionMode = reader.compressionMode;
+    this.dictionary = reader.dictionary;
     this.decompressor = reader.decompressor.clone();
     this.numDocs = reader.numDocs;
-    this.bytes = new BytesRef(reader.bytes.bytes.length);
+    this.state = new BlockState();
     this.closed = false;
   }
 
@@ -154,8 +157,19 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
         chunkSize = -1;
       }
       packedIntsVersion = fieldsStream.readVInt();
-      decompressor = compressionMode.newDecompressor();
-      this.bytes = new BytesRef();
+      if (compressionMode.getMaxDictionaryLength() > 0) {
+        final int dictionaryLength = fieldsStream.readVInt();
+        if (dictionaryLength > compressionMode.getMaxDictionaryLength()) {
+          throw new CorruptIndexException("Dictionary is too large: " + dictionaryLength + " > " + compressionMode.getMaxDictionaryLength(), fieldsStream);
+        }
+        dictionary = new byte[dictionaryLength];
+        fieldsStream.readBytes(dictionary, 0, dictionaryLength);
+        decompressor = compressionMode.newDecompressor(dictionary, 0, dictionaryLength);
+      } else {
+        dictionary = null;
+        decompressor = compressionMode.newDecompressor();
+      }
+      this.state = new BlockState();
       
       if (version >= VERSION_CHECKSUM) {
         // NOTE: data file is too costly to verify checksum against all the bytes on open,
@@ -244,78 +258,170 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
     }
   }
 
-  @Override
-  public void visitDocument(int docID, StoredFieldVisitor visitor)
-      throws IOException {
-    fieldsStream.seek(indexReader.getStartPointer(docID));
-
-    final int docBase = fieldsStream.readVInt();
-    final int chunkDocs = fieldsStream.readVInt();
-    if (docID < docBase
-        || docID >= docBase + chunkDocs
-        || docBase + chunkDocs > numDocs) {
-      throw new CorruptIndexException("Corrupted: docID=" + docID
-          + ", docBase=" + docBase + ", chunkDocs=" + chunkDocs
-          + ", numDocs=" + numDocs, fieldsStream);
+  /**
+   * Keeps track of the chunk that was accessed last, so that consecutive
+   * accesses to documents of the same chunk neither need to decode the chunk
+   * metadata nor to decompress the chunk again.
+   */
+  private final class BlockState {
+
+    private int docBase, chunkDocs;
+    // whether the chunk is compressed as several independent slices
+    private boolean sliced;
+    // number of stored fields and offsets of every document of the chunk
+    private int[] numStoredFields = new int[1];
+    private int[] offsets = IntsRef.EMPTY_INTS;
+    // start pointer of the compressed data
+    private long dataPointer;
+    // length of the prefix of the chunk that is available in bytes
+    private int decompressedLength;
+    private final BytesRef bytes = new BytesRef();
+
+    boolean contains(int docID) {
+      return docID >= docBase && docID < docBase + chunkDocs;
     }
 
-    final int numStoredFields, offset, length, totalLength;
-    if (chunkDocs == 1) {
-      numStoredFields = fieldsStream.readVInt();
-      offset = 0;
-      length = fieldsStream.readVInt();
-      totalLength = length;
-    } else {
-      final int bitsPerStoredFields = fieldsStream.readVInt();
-      if (bitsPerStoredFields == 0) {
-        numStoredFields = fieldsStream.readVInt();
-      } else if (bitsPerStoredFields > 31) {
-        throw new CorruptIndexException("bitsPerStoredFields=" + bitsPerStoredFields, fieldsStream);
-      } else {
-        final long filePointer = fieldsStream.getFilePointer();
-        final PackedInts.Reader reader = PackedInts.getDirectReaderNoHeader(fieldsStream, PackedInts.Format.PACKED, packedIntsVersion, chunkDocs, bitsPerStoredFields);
-        numStoredFields = (int) (reader.get(docID - docBase));
-        fieldsStream.seek(filePointer + PackedInts.Format.PACKED.byteCount(packedIntsVersion, chunkDocs, bitsPerStoredFields));
+    /**
+     * Reset this block so that it stores state for the chunk that contains
+     * the given document.
+     */
+    void reset(int docID) throws IOException {
+      fieldsStream.seek(indexReader.getStartPointer(docID));
+
+      final int docBase = fieldsStream.readVInt();
+      final int chunkDocs = fieldsStream.readVInt();
+      if (docID < docBase
+          || docID >= docBase + chunkDocs
+          || docBase + chunkDocs > numDocs) {
+        throw new CorruptIndexException("Corrupted: docID=" + docID
+            + ", docBase=" + docBase + ", chunkDocs=" + chunkDocs
+            + ", numDocs=" + numDocs, fieldsStream);
       }
+      // invalidate the state first, in case decoding the metadata fails
+      this.docBase = docBase;
+      this.chunkDocs = 0;
+      decompressedLength = 0;
 
-      final int bitsPerLength = fieldsStream.readVInt();
-      if (bitsPerLength == 0) {
-        length = fieldsStream.readVInt();
-        offset = (docID - docBase) * length;
-        totalLength = chunkDocs * length;
-      } else if (bitsPerStoredFields > 31) {
-        throw new CorruptIndexException("bitsPerLength=" + bitsPerLength, fieldsStream);
+      if (chunkDocs > numStoredFields.length) {
+        numStoredFields = new int[ArrayUtil.oversize(chunkDocs, 4)];
+      }
+      if (chunkDocs + 1 > offsets.length) {
+        offsets = new int[ArrayUtil.oversize(chunkDocs + 1, 4)];
+      }
+
+      if (chunkDocs == 1) {
+        numStoredFields[0] = fieldsStream.readVInt();
+        offsets[1] = fieldsStream.readVInt();
       } else {
-        final PackedInts.ReaderIterator it = PackedInts.getReaderIteratorNoHeader(fieldsStream, PackedInts.Format.PACKED, packedIntsVersion, chunkDocs, bitsPerLength, 1);
-        int off = 0;
-        for (int i = 0; i < docID - docBase; ++i) {
-          off += it.next();
+        final int bitsPerStoredFields = fieldsStream.readVInt();
+        if (bitsPerStoredFields == 0) {
+          Arrays.fill(numStoredFields, 0, chunkDocs, fieldsStream.readVInt());
+        } else if (bitsPerStoredFields > 31) {
+          throw new CorruptIndexException("bitsPerStoredFields=" + bitsPerStoredFields, fieldsStream);
+        } else {
+          final PackedInts.ReaderIterator it = PackedInts.getReaderIteratorNoHeader(fieldsStream, PackedInts.Format.PACKED, packedIntsVersion, chunkDocs, bitsPerStoredFields, 1);
+          for (int i = 0; i < chunkDocs; ++i) {
+            numStoredFields[i] = (int) it.next();
+          }
+        }
+
+        final int bitsPerLength = fieldsStream.readVInt();
+        if (bitsPerLength == 0) {
+          final int length = fieldsStream.readVInt();
+          for (int i = 0; i < chunkDocs; ++i) {
+            offsets[1 + i] = (1 + i) * length;
+          }
+        } else if (bitsPerLength > 31) {
+          throw new CorruptIndexException("bitsPerLength=" + bitsPerLength, fieldsStream);
+        } else {
+          final PackedInts.ReaderIterator it = PackedInts.getReaderIteratorNoHeader(fieldsStream, PackedInts.Format.PACKED, packedIntsVersion, chunkDocs, bitsPerLength, 1);
+          for (int i = 0; i < chunkDocs; ++i) {
+            offsets[i + 1] = (int) it.next();
+          }
+          for (int i = 0; i < chunkDocs; ++i) {
+            offsets[i + 1] += offsets[i];
+          }
         }
-        offset = off;
-        length = (int) it.next();
-        off += length;
-        for (int i = docID - docBase + 1; i < chunkDocs; ++i) {
-          off += it.next();
+      }
+
+      for (int i = 0; i < chunkDocs; ++i) {
+        final int length = offsets[i + 1] - offsets[i];
+        if ((length == 0) != (numStoredFields[i] == 0)) {
+          throw new CorruptIndexException("length=" + length + ", numStoredFields=" + numStoredFields[i], fieldsStream);
         }
-        totalLength = off;
       }
+
+      final int totalLength = offsets[chunkDocs];
+      sliced = version >= VERSION_BIG_CHUNKS && totalLength >= 2 * chunkSize;
+      dataPointer = fieldsStream.getFilePointer();
+      this.chunkDocs = chunkDocs;
     }
 
-    if ((length == 0) != (numStoredFields == 0)) {
-      throw new CorruptIndexException("length=" + length + ", numStoredFields=" + numStoredFields, fieldsStream);
+    /**
+     * Get the number of stored fields of the given document, which must be
+     * in the current chunk.
+     */
+    int numStoredFields(int docID) {
+      assert contains(docID);
+      return numStoredFields[docID - docBase];
     }
-    if (numStoredFields == 0) {
-      // nothing to do
-      return;
+
+    /**
+     * Get the serialized representation of the given document, which must be
+     * in the current chunk. Only the prefix of the chunk up to the end of the
+     * document is decompressed, unless <code>wholeChunk</code> is true or
+     * another document of the chunk has been requested before, in which case
+     * the whole chunk is decompressed and kept for the next calls.
+     */
+    DataInput document(int docID, boolean wholeChunk) throws IOException {
+      assert contains(docID);
+      final int index = docID - docBase;
+      final int offset = offsets[index];
+      final int length = offsets[index + 1] - offset;
+      final int totalLength = offsets[chunkDocs];
+
+      if (sliced) {
+        fieldsStream.seek(dataPointer);
+        return slicedDocument(offset, length);
+      }
+
+      if (offset + length <= decompressedLength) {
+        // already decompressed by a previous call
+        return new ByteArrayDataInput(bytes.bytes, bytes.offset + offset, length);
+      }
+
+      fieldsStream.seek(dataPointer);
+      if (totalLength > BUFFER_REUSE_THRESHOLD) {
+        // Do not keep large chunks around
+        final BytesRef bytes = new BytesRef();
+        decompressor.decompress(fieldsStream, totalLength, offset, length, bytes);
+        assert bytes.length == length;
+        return new ByteArrayDataInput(bytes.bytes, bytes.offset, bytes.length);
+      }
+
+      // If this chunk has been accessed before, chances are that other
+      // documents of the chunk will be requested next: decompress it all
+      final int toDecompress = wholeChunk || decompressedLength > 0 ? totalLength : offset + length;
+      decompressedLength = 0;
+      decompressor.decompress(fieldsStream, totalLength, 0, toDecompress, bytes);
+      if (bytes.length != toDecompress) {
+        throw new CorruptIndexException("Corrupted: expected to decompress " + toDecompress + " bytes, got " + bytes.length, fieldsStream);
+      }
+      decompressedLength = toDecompress;
+      return new ByteArrayDataInput(bytes.bytes, bytes.offset + offset, length);
     }
 
-    final DataInput documentInput;
-    if (version >= VERSION_BIG_CHUNKS && totalLength >= 2 * chunkSize) {
+    /**
+     * Read a document of a chunk that has been compressed in slices of
+     * <code>chunkSize</code> bytes, without decompressing it all at once.
+     */
+    private DataInput slicedDocument(int offset, final int length) throws IOException {
       assert chunkSize > 0;
       assert offset < chunkSize;
+      decompressedLength = 0;
 
       decompressor.decompress(fieldsStream, chunkSize, offset, Math.min(length, chunkSize - offset), bytes);
-      documentInput = new DataInput() {
+      return new DataInput() {
 
         int decompressed = bytes.length;
 
@@ -352,12 +458,44 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
         }
 
       };
-    } else {
-      final BytesRef bytes = totalLength <= BUFFER_REUSE_THRESHOLD ? this.bytes : new BytesRef();
-      decompressor.decompress(fieldsStream, totalLength, offset, length, bytes);
-      assert bytes.length == length;
-      documentInput = new ByteArrayDataInput(bytes.bytes, bytes.offset, bytes.length);
     }
+  }
+
+  @Override
+  public void visitDocument(int docID, StoredFieldVisitor visitor)
+      throws IOException {
+    if (state.contains(docID) == false) {
+      state.reset(docID);
+    }
+    visitDocument(docID, visitor, false);
+  }
+
+  /**
+   * Visit several documents at once. Documents that are stored in the same
+   * chunk only require the chunk to be decompressed once.
+   */
+  @Override
+  public void visitDocuments(int[] docIDs, StoredFieldVisitor[] visitors) throws IOException {
+    assert docIDs.length == visitors.length;
+    for (int i = 0; i < docIDs.length; ++i) {
+      final int docID = docIDs[i];
+      assert i == 0 || docIDs[i - 1] < docID;
+      if (state.contains(docID) == false) {
+        state.reset(docID);
+      }
+      final boolean moreInChunk = i + 1 < docIDs.length && state.contains(docIDs[i + 1]);
+      visitDocument(docID, visitors[i], moreInChunk);
+    }
+  }
+
+  private void visitDocument(int docID, StoredFieldVisitor visitor, boolean wholeChunk) throws IOException {
+    final int numStoredFields = state.numStoredFields(docID);
+    if (numStoredFields == 0) {
+      // nothing to do
+      return;
+    }
+
+    final DataInput documentInput = state.document(docID, wholeChunk);
 
     for (int fieldIDX = 0; fieldIDX < numStoredFields; fieldIDX++) {
       final long infoAndBits = documentInput.readVLong();
@@ -398,6 +536,11 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
     return chunkSize;
   }
 
+  /** Return the preset dictionary of this segment, or null if the compression mode doesn't use one. */
+  byte[] getDictionary() {
+    return dictionary;
+  }
+
   ChunkIterator chunkIterator(int startDocID) throws IOException {
     ensureOpen();
     return new ChunkIterator(startDocID);
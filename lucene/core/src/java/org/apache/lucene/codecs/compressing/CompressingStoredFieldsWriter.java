@@ -84,7 +84,7 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
   private IndexOutput fieldsStream;
 
   private final CompressionMode compressionMode;
-  private final Compressor compressor;
+  private Compressor compressor; // null until the preset dictionary is known, if the compression mode uses one
   private final int chunkSize;
 
   private final GrowableByteArrayDataOutput bufferedDocs;
@@ -101,7 +101,7 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
     this.segment = si.name;
     this.segmentSuffix = segmentSuffix;
     this.compressionMode = compressionMode;
-    this.compressor = compressionMode.newCompressor();
+    this.compressor = compressionMode.getMaxDictionaryLength() > 0 ? null : compressionMode.newCompressor();
     this.chunkSize = chunkSize;
     this.docBase = 0;
     this.bufferedDocs = new GrowableByteArrayDataOutput(chunkSize);
@@ -218,7 +218,24 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
         numBufferedDocs >= MAX_DOCUMENTS_PER_CHUNK;
   }
 
+  /**
+   * Record the preset dictionary of this segment, right before the first
+   * chunk, and start compressing against it.
+   */
+  private void writeDictionary(byte[] dictionary, int off, int len) throws IOException {
+    assert compressor == null;
+    assert len <= compressionMode.getMaxDictionaryLength();
+    fieldsStream.writeVInt(len);
+    fieldsStream.writeBytes(dictionary, off, len);
+    compressor = compressionMode.newCompressor(dictionary, off, len);
+  }
+
   private void flush() throws IOException {
+    if (compressor == null) {
+      // derive the dictionary from the first documents of the segment: small
+      // documents usually share field names and common values
+      writeDictionary(bufferedDocs.bytes, 0, Math.min(bufferedDocs.length, compressionMode.getMaxDictionaryLength()));
+    }
     indexWriter.writeIndex(numBufferedDocs, fieldsStream.getFilePointer());
 
     // transform end offsets into lengths
@@ -322,6 +339,10 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
     } else {
       assert bufferedDocs.length == 0;
     }
+    if (compressor == null) {
+      // no documents
+      writeDictionary(BytesRef.EMPTY_BYTES, 0, 0);
+    }
     if (docBase != numDocs) {
       throw new RuntimeException("Wrote " + docBase + " docs, finish called with numDocs=" + numDocs);
     }
@@ -348,6 +369,16 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
         }
       }
 
+      if (compressor == null
+          && matchingFieldsReader != null
+          && matchingFieldsReader.getCompressionMode() == compressionMode
+          && matchingFieldsReader.getDictionary() != null) {
+        // nothing has been written yet: keep the dictionary of the segments
+        // being merged, which has been derived from similar documents
+        final byte[] dictionary = matchingFieldsReader.getDictionary();
+        writeDictionary(dictionary, 0, dictionary.length);
+      }
+
       final int maxDoc = reader.maxDoc();
       final Bits liveDocs = reader.getLiveDocs();
 
@@ -110,6 +110,92 @@ public abstract class CompressionMode {
 
   };
 
+  /**
+   * This compression mode is similar to {@link #FAST} but compresses stored
+   * fields against a preset dictionary of up to 4KB that is recorded once per
+   * segment. This helps compression of small documents which share a lot of
+   * content, such as field names or boilerplate values, but don't fill chunks
+   * with enough redundancy on their own.
+   */
+  public static final CompressionMode FAST_WITH_DICTIONARY = new CompressionMode() {
+
+    @Override
+    public Compressor newCompressor() {
+      return new LZ4FastCompressor();
+    }
+
+    @Override
+    public Decompressor newDecompressor() {
+      return LZ4_DECOMPRESSOR;
+    }
+
+    @Override
+    public int getMaxDictionaryLength() {
+      return MAX_DICTIONARY_LENGTH;
+    }
+
+    @Override
+    public Compressor newCompressor(byte[] dictionary, int off, int len) {
+      checkDictionary(dictionary, off, len, getMaxDictionaryLength());
+      return new LZ4DictionaryCompressor(dictionary, off, len);
+    }
+
+    @Override
+    public Decompressor newDecompressor(byte[] dictionary, int off, int len) {
+      checkDictionary(dictionary, off, len, getMaxDictionaryLength());
+      return new LZ4DictionaryDecompressor(dictionary, off, len);
+    }
+
+    @Override
+    public String toString() {
+      return "FAST_WITH_DICTIONARY";
+    }
+
+  };
+
+  /**
+   * This compression mode is similar to {@link #HIGH_COMPRESSION} but
+   * compresses stored fields against a preset dictionary of up to 4KB that is
+   * recorded once per segment, see {@link #FAST_WITH_DICTIONARY}.
+   */
+  public static final CompressionMode HIGH_COMPRESSION_WITH_DICTIONARY = new CompressionMode() {
+
+    @Override
+    public Compressor newCompressor() {
+      return new DeflateCompressor(Deflater.BEST_COMPRESSION);
+    }
+
+    @Override
+    public Decompressor newDecompressor() {
+      return new DeflateDecompressor();
+    }
+
+    @Override
+    public int getMaxDictionaryLength() {
+      return MAX_DICTIONARY_LENGTH;
+    }
+
+    @Override
+    public Compressor newCompressor(byte[] dictionary, int off, int len) {
+      checkDictionary(dictionary, off, len, getMaxDictionaryLength());
+      return new DeflateCompressor(Deflater.BEST_COMPRESSION, dictionary, off, len);
+    }
+
+    @Override
+    public Decompressor newDecompressor(byte[] dictionary, int off, int len) {
+      checkDictionary(dictionary, off, len, getMaxDictionaryLength());
+      return new DeflateDecompressor(dictionary, off, len);
+    }
+
+    @Override
+    public String toString() {
+      return "HIGH_COMPRESSION_WITH_DICTIONARY";
+    }
+
+  };
+
+  private static final int MAX_DICTIONARY_LENGTH = 1 << 12;
+
   /** Sole constructor. */
   protected CompressionMode() {}
 
@@ -123,6 +209,51 @@ public abstract class CompressionMode {
    */
   public abstract Decompressor newDecompressor();
 
+  /**
+   * Return the maximum length of a preset dictionary for this compression
+   * mode, or <tt>0</tt> if this compression mode does not support preset
+   * dictionaries (the default). Formats that support preset dictionaries
+   * record one dictionary per segment when this method returns a positive
+   * value and use {@link #newCompressor(byte[], int, int)} and
+   * {@link #newDecompressor(byte[], int, int)} to compress data against it.
+   */
+  public int getMaxDictionaryLength() {
+    return 0;
+  }
+
+  /**
+   * Create a new {@link Compressor} instance that compresses data against the
+   * preset dictionary <code>dictionary[off:off+len]</code>. Data compressed
+   * this way can only be decompressed by a {@link Decompressor} that has been
+   * created with the same dictionary. The dictionary must not be modified
+   * after this call.
+   * @throws UnsupportedOperationException if this compression mode does not
+   *         support preset dictionaries
+   */
+  public Compressor newCompressor(byte[] dictionary, int off, int len) {
+    throw new UnsupportedOperationException(this + " does not support preset dictionaries");
+  }
+
+  /**
+   * Create a new {@link Decompressor} instance that decompresses data that
+   * has been compressed against the preset dictionary
+   * <code>dictionary[off:off+len]</code>.
+   * @throws UnsupportedOperationException if this compression mode does not
+   *         support preset dictionaries
+   */
+  public Decompressor newDecompressor(byte[] dictionary, int off, int len) {
+    throw new UnsupportedOperationException(this + " does not support preset dictionaries");
+  }
+
+  private static void checkDictionary(byte[] dictionary, int off, int len, int maxLength) {
+    if (off < 0 || len < 0 || off + len > dictionary.length) {
+      throw new IllegalArgumentException("Invalid dictionary slice: off=" + off + ", len=" + len + ", dictionary.length=" + dictionary.length);
+    }
+    if (len > maxLength) {
+      throw new IllegalArgumentException("Dictionary is too large: " + len + " > " + maxLength);
+    }
+  }
+
   private static final Decompressor LZ4_DECOMPRESSOR = new Decompressor() {
 
     @Override
@@ -179,13 +310,85 @@ public abstract class CompressionMode {
 
   }
 
+  private static final class LZ4DictionaryCompressor extends Compressor {
+
+    private final LZ4.HashTable ht;
+    private final int dictLength;
+    private byte[] buffer;
+
+    LZ4DictionaryCompressor(byte[] dictionary, int off, int len) {
+      ht = new LZ4.HashTable();
+      dictLength = len;
+      buffer = new byte[ArrayUtil.oversize(len, 1)];
+      System.arraycopy(dictionary, off, buffer, 0, len);
+    }
+
+    @Override
+    public void compress(byte[] bytes, int off, int len, DataOutput out)
+        throws IOException {
+      // matches may only refer to bytes of the same array: append the data to the dictionary
+      if (buffer.length < dictLength + len) {
+        buffer = ArrayUtil.grow(buffer, dictLength + len);
+      }
+      System.arraycopy(bytes, off, buffer, dictLength, len);
+      LZ4.compressWithDictionary(buffer, 0, dictLength, len, out, ht);
+    }
+
+  }
+
+  private static final class LZ4DictionaryDecompressor extends Decompressor {
+
+    private final byte[] dictionary;
+
+    LZ4DictionaryDecompressor(byte[] dictionary, int off, int len) {
+      this.dictionary = new byte[len];
+      System.arraycopy(dictionary, off, this.dictionary, 0, len);
+    }
+
+    @Override
+    public void decompress(DataInput in, int originalLength, int offset, int length, BytesRef bytes) throws IOException {
+      assert offset + length <= originalLength;
+      final int dictLength = dictionary.length;
+      // add 7 padding bytes, this is not necessary but can help decompression run faster
+      if (bytes.bytes.length < dictLength + originalLength + 7) {
+        bytes.bytes = new byte[ArrayUtil.oversize(dictLength + originalLength + 7, 1)];
+      }
+      // back-references may point to the dictionary, which must directly precede the data
+      System.arraycopy(dictionary, 0, bytes.bytes, 0, dictLength);
+      final int decompressedLength = LZ4.decompress(in, dictLength + offset + length, bytes.bytes, dictLength) - dictLength;
+      if (decompressedLength > originalLength) {
+        throw new CorruptIndexException("Corrupted: lengths mismatch: " + decompressedLength + " > " + originalLength, in);
+      }
+      bytes.offset = dictLength + offset;
+      bytes.length = length;
+    }
+
+    @Override
+    public Decompressor clone() {
+      // stateless, the dictionary is never modified
+      return this;
+    }
+
+  }
+
   private static final class DeflateDecompressor extends Decompressor {
 
     final Inflater decompressor;
+    final byte[] dictionary;
     byte[] compressed;
 
     DeflateDecompressor() {
+      this(null, 0, 0);
+    }
+
+    DeflateDecompressor(byte[] dictionary, int off, int len) {
       decompressor = new Inflater();
+      if (dictionary == null) {
+        this.dictionary = null;
+      } else {
+        this.dictionary = new byte[len];
+        System.arraycopy(dictionary, off, this.dictionary, 0, len);
+      }
       compressed = new byte[0];
     }
 
@@ -217,6 +420,15 @@ public abstract class CompressionMode {
         bytes.length += count;
         if (decompressor.finished()) {
           break;
+        } else if (count == 0 && decompressor.needsDictionary()) {
+          if (dictionary == null) {
+            throw new CorruptIndexException("Compressed data requires a preset dictionary", in);
+          }
+          try {
+            decompressor.setDictionary(dictionary);
+          } catch (IllegalArgumentException e) {
+            throw new CorruptIndexException("Preset dictionary mismatch", in, e);
+          }
         } else {
           bytes.bytes = ArrayUtil.grow(bytes.bytes);
         }
@@ -230,7 +442,7 @@ public abstract class CompressionMode {
 
     @Override
     public Decompressor clone() {
-      return new DeflateDecompressor();
+      return dictionary == null ? new DeflateDecompressor() : new DeflateDecompressor(dictionary, 0, dictionary.length);
     }
 
   }
@@ -238,16 +450,30 @@ public abstract class CompressionMode {
   private static class DeflateCompressor extends Compressor {
 
     final Deflater compressor;
+    final byte[] dictionary;
     byte[] compressed;
 
     DeflateCompressor(int level) {
+      this(level, null, 0, 0);
+    }
+
+    DeflateCompressor(int level, byte[] dictionary, int off, int len) {
       compressor = new Deflater(level);
+      if (dictionary == null) {
+        this.dictionary = null;
+      } else {
+        this.dictionary = new byte[len];
+        System.arraycopy(dictionary, off, this.dictionary, 0, len);
+      }
       compressed = new byte[64];
     }
 
     @Override
     public void compress(byte[] bytes, int off, int len, DataOutput out) throws IOException {
       compressor.reset();
+      if (dictionary != null && dictionary.length > 0) {
+        compressor.setDictionary(dictionary);
+      }
       compressor.setInput(bytes, off, len);
       compressor.finish();
 
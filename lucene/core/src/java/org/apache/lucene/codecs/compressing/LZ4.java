@@ -204,20 +204,41 @@ final class LZ4 {
    * but can safely be reused.
    */
   public static void compress(byte[] bytes, int off, int len, DataOutput out, HashTable ht) throws IOException {
+    compressWithDictionary(bytes, off, 0, len, out, ht);
+  }
 
-    final int base = off;
-    final int end = off + len;
+  /**
+   * Compress <code>bytes[dictOff+dictLen:dictOff+dictLen+len]</code> into
+   * <code>out</code>, using <code>bytes[dictOff:dictOff+dictLen]</code> as a
+   * preset dictionary that matches may refer to. The compressed data can only
+   * be decompressed into a buffer that starts with the same dictionary, see
+   * {@link #decompress(DataInput, int, byte[], int)}.
+   */
+  public static void compressWithDictionary(byte[] bytes, int dictOff, int dictLen, int len, DataOutput out, HashTable ht) throws IOException {
 
-    int anchor = off++;
+    final int base = dictOff;
+    final int end = dictOff + dictLen + len;
+
+    int off = dictOff + dictLen;
+    int anchor = off;
+    if (dictLen == 0) {
+      // without a dictionary, the first byte can't be part of a match
+      ++off;
+    }
 
     if (len > LAST_LITERALS + MIN_MATCH) {
 
       final int limit = end - LAST_LITERALS;
       final int matchLimit = limit - MIN_MATCH;
-      ht.reset(len);
+      ht.reset(dictLen + len);
       final int hashLog = ht.hashLog;
       final PackedInts.Mutable hashTable = ht.hashTable;
 
+      // prime the hash table with the content of the dictionary
+      for (int i = dictOff, dictEnd = dictOff + dictLen; i <= dictEnd - MIN_MATCH; ++i) {
+        hashTable.set(hash(readInt(bytes, i), hashLog), i - base);
+      }
+
       main:
       while (off <= limit) {
         // find a match
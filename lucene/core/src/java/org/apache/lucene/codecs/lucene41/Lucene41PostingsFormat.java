@@ -201,9 +201,9 @@ import org.apache.lucene.util.packed.PackedInts;
  *       <sup>NumSkipLevels-1</sup>, SkipLevel&gt;, SkipDatum?</li>
  *   <li>SkipLevel --&gt; &lt;SkipDatum&gt; <sup>TrimmedDocFreq/(PackedBlockSize^(Level + 1))</sup></li>
  *   <li>SkipDatum --&gt; DocSkip, DocFPSkip, &lt;PosFPSkip, PosBlockOffset, PayLength?, 
- *                        PayFPSkip?&gt;?, SkipChildLevelPointer?</li>
+ *                        PayFPSkip?&gt;?, MaxFreq?, SkipChildLevelPointer?</li>
  *   <li>PackedDocDeltaBlock, PackedFreqBlock --&gt; {@link PackedInts PackedInts}</li>
- *   <li>DocDelta, Freq, DocSkip, DocFPSkip, PosFPSkip, PosBlockOffset, PayByteUpto, PayFPSkip 
+ *   <li>DocDelta, Freq, DocSkip, DocFPSkip, PosFPSkip, PosBlockOffset, PayByteUpto, PayFPSkip, MaxFreq 
  *       --&gt; 
  *   {@link DataOutput#writeVInt VInt}</li>
  *   <li>SkipChildLevelPointer --&gt; {@link DataOutput#writeVLong VLong}</li>
@@ -264,6 +264,10 @@ import org.apache.lucene.util.packed.PackedInts;
  *       current term's TermFreqs, and stored as a difference sequence.</li>
  *   <li>PayByteUpto indicates the start offset of the current payload. It is equivalent to
  *       the sum of the payload lengths in the current block up to PosBlockOffset</li>
+ *   <li>MaxFreq is the maximum term frequency of the documents covered by the skip entry, ie.
+ *       the documents since the previous skip entry on the same level. It is only stored when
+ *       frequencies are indexed, and lets scorers compute an upper bound of the score of a
+ *       block without decoding it.</li>
  * </ul>
  * </dd>
  * </dl>
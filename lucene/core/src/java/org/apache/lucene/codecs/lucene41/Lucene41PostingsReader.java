@@ -244,6 +244,11 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
     }
   }
     
+  /** Returns true if skip data records the max freq of every block. */
+  private boolean hasMaxFreq(boolean indexHasFreq) {
+    return indexHasFreq && version >= Lucene41PostingsWriter.VERSION_BLOCK_MAX_FREQ;
+  }
+
   @Override
   public DocsEnum docs(FieldInfo fieldInfo, BlockTermState termState, Bits liveDocs, DocsEnum reuse, int flags) throws IOException {
     BlockDocsEnum docsEnum;
@@ -305,6 +310,12 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
     private Lucene41SkipReader skipper;
     private boolean skipped;
 
+    // separate skipper for advanceShallow, so that reading block max freqs
+    // never moves the skipper that positions docIn:
+    private Lucene41SkipReader maxFreqSkipper;
+    private boolean maxFreqSkipped;
+    private int maxFreq;
+
     final IndexInput startDocIn;
 
     IndexInput docIn;
@@ -382,6 +393,8 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
       nextSkipDoc = BLOCK_SIZE - 1; // we won't skip if target is found in first block
       docBufferUpto = BLOCK_SIZE;
       skipped = false;
+      maxFreqSkipped = false;
+      maxFreq = tailMaxFreq();
       return this;
     }
     
@@ -394,6 +407,47 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
     public int docID() {
       return doc;
     }
+
+    // upper bound of the freq of docs that are not covered by a skip entry
+    private int tailMaxFreq() {
+      return indexHasFreq ? (int) Math.min(totalTermFreq - docFreq + 1, Integer.MAX_VALUE) : 1;
+    }
+
+    @Override
+    public int advanceShallow(int target) throws IOException {
+      if (docFreq > BLOCK_SIZE && hasMaxFreq(indexHasFreq)) {
+        if (maxFreqSkipper == null) {
+          maxFreqSkipper = new Lucene41SkipReader(startDocIn.clone(),
+                                                  Lucene41PostingsWriter.maxSkipLevels,
+                                                  BLOCK_SIZE,
+                                                  true,
+                                                  indexHasPos,
+                                                  indexHasOffsets,
+                                                  indexHasPayloads);
+        }
+        if (!maxFreqSkipped) {
+          assert skipOffset != -1;
+          maxFreqSkipper.init(docTermStartFP+skipOffset, docTermStartFP, 0, 0, docFreq);
+          maxFreqSkipped = true;
+        }
+        // the first block always ends after doc 1, and the skipper
+        // would not load any skip entry for a target of 0:
+        maxFreqSkipper.skipTo(Math.max(1, target));
+        final int blockEnd = maxFreqSkipper.getNextSkipDoc();
+        if (blockEnd != Integer.MAX_VALUE) {
+          maxFreq = maxFreqSkipper.getNextSkipMaxFreq();
+          return blockEnd;
+        }
+      }
+      // last blocks are not covered by skip data
+      maxFreq = tailMaxFreq();
+      return NO_MORE_DOCS;
+    }
+
+    @Override
+    public int getMaxFreq() {
+      return maxFreq;
+    }
     
     private void refillDocs() throws IOException {
       final int left = docFreq - docUpto;
@@ -470,6 +524,56 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
       }
     }
 
+    @Override
+    public int read(int[] docs, int[] freqs) throws IOException {
+      int count = 0;
+      int lastFreq = freq;
+      while (count < docs.length && docUpto < docFreq) {
+        if (docBufferUpto == BLOCK_SIZE) {
+          refillDocs();
+        }
+        // the buffer is only partially filled for the last (vInt) block
+        final int bufferEnd = (int) Math.min(BLOCK_SIZE, (long) docBufferUpto + docFreq - docUpto);
+        final int end = Math.min(bufferEnd, docBufferUpto + docs.length - count);
+        final int start = docBufferUpto;
+        int accum = this.accum;
+        if (liveDocs == null) {
+          // tight loop over the decoded block
+          for (int i = start; i < end; ++i) {
+            accum += docDeltaBuffer[i];
+            docs[count++] = accum;
+          }
+          if (freqs != null) {
+            System.arraycopy(freqBuffer, start, freqs, count - (end - start), end - start);
+          }
+          if (end > start) {
+            lastFreq = freqBuffer[end - 1];
+          }
+        } else {
+          for (int i = start; i < end; ++i) {
+            accum += docDeltaBuffer[i];
+            if (liveDocs.get(accum)) {
+              lastFreq = freqBuffer[i];
+              if (freqs != null) {
+                freqs[count] = lastFreq;
+              }
+              docs[count++] = accum;
+            }
+          }
+        }
+        this.accum = accum;
+        docUpto += end - start;
+        docBufferUpto = end;
+      }
+      if (count == 0) {
+        doc = NO_MORE_DOCS;
+      } else {
+        doc = docs[count - 1];
+        freq = lastFreq;
+      }
+      return count;
+    }
+
     @Override
     public int advance(int target) throws IOException {
       // TODO: make frq block load lazy/skippable
@@ -490,6 +594,7 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
           skipper = new Lucene41SkipReader(docIn.clone(),
                                         Lucene41PostingsWriter.maxSkipLevels,
                                         BLOCK_SIZE,
+                                        hasMaxFreq(indexHasFreq),
                                         indexHasPos,
                                         indexHasOffsets,
                                         indexHasPayloads);
@@ -823,6 +928,7 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
           skipper = new Lucene41SkipReader(docIn.clone(),
                                         Lucene41PostingsWriter.maxSkipLevels,
                                         BLOCK_SIZE,
+                                        hasMaxFreq(true),
                                         true,
                                         indexHasOffsets,
                                         indexHasPayloads);
@@ -1349,6 +1455,7 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
           skipper = new Lucene41SkipReader(docIn.clone(),
                                         Lucene41PostingsWriter.maxSkipLevels,
                                         BLOCK_SIZE,
+                                        hasMaxFreq(true),
                                         true,
                                         indexHasOffsets,
                                         indexHasPayloads);
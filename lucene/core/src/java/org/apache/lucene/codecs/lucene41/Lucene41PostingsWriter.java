@@ -65,7 +65,8 @@ public final class Lucene41PostingsWriter extends PushPostingsWriterBase {
   final static int VERSION_START = 0;
   final static int VERSION_META_ARRAY = 1;
   final static int VERSION_CHECKSUM = 2;
-  final static int VERSION_CURRENT = VERSION_CHECKSUM;
+  final static int VERSION_BLOCK_MAX_FREQ = 3;
+  final static int VERSION_CURRENT = VERSION_BLOCK_MAX_FREQ;
 
   IndexOutput docOut;
   IndexOutput posOut;
@@ -93,6 +94,8 @@ public final class Lucene41PostingsWriter extends PushPostingsWriterBase {
   private int payloadByteUpto;
 
   private int lastBlockDocID;
+  private int lastBlockMaxFreq;
+  private int blockMaxFreq;
   private long lastBlockPosFP;
   private long lastBlockPayFP;
   private int lastBlockPosBufferUpto;
@@ -233,7 +236,7 @@ public final class Lucene41PostingsWriter extends PushPostingsWriterBase {
   @Override
   public int setField(FieldInfo fieldInfo) {
     super.setField(fieldInfo);
-    skipWriter.setField(writePositions, writeOffsets, writePayloads);
+    skipWriter.setField(writeFreqs, writePositions, writeOffsets, writePayloads);
     lastState = emptyState;
     if (writePositions) {
       if (writePayloads || writeOffsets) {
@@ -257,6 +260,7 @@ public final class Lucene41PostingsWriter extends PushPostingsWriterBase {
     }
     lastDocID = 0;
     lastBlockDocID = -1;
+    blockMaxFreq = 0;
     // if (DEBUG) {
     //   System.out.println("FPW.startTerm startFP=" + docStartFP);
     // }
@@ -275,7 +279,7 @@ public final class Lucene41PostingsWriter extends PushPostingsWriterBase {
       // if (DEBUG) {
       //   System.out.println("  bufferSkip at writeBlock: lastDocID=" + lastBlockDocID + " docCount=" + (docCount-1));
       // }
-      skipWriter.bufferSkip(lastBlockDocID, docCount, lastBlockPosFP, lastBlockPayFP, lastBlockPosBufferUpto, lastBlockPayloadByteUpto);
+      skipWriter.bufferSkip(lastBlockDocID, lastBlockMaxFreq, docCount, lastBlockPosFP, lastBlockPayFP, lastBlockPosBufferUpto, lastBlockPayloadByteUpto);
     }
 
     final int docDelta = docID - lastDocID;
@@ -290,6 +294,7 @@ public final class Lucene41PostingsWriter extends PushPostingsWriterBase {
     // }
     if (writeFreqs) {
       freqBuffer[docBufferUpto] = termDocFreq;
+      blockMaxFreq = Math.max(blockMaxFreq, termDocFreq);
     }
     docBufferUpto++;
     docCount++;
@@ -373,6 +378,8 @@ public final class Lucene41PostingsWriter extends PushPostingsWriterBase {
     // write them to skip file.
     if (docBufferUpto == BLOCK_SIZE) {
       lastBlockDocID = lastDocID;
+      lastBlockMaxFreq = blockMaxFreq;
+      blockMaxFreq = 0;
       if (posOut != null) {
         if (payOut != null) {
           lastBlockPayFP = payOut.getFilePointer();
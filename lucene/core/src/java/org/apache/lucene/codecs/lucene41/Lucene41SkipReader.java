@@ -59,6 +59,7 @@ final class Lucene41SkipReader extends MultiLevelSkipListReader {
   private long payPointer[];
   private int posBufferUpto[];
   private int payloadByteUpto[];
+  private int maxFreq[];
 
   private long lastPosPointer;
   private long lastPayPointer;
@@ -66,10 +67,15 @@ final class Lucene41SkipReader extends MultiLevelSkipListReader {
   private long lastDocPointer;
   private int lastPosBufferUpto;
 
-  public Lucene41SkipReader(IndexInput skipStream, int maxSkipLevels, int blockSize, boolean hasPos, boolean hasOffsets, boolean hasPayloads) {
+  public Lucene41SkipReader(IndexInput skipStream, int maxSkipLevels, int blockSize, boolean hasMaxFreq, boolean hasPos, boolean hasOffsets, boolean hasPayloads) {
     super(skipStream, maxSkipLevels, blockSize, 8);
     this.blockSize = blockSize;
     docPointer = new long[maxSkipLevels];
+    if (hasMaxFreq) {
+      maxFreq = new int[maxSkipLevels];
+    } else {
+      maxFreq = null;
+    }
     if (hasPos) {
       posPointer = new long[maxSkipLevels];
       posBufferUpto = new int[maxSkipLevels];
@@ -144,6 +150,13 @@ final class Lucene41SkipReader extends MultiLevelSkipListReader {
     return skipDoc[0];
   }
 
+  /** Returns the maximum term frequency of the block that ends with
+   *  {@link #getNextSkipDoc()}. Only valid if max freqs were indexed and
+   *  the skip list is not exhausted. */
+  public int getNextSkipMaxFreq() {
+    return maxFreq[0];
+  }
+
   @Override
   protected void seekChild(int level) throws IOException {
     super.seekChild(level);
@@ -218,6 +231,10 @@ final class Lucene41SkipReader extends MultiLevelSkipListReader {
         payPointer[level] += skipStream.readVInt();
       }
     }
+
+    if (maxFreq != null) {
+      maxFreq[level] = skipStream.readVInt();
+    }
     return delta;
   }
 }
@@ -41,6 +41,7 @@ import org.apache.lucene.codecs.MultiLevelSkipListWriter;
  * 2. its related file points(position, payload), 
  * 3. related numbers or uptos(position, payload).
  * 4. start offset.
+ * 5. max term frequency of the docs the skip point covers (if frequencies are indexed).
  *
  */
 final class Lucene41SkipWriter extends MultiLevelSkipListWriter {
@@ -51,6 +52,7 @@ final class Lucene41SkipWriter extends MultiLevelSkipListWriter {
   private long[] lastSkipPosPointer;
   private long[] lastSkipPayPointer;
   private int[] lastPayloadByteUpto;
+  private int[] pendingMaxFreq;
 
   private final IndexOutput docOut;
   private final IndexOutput posOut;
@@ -62,6 +64,8 @@ final class Lucene41SkipWriter extends MultiLevelSkipListWriter {
   private long curPayPointer;
   private int curPosBufferUpto;
   private int curPayloadByteUpto;
+  private int curMaxFreq;
+  private boolean fieldHasFreqs;
   private boolean fieldHasPositions;
   private boolean fieldHasOffsets;
   private boolean fieldHasPayloads;
@@ -74,6 +78,7 @@ final class Lucene41SkipWriter extends MultiLevelSkipListWriter {
     
     lastSkipDoc = new int[maxSkipLevels];
     lastSkipDocPointer = new long[maxSkipLevels];
+    pendingMaxFreq = new int[maxSkipLevels];
     if (posOut != null) {
       lastSkipPosPointer = new long[maxSkipLevels];
       if (payOut != null) {
@@ -83,7 +88,8 @@ final class Lucene41SkipWriter extends MultiLevelSkipListWriter {
     }
   }
 
-  public void setField(boolean fieldHasPositions, boolean fieldHasOffsets, boolean fieldHasPayloads) {
+  public void setField(boolean fieldHasFreqs, boolean fieldHasPositions, boolean fieldHasOffsets, boolean fieldHasPayloads) {
+    this.fieldHasFreqs = fieldHasFreqs;
     this.fieldHasPositions = fieldHasPositions;
     this.fieldHasOffsets = fieldHasOffsets;
     this.fieldHasPayloads = fieldHasPayloads;
@@ -115,6 +121,7 @@ final class Lucene41SkipWriter extends MultiLevelSkipListWriter {
       super.resetSkip();
       Arrays.fill(lastSkipDoc, 0);
       Arrays.fill(lastSkipDocPointer, lastDocFP);
+      Arrays.fill(pendingMaxFreq, 0);
       if (fieldHasPositions) {
         Arrays.fill(lastSkipPosPointer, lastPosFP);
         if (fieldHasPayloads) {
@@ -129,11 +136,13 @@ final class Lucene41SkipWriter extends MultiLevelSkipListWriter {
   }
 
   /**
-   * Sets the values for the current skip data. 
+   * Sets the values for the current skip data. {@code maxFreq} is the
+   * maximum term frequency of the block that ends with {@code doc}.
    */
-  public void bufferSkip(int doc, int numDocs, long posFP, long payFP, int posBufferUpto, int payloadByteUpto) throws IOException {
+  public void bufferSkip(int doc, int maxFreq, int numDocs, long posFP, long payFP, int posBufferUpto, int payloadByteUpto) throws IOException {
     initSkip();
     this.curDoc = doc;
+    this.curMaxFreq = maxFreq;
     this.curDocPointer = docOut.getFilePointer();
     this.curPosPointer = posFP;
     this.curPayPointer = payFP;
@@ -171,5 +180,17 @@ final class Lucene41SkipWriter extends MultiLevelSkipListWriter {
         lastSkipPayPointer[level] = curPayPointer;
       }
     }
+
+    if (fieldHasFreqs) {
+      // an entry covers all blocks since the previous entry on the same
+      // level: record the max freq over all of them
+      if (level == 0) {
+        for (int i = 0; i < pendingMaxFreq.length; i++) {
+          pendingMaxFreq[i] = Math.max(pendingMaxFreq[i], curMaxFreq);
+        }
+      }
+      skipBuffer.writeVInt(pendingMaxFreq[level]);
+      pendingMaxFreq[level] = 0;
+    }
   }
 }
@@ -22,6 +22,8 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import org.apache.lucene.codecs.CodecUtil;
 import org.apache.lucene.codecs.DocValuesConsumer;
@@ -69,6 +71,9 @@ class Lucene410DocValuesConsumer extends DocValuesConsumer implements Closeable
   public static final int TABLE_COMPRESSED = 2;
   /** Compressed with monotonically increasing values */
   public static final int MONOTONIC_COMPRESSED = 3;
+  /** Compressed by only storing the doc IDs of the documents that have a value,
+   *  and the values of these documents. */
+  public static final int SPARSE_COMPRESSED = 4;
   
   /** Uncompressed binary, written directly (fixed length). */
   public static final int BINARY_FIXED_UNCOMPRESSED = 0;
@@ -76,6 +81,8 @@ class Lucene410DocValuesConsumer extends DocValuesConsumer implements Closeable
   public static final int BINARY_VARIABLE_UNCOMPRESSED = 1;
   /** Compressed binary with shared prefixes */
   public static final int BINARY_PREFIX_COMPRESSED = 2;
+  /** Binary with the doc IDs of the documents that have a value, and the values of these documents. */
+  public static final int BINARY_SPARSE = 3;
 
   /** Standard storage for sorted set values with 1 level of indirection:
    *  docId -> address -> ord. */
@@ -112,7 +119,99 @@ class Lucene410DocValuesConsumer extends DocValuesConsumer implements Closeable
   }
 
   void addNumericField(FieldInfo field, Iterable<Number> values, boolean optimizeStorage) throws IOException {
+    meta.writeVInt(field.number);
+    meta.writeByte(Lucene410DocValuesFormat.NUMERIC);
+    writeNumericEntry(values, optimizeStorage);
+  }
+
+  /** Returns true if so few documents have a value that it is more efficient
+   *  to store the doc IDs of these documents than a value for every document. */
+  static boolean isSparse(long numDocsWithValue, long numDocs) {
+    return numDocsWithValue < numDocs / 100;
+  }
+
+  private static boolean hasValue(Object value, Long missingValue) {
+    return value != null && (missingValue == null || ((Number) value).longValue() != missingValue.longValue());
+  }
+
+  /** Returns a view over the values of the documents that have a value. */
+  private static <T> Iterable<T> valuesWithField(final Iterable<T> values, final Long missingValue) {
+    return new Iterable<T>() {
+      @Override
+      public Iterator<T> iterator() {
+        final Iterator<T> it = values.iterator();
+        return new Iterator<T>() {
+          // don't read ahead: values may be reused by the wrapped iterator
+          T next;
+          boolean nextIsSet;
+
+          @Override
+          public boolean hasNext() {
+            while (nextIsSet == false && it.hasNext()) {
+              final T value = it.next();
+              if (hasValue(value, missingValue)) {
+                next = value;
+                nextIsSet = true;
+              }
+            }
+            return nextIsSet;
+          }
+
+          @Override
+          public T next() {
+            if (hasNext() == false) {
+              throw new NoSuchElementException();
+            }
+            nextIsSet = false;
+            return next;
+          }
+
+          @Override
+          public void remove() {
+            throw new UnsupportedOperationException();
+          }
+        };
+      }
+    };
+  }
+
+  /** Writes the doc IDs of the documents that have a value as monotonic blocks. */
+  private void writeDocIDsWithField(Iterable<?> values, Long missingValue) throws IOException {
+    final MonotonicBlockPackedWriter writer = new MonotonicBlockPackedWriter(data, BLOCK_SIZE);
+    long docID = 0;
+    for (Object v : values) {
+      if (hasValue(v, missingValue)) {
+        writer.add(docID);
+      }
+      docID++;
+    }
+    writer.finish();
+  }
+
+  /**
+   * Writes a {@link #SPARSE_COMPRESSED} entry: documents whose value is null
+   * or <code>missingValue</code> are considered to not have a value, and will
+   * be read as <code>missingValue</code> (or 0 if null).
+   */
+  private void writeSparseNumericEntry(Iterable<Number> values, Long missingValue, long count, long numDocsWithValue, boolean optimizeStorage) throws IOException {
+    meta.writeVInt(SPARSE_COMPRESSED);
+    meta.writeLong(-1L); // docs with field are given by the doc IDs
+    meta.writeLong(data.getFilePointer());
+    meta.writeVLong(count);
+    meta.writeVLong(numDocsWithValue);
+    meta.writeLong(missingValue == null ? 0L : missingValue.longValue());
+    meta.writeVInt(PackedInts.VERSION_CURRENT);
+    meta.writeVInt(BLOCK_SIZE);
+    writeDocIDsWithField(values, missingValue);
+    final long endOffset = data.getFilePointer();
+    // values of the documents that have one, addressed by the rank of their doc ID
+    writeNumericEntry(valuesWithField(values, missingValue), optimizeStorage && numDocsWithValue > 0);
+    meta.writeLong(endOffset);
+  }
+
+  private void writeNumericEntry(Iterable<Number> values, boolean optimizeStorage) throws IOException {
     long count = 0;
+    long missingCount = 0;
     long minValue = Long.MAX_VALUE;
     long maxValue = Long.MIN_VALUE;
     long gcd = 0;
@@ -127,6 +226,7 @@ class Lucene410DocValuesConsumer extends DocValuesConsumer implements Closeable
         if (nv == null) {
           v = 0;
           missing = true;
+          missingCount++;
         } else {
           v = nv.longValue();
         }
@@ -163,6 +263,11 @@ class Lucene410DocValuesConsumer extends DocValuesConsumer implements Closeable
         ++count;
       }
     }
+
+    if (missing && isSparse(count - missingCount, count)) {
+      writeSparseNumericEntry(values, null, count, count - missingCount, optimizeStorage);
+      return;
+    }
     
     final long delta = maxValue - minValue;
     final int deltaBitsRequired = DirectWriter.unsignedBitsRequired(delta);
@@ -180,8 +285,6 @@ class Lucene410DocValuesConsumer extends DocValuesConsumer implements Closeable
     } else {
       format = DELTA_COMPRESSED;
     }
-    meta.writeVInt(field.number);
-    meta.writeByte(Lucene410DocValuesFormat.NUMERIC);
     meta.writeVInt(format);
     if (missing) {
       meta.writeLong(data.getFilePointer());
@@ -262,9 +365,26 @@ class Lucene410DocValuesConsumer extends DocValuesConsumer implements Closeable
 
   @Override
   public void addBinaryField(FieldInfo field, Iterable<BytesRef> values) throws IOException {
-    // write the byte[] data
     meta.writeVInt(field.number);
     meta.writeByte(Lucene410DocValuesFormat.BINARY);
+    writeBinaryEntry(values);
+  }
+
+  private void writeBinaryEntry(Iterable<BytesRef> values) throws IOException {
+    long numDocsWithValue = 0;
+    long numDocs = 0;
+    for (BytesRef v : values) {
+      if (v != null) {
+        numDocsWithValue++;
+      }
+      numDocs++;
+    }
+    if (numDocsWithValue < numDocs && isSparse(numDocsWithValue, numDocs)) {
+      writeSparseBinaryEntry(values, numDocs, numDocsWithValue);
+      return;
+    }
+
+    // write the byte[] data
     int minLength = Integer.MAX_VALUE;
     int maxLength = Integer.MIN_VALUE;
     final long startFP = data.getFilePointer();
@@ -317,6 +437,22 @@ class Lucene410DocValuesConsumer extends DocValuesConsumer implements Closeable
     }
   }
   
+  /** Writes a {@link #BINARY_SPARSE} entry, documents whose value is null don't have a value. */
+  private void writeSparseBinaryEntry(Iterable<BytesRef> values, long count, long numDocsWithValue) throws IOException {
+    meta.writeVInt(BINARY_SPARSE);
+    meta.writeLong(-1L); // docs with field are given by the doc IDs
+    meta.writeVInt(0);
+    meta.writeVInt(0);
+    meta.writeVLong(count);
+    meta.writeLong(data.getFilePointer());
+    meta.writeVLong(numDocsWithValue);
+    meta.writeVInt(PackedInts.VERSION_CURRENT);
+    meta.writeVInt(BLOCK_SIZE);
+    writeDocIDsWithField(values, null);
+    // values of the documents that have one, addressed by the rank of their doc ID
+    writeBinaryEntry(valuesWithField(values, null));
+  }
+
   /** expert: writes a value dictionary for a sorted/sortedset field */
   private void addTermsDict(FieldInfo field, final Iterable<BytesRef> values) throws IOException {
     // first check if its a "fixed-length" terms dict
@@ -469,7 +605,22 @@ class Lucene410DocValuesConsumer extends DocValuesConsumer implements Closeable
     meta.writeVInt(field.number);
     meta.writeByte(Lucene410DocValuesFormat.SORTED);
     addTermsDict(field, values);
-    addNumericField(field, docToOrd, false);
+
+    long numDocsWithValue = 0;
+    long numDocs = 0;
+    for (Number ord : docToOrd) {
+      if (ord.longValue() != -1L) {
+        numDocsWithValue++;
+      }
+      numDocs++;
+    }
+    if (numDocsWithValue < numDocs && isSparse(numDocsWithValue, numDocs)) {
+      meta.writeVInt(field.number);
+      meta.writeByte(Lucene410DocValuesFormat.NUMERIC);
+      writeSparseNumericEntry(docToOrd, -1L, numDocs, numDocsWithValue, false);
+    } else {
+      addNumericField(field, docToOrd, false);
+    }
   }
 
   @Override
@@ -49,6 +49,9 @@ import org.apache.lucene.util.packed.MonotonicBlockPackedWriter;
  *        common denominator (GCD) is computed, and quotients are stored using Delta-compressed Numerics.
  *    <li>Monotonic-compressed: when all numbers are monotonically increasing offsets, they are written
  *        as blocks of bitpacked integers, encoding the deviation from the expected delta.
+ *    <li>Sparse-compressed: when less than 1% of documents have a value, the doc IDs of these documents
+ *        are written as Monotonic-compressed numerics, and their values are written using one of the
+ *        strategies above. The value of a document is looked up by the index of its doc ID.
  * </ul>
  * <p>
  * {@link DocValuesType#BINARY BINARY}:
@@ -60,12 +63,16 @@ import org.apache.lucene.util.packed.MonotonicBlockPackedWriter;
  *    <li>Prefix-compressed Binary: values are written in chunks of 16, with the first value written
  *        completely and other values sharing prefixes. chunk addresses are written as Monotonic-compressed
  *        numerics. A reverse lookup index is written from a portion of every 1024th term.
+ *    <li>Sparse Binary: when less than 1% of documents have a value, the doc IDs of these documents are
+ *        written as Monotonic-compressed numerics, and their values are written as Fixed-width or
+ *        Variable-width Binary.
  * </ul>
  * <p>
  * {@link DocValuesType#SORTED SORTED}:
  * <ul>
  *    <li>Sorted: a mapping of ordinals to deduplicated terms is written as Binary, 
  *        along with the per-document ordinals written using one of the numeric strategies above.
+ *        Ordinals are Sparse-compressed when less than 1% of documents have a value.
  * </ul>
  * <p>
  * {@link DocValuesType#SORTED_SET SORTED_SET}:
@@ -94,16 +101,18 @@ import org.apache.lucene.util.packed.MonotonicBlockPackedWriter;
  *   <p>DocValues metadata (.dvm) --&gt; Header,&lt;Entry&gt;<sup>NumFields</sup>,Footer</p>
  *   <ul>
  *     <li>Entry --&gt; NumericEntry | BinaryEntry | SortedEntry | SortedSetEntry | SortedNumericEntry</li>
- *     <li>NumericEntry --&gt; GCDNumericEntry | TableNumericEntry | DeltaNumericEntry</li>
+ *     <li>NumericEntry --&gt; GCDNumericEntry | TableNumericEntry | DeltaNumericEntry | SparseNumericEntry</li>
  *     <li>GCDNumericEntry --&gt; NumericHeader,MinValue,GCD,BitsPerValue</li>
  *     <li>TableNumericEntry --&gt; NumericHeader,TableSize,{@link DataOutput#writeLong Int64}<sup>TableSize</sup>,BitsPerValue</li>
  *     <li>DeltaNumericEntry --&gt; NumericHeader,MinValue,BitsPerValue</li>
  *     <li>MonotonicNumericEntry --&gt; NumericHeader,PackedVersion,BlockSize</li>
+ *     <li>SparseNumericEntry --&gt; NumericHeader,NumDocsWithValue,MissingValue,PackedVersion,BlockSize,NumericEntry</li>
  *     <li>NumericHeader --&gt; FieldNumber,EntryType,NumericType,MissingOffset,DataOffset,Count,EndOffset</li>
- *     <li>BinaryEntry --&gt; FixedBinaryEntry | VariableBinaryEntry | PrefixBinaryEntry</li>
+ *     <li>BinaryEntry --&gt; FixedBinaryEntry | VariableBinaryEntry | PrefixBinaryEntry | SparseBinaryEntry</li>
  *     <li>FixedBinaryEntry --&gt; BinaryHeader</li>
  *     <li>VariableBinaryEntry --&gt; BinaryHeader,AddressOffset,PackedVersion,BlockSize</li>
  *     <li>PrefixBinaryEntry --&gt; BinaryHeader,AddressInterval,AddressOffset,PackedVersion,BlockSize</li>
+ *     <li>SparseBinaryEntry --&gt; BinaryHeader,NumDocsWithValue,PackedVersion,BlockSize,BinaryEntry</li>
  *     <li>BinaryHeader --&gt; FieldNumber,EntryType,BinaryType,MissingOffset,MinLength,MaxLength,DataOffset</li>
  *     <li>SortedEntry --&gt; FieldNumber,EntryType,BinaryEntry,NumericEntry</li>
  *     <li>SortedSetEntry --&gt; EntryType,BinaryEntry,NumericEntry,NumericEntry</li>
@@ -111,7 +120,8 @@ import org.apache.lucene.util.packed.MonotonicBlockPackedWriter;
  *     <li>FieldNumber,PackedVersion,MinLength,MaxLength,BlockSize,ValueCount --&gt; {@link DataOutput#writeVInt VInt}</li>
  *     <li>EntryType,CompressionType --&gt; {@link DataOutput#writeByte Byte}</li>
  *     <li>Header --&gt; {@link CodecUtil#writeHeader CodecHeader}</li>
- *     <li>MinValue,GCD,MissingOffset,AddressOffset,DataOffset,EndOffset --&gt; {@link DataOutput#writeLong Int64}</li>
+ *     <li>MinValue,GCD,MissingValue,MissingOffset,AddressOffset,DataOffset,EndOffset --&gt; {@link DataOutput#writeLong Int64}</li>
+ *     <li>NumDocsWithValue --&gt; {@link DataOutput#writeVLong VLong}</li>
  *     <li>TableSize,BitsPerValue --&gt; {@link DataOutput#writeVInt vInt}</li>
  *     <li>Footer --&gt; {@link CodecUtil#writeFooter CodecFooter}</li>
  *   </ul>
@@ -133,19 +143,24 @@ import org.apache.lucene.util.packed.MonotonicBlockPackedWriter;
  *             using blocks of delta-encoded ints.
  *         <li>2 --&gt; table-compressed. When the number of unique numeric values is small and it would save space,
  *             a lookup table of unique values is written, followed by the ordinal for each document.
+ *         <li>4 --&gt; sparse-compressed. The doc IDs of the documents that have a value are written, followed
+ *             by a nested NumericEntry for the values of these documents. Other documents have MissingValue.
  *      </ul>
  *   <p>BinaryType indicates how Binary values will be stored:
  *      <ul>
  *         <li>0 --&gt; fixed-width. All values have the same length, addressing by multiplication. 
  *         <li>1 --&gt, variable-width. An address for each value is stored.
  *         <li>2 --&gt; prefix-compressed. An address to the start of every interval'th value is stored.
+ *         <li>3 --&gt; sparse. The doc IDs of the documents that have a value are written, followed
+ *             by a nested BinaryEntry for the values of these documents.
  *      </ul>
  *   <p>MinLength and MaxLength represent the min and max byte[] value lengths for Binary values.
  *      If they are equal, then all values are of a fixed size, and can be addressed as DataOffset + (docID * length).
  *      Otherwise, the binary values are of variable size, and packed integer metadata (PackedVersion,BlockSize)
  *      is written for the addresses.
  *   <p>MissingOffset points to a byte[] containing a bitset of all documents that had a value for the field.
- *      If its -1, then there are no missing values.
+ *      If its -1, then there are no missing values, or the entry is sparse and documents that have a value are
+ *      given by its doc IDs.
  *   <p>Checksum contains the CRC32 checksum of all bytes in the .dvm file up
  *      until the checksum. This is used to verify integrity of the file on opening the
  *      index.
@@ -186,7 +201,8 @@ public final class Lucene410DocValuesFormat extends DocValuesFormat {
   static final String META_CODEC = "Lucene410ValuesMetadata";
   static final String META_EXTENSION = "dvm";
   static final int VERSION_START = 0;
-  static final int VERSION_CURRENT = VERSION_START;
+  static final int VERSION_SPARSE = 1;
+  static final int VERSION_CURRENT = VERSION_SPARSE;
   static final byte NUMERIC = 0;
   static final byte BINARY = 1;
   static final byte SORTED = 2;
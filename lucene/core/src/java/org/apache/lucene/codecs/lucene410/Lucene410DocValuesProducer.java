@@ -19,12 +19,14 @@ package org.apache.lucene.codecs.lucene410;
 
 import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.BINARY_FIXED_UNCOMPRESSED;
 import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.BINARY_PREFIX_COMPRESSED;
+import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.BINARY_SPARSE;
 import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.BINARY_VARIABLE_UNCOMPRESSED;
 import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.DELTA_COMPRESSED;
 import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.GCD_COMPRESSED;
 import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.MONOTONIC_COMPRESSED;
 import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.SORTED_SINGLE_VALUED;
 import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.SORTED_WITH_ADDRESSES;
+import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.SPARSE_COMPRESSED;
 import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.TABLE_COMPRESSED;
 import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.INTERVAL_SHIFT;
 import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.INTERVAL_COUNT;
@@ -92,6 +94,7 @@ class Lucene410DocValuesProducer extends DocValuesProducer implements Closeable
   private final Map<String,MonotonicBlockPackedReader> addressInstances = new HashMap<>();
   private final Map<String,MonotonicBlockPackedReader> ordIndexInstances = new HashMap<>();
   private final Map<String,ReverseTermsIndex> reverseIndexInstances = new HashMap<>();
+  private final Map<String,MonotonicBlockPackedReader> docIDsInstances = new HashMap<>();
   
   /** expert: instantiates a new reader */
   Lucene410DocValuesProducer(SegmentReadState state, String dataCodec, String dataExtension, String metaCodec, String metaExtension) throws IOException {
@@ -287,6 +290,17 @@ class Lucene410DocValuesProducer extends DocValuesProducer implements Closeable
         entry.packedIntsVersion = meta.readVInt();
         entry.blockSize = meta.readVInt();
         break;
+      case SPARSE_COMPRESSED:
+        entry.numDocsWithValue = meta.readVLong();
+        entry.missingValue = meta.readLong();
+        entry.packedIntsVersion = meta.readVInt();
+        entry.blockSize = meta.readVInt();
+        entry.nonMissingValues = readNumericEntry(meta);
+        if (entry.nonMissingValues.format == SPARSE_COMPRESSED || entry.nonMissingValues.count != entry.numDocsWithValue) {
+          throw new CorruptIndexException("Invalid sparse values: format=" + entry.nonMissingValues.format
+              + ", count=" + entry.nonMissingValues.count + ", numDocsWithValue=" + entry.numDocsWithValue, meta);
+        }
+        break;
       default:
         throw new CorruptIndexException("Unknown format: " + entry.format + ", input=", meta);
     }
@@ -316,6 +330,16 @@ class Lucene410DocValuesProducer extends DocValuesProducer implements Closeable
         entry.packedIntsVersion = meta.readVInt();
         entry.blockSize = meta.readVInt();
         break;
+      case BINARY_SPARSE:
+        entry.numDocsWithValue = meta.readVLong();
+        entry.packedIntsVersion = meta.readVInt();
+        entry.blockSize = meta.readVInt();
+        entry.nonMissingValues = readBinaryEntry(meta);
+        if (entry.nonMissingValues.format == BINARY_SPARSE || entry.nonMissingValues.count != entry.numDocsWithValue) {
+          throw new CorruptIndexException("Invalid sparse values: format=" + entry.nonMissingValues.format
+              + ", count=" + entry.nonMissingValues.count + ", numDocsWithValue=" + entry.numDocsWithValue, meta);
+        }
+        break;
       default:
         throw new CorruptIndexException("Unknown format: " + entry.format, meta);
     }
@@ -334,7 +358,7 @@ class Lucene410DocValuesProducer extends DocValuesProducer implements Closeable
   @Override
   public NumericDocValues getNumeric(FieldInfo field) throws IOException {
     NumericEntry entry = numerics.get(field.name);
-    return getNumeric(entry);
+    return getNumeric(field, entry);
   }
   
   @Override
@@ -348,6 +372,7 @@ class Lucene410DocValuesProducer extends DocValuesProducer implements Closeable
     resources.addAll(Accountables.namedAccountables("addresses field", addressInstances));
     resources.addAll(Accountables.namedAccountables("ord index field", ordIndexInstances));
     resources.addAll(Accountables.namedAccountables("reverse index field", reverseIndexInstances));
+    resources.addAll(Accountables.namedAccountables("sparse doc IDs field", docIDsInstances));
     return Collections.unmodifiableList(resources);
   }
   
@@ -361,7 +386,19 @@ class Lucene410DocValuesProducer extends DocValuesProducer implements Closeable
     return getClass().getSimpleName() + "(fields=" + numFields + ")";
   }
 
-  LongValues getNumeric(NumericEntry entry) throws IOException {
+  LongValues getNumeric(FieldInfo field, NumericEntry entry) throws IOException {
+    if (entry.format == SPARSE_COMPRESSED) {
+      final SparseDocIDs docIDs = getSparseDocIDs(field, entry.offset, entry.packedIntsVersion, entry.blockSize, entry.numDocsWithValue);
+      final LongValues values = getNumeric(field, entry.nonMissingValues);
+      final long missingValue = entry.missingValue;
+      return new LongValues() {
+        @Override
+        public long get(long docID) {
+          final long index = docIDs.indexOf(docID);
+          return index == -1 ? missingValue : values.get(index);
+        }
+      };
+    }
     RandomAccessInput slice = this.data.randomAccessSlice(entry.offset, entry.endOffset - entry.offset);
     switch (entry.format) {
       case DELTA_COMPRESSED:
@@ -400,6 +437,10 @@ class Lucene410DocValuesProducer extends DocValuesProducer implements Closeable
   @Override
   public BinaryDocValues getBinary(FieldInfo field) throws IOException {
     BinaryEntry bytes = binaries.get(field.name);
+    return getBinary(field, bytes);
+  }
+
+  private BinaryDocValues getBinary(FieldInfo field, BinaryEntry bytes) throws IOException {
     switch(bytes.format) {
       case BINARY_FIXED_UNCOMPRESSED:
         return getFixedBinary(field, bytes);
@@ -407,10 +448,37 @@ class Lucene410DocValuesProducer extends DocValuesProducer implements Closeable
         return getVariableBinary(field, bytes);
       case BINARY_PREFIX_COMPRESSED:
         return getCompressedBinary(field, bytes);
+      case BINARY_SPARSE:
+        return getSparseBinary(field, bytes);
       default:
         throw new AssertionError();
     }
   }
+
+  private BinaryDocValues getSparseBinary(FieldInfo field, final BinaryEntry bytes) throws IOException {
+    final SparseDocIDs docIDs = getSparseDocIDs(field, bytes.offset, bytes.packedIntsVersion, bytes.blockSize, bytes.numDocsWithValue);
+    final LongBinaryDocValues values = (LongBinaryDocValues) getBinary(field, bytes.nonMissingValues);
+    final BytesRef empty = new BytesRef();
+    return new LongBinaryDocValues() {
+      @Override
+      public BytesRef get(long id) {
+        final long index = docIDs.indexOf(id);
+        return index == -1 ? empty : values.get(index);
+      }
+    };
+  }
+
+  /** returns the doc IDs of the documents that have a value for a sparse field. */
+  private synchronized SparseDocIDs getSparseDocIDs(FieldInfo field, long offset, int packedIntsVersion, int blockSize, long numDocsWithValue) throws IOException {
+    MonotonicBlockPackedReader docIDs = docIDsInstances.get(field.name);
+    if (docIDs == null) {
+      data.seek(offset);
+      docIDs = MonotonicBlockPackedReader.of(data, packedIntsVersion, blockSize, numDocsWithValue, false);
+      docIDsInstances.put(field.name, docIDs);
+      ramBytesUsed.addAndGet(docIDs.ramBytesUsed() + RamUsageEstimator.NUM_BYTES_INT);
+    }
+    return new SparseDocIDs(docIDs, numDocsWithValue);
+  }
   
   private BinaryDocValues getFixedBinary(FieldInfo field, final BinaryEntry bytes) throws IOException {
     final IndexInput data = this.data.slice("fixed-binary", bytes.offset, bytes.count * bytes.maxLength);
@@ -514,7 +582,7 @@ class Lucene410DocValuesProducer extends DocValuesProducer implements Closeable
     final int valueCount = (int) binaries.get(field.name).count;
     final BinaryDocValues binary = getBinary(field);
     NumericEntry entry = ords.get(field.name);
-    final LongValues ordinals = getNumeric(entry);
+    final LongValues ordinals = getNumeric(field, entry);
     return new SortedDocValues() {
 
       @Override
@@ -568,9 +636,9 @@ class Lucene410DocValuesProducer extends DocValuesProducer implements Closeable
   public SortedNumericDocValues getSortedNumeric(FieldInfo field) throws IOException {
     SortedSetEntry ss = sortedNumerics.get(field.name);
     NumericEntry numericEntry = numerics.get(field.name);
-    final LongValues values = getNumeric(numericEntry);
+    final LongValues values = getNumeric(field, numericEntry);
     if (ss.format == SORTED_SINGLE_VALUED) {
-      final Bits docsWithField = getMissingBits(numericEntry.missingOffset);
+      final Bits docsWithField = getDocsWithField(field, numericEntry);
       return DocValues.singleton(values, docsWithField);
     } else if (ss.format == SORTED_WITH_ADDRESSES) {
       final MonotonicBlockPackedReader ordIndex = getOrdIndexInstance(field, ordIndexes.get(field.name));
@@ -613,7 +681,7 @@ class Lucene410DocValuesProducer extends DocValuesProducer implements Closeable
     final long valueCount = binaries.get(field.name).count;
     // we keep the byte[]s and list of ords on disk, these could be large
     final LongBinaryDocValues binary = (LongBinaryDocValues) getBinary(field);
-    final LongValues ordinals = getNumeric(ords.get(field.name));
+    final LongValues ordinals = getNumeric(field, ords.get(field.name));
     // but the addresses to the ord stream are in RAM
     final MonotonicBlockPackedReader ordIndex = getOrdIndexInstance(field, ordIndexes.get(field.name));
     
@@ -714,15 +782,25 @@ class Lucene410DocValuesProducer extends DocValuesProducer implements Closeable
         return DocValues.docsWithValue(getSorted(field), maxDoc);
       case BINARY:
         BinaryEntry be = binaries.get(field.name);
+        if (be.format == BINARY_SPARSE) {
+          return getSparseDocIDs(field, be.offset, be.packedIntsVersion, be.blockSize, be.numDocsWithValue).asBits(maxDoc);
+        }
         return getMissingBits(be.missingOffset);
       case NUMERIC:
         NumericEntry ne = numerics.get(field.name);
-        return getMissingBits(ne.missingOffset);
+        return getDocsWithField(field, ne);
       default:
         throw new AssertionError();
     }
   }
 
+  private Bits getDocsWithField(FieldInfo field, NumericEntry entry) throws IOException {
+    if (entry.format == SPARSE_COMPRESSED) {
+      return getSparseDocIDs(field, entry.offset, entry.packedIntsVersion, entry.blockSize, entry.numDocsWithValue).asBits(maxDoc);
+    }
+    return getMissingBits(entry.missingOffset);
+  }
+
   @Override
   public void close() throws IOException {
     data.close();
@@ -751,6 +829,13 @@ class Lucene410DocValuesProducer extends DocValuesProducer implements Closeable
     long minValue;
     long gcd;
     long table[];
+
+    /** number of documents that have a value, for sparse entries */
+    long numDocsWithValue;
+    /** value of documents that don't have a value, for sparse entries */
+    long missingValue;
+    /** values of the documents that have a value, for sparse entries */
+    NumericEntry nonMissingValues;
   }
   
   /** metadata entry for a binary docvalues field */
@@ -774,6 +859,73 @@ class Lucene410DocValuesProducer extends DocValuesProducer implements Closeable
     public int packedIntsVersion;
     /** packed ints blocksize */
     public int blockSize;
+
+    /** number of documents that have a value, for sparse entries */
+    long numDocsWithValue;
+    /** values of the documents that have a value, for sparse entries */
+    BinaryEntry nonMissingValues;
+  }
+
+  /**
+   * Sorted doc IDs of the documents that have a value for a sparse field.
+   * Values of these documents are addressed by the index of their doc ID.
+   * Lookups are optimized for doc IDs that are requested in increasing
+   * order, so instances should not be shared across threads.
+   */
+  static final class SparseDocIDs {
+    private final LongValues docIDs;
+    private final long numDocsWithValue;
+    // index of the last doc ID that was looked up, or insertion point if it was not found
+    private long index;
+
+    SparseDocIDs(LongValues docIDs, long numDocsWithValue) {
+      this.docIDs = docIDs;
+      this.numDocsWithValue = numDocsWithValue;
+    }
+
+    /** Return the index of <code>docID</code> in the sorted list of doc IDs, or -1 if it doesn't have a value. */
+    long indexOf(long docID) {
+      long lo = 0;
+      long hi = numDocsWithValue - 1;
+      if (index < numDocsWithValue && docIDs.get(index) <= docID) {
+        // exponential search forward from the previous position
+        lo = index;
+        long step = 1;
+        while (lo + step <= hi && docIDs.get(lo + step) <= docID) {
+          lo += step;
+          step <<= 1;
+        }
+        hi = Math.min(hi, lo + step);
+      }
+      while (lo <= hi) {
+        final long mid = (lo + hi) >>> 1;
+        final long midDocID = docIDs.get(mid);
+        if (midDocID < docID) {
+          lo = mid + 1;
+        } else if (midDocID > docID) {
+          hi = mid - 1;
+        } else {
+          index = mid;
+          return mid;
+        }
+      }
+      index = lo;
+      return -1;
+    }
+
+    Bits asBits(final int maxDoc) {
+      return new Bits() {
+        @Override
+        public boolean get(int docID) {
+          return indexOf(docID) != -1;
+        }
+
+        @Override
+        public int length() {
+          return maxDoc;
+        }
+      };
+    }
   }
 
   /** metadata entry for a sorted-set docvalues field */
@@ -0,0 +1,298 @@
+package org.apache.lucene.codecs.lucene410;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Collection;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.LiveDocsFormat;
+import org.apache.lucene.codecs.lucene40.Lucene40LiveDocsFormat;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.store.ChecksumIndexInput;
+import org.apache.lucene.store.DataOutput; // javadocs
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.MutableBits;
+
+/**
+ * Lucene 4.10 Live Documents Format.
+ * <p>
+ * <p>The .del file is optional, and only exists when a segment contains
+ * deletions. Deletions are either stored as a dense bit set or, when few
+ * documents are deleted, as the sorted list of deleted documents. Sparse
+ * deletions are also kept sparse in memory once loaded, so that opening a
+ * reader on a large segment that has very few deletions neither reads nor
+ * allocates a bit per document.</p>
+ * <p>Although per-segment, this file is maintained exterior to compound segment
+ * files.</p>
+ * <p>Deletions (.del) --&gt; Header,MaxDoc,DelCount,Encoding,Bits | DeletedDocDeltas,Footer</p>
+ * <ul>
+ *   <li>Header --&gt; {@link CodecUtil#writeHeader CodecHeader}</li>
+ *   <li>MaxDoc,DelCount --&gt; {@link DataOutput#writeVInt VInt}</li>
+ *   <li>Encoding --&gt; {@link DataOutput#writeByte Byte}</li>
+ *   <li>Bits --&gt; &lt;{@link DataOutput#writeLong Int64}&gt; <sup>(MaxDoc+63)/64</sup></li>
+ *   <li>DeletedDocDeltas --&gt; &lt;{@link DataOutput#writeVInt VInt}&gt; <sup>DelCount</sup></li>
+ *   <li>Footer --&gt; {@link CodecUtil#writeFooter CodecFooter}</li>
+ * </ul>
+ * <p>Encoding is 0 for dense deletions, in which case Bits has one bit per
+ * document, which is cleared if the document is deleted, and 1 for sparse
+ * deletions, in which case DeletedDocDeltas records the deltas between
+ * consecutive deleted documents. Sparse encoding is used when less than
+ * 1/128th of the documents are deleted.</p>
+ * <p>.del files that were written by {@link Lucene40LiveDocsFormat} can still
+ * be read.</p>
+ * <p>This format is not used by {@link Lucene410Codec}, which keeps writing
+ * {@link Lucene40LiveDocsFormat} so that its indexes can be read by any 4.10
+ * release. To use it, override {@link org.apache.lucene.codecs.Codec#liveDocsFormat()}
+ * in a {@link org.apache.lucene.codecs.FilterCodec} that has its own name and
+ * is registered with SPI, since readers look up segments' codecs by name.</p>
+ * @lucene.experimental
+ */
+public class Lucene410LiveDocsFormat extends LiveDocsFormat {
+
+  /** Extension of deletes */
+  static final String DELETES_EXTENSION = "del";
+
+  static final String CODEC_NAME = "Lucene410LiveDocs";
+  static final int VERSION_START = 0;
+  static final int VERSION_CURRENT = VERSION_START;
+
+  static final byte DENSE = 0;
+  static final byte SPARSE = 1;
+
+  private final LiveDocsFormat legacyFormat = new Lucene40LiveDocsFormat();
+
+  /** Sole constructor. */
+  public Lucene410LiveDocsFormat() {
+  }
+
+  /** Whether deletions should be stored sparsely. */
+  static boolean isSparse(int maxDoc, int delCount) {
+    return (long) delCount << 7 < maxDoc;
+  }
+
+  @Override
+  public MutableBits newLiveDocs(int size) throws IOException {
+    final FixedBitSet bits = new FixedBitSet(size);
+    bits.set(0, size);
+    return new DenseLiveDocs(bits);
+  }
+
+  @Override
+  public MutableBits newLiveDocs(Bits existing) throws IOException {
+    if (existing instanceof DenseLiveDocs) {
+      return new DenseLiveDocs(((DenseLiveDocs) existing).bits.clone());
+    }
+    final FixedBitSet bits = new FixedBitSet(existing.length());
+    bits.set(0, existing.length());
+    if (existing instanceof SparseLiveDocs) {
+      for (int doc : ((SparseLiveDocs) existing).deletedDocs) {
+        bits.clear(doc);
+      }
+    } else {
+      // written by the legacy format
+      for (int i = 0; i < existing.length(); ++i) {
+        if (existing.get(i) == false) {
+          bits.clear(i);
+        }
+      }
+    }
+    return new DenseLiveDocs(bits);
+  }
+
+  @Override
+  public Bits readLiveDocs(Directory dir, SegmentCommitInfo info, IOContext context) throws IOException {
+    final String filename = IndexFileNames.fileNameFromGeneration(info.info.name, DELETES_EXTENSION, info.getDelGen());
+    final int maxDoc = info.info.getDocCount();
+    final int delCount = info.getDelCount();
+    try (ChecksumIndexInput input = dir.openChecksumInput(filename, context)) {
+      if (input.readInt() != CodecUtil.CODEC_MAGIC) {
+        // files written by Lucene40LiveDocsFormat start with a negative format
+        return legacyFormat.readLiveDocs(dir, info, context);
+      }
+      CodecUtil.checkHeaderNoMagic(input, CODEC_NAME, VERSION_START, VERSION_CURRENT);
+      final int numDocs = input.readVInt();
+      if (numDocs != maxDoc) {
+        throw new CorruptIndexException("maxDoc=" + numDocs + " info.docCount=" + maxDoc, input);
+      }
+      final int numDeleted = input.readVInt();
+      if (numDeleted != delCount) {
+        throw new CorruptIndexException("delCount=" + numDeleted + " info.getDelCount()=" + delCount, input);
+      }
+      final Bits liveDocs;
+      final byte encoding = input.readByte();
+      switch (encoding) {
+        case DENSE:
+          final long[] words = new long[FixedBitSet.bits2words(maxDoc)];
+          for (int i = 0; i < words.length; ++i) {
+            words[i] = input.readLong();
+          }
+          final FixedBitSet bits = new FixedBitSet(words, maxDoc);
+          if (bits.cardinality() != maxDoc - delCount) {
+            throw new CorruptIndexException("liveDocs.count()=" + bits.cardinality() + " info.docCount=" + maxDoc + " info.getDelCount()=" + delCount, input);
+          }
+          liveDocs = new DenseLiveDocs(bits);
+          break;
+        case SPARSE:
+          final int[] deletedDocs = new int[delCount];
+          int doc = -1;
+          for (int i = 0; i < delCount; ++i) {
+            doc += input.readVInt();
+            if (doc >= maxDoc) {
+              throw new CorruptIndexException("deleted doc=" + doc + " is out of bounds, maxDoc=" + maxDoc, input);
+            }
+            deletedDocs[i] = doc;
+          }
+          liveDocs = new SparseLiveDocs(deletedDocs, maxDoc);
+          break;
+        default:
+          throw new CorruptIndexException("invalid encoding: " + encoding, input);
+      }
+      CodecUtil.checkFooter(input);
+      return liveDocs;
+    }
+  }
+
+  @Override
+  public void writeLiveDocs(MutableBits bits, Directory dir, SegmentCommitInfo info, int newDelCount, IOContext context) throws IOException {
+    final String filename = IndexFileNames.fileNameFromGeneration(info.info.name, DELETES_EXTENSION, info.getNextDelGen());
+    final FixedBitSet liveDocs = ((DenseLiveDocs) bits).bits;
+    final int maxDoc = info.info.getDocCount();
+    final int delCount = info.getDelCount() + newDelCount;
+    assert liveDocs.cardinality() == maxDoc - delCount;
+    assert liveDocs.length() == maxDoc;
+    try (IndexOutput output = dir.createOutput(filename, context)) {
+      CodecUtil.writeHeader(output, CODEC_NAME, VERSION_CURRENT);
+      output.writeVInt(maxDoc);
+      output.writeVInt(delCount);
+      final long[] words = liveDocs.getBits();
+      final int numWords = FixedBitSet.bits2words(maxDoc);
+      if (isSparse(maxDoc, delCount)) {
+        output.writeByte(SPARSE);
+        int lastDoc = -1;
+        for (int i = 0; i < numWords; ++i) {
+          long word = ~words[i];
+          if (i == numWords - 1 && (maxDoc & 0x3F) != 0) {
+            // ignore ghost bits
+            word &= (1L << maxDoc) - 1;
+          }
+          while (word != 0) {
+            final int doc = (i << 6) + Long.numberOfTrailingZeros(word);
+            output.writeVInt(doc - lastDoc);
+            lastDoc = doc;
+            word &= word - 1;
+          }
+        }
+      } else {
+        output.writeByte(DENSE);
+        for (int i = 0; i < numWords; ++i) {
+          output.writeLong(words[i]);
+        }
+      }
+      CodecUtil.writeFooter(output);
+    }
+  }
+
+  @Override
+  public void files(SegmentCommitInfo info, Collection<String> files) throws IOException {
+    if (info.hasDeletions()) {
+      files.add(IndexFileNames.fileNameFromGeneration(info.info.name, DELETES_EXTENSION, info.getDelGen()));
+    }
+  }
+
+  /** Live docs backed by a {@link FixedBitSet}. */
+  static final class DenseLiveDocs implements MutableBits {
+
+    final FixedBitSet bits;
+
+    DenseLiveDocs(FixedBitSet bits) {
+      this.bits = bits;
+    }
+
+    @Override
+    public boolean get(int index) {
+      return bits.get(index);
+    }
+
+    @Override
+    public int length() {
+      return bits.length();
+    }
+
+    @Override
+    public void clear(int index) {
+      bits.clear(index);
+    }
+  }
+
+  /** Read-only live docs that only store the sorted list of deleted documents.
+   *  Documents are grouped in blocks of 2^shift documents, where shift is
+   *  chosen so that blocks contain about one deleted document on average, and
+   *  a per-block index gives the range of deleted documents that need to be
+   *  checked, so that {@link #get(int)} usually runs in constant time. */
+  static final class SparseLiveDocs implements Bits {
+
+    final int[] deletedDocs;
+    private final int maxDoc;
+    private final int shift;
+    // blockStarts[b] is the index of the first deleted doc that is in block b or after it
+    private final int[] blockStarts;
+
+    SparseLiveDocs(int[] deletedDocs, int maxDoc) {
+      this.deletedDocs = deletedDocs;
+      this.maxDoc = maxDoc;
+      final int avgGap = maxDoc / Math.max(1, deletedDocs.length);
+      this.shift = Math.max(0, 31 - Integer.numberOfLeadingZeros(avgGap));
+      final int numBlocks = ((maxDoc - 1) >>> shift) + 1;
+      blockStarts = new int[numBlocks + 1];
+      int block = 0;
+      for (int i = 0; i < deletedDocs.length; ++i) {
+        final int docBlock = deletedDocs[i] >>> shift;
+        while (block <= docBlock) {
+          blockStarts[block++] = i;
+        }
+      }
+      while (block <= numBlocks) {
+        blockStarts[block++] = deletedDocs.length;
+      }
+    }
+
+    @Override
+    public boolean get(int index) {
+      final int block = index >>> shift;
+      for (int i = blockStarts[block], end = blockStarts[block + 1]; i < end; ++i) {
+        final int deleted = deletedDocs[i];
+        if (deleted >= index) {
+          return deleted != index;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public int length() {
+      return maxDoc;
+    }
+  }
+}
@@ -110,6 +110,29 @@ public abstract class BaseCompositeReader<R extends IndexReader> extends Composi
     subReaders[i].document(docID - starts[i], visitor);    // dispatch to subreader
   }
 
+  @Override
+  public final void document(int[] docIDs, StoredFieldVisitor[] visitors) throws IOException {
+    ensureOpen();
+    checkDocumentsArgs(docIDs, visitors);
+    // docIDs are sorted: dispatch each run of docs that belong to the same subreader at once
+    int start = 0;
+    while (start < docIDs.length) {
+      final int i = readerIndex(docIDs[start]);
+      final int subMaxDoc = starts[i + 1];
+      int end = start + 1;
+      while (end < docIDs.length && docIDs[end] < subMaxDoc) {
+        end++;
+      }
+      final int[] subDocIDs = new int[end - start];
+      for (int j = 0; j < subDocIDs.length; j++) {
+        subDocIDs[j] = docIDs[start + j] - starts[i];
+      }
+      final StoredFieldVisitor[] subVisitors = Arrays.copyOfRange(visitors, start, end);
+      subReaders[i].document(subDocIDs, subVisitors);
+      start = end;
+    }
+  }
+
   @Override
   public final int docFreq(Term term) throws IOException {
     ensureOpen();
@@ -0,0 +1,159 @@
+package org.apache.lucene.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Arrays;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.ByteBlockPool;
+import org.apache.lucene.util.Counter;
+import org.apache.lucene.util.IntBlockPool;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * Keeps the byte and int blocks of the indexing buffers of
+ * {@link DocumentsWriterPerThread}s once they are flushed, up to a maximum
+ * amount of memory, and hands them out again to the
+ * {@link DocumentsWriterPerThread}s that index the next segments. This way,
+ * the indexing buffers are allocated once and stay live, instead of being
+ * promoted to the old generation and collected in bulk after every flush.
+ * <p>
+ * Blocks must be zero-filled before they are recycled, since slices of
+ * {@link ByteBlockPool} and {@link IntBlockPool} expect fresh blocks.
+ * 
+ * @see IndexWriterConfig#setMaxRecycledRAMBufferMB(double)
+ */
+final class BlockRecycler {
+
+  private static final int BYTE_BLOCK_BYTES = ByteBlockPool.BYTE_BLOCK_SIZE;
+  private static final int INT_BLOCK_BYTES = IntBlockPool.INT_BLOCK_SIZE * RamUsageEstimator.NUM_BYTES_INT;
+
+  private final long maxRecycledBytes;
+  // guarded by this
+  private byte[][] byteBlocks = new byte[0][];
+  private int numByteBlocks;
+  private int[][] intBlocks = new int[0][];
+  private int numIntBlocks;
+  private long recycledBytes;
+
+  BlockRecycler(long maxRecycledBytes) {
+    this.maxRecycledBytes = maxRecycledBytes;
+  }
+
+  /** Returns a recycled byte block, or null if there is none. */
+  synchronized byte[] takeByteBlock() {
+    if (numByteBlocks == 0) {
+      return null;
+    }
+    final byte[] block = byteBlocks[--numByteBlocks];
+    byteBlocks[numByteBlocks] = null;
+    recycledBytes -= BYTE_BLOCK_BYTES;
+    return block;
+  }
+
+  /** Keeps the given byte blocks for reuse, as long as the maximum amount of
+   *  recycled memory is not exceeded, and nulls them out. */
+  synchronized void recycleByteBlocks(byte[][] blocks, int start, int end) {
+    final int numBlocks = (int) Math.min(end - start, (maxRecycledBytes - recycledBytes) / BYTE_BLOCK_BYTES);
+    if (numBlocks > 0) {
+      byteBlocks = grow(byteBlocks, numByteBlocks + numBlocks);
+      System.arraycopy(blocks, start, byteBlocks, numByteBlocks, numBlocks);
+      numByteBlocks += numBlocks;
+      recycledBytes += (long) numBlocks * BYTE_BLOCK_BYTES;
+    }
+    for (int i = start; i < end; i++) {
+      blocks[i] = null;
+    }
+  }
+
+  /** Returns a recycled int block, or null if there is none. */
+  synchronized int[] takeIntBlock() {
+    if (numIntBlocks == 0) {
+      return null;
+    }
+    final int[] block = intBlocks[--numIntBlocks];
+    intBlocks[numIntBlocks] = null;
+    recycledBytes -= INT_BLOCK_BYTES;
+    return block;
+  }
+
+  /** Keeps the given int blocks for reuse, as long as the maximum amount of
+   *  recycled memory is not exceeded, and nulls them out. */
+  synchronized void recycleIntBlocks(int[][] blocks, int start, int end) {
+    final int numBlocks = (int) Math.min(end - start, (maxRecycledBytes - recycledBytes) / INT_BLOCK_BYTES);
+    if (numBlocks > 0) {
+      intBlocks = grow(intBlocks, numIntBlocks + numBlocks);
+      System.arraycopy(blocks, start, intBlocks, numIntBlocks, numBlocks);
+      numIntBlocks += numBlocks;
+      recycledBytes += (long) numBlocks * INT_BLOCK_BYTES;
+    }
+    for (int i = start; i < end; i++) {
+      blocks[i] = null;
+    }
+  }
+
+  private static <T> T[] grow(T[] array, int minSize) {
+    if (array.length >= minSize) {
+      return array;
+    }
+    return Arrays.copyOf(array, ArrayUtil.oversize(minSize, RamUsageEstimator.NUM_BYTES_OBJECT_REF));
+  }
+
+  /** Returns the number of bytes of the blocks which are currently kept for reuse. */
+  synchronized long getRecycledBytes() {
+    return recycledBytes;
+  }
+
+  /** Returns an allocator of byte blocks that tracks the blocks in use in
+   *  <code>bytesUsed</code> and recycles them through this instance. */
+  ByteBlockPool.Allocator newByteBlockAllocator(final Counter bytesUsed) {
+    return new ByteBlockPool.Allocator(ByteBlockPool.BYTE_BLOCK_SIZE) {
+      @Override
+      public byte[] getByteBlock() {
+        bytesUsed.addAndGet(blockSize);
+        final byte[] block = takeByteBlock();
+        return block == null ? new byte[blockSize] : block;
+      }
+
+      @Override
+      public void recycleByteBlocks(byte[][] blocks, int start, int end) {
+        bytesUsed.addAndGet(-((end-start) * blockSize));
+        BlockRecycler.this.recycleByteBlocks(blocks, start, end);
+      }
+    };
+  }
+
+  /** Returns an allocator of int blocks that tracks the blocks in use in
+   *  <code>bytesUsed</code> and recycles them through this instance. */
+  IntBlockPool.Allocator newIntBlockAllocator(final Counter bytesUsed) {
+    return new IntBlockPool.Allocator(IntBlockPool.INT_BLOCK_SIZE) {
+      @Override
+      public int[] getIntBlock() {
+        bytesUsed.addAndGet(INT_BLOCK_BYTES);
+        final int[] block = takeIntBlock();
+        return block == null ? new int[blockSize] : block;
+      }
+
+      @Override
+      public void recycleIntBlocks(int[][] blocks, int start, int end) {
+        bytesUsed.addAndGet(-((end-start) * INT_BLOCK_BYTES));
+        BlockRecycler.this.recycleIntBlocks(blocks, start, end);
+      }
+    };
+  }
+}
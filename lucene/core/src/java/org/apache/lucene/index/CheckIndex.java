@@ -17,6 +17,7 @@ package org.apache.lucene.index;
  * limitations under the License.
  */
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.nio.file.Path;
@@ -27,6 +28,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.codecs.PostingsFormat;
@@ -47,6 +54,8 @@ import org.apache.lucene.util.CommandLineUtil;
 import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.LongBitSet;
+import org.apache.lucene.util.NamedThreadFactory;
+import org.apache.lucene.util.ThreadInterruptedException;
 import org.apache.lucene.util.Version;
 
 
@@ -348,6 +357,39 @@ public class CheckIndex {
 
   private boolean verbose;
 
+  private int threadCount = 1;
+
+  /** Sets the number of threads used to check the index. Segments, and
+   *  the norms, postings, stored fields, term vectors and doc values of each
+   *  segment, are checked concurrently when this is greater than 1. The
+   *  default is 1. */
+  public void setThreadCount(int threadCount) {
+    if (threadCount < 1) {
+      throw new IllegalArgumentException("threadCount must be >= 1, got " + threadCount);
+    }
+    this.threadCount = threadCount;
+  }
+
+  /** See {@link #setThreadCount}. */
+  public int getThreadCount() {
+    return threadCount;
+  }
+
+  private boolean checksumsOnly;
+
+  /** If true, only open segments and verify the checksums of their files
+   *  (see {@link AtomicReader#checkIntegrity()}), instead of also decoding
+   *  and cross-checking all their data structures. This is much faster, and
+   *  still detects corruption of files that have checksums. */
+  public void setChecksumsOnly(boolean v) {
+    checksumsOnly = v;
+  }
+
+  /** See {@link #setChecksumsOnly}. */
+  public boolean getChecksumsOnly() {
+    return checksumsOnly;
+  }
+
   /** Set infoStream where messages should go.  If null, no
    *  messages are printed.  If verbose is true then more
    *  details are printed. */
@@ -392,7 +434,6 @@ public class CheckIndex {
    *  you only call this when the index is not opened by any
    *  writer. */
   public Status checkIndex(List<String> onlySegments) throws IOException {
-    NumberFormat nf = NumberFormat.getInstance(Locale.ROOT);
     SegmentInfos sis = new SegmentInfos();
     Status result = new Status();
     result.dir = dir;
@@ -511,17 +552,142 @@ public class CheckIndex {
     result.newSegments.clear();
     result.maxSegmentName = -1;
 
-    for(int i=0;i<numSegments;i++) {
-      final SegmentCommitInfo info = sis.info(i);
-      int segmentName = Integer.parseInt(info.info.name.substring(1), Character.MAX_RADIX);
-      if (segmentName > result.maxSegmentName) {
-        result.maxSegmentName = segmentName;
+    final ExecutorService segmentsExecutor;
+    final ExecutorService partsExecutor;
+    if (threadCount > 1) {
+      // segments are checked on their own pool, so that waiting on the
+      // parts of a segment can never starve the parts pool
+      segmentsExecutor = Executors.newFixedThreadPool(threadCount, new NamedThreadFactory("CheckIndex-segments"));
+      partsExecutor = Executors.newFixedThreadPool(threadCount, new NamedThreadFactory("CheckIndex-parts"));
+    } else {
+      segmentsExecutor = null;
+      partsExecutor = null;
+    }
+    try {
+      final List<SegmentCheck> checks = new ArrayList<>();
+      for(int i=0;i<numSegments;i++) {
+        final SegmentCommitInfo info = sis.info(i);
+        int segmentName = Integer.parseInt(info.info.name.substring(1), Character.MAX_RADIX);
+        if (segmentName > result.maxSegmentName) {
+          result.maxSegmentName = segmentName;
+        }
+        if (onlySegments != null && !onlySegments.contains(info.info.name)) {
+          continue;
+        }
+        Status.SegmentInfoStatus segInfoStat = new Status.SegmentInfoStatus();
+        result.segmentInfos.add(segInfoStat);
+        final SegmentCheck check = new SegmentCheck(i, numSegments, info, segInfoStat, partsExecutor);
+        if (segmentsExecutor == null) {
+          check.check(infoStream);
+          recordSegmentCheck(check, result);
+        } else {
+          check.future = segmentsExecutor.submit(check);
+          checks.add(check);
+        }
       }
-      if (onlySegments != null && !onlySegments.contains(info.info.name)) {
-        continue;
+
+      // report segments in order, as they would have been checked serially
+      for (SegmentCheck check : checks) {
+        try {
+          check.future.get();
+        } catch (InterruptedException ie) {
+          throw new ThreadInterruptedException(ie);
+        } catch (ExecutionException ee) {
+          IOUtils.reThrow(ee.getCause());
+        }
+        if (infoStream != null) {
+          infoStream.print(check.output);
+        }
+        recordSegmentCheck(check, result);
+      }
+    } finally {
+      if (segmentsExecutor != null) {
+        segmentsExecutor.shutdownNow();
+        partsExecutor.shutdownNow();
+        try {
+          segmentsExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+          partsExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+        }
       }
-      Status.SegmentInfoStatus segInfoStat = new Status.SegmentInfoStatus();
-      result.segmentInfos.add(segInfoStat);
+    }
+
+    if (0 == result.numBadSegments) {
+      result.clean = true;
+    } else
+      msg(infoStream, "WARNING: " + result.numBadSegments + " broken segments (containing " + result.totLoseDocCount + " documents) detected");
+
+    if ( ! (result.validCounter = (result.maxSegmentName < sis.counter))) {
+      result.clean = false;
+      result.newSegments.counter = result.maxSegmentName + 1; 
+      msg(infoStream, "ERROR: Next segment name counter " + sis.counter + " is not greater than max segment name " + result.maxSegmentName);
+    }
+    
+    if (result.clean) {
+      msg(infoStream, "No problems were detected with this index.\n");
+    }
+
+    return result;
+  }
+
+  // Adds the outcome of a segment check to the status of the index
+  private void recordSegmentCheck(SegmentCheck check, Status result) throws IOException {
+    if (check.failure != null) {
+      if (failFast) {
+        IOUtils.reThrow(check.failure);
+      }
+      msg(infoStream, "FAILED");
+      String comment;
+      comment = "fixIndex() would remove reference to this segment";
+      msg(infoStream, "    WARNING: " + comment + "; full exception:");
+      if (infoStream != null)
+        check.failure.printStackTrace(infoStream);
+      msg(infoStream, "");
+      result.totLoseDocCount += check.toLoseDocCount;
+      result.numBadSegments++;
+    } else {
+      // Keeper
+      result.newSegments.add(check.info.clone());
+    }
+  }
+
+  /** Checks a single segment, possibly in a thread of its own, in which
+   *  case messages are buffered until the segment is reported. */
+  private class SegmentCheck implements Callable<Void> {
+    final int i;
+    final int numSegments;
+    final SegmentCommitInfo info;
+    final Status.SegmentInfoStatus segInfoStat;
+    // NumberFormat is not thread-safe
+    final NumberFormat nf = NumberFormat.getInstance(Locale.ROOT);
+    final ExecutorService partsExecutor;
+    Future<Void> future;
+    String output;
+    int toLoseDocCount;
+    Throwable failure;
+
+    SegmentCheck(int i, int numSegments, SegmentCommitInfo info, Status.SegmentInfoStatus segInfoStat, ExecutorService partsExecutor) {
+      this.i = i;
+      this.numSegments = numSegments;
+      this.info = info;
+      this.segInfoStat = segInfoStat;
+      this.partsExecutor = partsExecutor;
+    }
+
+    @Override
+    public Void call() throws IOException {
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      final PrintStream out = infoStream == null ? null : new PrintStream(bytes, false, IOUtils.UTF_8);
+      check(out);
+      if (out != null) {
+        out.flush();
+        output = bytes.toString(IOUtils.UTF_8);
+      }
+      return null;
+    }
+
+    void check(PrintStream infoStream) {
       msg(infoStream, "  " + (1+i) + " of " + numSegments + ": name=" + info.info.name + " docCount=" + info.info.getDocCount());
       segInfoStat.name = info.info.name;
       segInfoStat.docCount = info.info.getDocCount();
@@ -531,7 +697,7 @@ public class CheckIndex {
         throw new RuntimeException("illegal number of documents: maxDoc=" + info.info.getDocCount());
       }
 
-      int toLoseDocCount = info.info.getDocCount();
+      toLoseDocCount = info.info.getDocCount();
 
       SegmentReader reader = null;
 
@@ -632,32 +798,24 @@ public class CheckIndex {
         msg(infoStream, "OK [" + fieldInfos.size() + " fields]");
         segInfoStat.numFields = fieldInfos.size();
         
-        // Test Field Norms
-        segInfoStat.fieldNormStatus = testFieldNorms(reader, infoStream, failFast);
-
-        // Test the Term Index
-        segInfoStat.termIndexStatus = testPostings(reader, infoStream, verbose, failFast);
-
-        // Test Stored Fields
-        segInfoStat.storedFieldStatus = testStoredFields(reader, infoStream, failFast);
-
-        // Test Term Vectors
-        segInfoStat.termVectorStatus = testTermVectors(reader, infoStream, verbose, crossCheckTermVectors, failFast);
-
-        segInfoStat.docValuesStatus = testDocValues(reader, infoStream, failFast);
-
-        // Rethrow the first exception we encountered
-        //  This will cause stats for failed segments to be incremented properly
-        if (segInfoStat.fieldNormStatus.error != null) {
-          throw new RuntimeException("Field Norm test failed");
-        } else if (segInfoStat.termIndexStatus.error != null) {
-          throw new RuntimeException("Term Index test failed");
-        } else if (segInfoStat.storedFieldStatus.error != null) {
-          throw new RuntimeException("Stored Field test failed");
-        } else if (segInfoStat.termVectorStatus.error != null) {
-          throw new RuntimeException("Term Vector test failed");
-        }  else if (segInfoStat.docValuesStatus.error != null) {
-          throw new RuntimeException("DocValues test failed");
+        if (checksumsOnly) {
+          msg(infoStream, "    test: [skipped, only checksums were verified]");
+        } else {
+          testSegmentParts(reader, segInfoStat, infoStream, partsExecutor);
+
+          // Rethrow the first exception we encountered
+          //  This will cause stats for failed segments to be incremented properly
+          if (segInfoStat.fieldNormStatus.error != null) {
+            throw new RuntimeException("Field Norm test failed");
+          } else if (segInfoStat.termIndexStatus.error != null) {
+            throw new RuntimeException("Term Index test failed");
+          } else if (segInfoStat.storedFieldStatus.error != null) {
+            throw new RuntimeException("Stored Field test failed");
+          } else if (segInfoStat.termVectorStatus.error != null) {
+            throw new RuntimeException("Term Vector test failed");
+          }  else if (segInfoStat.docValuesStatus.error != null) {
+            throw new RuntimeException("DocValues test failed");
+          }
         }
 
         msg(infoStream, "");
@@ -668,44 +826,107 @@ public class CheckIndex {
         }
 
       } catch (Throwable t) {
-        if (failFast) {
-          IOUtils.reThrow(t);
-        }
-        msg(infoStream, "FAILED");
-        String comment;
-        comment = "fixIndex() would remove reference to this segment";
-        msg(infoStream, "    WARNING: " + comment + "; full exception:");
-        if (infoStream != null)
-          t.printStackTrace(infoStream);
-        msg(infoStream, "");
-        result.totLoseDocCount += toLoseDocCount;
-        result.numBadSegments++;
-        continue;
+        failure = t;
       } finally {
-        if (reader != null)
-          reader.close();
+        if (reader != null) {
+          try {
+            reader.close();
+          } catch (Throwable t) {
+            if (failure == null) {
+              failure = t;
+            }
+          }
+        }
       }
-
-      // Keeper
-      result.newSegments.add(info.clone());
     }
+  }
 
-    if (0 == result.numBadSegments) {
-      result.clean = true;
-    } else
-      msg(infoStream, "WARNING: " + result.numBadSegments + " broken segments (containing " + result.totLoseDocCount + " documents) detected");
+  /** Tests the norms, postings, stored fields, term vectors and doc values
+   *  of a segment, concurrently if an executor is provided. */
+  private void testSegmentParts(final SegmentReader reader, final Status.SegmentInfoStatus segInfoStat,
+      PrintStream infoStream, ExecutorService exec) throws IOException {
+    if (exec == null) {
+      // Test Field Norms
+      segInfoStat.fieldNormStatus = testFieldNorms(reader, infoStream, failFast);
 
-    if ( ! (result.validCounter = (result.maxSegmentName < sis.counter))) {
-      result.clean = false;
-      result.newSegments.counter = result.maxSegmentName + 1; 
-      msg(infoStream, "ERROR: Next segment name counter " + sis.counter + " is not greater than max segment name " + result.maxSegmentName);
+      // Test the Term Index
+      segInfoStat.termIndexStatus = testPostings(reader, infoStream, verbose, failFast);
+
+      // Test Stored Fields
+      segInfoStat.storedFieldStatus = testStoredFields(reader, infoStream, failFast);
+
+      // Test Term Vectors
+      segInfoStat.termVectorStatus = testTermVectors(reader, infoStream, verbose, crossCheckTermVectors, failFast);
+
+      segInfoStat.docValuesStatus = testDocValues(reader, infoStream, failFast);
+      return;
     }
-    
-    if (result.clean) {
-      msg(infoStream, "No problems were detected with this index.\n");
+
+    // each part gets its own buffer, printed in the same order as above
+    final int numParts = 5;
+    final ByteArrayOutputStream[] outputs = new ByteArrayOutputStream[numParts];
+    final PrintStream[] outs = new PrintStream[numParts];
+    if (infoStream != null) {
+      for (int i = 0; i < numParts; i++) {
+        outputs[i] = new ByteArrayOutputStream();
+        outs[i] = new PrintStream(outputs[i], false, IOUtils.UTF_8);
+      }
     }
+    final List<Future<Void>> futures = new ArrayList<>();
+    futures.add(exec.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws IOException {
+        segInfoStat.fieldNormStatus = testFieldNorms(reader, outs[0], failFast);
+        return null;
+      }
+    }));
+    futures.add(exec.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws IOException {
+        segInfoStat.termIndexStatus = testPostings(reader, outs[1], verbose, failFast);
+        return null;
+      }
+    }));
+    futures.add(exec.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws IOException {
+        segInfoStat.storedFieldStatus = testStoredFields(reader, outs[2], failFast);
+        return null;
+      }
+    }));
+    futures.add(exec.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws IOException {
+        segInfoStat.termVectorStatus = testTermVectors(reader, outs[3], verbose, crossCheckTermVectors, failFast);
+        return null;
+      }
+    }));
+    futures.add(exec.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws IOException {
+        segInfoStat.docValuesStatus = testDocValues(reader, outs[4], failFast);
+        return null;
+      }
+    }));
 
-    return result;
+    // wait for all parts, since the reader gets closed afterwards
+    Throwable th = null;
+    for (int i = 0; i < numParts; i++) {
+      try {
+        futures.get(i).get();
+      } catch (InterruptedException ie) {
+        throw new ThreadInterruptedException(ie);
+      } catch (ExecutionException ee) {
+        if (th == null) {
+          th = ee.getCause();
+        }
+      }
+      if (infoStream != null) {
+        outs[i].flush();
+        infoStream.print(outputs[i].toString(IOUtils.UTF_8));
+      }
+    }
+    IOUtils.reThrow(th);
   }
 
   /**
@@ -1943,11 +2164,15 @@ public class CheckIndex {
     <p>
     Run it like this:
     <pre>
-    java -ea:org.apache.lucene... org.apache.lucene.index.CheckIndex pathToIndex [-fix] [-verbose] [-segment X] [-segment Y]
+    java -ea:org.apache.lucene... org.apache.lucene.index.CheckIndex pathToIndex [-fix] [-fast] [-threadCount N] [-verbose] [-segment X] [-segment Y]
     </pre>
     <ul>
     <li><code>-fix</code>: actually write a new segments_N file, removing any problematic segments
 
+    <li><code>-fast</code>: only verify file checksums, see {@link #setChecksumsOnly}
+
+    <li><code>-threadCount N</code>: check segments using N threads, see {@link #setThreadCount}
+
     <li><code>-segment X</code>: only check the specified
     segment(s).  This can be specified multiple times,
     to check more than one segment, eg <code>-segment _2
@@ -1975,6 +2200,8 @@ public class CheckIndex {
     boolean doFix = false;
     boolean doCrossCheckTermVectors = false;
     boolean verbose = false;
+    boolean checksumsOnly = false;
+    int threadCount = 1;
     List<String> onlySegments = new ArrayList<>();
     String indexPath = null;
     String dirImpl = null;
@@ -1987,6 +2214,23 @@ public class CheckIndex {
         doCrossCheckTermVectors = true;
       } else if (arg.equals("-verbose")) {
         verbose = true;
+      } else if ("-fast".equals(arg)) {
+        checksumsOnly = true;
+      } else if ("-threadCount".equals(arg)) {
+        if (i == args.length - 1) {
+          System.out.println("ERROR: missing value for -threadCount option");
+          System.exit(1);
+        }
+        i++;
+        try {
+          threadCount = Integer.parseInt(args[i]);
+        } catch (NumberFormatException nfe) {
+          threadCount = 0;
+        }
+        if (threadCount < 1) {
+          System.out.println("ERROR: -threadCount must be a positive integer, got '" + args[i] + "'");
+          System.exit(1);
+        }
       } else if (arg.equals("-segment")) {
         if (i == args.length-1) {
           System.out.println("ERROR: missing name for -segment option");
@@ -2013,9 +2257,11 @@ public class CheckIndex {
 
     if (indexPath == null) {
       System.out.println("\nERROR: index path not specified");
-      System.out.println("\nUsage: java org.apache.lucene.index.CheckIndex pathToIndex [-fix] [-crossCheckTermVectors] [-segment X] [-segment Y] [-dir-impl X]\n" +
+      System.out.println("\nUsage: java org.apache.lucene.index.CheckIndex pathToIndex [-fix] [-fast] [-threadCount N] [-crossCheckTermVectors] [-segment X] [-segment Y] [-dir-impl X]\n" +
                          "\n" +
                          "  -fix: actually write a new segments_N file, removing any problematic segments\n" +
+                         "  -fast: only verify file checksums, skipping the slower checks of the index data structures\n" +
+                         "  -threadCount N: check segments, and the parts of each segment, using N threads\n" +
                          "  -crossCheckTermVectors: verifies that term vectors match postings; THIS IS VERY SLOW!\n" +
                          "  -codec X: when fixing, codec to write the new segments_N file with\n" +
                          "  -verbose: print additional details\n" +
@@ -2068,6 +2314,8 @@ public class CheckIndex {
 
     CheckIndex checker = new CheckIndex(dir);
     checker.setCrossCheckTermVectors(doCrossCheckTermVectors);
+    checker.setChecksumsOnly(checksumsOnly);
+    checker.setThreadCount(threadCount);
     checker.setInfoStream(System.out, verbose);
 
     Status result = checker.checkIndex(onlySegments);
@@ -18,11 +18,13 @@ package org.apache.lucene.index;
  */
 
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RateLimiter;
 import org.apache.lucene.util.ThreadInterruptedException;
 import org.apache.lucene.util.CollectionUtil;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Locale;
 import java.util.ArrayList;
 import java.util.Comparator;
 
@@ -41,6 +43,14 @@ import java.util.Comparator;
  *  requested then this class will forcefully throttle the
  *  incoming threads by pausing until one more more merges
  *  complete.</p>
+ *
+ *  <p>By default this class also adaptively throttles the
+ *  write rate of large merges (see {@link
+ *  #enableAutoIOThrottle}): the rate is raised when merges
+ *  fall behind and lowered when merging keeps up with
+ *  indexing, so that merges interfere as little as possible
+ *  with searching and indexing.  Forced merges are never
+ *  throttled.</p>
  */ 
 public class ConcurrentMergeScheduler extends MergeScheduler {
 
@@ -72,6 +82,26 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
   // throttling the incoming threads
   private int maxMergeCount = DEFAULT_MAX_MERGE_COUNT;
 
+  /** Floor for the IO write rate limit of large merges. */
+  public static final double MIN_MERGE_MB_PER_SEC = 5.0;
+
+  /** Ceiling for the IO write rate limit of large merges. */
+  public static final double MAX_MERGE_MB_PER_SEC = 10240.0;
+
+  /** Initial IO write rate limit of large merges. */
+  public static final double START_MB_PER_SEC = 20.0;
+
+  /** Merges whose estimated size is below this many MB are
+   *  never throttled. */
+  public static final double MIN_BIG_MERGE_MB = 50.0;
+
+  // True if we adapt the IO rate of big merges on our own:
+  private boolean doAutoIOThrottle = true;
+
+  // Current IO write rate limit, in MB/sec, applied to all
+  // running big merges:
+  private double targetMBPerSec = START_MB_PER_SEC;
+
   /** {@link Directory} that holds the index. */
   protected Directory dir;
 
@@ -125,6 +155,47 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
     return maxMergeCount;
   }
 
+  /** Turns on dynamic IO throttling, which is the
+   *  default.  Every time a large merge (at least {@link
+   *  #MIN_BIG_MERGE_MB} MB) starts, the IO write rate of all
+   *  running large merges is increased if there are more of
+   *  them than {@link #getMaxThreadCount} (merging is falling
+   *  behind) and decreased otherwise, staying between {@link
+   *  #MIN_MERGE_MB_PER_SEC} and {@link #MAX_MERGE_MB_PER_SEC}.
+   *  Smaller merges and forced merges (see {@link
+   *  IndexWriter#forceMerge}) are not throttled. */
+  public synchronized void enableAutoIOThrottle() {
+    doAutoIOThrottle = true;
+    targetMBPerSec = START_MB_PER_SEC;
+    updateMergeRateLimiters();
+  }
+
+  /** Turns off dynamic IO throttling: all merges, including
+   *  already running ones, write at full speed. */
+  public synchronized void disableAutoIOThrottle() {
+    doAutoIOThrottle = false;
+    updateMergeRateLimiters();
+  }
+
+  /** Returns true if dynamic IO throttling is enabled.
+   *
+   *  @see #enableAutoIOThrottle */
+  public synchronized boolean getAutoIOThrottle() {
+    return doAutoIOThrottle;
+  }
+
+  /** Returns the current IO write rate limit, in MB/sec,
+   *  applied to large merges, or {@code
+   *  Double.POSITIVE_INFINITY} if dynamic IO throttling is
+   *  disabled. */
+  public synchronized double getIORateLimitMBPerSec() {
+    if (doAutoIOThrottle) {
+      return targetMBPerSec;
+    } else {
+      return Double.POSITIVE_INFINITY;
+    }
+  }
+
   /** Return the priority that merge threads run at.  By
    *  default the priority is 1 plus the priority of (ie,
    *  slightly higher priority than) the first thread that
@@ -247,6 +318,108 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
     writer.infoStream.message("CMS", message);
   }
 
+  /** Called before a merge is started, to adapt the IO
+   *  write rate limit to the current merge backlog and set
+   *  the rate limiter of the new merge. */
+  protected synchronized void updateIOThrottle(MergePolicy.OneMerge newMerge) throws IOException {
+    if (doAutoIOThrottle == false) {
+      return;
+    }
+
+    if (newMerge.maxNumSegments != -1) {
+      // Forced merges are exempt: the app is explicitly
+      // waiting for them to finish:
+      if (verbose()) {
+        message("  io throttle: forced merge " + newMerge.segString(dir) + " is not rate limited");
+      }
+      return;
+    }
+
+    final double mergeMB = estimateMergeBytes(newMerge)/1024./1024.;
+    if (mergeMB < MIN_BIG_MERGE_MB) {
+      if (verbose()) {
+        message(String.format(Locale.ROOT, "  io throttle: merge (%.1f MB) is too small to be rate limited", mergeMB));
+      }
+      return;
+    }
+
+    // Count big merges that are already running (only those
+    // have a rate limiter), plus the new one:
+    int bigMergeCount = 1;
+    for (MergeThread mergeThread : mergeThreads) {
+      final MergePolicy.OneMerge merge = mergeThread.getCurrentMerge();
+      if (mergeThread != Thread.currentThread() && mergeThread.isAlive() && merge != null && merge.getRateLimiter() != null) {
+        bigMergeCount++;
+      }
+    }
+
+    final double curMBPerSec = targetMBPerSec;
+    if (bigMergeCount > maxThreadCount) {
+      // Merging is falling behind: go faster
+      targetMBPerSec = Math.min(MAX_MERGE_MB_PER_SEC, targetMBPerSec * 1.20);
+    } else {
+      // Merging is keeping up: slow down, so that merges
+      // take less IO away from searching and indexing
+      targetMBPerSec = Math.max(MIN_MERGE_MB_PER_SEC, targetMBPerSec * 0.90);
+    }
+
+    if (verbose()) {
+      final String change;
+      if (targetMBPerSec > curMBPerSec) {
+        change = "raise";
+      } else if (targetMBPerSec < curMBPerSec) {
+        change = "lower";
+      } else {
+        change = "keep";
+      }
+      message(String.format(Locale.ROOT, "  io throttle: new merge (%.1f MB); %d big merges vs maxThreadCount=%d; %s rate to %.1f MB/sec",
+                            mergeMB, bigMergeCount, maxThreadCount, change, targetMBPerSec));
+    }
+
+    newMerge.setRateLimiter(new RateLimiter.SimpleRateLimiter(targetMBPerSec));
+    updateMergeRateLimiters();
+  }
+
+  /** Applies the current IO write rate limit to all running
+   *  merges that have a rate limiter. */
+  private synchronized void updateMergeRateLimiters() {
+    final double mbPerSec = getIORateLimitMBPerSec();
+    for (MergeThread mergeThread : mergeThreads) {
+      final MergePolicy.OneMerge merge = mergeThread.getCurrentMerge();
+      if (merge == null) {
+        continue;
+      }
+      final RateLimiter rateLimiter = merge.getRateLimiter();
+      if (rateLimiter != null && rateLimiter.getMbPerSec() != mbPerSec) {
+        rateLimiter.setMbPerSec(mbPerSec);
+        if (verbose()) {
+          message(String.format(Locale.ROOT, "  io throttle: merge thread %s now writes at %.1f MB/sec", mergeThread.getName(), mbPerSec));
+        }
+      }
+    }
+  }
+
+  private static String rateToString(MergePolicy.OneMerge merge) {
+    final RateLimiter rateLimiter = merge.getRateLimiter();
+    if (rateLimiter == null) {
+      return "(no IO rate limit)";
+    } else {
+      return String.format(Locale.ROOT, "(IO rate limit %.1f MB/sec)", rateLimiter.getMbPerSec());
+    }
+  }
+
+  private static long estimateMergeBytes(MergePolicy.OneMerge merge) throws IOException {
+    long bytes = 0;
+    for (SegmentCommitInfo info : merge.segments) {
+      final int docCount = info.info.getDocCount();
+      if (docCount > 0) {
+        final double delRatio = ((double) info.getDelCount())/docCount;
+        bytes += (long) (info.sizeInBytes() * (1.0 - delRatio));
+      }
+    }
+    return bytes;
+  }
+
   private synchronized void initMergeThreadPriority() {
     if (mergeThreadPriority == -1) {
       // Default to slightly higher priority than our
@@ -376,12 +549,14 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
           message("  consider merge " + writer.segString(merge.segments));
         }
 
+        updateIOThrottle(merge);
+
         // OK to spawn a new merge thread to handle this
         // merge:
         final MergeThread merger = getMergeThread(writer, merge);
         mergeThreads.add(merger);
         if (verbose()) {
-          message("    launch new thread [" + merger.getName() + "]");
+          message("    launch new thread [" + merger.getName() + "] " + rateToString(merge));
         }
 
         merger.start();
@@ -493,9 +668,10 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
           }
 
           if (merge != null) {
+            updateIOThrottle(merge);
             updateMergeThreads();
             if (verbose()) {
-              message("  merge thread: do another merge " + tWriter.segString(merge.segments));
+              message("  merge thread: do another merge " + tWriter.segString(merge.segments) + " " + rateToString(merge));
             }
           } else {
             break;
@@ -562,7 +738,8 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
     StringBuilder sb = new StringBuilder(getClass().getSimpleName() + ": ");
     sb.append("maxThreadCount=").append(maxThreadCount).append(", ");    
     sb.append("maxMergeCount=").append(maxMergeCount).append(", ");    
-    sb.append("mergeThreadPriority=").append(mergeThreadPriority);
+    sb.append("mergeThreadPriority=").append(mergeThreadPriority).append(", ");
+    sb.append("ioThrottle=").append(doAutoIOThrottle);
     return sb.toString();
   }
 }
@@ -113,6 +113,8 @@ final class DefaultIndexingChain extends DocConsumer {
     }
 
     termsHash.flush(fieldsToFlush, state);
+    // postings are written: the buffers can now be reused
+    termsHash.recycle();
 
     // Important to save after asking consumer to flush so
     // consumer can alter the FieldInfo* if necessary.  EG,
@@ -59,7 +59,75 @@ public abstract class DocsEnum extends DocIdSetIterator {
    * the result of this method is undefined.
    */
   public abstract int freq() throws IOException;
+
+  /**
+   * Expert: moves the block-level frequency information of this enum to the
+   * block of postings that contains {@code target}, without moving the
+   * iterator itself, and returns the last document of that block. The
+   * returned value is always greater than or equal to {@code target}.
+   * Successive calls must pass non-decreasing targets.
+   * <p>
+   * The default implementation returns {@link #NO_MORE_DOCS}, meaning that
+   * the whole postings list is a single block.
+   *
+   * @see #getMaxFreq()
+   * @lucene.experimental
+   */
+  public int advanceShallow(int target) throws IOException {
+    return NO_MORE_DOCS;
+  }
+
+  /**
+   * Expert: returns an upper bound of {@link #freq()} for the documents of the
+   * block that was selected by the last call to {@link #advanceShallow(int)},
+   * or for the whole postings list if it has never been called. The default
+   * implementation returns {@link Integer#MAX_VALUE}, ie. no bound is known.
+   *
+   * @lucene.experimental
+   */
+  public int getMaxFreq() {
+    return Integer.MAX_VALUE;
+  }
   
+  /**
+   * Expert: bulk read. Fills <code>docs</code> with the next matching
+   * documents, and <code>freqs</code> with their frequencies unless it is
+   * <code>null</code>, and returns the number of documents that have been
+   * read. A return value of <code>0</code> means that this enum is exhausted.
+   * Less than <code>docs.length</code> documents may be returned even if the
+   * enum is not exhausted yet, for instance at the end of a block of postings.
+   * <p>
+   * After this method returns, {@link #docID()} and {@link #freq()} return the
+   * last document that has been read and its frequency, or
+   * {@link #NO_MORE_DOCS} if no documents were read. <code>freqs</code> must
+   * be at least as long as <code>docs</code>. As with {@link #freq()}, the
+   * frequencies are undefined if the enum was obtained with {@link #FLAG_NONE}.
+   * <p>
+   * The default implementation calls {@link #nextDoc()} and {@link #freq()}
+   * in a loop. Codecs that decode postings in blocks should override it to
+   * copy whole blocks at once.
+   *
+   * @lucene.experimental
+   */
+  public int read(int[] docs, int[] freqs) throws IOException {
+    int count = 0;
+    if (docID() == NO_MORE_DOCS) {
+      return count;
+    }
+    while (count < docs.length) {
+      final int doc = nextDoc();
+      if (doc == NO_MORE_DOCS) {
+        break;
+      }
+      docs[count] = doc;
+      if (freqs != null) {
+        freqs[count] = freq();
+      }
+      count++;
+    }
+    return count;
+  }
+
   /** Returns the related attributes. */
   public AttributeSource attributes() {
     if (atts == null) atts = new AttributeSource();
@@ -121,6 +121,8 @@ final class DocumentsWriter implements Closeable, Accountable {
   final DocumentsWriterPerThreadPool perThreadPool;
   final FlushPolicy flushPolicy;
   final DocumentsWriterFlushControl flushControl;
+  // shares indexing buffers across DWPTs, or null
+  private final BlockRecycler blockRecycler;
   private final IndexWriter writer;
   private final Queue<Event> events;
 
@@ -134,6 +136,8 @@ final class DocumentsWriter implements Closeable, Accountable {
     this.writer = writer;
     this.events = new ConcurrentLinkedQueue<>();
     flushControl = new DocumentsWriterFlushControl(this, config, writer.bufferedUpdatesStream);
+    final double maxRecycledMB = config.getMaxRecycledRAMBufferMB();
+    blockRecycler = maxRecycledMB > 0 ? new BlockRecycler((long) (maxRecycledMB * 1024 * 1024)) : null;
   }
   
   synchronized boolean deleteQueries(final Query... queries) throws IOException {
@@ -390,7 +394,7 @@ final class DocumentsWriter implements Closeable, Accountable {
           writer.globalFieldNumberMap);
       state.dwpt = new DocumentsWriterPerThread(writer.newSegmentName(),
                                                 directory, config, infoStream, deleteQueue, infos,
-                                                writer.pendingNumDocs);
+                                                writer.pendingNumDocs, blockRecycler);
     }
   }
 
@@ -498,7 +502,9 @@ final class DocumentsWriter implements Closeable, Accountable {
          * flush 'B' starts and freezes all deletes occurred since 'A' has
          * started. if 'B' finishes before 'A' we need to wait until 'A' is done
          * otherwise the deletes frozen by 'B' are not applied to 'A' and we
-         * might miss to deletes documents in 'A'.
+         * might miss to deletes documents in 'A'. If neither 'A' nor 'B'
+         * froze any global deletes, 'B' is published right away without
+         * waiting for 'A' (see DocumentsWriterFlushQueue).
          */
         try {
           // Each flush is assigned a ticket in the order they acquire the ticketQueue lock
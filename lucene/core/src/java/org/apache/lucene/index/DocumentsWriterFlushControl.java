@@ -701,7 +701,14 @@ final class DocumentsWriterFlushControl implements Accountable {
               + " netBytes: " + netBytes() + " flushBytes: " + flushBytes()
               + " fullFlush: " + fullFlush);
     }
-    stallControl.waitIfStalled();
+    final long stallTimeNS = stallControl.waitIfStalled();
+    if (stallTimeNS != 0 && infoStream.isEnabled("DWFC")) {
+      infoStream.message("DWFC",
+          "waitIfStalled: " + Thread.currentThread().getName() + " stalled for "
+              + (stallTimeNS / 1000000) + " msec; total stall time: "
+              + (stallControl.getTotalStallTimeNS() / 1000000) + " msec over "
+              + stallControl.getStallCount() + " stalls");
+    }
   }
 
   /**
@@ -16,8 +16,8 @@ package org.apache.lucene.index;
  * the License.
  */
 import java.io.IOException;
-import java.util.LinkedList;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -25,10 +25,19 @@ import org.apache.lucene.index.DocumentsWriterPerThread.FlushedSegment;
 
 
 /**
+ * Queue of flush tickets, in the order the flushes froze the global deletes.
+ * <p>
+ * Tickets are normally published in order, but a flushed segment is
+ * published ahead of still-flushing segments if neither it nor any ticket
+ * before it carries global deletes: its documents can then not be affected
+ * by publishing the other tickets later. The queue itself is lock-free; only
+ * adding a ticket is synchronized, to keep the ticket order in line with the
+ * order in which the global deletes are frozen.
+ * 
  * @lucene.internal 
  */
 class DocumentsWriterFlushQueue {
-  private final Queue<FlushTicket> queue = new LinkedList<>();
+  private final Queue<FlushTicket> queue = new ConcurrentLinkedQueue<>();
   // we track tickets separately since count must be present even before the ticket is
   // constructed ie. queue.size would not reflect it.
   private final AtomicInteger ticketCount = new AtomicInteger();
@@ -78,13 +87,13 @@ class DocumentsWriterFlushQueue {
     }
   }
   
-  synchronized void addSegment(SegmentFlushTicket ticket, FlushedSegment segment) {
+  void addSegment(SegmentFlushTicket ticket, FlushedSegment segment) {
     // the actual flush is done asynchronously and once done the FlushedSegment
     // is passed to the flush ticket
     ticket.setSegment(segment);
   }
 
-  synchronized void markTicketFailed(SegmentFlushTicket ticket) {
+  void markTicketFailed(SegmentFlushTicket ticket) {
     // to free the queue we mark tickets as failed just to clean up the queue.
     ticket.setFailed();
   }
@@ -98,13 +107,8 @@ class DocumentsWriterFlushQueue {
     assert purgeLock.isHeldByCurrentThread();
     int numPurged = 0;
     while (true) {
-      final FlushTicket head;
-      final boolean canPublish;
-      synchronized (this) {
-        head = queue.peek();
-        canPublish = head != null && head.canPublish(); // do this synced 
-      }
-      if (canPublish) {
+      final FlushTicket ticket = nextPublishableTicket();
+      if (ticket != null) {
         numPurged++;
         try {
           /*
@@ -113,15 +117,13 @@ class DocumentsWriterFlushQueue {
            * the downside is that we need to force a purge on fullFlush since ther could
            * be a ticket still in the queue. 
            */
-          head.publish(writer);
+          ticket.publish(writer);
           
         } finally {
-          synchronized (this) {
-            // finally remove the published ticket from the queue
-            final FlushTicket poll = queue.poll();
-            ticketCount.decrementAndGet();
-            assert poll == head;
-          }
+          // finally remove the published ticket from the queue
+          final boolean removed = queue.remove(ticket);
+          ticketCount.decrementAndGet();
+          assert removed;
         }
       } else {
         break;
@@ -130,6 +132,29 @@ class DocumentsWriterFlushQueue {
     return numPurged;
   }
 
+  /**
+   * Returns the head of the queue if it can be published, otherwise the first
+   * finished ticket that may be published ahead of its predecessors, or
+   * <code>null</code> if no ticket can be published yet.
+   */
+  private FlushTicket nextPublishableTicket() {
+    assert purgeLock.isHeldByCurrentThread();
+    boolean head = true;
+    for (FlushTicket ticket : queue) {
+      if (ticket.canPublish() && (head || !ticket.hasGlobalUpdates())) {
+        return ticket;
+      }
+      if (ticket.hasGlobalUpdates()) {
+        // all tickets behind this one must wait for its global deletes to be
+        // published first, otherwise these deletes would not be applied to
+        // the segment of this ticket
+        return null;
+      }
+      head = false;
+    }
+    return null;
+  }
+
   int forcePurge(IndexWriter writer) throws IOException {
     assert !Thread.holdsLock(this);
     assert !Thread.holdsLock(writer);
@@ -174,6 +199,12 @@ class DocumentsWriterFlushQueue {
 
     protected abstract void publish(IndexWriter writer) throws IOException;
     protected abstract boolean canPublish();
+
+    /** Returns true if this ticket carries frozen global deletes or updates
+     *  that must be applied to all segments published before it. */
+    protected final boolean hasGlobalUpdates() {
+      return frozenUpdates.any();
+    }
     
     /**
      * Publishes the flushed segment, segment private deletes (if any) and its
@@ -235,8 +266,9 @@ class DocumentsWriterFlushQueue {
   }
 
   static final class SegmentFlushTicket extends FlushTicket {
-    private FlushedSegment segment;
-    private boolean failed = false;
+    // set by the flushing thread and read by the purging thread:
+    private volatile FlushedSegment segment;
+    private volatile boolean failed = false;
     
     protected SegmentFlushTicket(FrozenBufferedUpdates frozenDeletes) {
       super(frozenDeletes);
@@ -156,11 +156,13 @@ class DocumentsWriterPerThread {
   private final NumberFormat nf = NumberFormat.getInstance(Locale.ROOT);
   final Allocator byteBlockAllocator;
   final IntBlockPool.Allocator intBlockAllocator;
+  // true if blocks are reused by other DWPTs, so they must be zero-filled
+  final boolean recycleBlocks;
   private final AtomicLong pendingNumDocs;
   private final LiveIndexWriterConfig indexWriterConfig;
   
   public DocumentsWriterPerThread(String segmentName, Directory directory, LiveIndexWriterConfig indexWriterConfig, InfoStream infoStream, DocumentsWriterDeleteQueue deleteQueue,
-                                  FieldInfos.Builder fieldInfos, AtomicLong pendingNumDocs) throws IOException {
+                                  FieldInfos.Builder fieldInfos, AtomicLong pendingNumDocs, BlockRecycler blockRecycler) throws IOException {
     this.directoryOrig = directory;
     this.directory = new TrackingDirectoryWrapper(directory);
     this.fieldInfos = fieldInfos;
@@ -171,9 +173,16 @@ class DocumentsWriterPerThread {
     this.docState.similarity = indexWriterConfig.getSimilarity();
     this.pendingNumDocs = pendingNumDocs;
     bytesUsed = Counter.newCounter();
-    byteBlockAllocator = new DirectTrackingAllocator(bytesUsed);
+    if (blockRecycler == null) {
+      byteBlockAllocator = new DirectTrackingAllocator(bytesUsed);
+      intBlockAllocator = new IntBlockAllocator(bytesUsed);
+      recycleBlocks = false;
+    } else {
+      byteBlockAllocator = blockRecycler.newByteBlockAllocator(bytesUsed);
+      intBlockAllocator = blockRecycler.newIntBlockAllocator(bytesUsed);
+      recycleBlocks = true;
+    }
     pendingUpdates = new BufferedUpdates();
-    intBlockAllocator = new IntBlockAllocator(bytesUsed);
     this.deleteQueue = deleteQueue;
     assert numDocsInRAM == 0 : "num docs " + numDocsInRAM;
     pendingUpdates.clear();
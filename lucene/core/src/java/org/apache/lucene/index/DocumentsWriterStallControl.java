@@ -43,6 +43,8 @@ final class DocumentsWriterStallControl {
   private int numWaiting; // only with assert
   private boolean wasStalled; // only with assert
   private final Map<Thread, Boolean> waiting = new IdentityHashMap<>(); // only with assert
+  private long stallCount;
+  private long totalStallTimeNS;
   
   /**
    * Update the stalled flag status. This method will set the stalled flag to
@@ -63,12 +65,15 @@ final class DocumentsWriterStallControl {
   /**
    * Blocks if documents writing is currently in a stalled state. 
    * 
+   * @return the time in nanoseconds the calling thread was blocked, or
+   *         <code>0</code> if it was not blocked
    */
-  void waitIfStalled() {
+  long waitIfStalled() {
     if (stalled) {
       synchronized (this) {
         if (stalled) { // react on the first wakeup call!
           // don't loop here, higher level logic will re-stall!
+          final long startNS = System.nanoTime();
           try {
             assert incWaiters();
             wait();
@@ -76,9 +81,29 @@ final class DocumentsWriterStallControl {
           } catch (InterruptedException e) {
             throw new ThreadInterruptedException(e);
           }
+          final long stallTimeNS = System.nanoTime() - startNS;
+          stallCount++;
+          totalStallTimeNS += stallTimeNS;
+          return stallTimeNS;
         }
       }
     }
+    return 0;
+  }
+
+  /**
+   * Returns how many times an indexing thread was blocked so far.
+   */
+  synchronized long getStallCount() {
+    return stallCount;
+  }
+
+  /**
+   * Returns the total time in nanoseconds indexing threads were blocked so
+   * far, summed over all threads.
+   */
+  synchronized long getTotalStallTimeNS() {
+    return totalStallTimeNS;
   }
   
   boolean anyStalledThreads() {
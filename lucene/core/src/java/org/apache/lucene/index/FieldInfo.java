@@ -48,6 +48,11 @@ public final class FieldInfo {
   private Map<String,String> attributes;
 
   private long dvGen;
+
+  // attribute that records the doc values generations that the current
+  // generation of this field is stacked on, oldest first
+  static final String STACKED_DV_GENS_KEY = FieldInfo.class.getSimpleName() + ".stackedDocValuesGens";
+  private static final long[] NO_STACKED_DV_GENS = new long[0];
   
   /**
    * Controls how much information is stored in the postings lists.
@@ -244,6 +249,46 @@ public final class FieldInfo {
     return dvGen;
   }
   
+  /**
+   * Sets the older docValues generations that the current generation of this
+   * field only partially overrides, oldest first. The first one may be -1 if
+   * the values of the segment itself are still visible.
+   */
+  void setStackedDocValuesGens(long[] gens) {
+    if (gens.length == 0) {
+      if (getAttribute(STACKED_DV_GENS_KEY) != null) {
+        putAttribute(STACKED_DV_GENS_KEY, "");
+      }
+      return;
+    }
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < gens.length; ++i) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append(gens[i]);
+    }
+    putAttribute(STACKED_DV_GENS_KEY, sb.toString());
+  }
+
+  /**
+   * Returns the older docValues generations that the current generation of
+   * this field is stacked on, oldest first, or an empty array if the current
+   * generation holds the values of all documents.
+   */
+  long[] getStackedDocValuesGens() {
+    final String gens = getAttribute(STACKED_DV_GENS_KEY);
+    if (gens == null || gens.isEmpty()) {
+      return NO_STACKED_DV_GENS;
+    }
+    final String[] parts = gens.split(",");
+    final long[] result = new long[parts.length];
+    for (int i = 0; i < parts.length; ++i) {
+      result[i] = Long.parseLong(parts[i]);
+    }
+    return result;
+  }
+  
   /**
    * Returns {@link DocValuesType} of the norm. this may be null if the field has no norms.
    */
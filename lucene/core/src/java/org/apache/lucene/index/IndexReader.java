@@ -342,6 +342,35 @@ public abstract class IndexReader implements Closeable {
    *  #document(int)}.  If you want to load a subset, use
    *  {@link DocumentStoredFieldVisitor}.  */
   public abstract void document(int docID, StoredFieldVisitor visitor) throws IOException;
+
+  /** Expert: visits the fields of several stored documents:
+   *  <code>visitors[i]</code> visits the fields of document
+   *  <code>docIDs[i]</code>.  Document IDs must be in strictly
+   *  increasing order.  This is typically cheaper than calling
+   *  {@link #document(int, StoredFieldVisitor)} for every
+   *  document, since documents that are stored next to each
+   *  other (for example in the same compressed block) are
+   *  read together.
+   *
+   *  @throws IllegalArgumentException if the arrays do not
+   *  have the same length or if document IDs are not sorted */
+  public void document(int[] docIDs, StoredFieldVisitor[] visitors) throws IOException {
+    checkDocumentsArgs(docIDs, visitors);
+    for (int i = 0; i < docIDs.length; i++) {
+      document(docIDs[i], visitors[i]);
+    }
+  }
+
+  static void checkDocumentsArgs(int[] docIDs, StoredFieldVisitor[] visitors) {
+    if (docIDs.length != visitors.length) {
+      throw new IllegalArgumentException("docIDs and visitors must have the same length, got " + docIDs.length + " and " + visitors.length);
+    }
+    for (int i = 1; i < docIDs.length; i++) {
+      if (docIDs[i] <= docIDs[i-1]) {
+        throw new IllegalArgumentException("docIDs must be in strictly increasing order, got " + docIDs[i] + " after " + docIDs[i-1]);
+      }
+    }
+  }
   
   /**
    * Returns the stored fields of the <code>n</code><sup>th</sup>
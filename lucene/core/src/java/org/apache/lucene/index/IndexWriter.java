@@ -57,6 +57,8 @@ import org.apache.lucene.store.IOContext;
 import org.apache.lucene.store.Lock;
 import org.apache.lucene.store.LockObtainFailedException;
 import org.apache.lucene.store.MergeInfo;
+import org.apache.lucene.store.RateLimitedDirectoryWrapper;
+import org.apache.lucene.store.RateLimiter;
 import org.apache.lucene.store.TrackingDirectoryWrapper;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Bits;
@@ -3106,6 +3108,51 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
     }
   }
   
+  /** Syncs the files of a commit, in a thread of its own. */
+  private static class CommitSyncThread extends Thread {
+    private final Directory directory;
+    private final Collection<String> files;
+    private Throwable exc;
+
+    CommitSyncThread(Directory directory, Collection<String> files) {
+      super("Lucene Commit Sync");
+      this.directory = directory;
+      this.files = files;
+    }
+
+    @Override
+    public void run() {
+      try {
+        directory.sync(files);
+      } catch (Throwable t) {
+        exc = t;
+      }
+    }
+
+    /** Waits for the sync to be done. If the current thread gets
+     *  interrupted in the meantime, its interrupt status is restored
+     *  once the sync is done. */
+    void await() {
+      boolean interrupted = false;
+      while (true) {
+        try {
+          join();
+          break;
+        } catch (InterruptedException ie) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    /** Rethrows the exception that the sync hit, if any. */
+    void rethrow() throws IOException {
+      IOUtils.reThrow(exc);
+    }
+  }
+
   private static class MergedDeletesAndUpdates {
     ReadersAndUpdates mergedDeletesAndUpdates = null;
     MergePolicy.DocMap docMap = null;
@@ -3850,7 +3897,20 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
     IOContext context = new IOContext(merge.getMergeInfo());
 
     final MergeState.CheckAbort checkAbort = new MergeState.CheckAbort(merge, directory);
-    final TrackingDirectoryWrapper dirWrapper = new TrackingDirectoryWrapper(directory);
+
+    // If the merge scheduler asked for this merge to be
+    // throttled, route all of its writes through its own
+    // rate limiter:
+    final Directory mergeDirectory;
+    final RateLimiter rateLimiter = merge.getRateLimiter();
+    if (rateLimiter != null) {
+      final RateLimitedDirectoryWrapper rateLimitedDir = new RateLimitedDirectoryWrapper(directory);
+      rateLimitedDir.setRateLimiter(rateLimiter, IOContext.Context.MERGE);
+      mergeDirectory = rateLimitedDir;
+    } else {
+      mergeDirectory = directory;
+    }
+    final TrackingDirectoryWrapper dirWrapper = new TrackingDirectoryWrapper(mergeDirectory);
 
     if (infoStream.isEnabled("IW")) {
       infoStream.message("IW", "merging " + segString(merge.segments));
@@ -3986,7 +4046,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
         Collection<String> filesToRemove = merge.info.files();
 
         try {
-          filesToRemove = createCompoundFile(infoStream, directory, checkAbort, merge.info.info, context);
+          filesToRemove = createCompoundFile(infoStream, mergeDirectory, checkAbort, merge.info.info, context);
           success = true;
         } catch (IOException ioe) {
           synchronized(this) {
@@ -4267,29 +4327,40 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
 
         assert testPoint("midStartCommit2");
 
-        synchronized(this) {
+        // Syncing the files referenced by the commit can take
+        // a long time -- 10s of seconds or more.  We do it
+        // without syncing on this, in a separate thread so
+        // that it overlaps with writing the pending segments
+        // file, which does not depend on it:
+        final Collection<String> filesToSync = toSync.files(directory, false);
+        final CommitSyncThread syncThread = new CommitSyncThread(directory, filesToSync);
+        syncThread.start();
+
+        try {
+          synchronized(this) {
 
-          assert pendingCommit == null;
+            assert pendingCommit == null;
 
-          assert segmentInfos.getGeneration() == toSync.getGeneration();
+            assert segmentInfos.getGeneration() == toSync.getGeneration();
 
-          // Exception here means nothing is prepared
-          // (this method unwinds everything it did on
-          // an exception)
-          toSync.prepareCommit(directory);
-          //System.out.println("DONE prepareCommit");
+            // Exception here means nothing is prepared
+            // (this method unwinds everything it did on
+            // an exception)
+            toSync.prepareCommit(directory);
+            //System.out.println("DONE prepareCommit");
 
-          pendingCommitSet = true;
-          pendingCommit = toSync;
+            pendingCommitSet = true;
+            pendingCommit = toSync;
+          }
+        } finally {
+          // the files to sync must not be deleted before
+          // the sync thread is done with them
+          syncThread.await();
         }
 
-        // This call can take a long time -- 10s of seconds
-        // or more.  We do it without syncing on this:
         boolean success = false;
-        final Collection<String> filesToSync;
         try {
-          filesToSync = toSync.files(directory, false);
-          directory.sync(filesToSync);
+          syncThread.rethrow();
           success = true;
         } finally {
           if (!success) {
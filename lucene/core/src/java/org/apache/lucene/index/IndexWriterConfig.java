@@ -98,6 +98,9 @@ public final class IndexWriterConfig extends LiveIndexWriterConfig {
 
   /** Default value is 1945. Change using {@link #setRAMPerThreadHardLimitMB(int)} */
   public static final int DEFAULT_RAM_PER_THREAD_HARD_LIMIT_MB = 1945;
+
+  /** Default value is 0 (indexing buffers are not recycled). Change using {@link #setMaxRecycledRAMBufferMB(double)} */
+  public static final double DEFAULT_MAX_RECYCLED_RAM_BUFFER_MB = 0;
   
   /** The maximum number of simultaneous threads that may be
    *  indexing documents at once in IndexWriter; if more
@@ -420,6 +423,31 @@ public final class IndexWriterConfig extends LiveIndexWriterConfig {
   public int getRAMPerThreadHardLimitMB() {
     return perThreadHardLimitMB;
   }
+
+  /**
+   * Expert: Sets the maximum amount of memory of indexing buffers that are
+   * kept once a segment is flushed, to be reused for the next segments. By
+   * default indexing buffers are left to the garbage collector after every
+   * flush, which may cause long pauses with large RAM buffers since they
+   * usually end up in the old generation. Recycled buffers are not counted in
+   * the {@link #setRAMBufferSizeMB RAM buffer}, so the RAM used by indexing
+   * can be up to the sum of both. Setting it to the RAM buffer size is
+   * usually enough for all buffers to be reused.
+   *
+   * @see #DEFAULT_MAX_RECYCLED_RAM_BUFFER_MB
+   */
+  public IndexWriterConfig setMaxRecycledRAMBufferMB(double maxRecycledRAMBufferMB) {
+    if (maxRecycledRAMBufferMB < 0) {
+      throw new IllegalArgumentException("maxRecycledRAMBufferMB must be >= 0, got " + maxRecycledRAMBufferMB);
+    }
+    this.maxRecycledRAMBufferMB = maxRecycledRAMBufferMB;
+    return this;
+  }
+
+  @Override
+  public double getMaxRecycledRAMBufferMB() {
+    return maxRecycledRAMBufferMB;
+  }
   
   @Override
   FlushPolicy getFlushPolicy() {
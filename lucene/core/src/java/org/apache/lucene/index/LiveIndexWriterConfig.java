@@ -91,6 +91,10 @@ public class LiveIndexWriterConfig {
    *  segment, after which the segment is forced to flush. */
   protected volatile int perThreadHardLimitMB;
 
+  /** Maximum amount of indexing buffers that are kept across
+   *  flushes for reuse. */
+  protected volatile double maxRecycledRAMBufferMB;
+
   /** True if segment flushes should use compound file format */
   protected volatile boolean useCompoundFile = IndexWriterConfig.DEFAULT_USE_COMPOUND_FILE_SYSTEM;
   
@@ -125,6 +129,7 @@ public class LiveIndexWriterConfig {
     readerPooling = IndexWriterConfig.DEFAULT_READER_POOLING;
     indexerThreadPool = new DocumentsWriterPerThreadPool(IndexWriterConfig.DEFAULT_MAX_THREAD_STATES);
     perThreadHardLimitMB = IndexWriterConfig.DEFAULT_RAM_PER_THREAD_HARD_LIMIT_MB;
+    maxRecycledRAMBufferMB = IndexWriterConfig.DEFAULT_MAX_RECYCLED_RAM_BUFFER_MB;
   }
   
   /** Returns the default analyzer to use for indexing documents. */
@@ -425,6 +430,16 @@ public class LiveIndexWriterConfig {
   public int getRAMPerThreadHardLimitMB() {
     return perThreadHardLimitMB;
   }
+
+  /**
+   * Returns the maximum amount of memory of indexing buffers that are kept
+   * across flushes for reuse.
+   * 
+   * @see IndexWriterConfig#setMaxRecycledRAMBufferMB(double)
+   */
+  public double getMaxRecycledRAMBufferMB() {
+    return maxRecycledRAMBufferMB;
+  }
   
   /**
    * @see IndexWriterConfig#setFlushPolicy(FlushPolicy)
@@ -517,6 +532,7 @@ public class LiveIndexWriterConfig {
     sb.append("indexerThreadPool=").append(getIndexerThreadPool()).append("\n");
     sb.append("readerPooling=").append(getReaderPooling()).append("\n");
     sb.append("perThreadHardLimitMB=").append(getRAMPerThreadHardLimitMB()).append("\n");
+    sb.append("maxRecycledRAMBufferMB=").append(getMaxRecycledRAMBufferMB()).append("\n");
     sb.append("useCompoundFile=").append(getUseCompoundFile()).append("\n");
     sb.append("checkIntegrityAtMerge=").append(getCheckIntegrityAtMerge()).append("\n");
     sb.append("commitOnClose=").append(getCommitOnClose()).append("\n");
@@ -19,6 +19,7 @@ package org.apache.lucene.index;
 
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.MergeInfo;
+import org.apache.lucene.store.RateLimiter;
 import org.apache.lucene.util.FixedBitSet;
 
 import java.io.IOException;
@@ -112,6 +113,7 @@ public abstract class MergePolicy {
     boolean aborted;
     Throwable error;
     boolean paused;
+    private volatile RateLimiter rateLimiter;
 
     /** Sole constructor.
      * @param segments List of {@link SegmentCommitInfo}s
@@ -233,6 +235,23 @@ public abstract class MergePolicy {
       return paused;
     }
 
+    /** Set the {@link RateLimiter} that limits the write
+     *  rate of this merge, or null to write at full speed (for
+     *  example {@link ConcurrentMergeScheduler} sets this when
+     *  auto IO throttling is enabled).  Must be set before the
+     *  merge starts to take effect. */
+    public void setRateLimiter(RateLimiter rateLimiter) {
+      this.rateLimiter = rateLimiter;
+    }
+
+    /** Returns the {@link RateLimiter} for this merge, or
+     *  null if it is not rate limited.
+     *
+     *  @see #setRateLimiter(RateLimiter) */
+    public RateLimiter getRateLimiter() {
+      return rateLimiter;
+    }
+
     /** Returns a readable description of the current merge
      *  state. */
     public String segString(Directory dir) {
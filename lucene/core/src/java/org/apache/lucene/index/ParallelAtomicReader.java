@@ -230,6 +230,14 @@ public class ParallelAtomicReader extends AtomicReader {
       reader.document(docID, visitor);
     }
   }
+
+  @Override
+  public void document(int[] docIDs, StoredFieldVisitor[] visitors) throws IOException {
+    ensureOpen();
+    for (final AtomicReader reader: storedFieldsReaders) {
+      reader.document(docIDs, visitors);
+    }
+  }
   
   @Override
   public Fields getTermVectors(int docID) throws IOException {
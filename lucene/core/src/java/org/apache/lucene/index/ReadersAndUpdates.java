@@ -18,7 +18,9 @@ package org.apache.lucene.index;
  */
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -33,6 +35,7 @@ import org.apache.lucene.codecs.FieldInfosFormat;
 import org.apache.lucene.codecs.LiveDocsFormat;
 import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FlushInfo;
 import org.apache.lucene.store.IOContext;
@@ -41,11 +44,22 @@ import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.MutableBits;
+import org.apache.lucene.util.Version;
 
 // Used by IndexWriter to hold open SegmentReaders (for
 // searching or merging), plus pending deletes and updates,
 // for a given segment
 class ReadersAndUpdates {
+
+  // Updates that touch less than 1 out of STACKED_UPDATES_RATIO documents of
+  // a segment are written as a sparse generation that readers overlay on top
+  // of the current values of the field, instead of rewriting all values.
+  static final int STACKED_UPDATES_RATIO = 100;
+
+  // Maximum number of generations that a field's current generation may
+  // stack on. Once reached, the next update rewrites (compacts) the field.
+  static final int MAX_STACKED_DV_GENS = 8;
+
   // Not final because we replace (clone) when we need to
   // change it and it's been shared:
   public final SegmentCommitInfo info;
@@ -294,6 +308,61 @@ class ReadersAndUpdates {
     return true;
   }
   
+  // Returns true if the given updates can be written as a generation that only
+  // holds the updated documents, stacked on top of the current values of the
+  // field. This is only the case if the updates are few, and if the field
+  // already has doc values of the same type (so that the older generations
+  // provide values for all other documents).
+  private boolean canStackUpdates(FieldInfo fieldInfo, DocValuesFieldUpdates.Iterator updatesIter, SegmentReader reader) {
+    final Version ver = info.info.getVersion();
+    if (ver == null || !ver.onOrAfter(Version.LUCENE_4_9_0)) {
+      // pre-4.9 segments may share a docValues generation across fields
+      return false;
+    }
+    final FieldInfo current = reader.getFieldInfos().fieldInfo(fieldInfo.name);
+    if (current == null || current.getDocValuesType() != fieldInfo.getDocValuesType()) {
+      return false;
+    }
+    if (fieldInfo.getStackedDocValuesGens().length >= MAX_STACKED_DV_GENS) {
+      // compact
+      return false;
+    }
+    final int maxUpdates = reader.maxDoc() / STACKED_UPDATES_RATIO;
+    int numUpdates = 0;
+    updatesIter.reset();
+    while (updatesIter.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+      if (++numUpdates >= maxUpdates) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Records the generation that the new generation of the field stacks on, or
+  // clears the stack if the new generation holds all values of the field.
+  private static void stackDocValuesGen(FieldInfo fieldInfo, boolean stack) {
+    if (stack) {
+      final long[] stackedGens = fieldInfo.getStackedDocValuesGens();
+      final long[] newStackedGens = Arrays.copyOf(stackedGens, stackedGens.length + 1);
+      newStackedGens[stackedGens.length] = fieldInfo.getDocValuesGen();
+      fieldInfo.setStackedDocValuesGens(newStackedGens);
+    } else {
+      fieldInfo.setStackedDocValuesGens(new long[0]);
+    }
+  }
+
+  // Returns the files that hold the values of the field: the ones created for
+  // its new generation, plus the ones of the generations it stacks on.
+  private Set<String> docValuesUpdatesFiles(FieldInfo fieldInfo, Set<String> createdFiles, boolean stack) {
+    final Set<String> previousFiles = info.getDocValuesUpdatesFiles().get(fieldInfo.number);
+    if (stack == false || previousFiles == null) {
+      return createdFiles;
+    }
+    final Set<String> files = new HashSet<>(previousFiles);
+    files.addAll(createdFiles);
+    return files;
+  }
+
   @SuppressWarnings("synthetic-access")
   private void handleNumericDVUpdates(FieldInfos infos, Map<String,NumericDocValuesFieldUpdates> updates,
       Directory dir, DocValuesFormat dvFormat, final SegmentReader reader, Map<Integer,Set<String>> fieldFiles) throws IOException {
@@ -307,6 +376,9 @@ class ReadersAndUpdates {
       final IOContext updatesContext = new IOContext(new FlushInfo(info.info.getDocCount(), estUpdatesSize));
       final FieldInfo fieldInfo = infos.fieldInfo(field);
       assert fieldInfo != null;
+      final NumericDocValuesFieldUpdates.Iterator updatesIter = fieldUpdates.iterator();
+      final boolean stack = canStackUpdates(fieldInfo, updatesIter, reader);
+      stackDocValuesGen(fieldInfo, stack);
       fieldInfo.setDocValuesGen(nextDocValuesGen);
       final FieldInfos fieldInfos = new FieldInfos(new FieldInfo[] { fieldInfo });
       // separately also track which files were created for this gen
@@ -318,7 +390,6 @@ class ReadersAndUpdates {
           final NumericDocValues currentValues = reader.getNumericDocValues(field);
           final Bits docsWithField = reader.getDocsWithField(field);
           final int maxDoc = reader.maxDoc();
-          final NumericDocValuesFieldUpdates.Iterator updatesIter = fieldUpdates.iterator();
           @Override
           public Iterator<Number> iterator() {
             updatesIter.reset();
@@ -344,8 +415,9 @@ class ReadersAndUpdates {
                 } else {
                   // no update for this document
                   assert curDoc < updateDoc;
-                  if (currentValues != null && docsWithField.get(curDoc)) {
+                  if (!stack && currentValues != null && docsWithField.get(curDoc)) {
                     // only read the current value if the document had a value before
+                    // and if the new generation does not stack on the current one
                     return currentValues.get(curDoc);
                   } else {
                     return null;
@@ -363,7 +435,7 @@ class ReadersAndUpdates {
       }
       info.advanceDocValuesGen();
       assert !fieldFiles.containsKey(fieldInfo.number);
-      fieldFiles.put(fieldInfo.number, trackingDir.getCreatedFiles());
+      fieldFiles.put(fieldInfo.number, docValuesUpdatesFiles(fieldInfo, trackingDir.getCreatedFiles(), stack));
     }
   }
 
@@ -380,6 +452,9 @@ class ReadersAndUpdates {
       final IOContext updatesContext = new IOContext(new FlushInfo(info.info.getDocCount(), estUpdatesSize));
       final FieldInfo fieldInfo = infos.fieldInfo(field);
       assert fieldInfo != null;
+      final BinaryDocValuesFieldUpdates.Iterator updatesIter = fieldUpdates.iterator();
+      final boolean stack = canStackUpdates(fieldInfo, updatesIter, reader);
+      stackDocValuesGen(fieldInfo, stack);
       fieldInfo.setDocValuesGen(nextDocValuesGen);
       final FieldInfos fieldInfos = new FieldInfos(new FieldInfo[] { fieldInfo });
       // separately also track which files were created for this gen
@@ -391,7 +466,6 @@ class ReadersAndUpdates {
           final BinaryDocValues currentValues = reader.getBinaryDocValues(field);
           final Bits docsWithField = reader.getDocsWithField(field);
           final int maxDoc = reader.maxDoc();
-          final BinaryDocValuesFieldUpdates.Iterator updatesIter = fieldUpdates.iterator();
           @Override
           public Iterator<BytesRef> iterator() {
             updatesIter.reset();
@@ -417,8 +491,9 @@ class ReadersAndUpdates {
                 } else {
                   // no update for this document
                   assert curDoc < updateDoc;
-                  if (currentValues != null && docsWithField.get(curDoc)) {
+                  if (!stack && currentValues != null && docsWithField.get(curDoc)) {
                     // only read the current value if the document had a value before
+                    // and if the new generation does not stack on the current one
                     return currentValues.get(curDoc);
                   } else {
                     return null;
@@ -436,7 +511,7 @@ class ReadersAndUpdates {
       }
       info.advanceDocValuesGen();
       assert !fieldFiles.containsKey(fieldInfo.number);
-      fieldFiles.put(fieldInfo.number, trackingDir.getCreatedFiles());
+      fieldFiles.put(fieldInfo.number, docValuesUpdatesFiles(fieldInfo, trackingDir.getCreatedFiles(), stack));
     }
   }
   
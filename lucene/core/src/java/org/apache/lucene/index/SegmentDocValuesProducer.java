@@ -33,6 +33,7 @@ import org.apache.lucene.store.IOContext;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Accountables;
 import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.lucene.util.Version;
 
@@ -69,11 +70,26 @@ class SegmentDocValuesProducer extends DocValuesProducer {
             }
             dvProducersByField.put(fi.name, baseProducer);
           } else {
-            assert !dvGens.contains(docValuesGen);
-            final DocValuesProducer dvp = segDocValues.getDocValuesProducer(docValuesGen, si, IOContext.READ, dir, dvFormat, new FieldInfos(new FieldInfo[] { fi }));
-            dvGens.add(docValuesGen);
-            dvProducers.add(dvp);
-            dvProducersByField.put(fi.name, dvp);
+            final long[] stackedGens = fi.getStackedDocValuesGens();
+            // the newest generation comes last
+            final DocValuesProducer[] stack = new DocValuesProducer[stackedGens.length + 1];
+            for (int i = 0; i < stack.length; ++i) {
+              final long gen = i < stackedGens.length ? stackedGens[i] : docValuesGen;
+              if (gen == -1) {
+                if (baseProducer == null) {
+                  baseProducer = segDocValues.getDocValuesProducer(gen, si, IOContext.READ, dir, dvFormat, fieldInfos);
+                  dvGens.add(gen);
+                  dvProducers.add(baseProducer);
+                }
+                stack[i] = baseProducer;
+              } else {
+                assert !dvGens.contains(gen);
+                stack[i] = segDocValues.getDocValuesProducer(gen, si, IOContext.READ, dir, dvFormat, new FieldInfos(new FieldInfo[] { fi }));
+                dvGens.add(gen);
+                dvProducers.add(stack[i]);
+              }
+            }
+            dvProducersByField.put(fi.name, stack.length == 1 ? stack[0] : new StackedDocValuesProducer(stack));
           }
         }
       } else {
@@ -202,4 +218,137 @@ class SegmentDocValuesProducer extends DocValuesProducer {
   public String toString() {
     return getClass().getSimpleName() + "(producers=" + dvProducers.size() + ")";
   }
+
+  /**
+   * Overlays the values of generations that only hold the documents that were
+   * updated on top of the values of older generations of the same field.
+   * Only numeric and binary fields can be updated, hence stacked.
+   */
+  private static class StackedDocValuesProducer extends DocValuesProducer {
+
+    private static final long BASE_RAM_BYTES_USED =
+        RamUsageEstimator.shallowSizeOfInstance(StackedDocValuesProducer.class);
+
+    // oldest first
+    private final DocValuesProducer[] producers;
+
+    StackedDocValuesProducer(DocValuesProducer[] producers) {
+      assert producers.length > 1;
+      this.producers = producers;
+    }
+
+    private Bits[] getStackedDocsWithField(FieldInfo field) throws IOException {
+      final Bits[] docsWithField = new Bits[producers.length];
+      for (int i = 1; i < producers.length; ++i) {
+        docsWithField[i] = producers[i].getDocsWithField(field);
+      }
+      return docsWithField;
+    }
+
+    @Override
+    public NumericDocValues getNumeric(FieldInfo field) throws IOException {
+      final NumericDocValues[] values = new NumericDocValues[producers.length];
+      for (int i = 0; i < producers.length; ++i) {
+        values[i] = producers[i].getNumeric(field);
+      }
+      final Bits[] docsWithField = getStackedDocsWithField(field);
+      return new NumericDocValues() {
+        @Override
+        public long get(int docID) {
+          int i = values.length - 1;
+          while (i > 0 && docsWithField[i].get(docID) == false) {
+            --i;
+          }
+          return values[i].get(docID);
+        }
+      };
+    }
+
+    @Override
+    public BinaryDocValues getBinary(FieldInfo field) throws IOException {
+      final BinaryDocValues[] values = new BinaryDocValues[producers.length];
+      for (int i = 0; i < producers.length; ++i) {
+        values[i] = producers[i].getBinary(field);
+      }
+      final Bits[] docsWithField = getStackedDocsWithField(field);
+      return new BinaryDocValues() {
+        @Override
+        public BytesRef get(int docID) {
+          int i = values.length - 1;
+          while (i > 0 && docsWithField[i].get(docID) == false) {
+            --i;
+          }
+          return values[i].get(docID);
+        }
+      };
+    }
+
+    @Override
+    public SortedDocValues getSorted(FieldInfo field) throws IOException {
+      throw new IllegalStateException("field=\"" + field.name + "\" was indexed as " + field.getDocValuesType() + " which cannot be stacked");
+    }
+
+    @Override
+    public SortedNumericDocValues getSortedNumeric(FieldInfo field) throws IOException {
+      throw new IllegalStateException("field=\"" + field.name + "\" was indexed as " + field.getDocValuesType() + " which cannot be stacked");
+    }
+
+    @Override
+    public SortedSetDocValues getSortedSet(FieldInfo field) throws IOException {
+      throw new IllegalStateException("field=\"" + field.name + "\" was indexed as " + field.getDocValuesType() + " which cannot be stacked");
+    }
+
+    @Override
+    public Bits getDocsWithField(FieldInfo field) throws IOException {
+      final Bits base = producers[0].getDocsWithField(field);
+      if (base instanceof Bits.MatchAllBits) {
+        // stacked generations only add values
+        return base;
+      }
+      final Bits[] docsWithField = getStackedDocsWithField(field);
+      docsWithField[0] = base;
+      return new Bits() {
+        @Override
+        public boolean get(int index) {
+          for (int i = docsWithField.length - 1; i >= 0; --i) {
+            if (docsWithField[i].get(index)) {
+              return true;
+            }
+          }
+          return false;
+        }
+
+        @Override
+        public int length() {
+          return base.length();
+        }
+      };
+    }
+
+    @Override
+    public void checkIntegrity() throws IOException {
+      // the stacked producers are checked by the enclosing producer
+    }
+
+    @Override
+    public void close() throws IOException {
+      throw new UnsupportedOperationException(); // the stacked producers are ref-counted
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      // the stacked producers are accounted by the enclosing producer
+      return BASE_RAM_BYTES_USED + RamUsageEstimator.shallowSizeOf(producers);
+    }
+
+    @Override
+    public Iterable<? extends Accountable> getChildResources() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public String toString() {
+      return getClass().getSimpleName() + "(gens=" + producers.length + ")";
+    }
+  }
 }
@@ -261,6 +261,17 @@ public final class SegmentReader extends AtomicReader implements Accountable {
     getFieldsReader().visitDocument(docID, visitor);
   }
 
+  @Override
+  public void document(int[] docIDs, StoredFieldVisitor[] visitors) throws IOException {
+    checkDocumentsArgs(docIDs, visitors);
+    if (docIDs.length > 0) {
+      // docIDs are sorted
+      checkBounds(docIDs[0]);
+      checkBounds(docIDs[docIDs.length - 1]);
+      getFieldsReader().visitDocuments(docIDs, visitors);
+    }
+  }
+
   @Override
   public FieldsProducer fields() {
     ensureOpen();
@@ -44,11 +44,16 @@ abstract class TermsHash {
 
   final boolean trackAllocations;
 
+  // true if buffers are recycled, in which case they must be zero-filled
+  // since slices expect fresh buffers
+  final boolean zeroFillBuffers;
+
   TermsHash(final DocumentsWriterPerThread docWriter, boolean trackAllocations, TermsHash nextTermsHash) {
     this.docState = docWriter.docState;
     this.trackAllocations = trackAllocations; 
     this.nextTermsHash = nextTermsHash;
     this.bytesUsed = trackAllocations ? docWriter.bytesUsed : Counter.newCounter();
+    this.zeroFillBuffers = docWriter.recycleBlocks;
     intPool = new IntBlockPool(docWriter.intBlockAllocator);
     bytePool = new ByteBlockPool(docWriter.byteBlockAllocator);
 
@@ -71,9 +76,27 @@ abstract class TermsHash {
 
   // Clear all state
   void reset() {
-    // we don't reuse so we drop everything and don't fill with 0
-    intPool.reset(false, false); 
-    bytePool.reset(false, false);
+    if (zeroFillBuffers) {
+      // term vectors reset after every document: keep the first buffers so
+      // that this doesn't go through the allocator, which is shared by all
+      // DWPTs when buffers are recycled
+      intPool.reset(true, true);
+      bytePool.reset(true, true);
+    } else {
+      // we don't reuse so we drop everything and don't fill with 0
+      intPool.reset(false, false); 
+      bytePool.reset(false, false);
+    }
+  }
+
+  /** Hands all buffers back to the allocator once they have been flushed. */
+  void recycle() {
+    // only fill with 0 if the allocator hands the buffers over to other pools
+    intPool.reset(zeroFillBuffers, false);
+    bytePool.reset(zeroFillBuffers, false);
+    if (nextTermsHash != null) {
+      nextTermsHash.recycle();
+    }
   }
 
   void flush(Map<String,TermsHashPerField> fieldsToFlush, final SegmentWriteState state) throws IOException {
@@ -67,6 +67,15 @@ public class AutomatonQuery extends MultiTermQuery {
     this.compiled = new CompiledAutomaton(automaton);
   }
 
+  /** Create a new AutomatonQuery from an automaton that is already compiled,
+   *  eg. because it was found in a {@link CompiledAutomatonCache}. */
+  AutomatonQuery(final Term term, CompiledAutomatonCache.Entry entry) {
+    super(term.field());
+    this.term = term;
+    this.automaton = entry.automaton;
+    this.compiled = entry.compiled;
+  }
+
   @Override
   protected TermsEnum getTermsEnum(Terms terms, AttributeSource atts) throws IOException {
     return compiled.getTermsEnum(terms);
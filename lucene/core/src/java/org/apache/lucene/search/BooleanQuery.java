@@ -395,7 +395,7 @@ public class BooleanQuery extends Query implements Iterable<BooleanClause> {
       
       // pure disjunction
       if (required.isEmpty()) {
-        return excl(opt(optional, minShouldMatch, disableCoord), prohibited);
+        return excl(opt(optional, minShouldMatch, disableCoord, true), prohibited);
       }
       
       // conjunction-disjunction mix:
@@ -405,7 +405,7 @@ public class BooleanQuery extends Query implements Iterable<BooleanClause> {
       // number of optional terms into the coord calculation
       
       Scorer req = excl(req(required, true), prohibited);
-      Scorer opt = opt(optional, minShouldMatch, true);
+      Scorer opt = opt(optional, minShouldMatch, true, false);
 
       // TODO: clean this up: its horrible
       if (disableCoord) {
@@ -485,7 +485,7 @@ public class BooleanQuery extends Query implements Iterable<BooleanClause> {
       }
     }
     
-    private Scorer opt(List<Scorer> optional, int minShouldMatch, boolean disableCoord) throws IOException {
+    private Scorer opt(List<Scorer> optional, int minShouldMatch, boolean disableCoord, boolean topLevel) throws IOException {
       if (optional.size() == 1) {
         Scorer opt = optional.get(0);
         if (!disableCoord && maxCoord > 1) {
@@ -504,6 +504,14 @@ public class BooleanQuery extends Query implements Iterable<BooleanClause> {
         if (minShouldMatch > 1) {
           return new MinShouldMatchSumScorer(this, optional, minShouldMatch, coords);
         } else {
+          if (topLevel) {
+            // only the top-level scorer may be told the min competitive score
+            // by the collector, which is when WAND can skip documents
+            TermScorer[] termScorers = termScorers(optional);
+            if (termScorers != null && WANDScorer.canUse(termScorers)) {
+              return new WANDScorer(this, termScorers, coords);
+            }
+          }
           return new DisjunctionSumScorer(this, 
                                           optional.toArray(new Scorer[optional.size()]), 
                                           coords);
@@ -511,6 +519,20 @@ public class BooleanQuery extends Query implements Iterable<BooleanClause> {
       }
     }
     
+    /** Returns the given scorers as {@link TermScorer}s, or null if
+     *  some of them are not term scorers. */
+    private TermScorer[] termScorers(List<Scorer> scorers) {
+      TermScorer[] termScorers = new TermScorer[scorers.size()];
+      for (int i = 0; i < termScorers.length; i++) {
+        Scorer scorer = scorers.get(i);
+        if (!(scorer instanceof TermScorer)) {
+          return null;
+        }
+        termScorers[i] = (TermScorer) scorer;
+      }
+      return termScorers;
+    }
+    
     private float[] coords() {
       float[] coords = new float[maxCoord+1];
       coords[0] = 0F;
@@ -73,23 +73,7 @@ final class BooleanScorer extends BulkScorer {
     
     @Override
     public void collect(final int doc) throws IOException {
-      final BucketTable table = bucketTable;
-      final int i = doc & BucketTable.MASK;
-      final Bucket bucket = table.buckets[i];
-      
-      if (bucket.doc != doc) {                    // invalid bucket
-        bucket.doc = doc;                         // set doc
-        bucket.score = scorer.score();            // initialize score
-        bucket.bits = mask;                       // initialize mask
-        bucket.coord = 1;                         // initialize coord
-
-        bucket.next = table.first;                // push onto valid list
-        table.first = bucket;
-      } else {                                    // valid bucket
-        bucket.score += scorer.score();           // increment score
-        bucket.bits |= mask;                      // add bits in mask
-        bucket.coord++;                           // increment coord
-      }
+      bucketTable.add(doc, scorer.score(), mask);
     }
     
     @Override
@@ -131,6 +115,27 @@ final class BooleanScorer extends BulkScorer {
       }
     }
 
+    /** Record a match of a clause whose mask is <code>mask</code> on
+     *  <code>doc</code>. */
+    void add(int doc, float score, int mask) {
+      final int i = doc & MASK;
+      final Bucket bucket = buckets[i];
+      
+      if (bucket.doc != doc) {                    // invalid bucket
+        bucket.doc = doc;                         // set doc
+        bucket.score = score;                     // initialize score
+        bucket.bits = mask;                       // initialize mask
+        bucket.coord = 1;                         // initialize coord
+
+        bucket.next = first;                      // push onto valid list
+        first = bucket;
+      } else {                                    // valid bucket
+        bucket.score += score;                    // increment score
+        bucket.bits |= mask;                      // add bits in mask
+        bucket.coord++;                           // increment coord
+      }
+    }
+
     public LeafCollector newCollector(int mask) {
       return new BooleanScorerCollector(mask, this);
     }
@@ -143,12 +148,13 @@ final class BooleanScorer extends BulkScorer {
     // TODO: re-enable this if BQ ever sends us required clauses
     //public boolean required = false;
     public boolean prohibited;
+    public int mask;
     public LeafCollector collector;
     public SubScorer next;
     public boolean more;
 
     public SubScorer(BulkScorer scorer, boolean required, boolean prohibited,
-        LeafCollector collector, SubScorer next) {
+        int mask, LeafCollector collector, SubScorer next) {
       if (required) {
         throw new IllegalArgumentException("this scorer cannot handle required=true");
       }
@@ -157,6 +163,7 @@ final class BooleanScorer extends BulkScorer {
       // TODO: re-enable this if BQ ever sends us required clauses
       //this.required = required;
       this.prohibited = prohibited;
+      this.mask = mask;
       this.collector = collector;
       this.next = next;
     }
@@ -181,11 +188,11 @@ final class BooleanScorer extends BulkScorer {
     this.weight = weight;
 
     for (BulkScorer scorer : optionalScorers) {
-      scorers = new SubScorer(scorer, false, false, bucketTable.newCollector(0), scorers);
+      scorers = new SubScorer(scorer, false, false, 0, bucketTable.newCollector(0), scorers);
     }
     
     for (BulkScorer scorer : prohibitedScorers) {
-      scorers = new SubScorer(scorer, false, true, bucketTable.newCollector(PROHIBITED_MASK), scorers);
+      scorers = new SubScorer(scorer, false, true, PROHIBITED_MASK, bucketTable.newCollector(PROHIBITED_MASK), scorers);
     }
 
     coordFactors = new float[optionalScorers.size() + 1];
@@ -251,7 +258,12 @@ final class BooleanScorer extends BulkScorer {
       end += BucketTable.SIZE;
       for (SubScorer sub = scorers; sub != null; sub = sub.next) {
         if (sub.more) {
-          sub.more = sub.scorer.score(sub.collector, end);
+          if (sub.scorer instanceof TermBulkScorer) {
+            // fill buckets directly from blocks of decoded postings
+            sub.more = ((TermBulkScorer) sub.scorer).score(bucketTable, sub.mask, end);
+          } else {
+            sub.more = sub.scorer.score(sub.collector, end);
+          }
           more |= sub.more;
         }
       }
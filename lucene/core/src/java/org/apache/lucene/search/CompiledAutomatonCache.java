@@ -0,0 +1,189 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.lucene.util.automaton.Automaton;
+import org.apache.lucene.util.automaton.CompiledAutomaton;
+
+/**
+ * A cache of the {@link CompiledAutomaton}s of {@link RegexpQuery},
+ * {@link WildcardQuery} and {@link FuzzyQuery}, keyed by their pattern and
+ * options, that evicts entries using a LRU (least-recently-used) policy in
+ * order to hold at most a given number of entries. Parsing, determinizing
+ * and compiling an automaton is often more costly than running the query
+ * itself, and user-entered patterns tend to repeat.
+ *
+ * This class is thread-safe.
+ *
+ * Queries look up the {@link #getDefault() default} cache when they are
+ * created, and there is no default cache unless one is set:
+ * <pre class="prettyprint">
+ *   CompiledAutomatonCache.setDefault(new CompiledAutomatonCache(1000));
+ * </pre>
+ *
+ * This cache exposes some statistics ({@link #getHitCount() hit count},
+ * {@link #getMissCount() miss count}, {@link #getCacheSize() number of cache
+ * entries} and {@link #getEvictionCount() number of evicted entries}).
+ *
+ * @lucene.experimental
+ */
+public class CompiledAutomatonCache {
+
+  private static volatile CompiledAutomatonCache defaultCache;
+
+  /** Return the cache that is used by queries, or null if automata are not cached. */
+  public static CompiledAutomatonCache getDefault() {
+    return defaultCache;
+  }
+
+  /** Set the cache that is used by queries, or null to disable caching. */
+  public static void setDefault(CompiledAutomatonCache cache) {
+    defaultCache = cache;
+  }
+
+  /** An automaton along with its compiled form. */
+  static final class Entry {
+    final Automaton automaton;
+    final CompiledAutomaton compiled;
+
+    Entry(Automaton automaton, CompiledAutomaton compiled) {
+      this.automaton = automaton;
+      this.compiled = compiled;
+    }
+  }
+
+  /** Builds an automaton on cache misses. */
+  static abstract class Loader {
+    abstract Entry load();
+  }
+
+  /** Return the entry for the given key from the default cache, or build it
+   *  with the loader if there is no default cache or no such entry. */
+  static Entry getOrLoad(Object key, Loader loader) {
+    final CompiledAutomatonCache cache = defaultCache;
+    if (cache == null) {
+      return loader.load();
+    }
+    Entry entry = cache.get(key);
+    if (entry == null) {
+      // several threads might build the same automaton concurrently, but
+      // we do not want to hold the lock while doing so
+      entry = loader.load();
+      cache.put(key, entry);
+    }
+    return entry;
+  }
+
+  private final int maxSize;
+  private final Map<Object, Entry> cache;
+
+  // these variables are volatile so that we do not need to sync reads
+  // but increments need to be performed under the lock
+  private volatile long hitCount;
+  private volatile long missCount;
+  private volatile long evictionCount;
+
+  /**
+   * Create a new instance that will cache at most <code>maxSize</code>
+   * automata.
+   */
+  public CompiledAutomatonCache(int maxSize) {
+    if (maxSize < 0) {
+      throw new IllegalArgumentException("maxSize must be >= 0, got " + maxSize);
+    }
+    this.maxSize = maxSize;
+    cache = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  synchronized Entry get(Object key) {
+    final Entry entry = cache.get(key);
+    if (entry == null) {
+      missCount += 1;
+    } else {
+      hitCount += 1;
+    }
+    return entry;
+  }
+
+  synchronized void put(Object key, Entry entry) {
+    cache.put(key, entry);
+    for (Iterator<Entry> it = cache.values().iterator(); cache.size() > maxSize && it.hasNext(); ) {
+      it.next();
+      it.remove();
+      evictionCount += 1;
+    }
+  }
+
+  /** Remove all entries from this cache. */
+  public synchronized void clear() {
+    cache.clear();
+  }
+
+  /**
+   * Return the total number of times that an automaton has been looked up in
+   * this cache.
+   * @see #getHitCount()
+   * @see #getMissCount()
+   */
+  public final long getTotalCount() {
+    return getHitCount() + getMissCount();
+  }
+
+  /**
+   * Over the {@link #getTotalCount() total} number of times that an
+   * automaton has been looked up, return how many times it was found in the
+   * cache.
+   * @see #getTotalCount()
+   * @see #getMissCount()
+   */
+  public final long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * Over the {@link #getTotalCount() total} number of times that an
+   * automaton has been looked up, return how many times it had to be built.
+   * @see #getTotalCount()
+   * @see #getHitCount()
+   */
+  public final long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * Return the number of automata which are currently stored in the cache.
+   * @see #getEvictionCount()
+   */
+  public final synchronized long getCacheSize() {
+    return cache.size();
+  }
+
+  /**
+   * Return the number of automata that have been removed from the cache in
+   * order to stay under the maximum configured size.
+   * @see #getCacheSize()
+   */
+  public final long getEvictionCount() {
+    return evictionCount;
+  }
+
+}
@@ -0,0 +1,172 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.lucene.util.CollectionUtil;
+
+/** A conjunction of {@link DocIdSetIterator}s: iterates over the doc IDs
+ *  that are present in each given iterator. {@link Scorer}s that support
+ *  {@link Scorer#asTwoPhaseIterator() two-phase iteration} are intersected
+ *  through their approximation, and matches are only confirmed once all
+ *  approximations are on the same document. */
+class ConjunctionDISI extends DocIdSetIterator {
+
+  /** Create a conjunction over the provided iterators, taking advantage of
+   *  {@link TwoPhaseIterator}s. */
+  static ConjunctionDISI intersect(List<? extends DocIdSetIterator> iterators) {
+    final List<DocIdSetIterator> allIterators = new ArrayList<>();
+    final List<TwoPhaseIterator> twoPhaseIterators = new ArrayList<>();
+    for (DocIdSetIterator iterator : iterators) {
+      TwoPhaseIterator twoPhaseIterator = null;
+      if (iterator instanceof Scorer) {
+        twoPhaseIterator = ((Scorer) iterator).asTwoPhaseIterator();
+      }
+      if (twoPhaseIterator == null) {
+        allIterators.add(iterator);
+      } else {
+        allIterators.add(twoPhaseIterator.approximation());
+        twoPhaseIterators.add(twoPhaseIterator);
+      }
+    }
+    if (twoPhaseIterators.isEmpty()) {
+      return new ConjunctionDISI(allIterators);
+    } else {
+      return new TwoPhaseConjunctionDISI(allIterators, twoPhaseIterators);
+    }
+  }
+
+  final DocIdSetIterator lead;
+  final DocIdSetIterator[] others;
+
+  ConjunctionDISI(List<? extends DocIdSetIterator> iterators) {
+    if (iterators.isEmpty()) {
+      throw new IllegalArgumentException("Cannot intersect zero iterators");
+    }
+    final List<DocIdSetIterator> sorted = new ArrayList<>(iterators);
+    // Sort the array the first time to allow the least frequent iterator to
+    // lead the matching.
+    CollectionUtil.timSort(sorted, new Comparator<DocIdSetIterator>() {
+      @Override
+      public int compare(DocIdSetIterator o1, DocIdSetIterator o2) {
+        return Long.compare(o1.cost(), o2.cost());
+      }
+    });
+    lead = sorted.get(0);
+    others = sorted.subList(1, sorted.size()).toArray(new DocIdSetIterator[sorted.size() - 1]);
+  }
+
+  /** Confirm that the current doc, on which all iterators are positioned,
+   *  is a match. */
+  boolean matches() throws IOException {
+    return true;
+  }
+
+  /** Return a {@link TwoPhaseIterator} view of this conjunction, or
+   *  <code>null</code> if none of the intersected iterators supports
+   *  two-phase iteration. */
+  TwoPhaseIterator asTwoPhaseIterator() {
+    return null;
+  }
+
+  private int doNext(int doc) throws IOException {
+    advanceHead:
+    for (;;) {
+      if (doc == NO_MORE_DOCS) {
+        // it is only ok to call matches() when positioned
+        return NO_MORE_DOCS;
+      }
+      for (DocIdSetIterator other : others) {
+        // invariant: other.docID() <= doc at this point.
+        // other.docID() may already be equal to doc if we "continued advanceHead"
+        // on the previous iteration and the advance on the lead exactly matched.
+        if (other.docID() < doc) {
+          final int next = other.advance(doc);
+          if (next > doc) {
+            // iterator beyond the current doc - advance lead to the new highest doc.
+            doc = lead.advance(next);
+            continue advanceHead;
+          }
+        }
+      }
+      // success - all iterators are on the same doc
+      if (matches()) {
+        return doc;
+      }
+      doc = lead.nextDoc();
+    }
+  }
+
+  @Override
+  public int advance(int target) throws IOException {
+    return doNext(lead.advance(target));
+  }
+
+  @Override
+  public int docID() {
+    return lead.docID();
+  }
+
+  @Override
+  public int nextDoc() throws IOException {
+    return doNext(lead.nextDoc());
+  }
+
+  @Override
+  public long cost() {
+    return lead.cost();
+  }
+
+  /** A conjunction that needs to confirm matches of some of its iterators. */
+  private static final class TwoPhaseConjunctionDISI extends ConjunctionDISI {
+
+    private final TwoPhaseIterator[] twoPhaseIterators;
+    // iterates over the same approximations, without confirming matches
+    private final ConjunctionDISI approximation;
+
+    TwoPhaseConjunctionDISI(List<? extends DocIdSetIterator> iterators, List<TwoPhaseIterator> twoPhaseIterators) {
+      super(iterators);
+      this.twoPhaseIterators = twoPhaseIterators.toArray(new TwoPhaseIterator[twoPhaseIterators.size()]);
+      this.approximation = new ConjunctionDISI(iterators);
+    }
+
+    @Override
+    boolean matches() throws IOException {
+      for (TwoPhaseIterator twoPhaseIterator : twoPhaseIterators) {
+        if (twoPhaseIterator.matches() == false) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    TwoPhaseIterator asTwoPhaseIterator() {
+      return new TwoPhaseIterator(approximation) {
+        @Override
+        public boolean matches() throws IOException {
+          return TwoPhaseConjunctionDISI.this.matches();
+        }
+      };
+    }
+  }
+}
@@ -19,16 +19,13 @@ package org.apache.lucene.search;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
-
-import org.apache.lucene.util.ArrayUtil;
 
 /** Scorer for conjunctions, sets of queries, all of which are required. */
 class ConjunctionScorer extends Scorer {
-  protected int lastDoc = -1;
-  protected final DocsAndFreqs[] docsAndFreqs;
-  private final DocsAndFreqs lead;
+  private final ConjunctionDISI disi;
+  private final Scorer[] scorers;
   private final float coord;
 
   ConjunctionScorer(Weight weight, Scorer[] scorers) {
@@ -38,105 +35,58 @@ class ConjunctionScorer extends Scorer {
   ConjunctionScorer(Weight weight, Scorer[] scorers, float coord) {
     super(weight);
     this.coord = coord;
-    this.docsAndFreqs = new DocsAndFreqs[scorers.length];
-    for (int i = 0; i < scorers.length; i++) {
-      docsAndFreqs[i] = new DocsAndFreqs(scorers[i]);
-    }
-    // Sort the array the first time to allow the least frequent DocsEnum to
-    // lead the matching.
-    ArrayUtil.timSort(docsAndFreqs, new Comparator<DocsAndFreqs>() {
-      @Override
-      public int compare(DocsAndFreqs o1, DocsAndFreqs o2) {
-        return Long.compare(o1.cost, o2.cost);
-      }
-    });
-
-    lead = docsAndFreqs[0]; // least frequent DocsEnum leads the intersection
+    this.scorers = scorers;
+    // the least costly iterator leads the intersection, and positions are
+    // only verified on documents that match all approximations
+    this.disi = ConjunctionDISI.intersect(Arrays.asList(scorers));
   }
 
-  private int doNext(int doc) throws IOException {
-    for(;;) {
-      // doc may already be NO_MORE_DOCS here, but we don't check explicitly
-      // since all scorers should advance to NO_MORE_DOCS, match, then
-      // return that value.
-      advanceHead: for(;;) {
-        for (int i = 1; i < docsAndFreqs.length; i++) {
-          // invariant: docsAndFreqs[i].doc <= doc at this point.
-
-          // docsAndFreqs[i].doc may already be equal to doc if we "broke advanceHead"
-          // on the previous iteration and the advance on the lead scorer exactly matched.
-          if (docsAndFreqs[i].doc < doc) {
-            docsAndFreqs[i].doc = docsAndFreqs[i].scorer.advance(doc);
-
-            if (docsAndFreqs[i].doc > doc) {
-              // DocsEnum beyond the current doc - break and advance lead to the new highest doc.
-              doc = docsAndFreqs[i].doc;
-              break advanceHead;
-            }
-          }
-        }
-        // success - all DocsEnums are on the same doc
-        return doc;
-      }
-      // advance head for next iteration
-      doc = lead.doc = lead.scorer.advance(doc);
-    }
+  @Override
+  public TwoPhaseIterator asTwoPhaseIterator() {
+    return disi.asTwoPhaseIterator();
   }
 
   @Override
   public int advance(int target) throws IOException {
-    lead.doc = lead.scorer.advance(target);
-    return lastDoc = doNext(lead.doc);
+    return disi.advance(target);
   }
 
   @Override
   public int docID() {
-    return lastDoc;
+    return disi.docID();
   }
 
   @Override
   public int nextDoc() throws IOException {
-    lead.doc = lead.scorer.nextDoc();
-    return lastDoc = doNext(lead.doc);
+    return disi.nextDoc();
   }
 
   @Override
   public float score() throws IOException {
     // TODO: sum into a double and cast to float if we ever send required clauses to BS1
     float sum = 0.0f;
-    for (DocsAndFreqs docs : docsAndFreqs) {
-      sum += docs.scorer.score();
+    for (Scorer scorer : scorers) {
+      sum += scorer.score();
     }
     return sum * coord;
   }
   
   @Override
   public int freq() {
-    return docsAndFreqs.length;
+    return scorers.length;
   }
 
   @Override
   public long cost() {
-    return lead.scorer.cost();
+    return disi.cost();
   }
 
   @Override
   public Collection<ChildScorer> getChildren() {
-    ArrayList<ChildScorer> children = new ArrayList<>(docsAndFreqs.length);
-    for (DocsAndFreqs docs : docsAndFreqs) {
-      children.add(new ChildScorer(docs.scorer, "MUST"));
+    ArrayList<ChildScorer> children = new ArrayList<>(scorers.length);
+    for (Scorer scorer : scorers) {
+      children.add(new ChildScorer(scorer, "MUST"));
     }
     return children;
   }
-
-  static final class DocsAndFreqs {
-    final long cost;
-    final Scorer scorer;
-    int doc = -1;
-   
-    DocsAndFreqs(Scorer scorer) {
-      this.scorer = scorer;
-      this.cost = scorer.cost();
-    }
-  }
 }
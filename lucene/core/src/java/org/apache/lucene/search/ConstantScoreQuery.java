@@ -105,11 +105,13 @@ public class ConstantScoreQuery extends Query {
 
   protected class ConstantWeight extends Weight {
     private final Weight innerWeight;
+    private final Filter filter;
     private float queryNorm;
     private float queryWeight;
     
     public ConstantWeight(IndexSearcher searcher) throws IOException {
       this.innerWeight = (query == null) ? null : query.createWeight(searcher);
+      this.filter = (query == null) ? searcher.cacheFilter(ConstantScoreQuery.this.filter) : null;
     }
 
     @Override
@@ -18,7 +18,9 @@ package org.apache.lucene.search;
  */
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import org.apache.lucene.index.*;
 import org.apache.lucene.search.similarities.Similarity;
@@ -32,8 +34,6 @@ final class ExactPhraseScorer extends Scorer {
   private final int[] counts = new int[CHUNK];
   private final int[] gens = new int[CHUNK];
 
-  private final long cost;
-
   private final static class ChunkState {
     final DocsAndPositionsEnum posEnum;
     final int offset;
@@ -49,9 +49,8 @@ final class ExactPhraseScorer extends Scorer {
   }
 
   private final ChunkState[] chunkStates;
-  private final DocsAndPositionsEnum lead;
+  private final ConjunctionDISI conjunction;
 
-  private int docID = -1;
   private int freq;
 
   private final Similarity.SimScorer docScorer;
@@ -65,53 +64,40 @@ final class ExactPhraseScorer extends Scorer {
 
     endMinus1 = postings.length-1;
     
-    lead = postings[0].postings;
-    // min(cost)
-    cost = lead.cost();
-
+    final List<DocIdSetIterator> iterators = new ArrayList<>();
     for(int i=0;i<postings.length;i++) {
       chunkStates[i] = new ChunkState(postings[i].postings, -postings[i].position);
+      iterators.add(postings[i].postings);
     }
+    conjunction = ConjunctionDISI.intersect(iterators);
   }
-  
+
+  @Override
+  public TwoPhaseIterator asTwoPhaseIterator() {
+    return new TwoPhaseIterator(conjunction) {
+      @Override
+      public boolean matches() throws IOException {
+        return phraseFreq() > 0;
+      }
+    };
+  }
+
   private int doNext(int doc) throws IOException {
-    for(;;) {
-      // TODO: don't dup this logic from conjunctionscorer :)
-      advanceHead: for(;;) {
-        for (int i = 1; i < chunkStates.length; i++) {
-          final DocsAndPositionsEnum de = chunkStates[i].posEnum;
-          if (de.docID() < doc) {
-            int d = de.advance(doc);
-
-            if (d > doc) {
-              // DocsEnum beyond the current doc - break and advance lead to the new highest doc.
-              doc = d;
-              break advanceHead;
-            }
-          }
-        }
-        // all DocsEnums are on the same doc
-        if (doc == NO_MORE_DOCS) {
-          return doc;
-        } else if (phraseFreq() > 0) {
-          return doc;            // success: matches phrase
-        } else {
-          doc = lead.nextDoc();  // doesn't match phrase
-        }
+    for (;; doc = conjunction.nextDoc()) {
+      if (doc == NO_MORE_DOCS || phraseFreq() > 0) {
+        return doc;
       }
-      // advance head for next iteration
-      doc = lead.advance(doc);
     }
   }
 
   @Override
   public int nextDoc() throws IOException {
-    return docID = doNext(lead.nextDoc());
+    return doNext(conjunction.nextDoc());
   }
 
   @Override
   public int advance(int target) throws IOException {
-    return docID = doNext(lead.advance(target));
+    return doNext(conjunction.advance(target));
   }
 
   @Override
@@ -126,12 +112,12 @@ final class ExactPhraseScorer extends Scorer {
 
   @Override
   public int docID() {
-    return docID;
+    return conjunction.docID();
   }
 
   @Override
   public float score() {
-    return docScorer.score(docID, freq);
+    return docScorer.score(docID(), freq);
   }
 
   private int phraseFreq() throws IOException {
@@ -254,6 +240,6 @@ final class ExactPhraseScorer extends Scorer {
 
   @Override
   public long cost() {
-    return cost;
+    return conjunction.cost();
   }
 }
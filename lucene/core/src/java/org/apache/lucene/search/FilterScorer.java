@@ -65,6 +65,11 @@ abstract class FilterScorer extends Scorer {
     return in.advance(target);
   }
 
+  @Override
+  public TwoPhaseIterator asTwoPhaseIterator() {
+    return in.asTwoPhaseIterator();
+  }
+
   @Override
   public long cost() {
     return in.cost();
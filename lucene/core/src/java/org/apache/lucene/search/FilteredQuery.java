@@ -80,6 +80,7 @@ public class FilteredQuery extends Query {
   @Override
   public Weight createWeight(final IndexSearcher searcher) throws IOException {
     final Weight weight = query.createWeight (searcher);
+    final Filter filter = searcher.cacheFilter(this.filter);
     return new Weight() {
       
       @Override
@@ -157,42 +158,58 @@ public class FilteredQuery extends Query {
    * delegate scorer. This is useful if the filter computation is more expensive
    * than document scoring or if the filter has a linear running time to compute
    * the next matching doc like exact geo distances.
+   * If the delegate scorer supports two-phase iteration, the filter is checked
+   * before matches are confirmed.
    */
   private static final class QueryFirstScorer extends Scorer {
     private final Scorer scorer;
-    private int scorerDoc = -1;
+    private final DocIdSetIterator approximation;
+    private final TwoPhaseIterator twoPhaseIterator; // null if the scorer has no approximation
     private final Bits filterBits;
 
     protected QueryFirstScorer(Weight weight, Bits filterBits, Scorer other) {
       super(weight);
       this.scorer = other;
       this.filterBits = filterBits;
+      this.twoPhaseIterator = other.asTwoPhaseIterator();
+      this.approximation = twoPhaseIterator == null ? other : twoPhaseIterator.approximation();
+    }
+
+    private boolean matches(int doc) throws IOException {
+      return filterBits.get(doc) && (twoPhaseIterator == null || twoPhaseIterator.matches());
+    }
+
+    private int doNext(int doc) throws IOException {
+      for (;; doc = approximation.nextDoc()) {
+        if (doc == Scorer.NO_MORE_DOCS || matches(doc)) {
+          return doc;
+        }
+      }
     }
 
     @Override
     public int nextDoc() throws IOException {
-      int doc;
-      for(;;) {
-        doc = scorer.nextDoc();
-        if (doc == Scorer.NO_MORE_DOCS || filterBits.get(doc)) {
-          return scorerDoc = doc;
-        }
-      } 
+      return doNext(approximation.nextDoc());
     }
     
     @Override
     public int advance(int target) throws IOException {
-      int doc = scorer.advance(target);
-      if (doc != Scorer.NO_MORE_DOCS && !filterBits.get(doc)) {
-        return scorerDoc = nextDoc();
-      } else {
-        return scorerDoc = doc;
-      }
+      return doNext(approximation.advance(target));
     }
 
     @Override
     public int docID() {
-      return scorerDoc;
+      return approximation.docID();
+    }
+
+    @Override
+    public TwoPhaseIterator asTwoPhaseIterator() {
+      return new TwoPhaseIterator(approximation) {
+        @Override
+        public boolean matches() throws IOException {
+          return QueryFirstScorer.this.matches(approximation.docID());
+        }
+      };
     }
     
     @Override
@@ -217,11 +234,15 @@ public class FilteredQuery extends Query {
   private static class QueryFirstBulkScorer extends BulkScorer {
 
     private final Scorer scorer;
+    private final DocIdSetIterator approximation;
+    private final TwoPhaseIterator twoPhaseIterator; // null if the scorer has no approximation
     private final Bits filterBits;
 
     public QueryFirstBulkScorer(Scorer scorer, Bits filterBits) {
       this.scorer = scorer;
       this.filterBits = filterBits;
+      this.twoPhaseIterator = scorer.asTwoPhaseIterator();
+      this.approximation = twoPhaseIterator == null ? scorer : twoPhaseIterator.approximation();
     }
 
     @Override
@@ -229,22 +250,22 @@ public class FilteredQuery extends Query {
       // the normalization trick already applies the boost of this query,
       // so we can use the wrapped scorer directly:
       collector.setScorer(scorer);
-      if (scorer.docID() == -1) {
-        scorer.nextDoc();
+      if (approximation.docID() == -1) {
+        approximation.nextDoc();
       }
       while (true) {
-        final int scorerDoc = scorer.docID();
+        final int scorerDoc = approximation.docID();
         if (scorerDoc < maxDoc) {
-          if (filterBits.get(scorerDoc)) {
+          if (filterBits.get(scorerDoc) && (twoPhaseIterator == null || twoPhaseIterator.matches())) {
             collector.collect(scorerDoc);
           }
-          scorer.nextDoc();
+          approximation.nextDoc();
         } else {
           break;
         }
       }
 
-      return scorer.docID() != Scorer.NO_MORE_DOCS;
+      return approximation.docID() != Scorer.NO_MORE_DOCS;
     }
   }
   
@@ -252,28 +273,45 @@ public class FilteredQuery extends Query {
    * A Scorer that uses a "leap-frog" approach (also called "zig-zag join"). The scorer and the filter
    * take turns trying to advance to each other's next matching document, often
    * jumping past the target document. When both land on the same document, it's
-   * collected.
+   * collected. If the scorer supports two-phase iteration, its approximation
+   * takes part in the leap-frog and matches are only confirmed on documents
+   * that the filter accepts.
    */
   private static class LeapFrogScorer extends Scorer {
     private final DocIdSetIterator secondary;
     private final DocIdSetIterator primary;
     private final Scorer scorer;
+    private final TwoPhaseIterator twoPhaseIterator; // null if the scorer has no approximation
     protected int primaryDoc = -1;
     protected int secondaryDoc = -1;
 
     protected LeapFrogScorer(Weight weight, DocIdSetIterator primary, DocIdSetIterator secondary, Scorer scorer) {
       super(weight);
+      this.scorer = scorer;
+      this.twoPhaseIterator = scorer.asTwoPhaseIterator();
+      if (twoPhaseIterator != null) {
+        // leap-frog on the approximation instead of the scorer
+        if (primary == scorer) {
+          primary = twoPhaseIterator.approximation();
+        }
+        if (secondary == scorer) {
+          secondary = twoPhaseIterator.approximation();
+        }
+      }
       this.primary = primary;
       this.secondary = secondary;
-      this.scorer = scorer;
     }
 
-    private final int advanceToNextCommonDoc() throws IOException {
+    private final int advanceToNextCommonDoc(boolean confirmMatches) throws IOException {
       for (;;) {
         if (secondaryDoc < primaryDoc) {
           secondaryDoc = secondary.advance(primaryDoc);
         } else if (secondaryDoc == primaryDoc) {
-          return primaryDoc;
+          if (primaryDoc == NO_MORE_DOCS || !confirmMatches
+              || twoPhaseIterator == null || twoPhaseIterator.matches()) {
+            return primaryDoc;
+          }
+          primaryDoc = primary.nextDoc();
         } else {
           primaryDoc = primary.advance(secondaryDoc);
         }
@@ -283,7 +321,7 @@ public class FilteredQuery extends Query {
     @Override
     public final int nextDoc() throws IOException {
       primaryDoc = primaryNext();
-      return advanceToNextCommonDoc();
+      return advanceToNextCommonDoc(true);
     }
     
     protected int primaryNext() throws IOException {
@@ -295,7 +333,46 @@ public class FilteredQuery extends Query {
       if (target > primaryDoc) {
         primaryDoc = primary.advance(target);
       }
-      return advanceToNextCommonDoc();
+      return advanceToNextCommonDoc(true);
+    }
+
+    @Override
+    public TwoPhaseIterator asTwoPhaseIterator() {
+      if (twoPhaseIterator == null) {
+        return null;
+      }
+      final DocIdSetIterator approximation = new DocIdSetIterator() {
+
+        @Override
+        public int docID() {
+          return secondaryDoc;
+        }
+
+        @Override
+        public int nextDoc() throws IOException {
+          primaryDoc = primaryNext();
+          return advanceToNextCommonDoc(false);
+        }
+
+        @Override
+        public int advance(int target) throws IOException {
+          if (target > primaryDoc) {
+            primaryDoc = primary.advance(target);
+          }
+          return advanceToNextCommonDoc(false);
+        }
+
+        @Override
+        public long cost() {
+          return LeapFrogScorer.this.cost();
+        }
+      };
+      return new TwoPhaseIterator(approximation) {
+        @Override
+        public boolean matches() throws IOException {
+          return twoPhaseIterator.matches();
+        }
+      };
     }
 
     @Override
@@ -0,0 +1,79 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A ring buffer that tracks the frequency of the integers that it contains.
+ * This is typically useful to track the hash codes of popular recently-used
+ * items.
+ *
+ * This class is NOT thread-safe.
+ */
+final class FrequencyTrackingRingBuffer {
+
+  private final int maxSize;
+  private final int[] buffer;
+  private int position;
+  private final Map<Integer, Integer> frequencies;
+
+  /** Create a new ring buffer that will contain at most <code>maxSize</code> items. */
+  FrequencyTrackingRingBuffer(int maxSize) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("maxSize must be at least 1, got " + maxSize);
+    }
+    this.maxSize = maxSize;
+    buffer = new int[maxSize];
+    position = 0;
+    frequencies = new HashMap<>();
+  }
+
+  /** Add a new item to this ring buffer, potentially removing the oldest
+   *  entry from this buffer if it is already full. */
+  void add(int i) {
+    if (position >= maxSize) {
+      // the buffer is full, remove the oldest entry
+      final int oldest = buffer[position % maxSize];
+      final int oldestFrequency = frequencies.get(oldest);
+      if (oldestFrequency == 1) {
+        frequencies.remove(oldest);
+      } else {
+        frequencies.put(oldest, oldestFrequency - 1);
+      }
+    }
+    buffer[position % maxSize] = i;
+    final Integer frequency = frequencies.get(i);
+    frequencies.put(i, frequency == null ? 1 : frequency + 1);
+    // wrap around while preserving the fact that the buffer is full
+    position = position + 1 == 2 * maxSize ? maxSize : position + 1;
+  }
+
+  /** Returns the frequency of the provided key in the ring buffer. */
+  int frequency(int key) {
+    final Integer frequency = frequencies.get(key);
+    return frequency == null ? 0 : frequency;
+  }
+
+  /** Returns the number of items in this ring buffer. */
+  int size() {
+    return Math.min(position, maxSize);
+  }
+
+}
@@ -19,6 +19,7 @@ package org.apache.lucene.search;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 
@@ -166,14 +167,28 @@ public class FuzzyTermsEnum extends TermsEnum {
     //System.out.println("cached automata size: " + runAutomata.size());
     if (runAutomata.size() <= maxDistance &&
         maxDistance <= LevenshteinAutomata.MAXIMUM_SUPPORTED_DISTANCE) {
-      LevenshteinAutomata builder = 
-        new LevenshteinAutomata(UnicodeUtil.newString(termText, realPrefixLength, termText.length - realPrefixLength), transpositions);
-
-      String prefix = UnicodeUtil.newString(termText, 0, realPrefixLength);
+      final String text = UnicodeUtil.newString(termText, 0, termText.length);
+      LevenshteinAutomata builder = null;
       for (int i = runAutomata.size(); i <= maxDistance; i++) {
-        Automaton a = builder.toAutomaton(i, prefix);
-        //System.out.println("compute automaton n=" + i);
-        runAutomata.add(new CompiledAutomaton(a, true, false));
+        final Object key = Arrays.<Object>asList("fuzzy", text, realPrefixLength, transpositions, i);
+        CompiledAutomatonCache.Entry entry = null;
+        final CompiledAutomatonCache cache = CompiledAutomatonCache.getDefault();
+        if (cache != null) {
+          entry = cache.get(key);
+        }
+        if (entry == null) {
+          if (builder == null) {
+            builder = new LevenshteinAutomata(UnicodeUtil.newString(termText, realPrefixLength, termText.length - realPrefixLength), transpositions);
+          }
+          String prefix = UnicodeUtil.newString(termText, 0, realPrefixLength);
+          Automaton a = builder.toAutomaton(i, prefix);
+          //System.out.println("compute automaton n=" + i);
+          entry = new CompiledAutomatonCache.Entry(a, new CompiledAutomaton(a, true, false));
+          if (cache != null) {
+            cache.put(key, entry);
+          }
+        }
+        runAutomata.add(entry.compiled);
       }
     }
     return runAutomata;
@@ -18,7 +18,9 @@ package org.apache.lucene.search;
  */
 
 import java.io.IOException;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -29,8 +31,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ForkJoinPool; // javadocs
 
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.DirectoryReader; // javadocs
@@ -89,8 +90,17 @@ public class IndexSearcher {
   // These are only used for multi-threaded search
   private final ExecutorService executor;
 
+  // by default, slices are sized by number of documents: small segments are
+  // grouped together and large segments are split into ranges of doc IDs
+  private static final int MAX_DOCS_PER_SLICE = 250000;
+  private static final int MAX_SEGMENTS_PER_SLICE = 5;
+
   // the default Similarity
   private static final Similarity defaultSimilarity = new DefaultSimilarity();
+
+  // filters are not cached by default
+  private static FilterCache defaultFilterCache = null;
+  private static FilterCachingPolicy defaultFilterCachingPolicy = new UsageTrackingFilterCachingPolicy();
   
   // The reader responsible for reading the metadata xml file 
   // containing information about the utils used during indexing.
@@ -111,16 +121,55 @@ public class IndexSearcher {
     return defaultSimilarity;
   }
   
+  /**
+   * Expert: Get the default {@link FilterCache} or {@code null} if the cache is disabled.
+   * @lucene.internal
+   */
+  public static FilterCache getDefaultFilterCache() {
+    return defaultFilterCache;
+  }
+
+  /**
+   * Expert: set the default {@link FilterCache} instance, which is used by
+   * searchers that are created after this call. Filters are not cached by
+   * default.
+   * @lucene.internal
+   */
+  public static void setDefaultFilterCache(FilterCache defaultFilterCache) {
+    IndexSearcher.defaultFilterCache = defaultFilterCache;
+  }
+
+  /**
+   * Expert: Get the default {@link FilterCachingPolicy}.
+   * @lucene.internal
+   */
+  public static FilterCachingPolicy getDefaultFilterCachingPolicy() {
+    return defaultFilterCachingPolicy;
+  }
+
+  /**
+   * Expert: set the default {@link FilterCachingPolicy} instance, which is
+   * used by searchers that are created after this call.
+   * @lucene.internal
+   */
+  public static void setDefaultFilterCachingPolicy(FilterCachingPolicy defaultFilterCachingPolicy) {
+    IndexSearcher.defaultFilterCachingPolicy = defaultFilterCachingPolicy;
+  }
+
   /** The Similarity implementation used by this searcher. */
   private Similarity similarity = defaultSimilarity;
+  private FilterCache filterCache = defaultFilterCache;
+  private FilterCachingPolicy filterCachingPolicy = defaultFilterCachingPolicy;
 
   /** Creates a searcher searching the provided index. */
   public IndexSearcher(IndexReader r) {
     this(r, null);
   }
 
-  /** Runs searches for each segment separately, using the
-   *  provided ExecutorService.  IndexSearcher will not
+  /** Runs searches for each slice of the index separately, using the
+   *  provided ExecutorService. A work-stealing executor such as a
+   *  {@link ForkJoinPool} works best, since slices may take very
+   *  different times to search.  IndexSearcher will not
    *  close/awaitTermination this ExecutorService on
    *  close; you must do so, eventually, on your own.  NOTE:
    *  if you are using {@link NIOFSDirectory}, do not use
@@ -138,7 +187,8 @@ public class IndexSearcher {
    * Creates a searcher searching the provided top-level {@link IndexReaderContext}.
    * <p>
    * Given a non-<code>null</code> {@link ExecutorService} this method runs
-   * searches for each segment separately, using the provided ExecutorService.
+   * searches for each {@link #slices(List) slice} separately, using the
+   * provided ExecutorService.
    * IndexSearcher will not close/awaitTermination this ExecutorService on
    * close; you must do so, eventually, on your own. NOTE: if you are using
    * {@link NIOFSDirectory}, do not use the shutdownNow method of
@@ -174,15 +224,61 @@ public class IndexSearcher {
   
   /**
    * Expert: Creates an array of leaf slices each holding a subset of the given leaves.
-   * Each {@link LeafSlice} is executed in a single thread. By default there
-   * will be one {@link LeafSlice} per leaf ({@link AtomicReaderContext}).
+   * Each {@link LeafSlice} is executed in a single thread. By default slices
+   * are sized by number of documents: consecutive small leaves are grouped
+   * together and leaves that have more than 250,000 documents are split into
+   * ranges of doc IDs, so that a single large segment can be searched by
+   * several threads.
+   *
+   * @see #slices(List, int, int)
    */
   protected LeafSlice[] slices(List<AtomicReaderContext> leaves) {
-    LeafSlice[] slices = new LeafSlice[leaves.size()];
-    for (int i = 0; i < slices.length; i++) {
-      slices[i] = new LeafSlice(leaves.get(i));
+    return slices(leaves, MAX_DOCS_PER_SLICE, MAX_SEGMENTS_PER_SLICE);
+  }
+
+  /**
+   * Expert: Groups consecutive leaves into slices that have at most
+   * <code>maxDocsPerSlice</code> documents and at most
+   * <code>maxSegmentsPerSlice</code> leaves. Leaves that have more than
+   * <code>maxDocsPerSlice</code> documents are split into ranges of doc IDs
+   * of about the same size. Slices are returned in doc ID order.
+   *
+   * @lucene.experimental
+   */
+  public static LeafSlice[] slices(List<AtomicReaderContext> leaves, int maxDocsPerSlice, int maxSegmentsPerSlice) {
+    if (maxDocsPerSlice <= 0) {
+      throw new IllegalArgumentException("maxDocsPerSlice must be > 0, got " + maxDocsPerSlice);
+    }
+    if (maxSegmentsPerSlice <= 0) {
+      throw new IllegalArgumentException("maxSegmentsPerSlice must be > 0, got " + maxSegmentsPerSlice);
+    }
+    final List<LeafSlice> slices = new ArrayList<>();
+    final List<AtomicReaderContext> group = new ArrayList<>();
+    long groupDocs = 0;
+    for (AtomicReaderContext leaf : leaves) {
+      final int maxDoc = leaf.reader().maxDoc();
+      if (group.isEmpty() == false
+          && (groupDocs + maxDoc > maxDocsPerSlice || group.size() == maxSegmentsPerSlice)) {
+        slices.add(new LeafSlice(group.toArray(new AtomicReaderContext[group.size()])));
+        group.clear();
+        groupDocs = 0;
+      }
+      if (maxDoc > maxDocsPerSlice) {
+        final int numPartitions = (int) ((maxDoc + (long) maxDocsPerSlice - 1) / maxDocsPerSlice);
+        for (int i = 0; i < numPartitions; i++) {
+          final int minDoc = (int) ((long) maxDoc * i / numPartitions);
+          final int maxDocExclusive = (int) ((long) maxDoc * (i + 1) / numPartitions);
+          slices.add(new LeafSlice(leaf, minDoc, maxDocExclusive));
+        }
+      } else {
+        group.add(leaf);
+        groupDocs += maxDoc;
+      }
     }
-    return slices;
+    if (group.isEmpty() == false) {
+      slices.add(new LeafSlice(group.toArray(new AtomicReaderContext[group.size()])));
+    }
+    return slices.toArray(new LeafSlice[slices.size()]);
   }
 
   
@@ -207,6 +303,14 @@ public class IndexSearcher {
     reader.document(docID, fieldVisitor);
   }
 
+  /** 
+   * Sugar for <code>.getIndexReader().document(docIDs, fieldVisitors)</code>
+   * @see IndexReader#document(int[], StoredFieldVisitor[]) 
+   */
+  public void doc(int[] docIDs, StoredFieldVisitor[] fieldVisitors) throws IOException {
+    reader.document(docIDs, fieldVisitors);
+  }
+
   /** 
    * Sugar for <code>.getIndexReader().document(docID, fieldsToLoad)</code>
    * @see IndexReader#document(int, Set) 
@@ -227,6 +331,61 @@ public class IndexSearcher {
     return similarity;
   }
   
+  /**
+   * Set the {@link FilterCache} to use when running filters. This can be set
+   * to {@code null} to disable caching. Filters that are run through
+   * {@link FilteredQuery} or {@link ConstantScoreQuery} will then cache their
+   * {@link DocIdSet}s per segment, accordingly to the
+   * {@link #setFilterCachingPolicy(FilterCachingPolicy) caching policy}.
+   * @see #cacheFilter(Filter)
+   */
+  public void setFilterCache(FilterCache filterCache) {
+    this.filterCache = filterCache;
+  }
+
+  /**
+   * Return the filter cache of this {@link IndexSearcher}, or {@code null}
+   * if filters are not cached.
+   */
+  public FilterCache getFilterCache() {
+    return filterCache;
+  }
+
+  /**
+   * Set the {@link FilterCachingPolicy} to use for filter caching.
+   * This policy will be used to decide which filters should be cached on
+   * which segments. It has no effect unless a {@link FilterCache} is set.
+   * @see #setFilterCache(FilterCache)
+   */
+  public void setFilterCachingPolicy(FilterCachingPolicy filterCachingPolicy) {
+    if (filterCachingPolicy == null) {
+      throw new NullPointerException("filterCachingPolicy must not be null");
+    }
+    this.filterCachingPolicy = filterCachingPolicy;
+  }
+
+  /**
+   * Return the filter caching policy of this {@link IndexSearcher}.
+   */
+  public FilterCachingPolicy getFilterCachingPolicy() {
+    return filterCachingPolicy;
+  }
+
+  /**
+   * Expert: wrap the given filter with the {@link FilterCache} of this
+   * searcher, or return it as-is if filters are not cached. This is called
+   * when creating the {@link Weight} of queries that run filters, so that
+   * the {@link FilterCachingPolicy} can track how often filters are used.
+   * @lucene.experimental
+   */
+  public Filter cacheFilter(Filter filter) {
+    final FilterCache filterCache = this.filterCache;
+    if (filterCache == null) {
+      return filter;
+    }
+    return filterCache.doCache(filter, filterCachingPolicy);
+  }
+
   /** @lucene.internal */
   protected Query wrapFilter(Query query, Filter filter) {
     return (filter == null) ? query : new FilteredQuery(query, filter);
@@ -312,6 +471,38 @@ public class IndexSearcher {
     throws IOException {
     search(leafContexts, createNormalizedWeight(query), results);
   }
+
+  /** Lower-level search API.
+   *
+   * <p>Search all leaves using the given {@link CollectorManager}. In
+   * contrast to {@link #search(Query, Collector)}, this method will use the
+   * searcher's {@link ExecutorService}, if any, in order to collect every
+   * {@link LeafSlice slice} in parallel with its own collector, and then
+   * {@link CollectorManager#reduce(Collection) reduce} the results.
+   *
+   * @throws BooleanQuery.TooManyClauses If a query would exceed 
+   *         {@link BooleanQuery#getMaxClauseCount()} clauses.
+   * @see CollectorManager
+   * @lucene.experimental
+   */
+  public <C extends Collector, T> T search(Query query, CollectorManager<C, T> collectorManager)
+    throws IOException {
+    return search(createNormalizedWeight(query), collectorManager);
+  }
+
+  /** Lower-level search API.
+   *
+   * <p>Same as {@link #search(Query, CollectorManager)}, applying
+   * <code>filter</code> if non-null.
+   *
+   * @throws BooleanQuery.TooManyClauses If a query would exceed 
+   *         {@link BooleanQuery#getMaxClauseCount()} clauses.
+   * @lucene.experimental
+   */
+  public <C extends Collector, T> T search(Query query, Filter filter, CollectorManager<C, T> collectorManager)
+    throws IOException {
+    return search(createNormalizedWeight(wrapFilter(query, filter)), collectorManager);
+  }
   
   /** Search implementation with arbitrary sorting.  Finds
    * the top <code>n</code> hits for <code>query</code>, applying
@@ -437,7 +628,7 @@ public class IndexSearcher {
    * @throws BooleanQuery.TooManyClauses If a query would exceed 
    *         {@link BooleanQuery#getMaxClauseCount()} clauses.
    */
-  protected TopDocs search(Weight weight, ScoreDoc after, int nDocs) throws IOException {
+  protected TopDocs search(Weight weight, final ScoreDoc after, int nDocs) throws IOException {
     	
 	int limit = reader.maxDoc();
     if (limit == 0) {
@@ -452,32 +643,34 @@ public class IndexSearcher {
     if (executor == null) {
       return search(leafContexts, weight, after, nDocs);
     } else {
-      final HitQueue hq = new HitQueue(nDocs, false);
-      final Lock lock = new ReentrantLock();
-      final ExecutionHelper<TopDocs> runner = new ExecutionHelper<>(executor);
-    
-      for (int i = 0; i < leafSlices.length; i++) { // search each sub
-        runner.submit(new SearcherCallableNoSort(lock, this, leafSlices[i], weight, after, nDocs, hq));
-      }
+      final int cappedNumHits = nDocs;
+      final boolean docsScoredInOrder = !weight.scoresDocsOutOfOrder();
+      final CollectorManager<TopScoreDocCollector, TopDocs> manager = new CollectorManager<TopScoreDocCollector, TopDocs>() {
 
-      int totalHits = 0;
-      float maxScore = Float.NEGATIVE_INFINITY;
-      for (final TopDocs topDocs : runner) {
-        if(topDocs.totalHits != 0) {
-          totalHits += topDocs.totalHits;
-          maxScore = Math.max(maxScore, topDocs.getMaxScore());
+        @Override
+        public TopScoreDocCollector newCollector() {
+          return TopScoreDocCollector.create(cappedNumHits, after, docsScoredInOrder);
         }
-      }
 
-      final ScoreDoc[] scoreDocs = new ScoreDoc[hq.size()];
-      for (int i = hq.size() - 1; i >= 0; i--) // put docs in array
-        scoreDocs[i] = hq.pop();
+        @Override
+        public TopDocs reduce(Collection<TopScoreDocCollector> collectors) throws IOException {
+          final TopDocs[] topDocs = new TopDocs[collectors.size()];
+          int i = 0;
+          for (TopScoreDocCollector collector : collectors) {
+            topDocs[i++] = collector.topDocs();
+          }
+          return TopDocs.merge(null, cappedNumHits, topDocs);
+        }
+
+      };
+
+      final TopDocs topDocs = search(weight, manager);
       
       if(!this.warningShown) {
 	    metaDataCompatibility();
 	  }
 
-      return new TopDocs(totalHits, scoreDocs, maxScore);
+      return topDocs;
     }
   }
 
@@ -529,9 +722,9 @@ public class IndexSearcher {
    * whether or not the fields in the returned {@link FieldDoc} instances should
    * be set by specifying fillFields.
    */
-  protected TopFieldDocs search(Weight weight, FieldDoc after, int nDocs,
-                                Sort sort, boolean fillFields,
-                                boolean doDocScores, boolean doMaxScore)
+  protected TopFieldDocs search(Weight weight, final FieldDoc after, int nDocs,
+                                final Sort sort, boolean fillFields,
+                                final boolean doDocScores, final boolean doMaxScore)
       throws IOException {
 
     if (sort == null) throw new NullPointerException("Sort must not be null");
@@ -546,31 +739,36 @@ public class IndexSearcher {
       // use all leaves here!
       return search(leafContexts, weight, after, nDocs, sort, fillFields, doDocScores, doMaxScore);
     } else {
-      final TopFieldCollector topCollector = TopFieldCollector.create(sort, nDocs,
-                                                                      after,
-                                                                      fillFields,
-                                                                      doDocScores,
-                                                                      doMaxScore,
-                                                                      false);
-
-      final Lock lock = new ReentrantLock();
-      final ExecutionHelper<TopFieldDocs> runner = new ExecutionHelper<>(executor);
-      for (int i = 0; i < leafSlices.length; i++) { // search each leaf slice
-        runner.submit(
-                      new SearcherCallableWithSort(lock, this, leafSlices[i], weight, after, nDocs, topCollector, sort, doDocScores, doMaxScore));
-      }
-      int totalHits = 0;
-      float maxScore = Float.NEGATIVE_INFINITY;
-      for (final TopFieldDocs topFieldDocs : runner) {
-        if (topFieldDocs.totalHits != 0) {
-          totalHits += topFieldDocs.totalHits;
-          maxScore = Math.max(maxScore, topFieldDocs.getMaxScore());
+      final int cappedNumHits = nDocs;
+      final boolean docsScoredInOrder = !weight.scoresDocsOutOfOrder();
+      final CollectorManager<TopFieldCollector, TopFieldDocs> manager = new CollectorManager<TopFieldCollector, TopFieldDocs>() {
+
+        @Override
+        public TopFieldCollector newCollector() throws IOException {
+          // sort values are needed in order to merge top docs
+          return TopFieldCollector.create(sort, cappedNumHits, after, true,
+                                          doDocScores, doMaxScore, docsScoredInOrder);
         }
-      }
 
-      final TopFieldDocs topDocs = (TopFieldDocs) topCollector.topDocs();
+        @Override
+        public TopFieldDocs reduce(Collection<TopFieldCollector> collectors) throws IOException {
+          final TopDocs[] topDocs = new TopDocs[collectors.size()];
+          int i = 0;
+          for (TopFieldCollector collector : collectors) {
+            topDocs[i++] = collector.topDocs();
+          }
+          return (TopFieldDocs) TopDocs.merge(sort, cappedNumHits, topDocs);
+        }
+
+      };
 
-      return new TopFieldDocs(totalHits, topDocs.scoreDocs, topDocs.fields, topDocs.getMaxScore());
+      final TopFieldDocs topDocs = search(weight, manager);
+      if (fillFields == false) {
+        for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+          ((FieldDoc) scoreDoc).fields = null;
+        }
+      }
+      return topDocs;
     }
   }
   
@@ -642,6 +840,81 @@ public class IndexSearcher {
     }
   }
 
+  /**
+   * Collects the given {@link CollectorManager} on every {@link LeafSlice},
+   * using the executor if there is one.
+   */
+  private <C extends Collector, T> T search(final Weight weight, CollectorManager<C, T> collectorManager)
+      throws IOException {
+    if (executor == null) {
+      final C collector = collectorManager.newCollector();
+      search(leafContexts, weight, collector);
+      return collectorManager.reduce(Collections.singletonList(collector));
+    }
+
+    final List<C> collectors = new ArrayList<>(leafSlices.length);
+    for (int i = 0; i < leafSlices.length; i++) {
+      collectors.add(collectorManager.newCollector());
+    }
+    if (leafSlices.length > 0) {
+      final ExecutionHelper<C> runner = new ExecutionHelper<>(executor);
+      for (int i = 0; i < leafSlices.length - 1; i++) {
+        final LeafSlice slice = leafSlices[i];
+        final C collector = collectors.get(i);
+        runner.submit(new Callable<C>() {
+          @Override
+          public C call() throws IOException {
+            search(slice, weight, collector);
+            return collector;
+          }
+        });
+      }
+      // search the last slice in the current thread instead of just waiting
+      final int last = leafSlices.length - 1;
+      search(leafSlices[last], weight, collectors.get(last));
+      while (runner.hasNext()) {
+        runner.next();
+      }
+    }
+    return collectorManager.reduce(collectors);
+  }
+
+  /**
+   * Collects the documents of a single {@link LeafSlice}. Leaves that are
+   * searched as a whole are passed to {@link #search(List, Weight, Collector)}
+   * while ranges of doc IDs are collected by advancing a {@link Scorer} to
+   * the first doc of the range.
+   */
+  private void search(LeafSlice slice, Weight weight, Collector collector) throws IOException {
+    for (int i = 0; i < slice.leaves.length; i++) {
+      final AtomicReaderContext ctx = slice.leaves[i];
+      final int minDoc = slice.minDocs[i];
+      final int maxDoc = slice.maxDocs[i];
+      if (minDoc == 0 && maxDoc == ctx.reader().maxDoc()) {
+        search(Collections.singletonList(ctx), weight, collector);
+        continue;
+      }
+      final LeafCollector leafCollector;
+      try {
+        leafCollector = collector.getLeafCollector(ctx);
+      } catch (CollectionTerminatedException e) {
+        // there is no doc of interest in this reader context
+        continue;
+      }
+      final Scorer scorer = weight.scorer(ctx, ctx.reader().getLiveDocs());
+      if (scorer != null) {
+        leafCollector.setScorer(scorer);
+        try {
+          for (int doc = scorer.advance(minDoc); doc < maxDoc; doc = scorer.nextDoc()) {
+            leafCollector.collect(doc);
+          }
+        } catch (CollectionTerminatedException e) {
+          // collection was terminated prematurely
+        }
+      }
+    }
+  }
+
   /** Expert: called to re-write queries into primitive queries.
    * @throws BooleanQuery.TooManyClauses If a query would exceed 
    *         {@link BooleanQuery#getMaxClauseCount()} clauses.
@@ -715,112 +988,6 @@ public class IndexSearcher {
     return readerContext;
   }
 
-  /**
-   * A thread subclass for searching a single searchable 
-   */
-  private static final class SearcherCallableNoSort implements Callable<TopDocs> {
-
-    private final Lock lock;
-    private final IndexSearcher searcher;
-    private final Weight weight;
-    private final ScoreDoc after;
-    private final int nDocs;
-    private final HitQueue hq;
-    private final LeafSlice slice;
-
-    public SearcherCallableNoSort(Lock lock, IndexSearcher searcher, LeafSlice slice,  Weight weight,
-        ScoreDoc after, int nDocs, HitQueue hq) {
-      this.lock = lock;
-      this.searcher = searcher;
-      this.weight = weight;
-      this.after = after;
-      this.nDocs = nDocs;
-      this.hq = hq;
-      this.slice = slice;
-    }
-
-    @Override
-    public TopDocs call() throws IOException {
-      final TopDocs docs = searcher.search(Arrays.asList(slice.leaves), weight, after, nDocs);
-      final ScoreDoc[] scoreDocs = docs.scoreDocs;
-      //it would be so nice if we had a thread-safe insert 
-      lock.lock();
-      try {
-        for (int j = 0; j < scoreDocs.length; j++) { // merge scoreDocs into hq
-          final ScoreDoc scoreDoc = scoreDocs[j];
-          if (scoreDoc == hq.insertWithOverflow(scoreDoc)) {
-            break;
-          }
-        }
-      } finally {
-        lock.unlock();
-      }
-      return docs;
-    }
-  }
-
-
-  /**
-   * A thread subclass for searching a single searchable 
-   */
-  private static final class SearcherCallableWithSort implements Callable<TopFieldDocs> {
-
-    private final Lock lock;
-    private final IndexSearcher searcher;
-    private final Weight weight;
-    private final int nDocs;
-    private final TopFieldCollector hq;
-    private final Sort sort;
-    private final LeafSlice slice;
-    private final FieldDoc after;
-    private final boolean doDocScores;
-    private final boolean doMaxScore;
-
-    public SearcherCallableWithSort(Lock lock, IndexSearcher searcher, LeafSlice slice, Weight weight,
-                                    FieldDoc after, int nDocs, TopFieldCollector hq, Sort sort,
-                                    boolean doDocScores, boolean doMaxScore) {
-      this.lock = lock;
-      this.searcher = searcher;
-      this.weight = weight;
-      this.nDocs = nDocs;
-      this.hq = hq;
-      this.sort = sort;
-      this.slice = slice;
-      this.after = after;
-      this.doDocScores = doDocScores;
-      this.doMaxScore = doMaxScore;
-    }
-
-    private final FakeScorer fakeScorer = new FakeScorer();
-
-    @Override
-    public TopFieldDocs call() throws IOException {
-      assert slice.leaves.length == 1;
-      final TopFieldDocs docs = searcher.search(Arrays.asList(slice.leaves),
-          weight, after, nDocs, sort, true, doDocScores || sort.needsScores(), doMaxScore);
-      lock.lock();
-      try {
-        final AtomicReaderContext ctx = slice.leaves[0];
-        final int base = ctx.docBase;
-        final LeafCollector collector = hq.getLeafCollector(ctx);
-        collector.setScorer(fakeScorer);
-        for(ScoreDoc scoreDoc : docs.scoreDocs) {
-          fakeScorer.doc = scoreDoc.doc - base;
-          fakeScorer.score = scoreDoc.score;
-          collector.collect(scoreDoc.doc-base);
-        }
-
-        // Carry over maxScore from sub:
-        if (doMaxScore && docs.getMaxScore() > hq.maxScore) {
-          hq.maxScore = docs.getMaxScore();
-        }
-      } finally {
-        lock.unlock();
-      }
-      return docs;
-    }
-  }
-
   /**
    * A helper class that wraps a {@link CompletionService} and provides an
    * iterable interface to the completed {@link Callable} instances.
@@ -875,15 +1042,37 @@ public class IndexSearcher {
 
   /**
    * A class holding a subset of the {@link IndexSearcher}s leaf contexts to be
-   * executed within a single thread.
+   * executed within a single thread. A slice may also cover only a range of
+   * doc IDs of a leaf, so that large segments can be searched concurrently.
    * 
    * @lucene.experimental
    */
   public static class LeafSlice {
     final AtomicReaderContext[] leaves;
+    // the range of doc IDs to search in each leaf: [minDocs[i], maxDocs[i])
+    final int[] minDocs;
+    final int[] maxDocs;
     
     public LeafSlice(AtomicReaderContext... leaves) {
       this.leaves = leaves;
+      this.minDocs = new int[leaves.length];
+      this.maxDocs = new int[leaves.length];
+      for (int i = 0; i < leaves.length; i++) {
+        maxDocs[i] = leaves[i].reader().maxDoc();
+      }
+    }
+
+    /** Creates a slice that only covers the documents of <code>leaf</code>
+     *  whose doc ID is greater than or equal to <code>minDoc</code> and
+     *  less than <code>maxDoc</code>. */
+    public LeafSlice(AtomicReaderContext leaf, int minDoc, int maxDoc) {
+      if (minDoc < 0 || minDoc > maxDoc || maxDoc > leaf.reader().maxDoc()) {
+        throw new IllegalArgumentException("invalid doc ID range: [" + minDoc + ", " + maxDoc
+            + ") for a leaf that has maxDoc=" + leaf.reader().maxDoc());
+      }
+      this.leaves = new AtomicReaderContext[] { leaf };
+      this.minDocs = new int[] { minDoc };
+      this.maxDocs = new int[] { maxDoc };
     }
   }
 
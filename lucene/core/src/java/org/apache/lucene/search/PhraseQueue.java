@@ -26,20 +26,17 @@ final class PhraseQueue extends PriorityQueue<PhrasePositions> {
 
   @Override
   protected final boolean lessThan(PhrasePositions pp1, PhrasePositions pp2) {
-    if (pp1.doc == pp2.doc) 
-      if (pp1.position == pp2.position)
-        // same doc and pp.position, so decide by actual term positions. 
-        // rely on: pp.position == tp.position - offset. 
-        if (pp1.offset == pp2.offset) {
-          return pp1.ord < pp2.ord;
-        } else {
-          return pp1.offset < pp2.offset;
-        }
-      else {
-        return pp1.position < pp2.position;
+    // all phrase positions are on the same doc
+    if (pp1.position == pp2.position)
+      // same pp.position, so decide by actual term positions. 
+      // rely on: pp.position == tp.position - offset. 
+      if (pp1.offset == pp2.offset) {
+        return pp1.ord < pp2.ord;
+      } else {
+        return pp1.offset < pp2.offset;
       }
     else {
-      return pp1.doc < pp2.doc;
+      return pp1.position < pp2.position;
     }
   }
 }
@@ -1,9 +1,12 @@
 package org.apache.lucene.search;
 
+import java.util.Arrays;
+
 import org.apache.lucene.index.Term;
 import org.apache.lucene.util.ToStringUtils;
 import org.apache.lucene.util.automaton.Automaton;
 import org.apache.lucene.util.automaton.AutomatonProvider;
+import org.apache.lucene.util.automaton.CompiledAutomaton;
 import org.apache.lucene.util.automaton.RegExp;
 
 /*
@@ -75,7 +78,7 @@ public class RegexpQuery extends AutomatonQuery {
    * @param flags optional RegExp features from {@link RegExp}
    */
   public RegexpQuery(Term term, int flags) {
-    this(term, flags, defaultProvider);
+    super(term, compile(term.text(), flags));
   }
   
   /**
@@ -88,6 +91,18 @@ public class RegexpQuery extends AutomatonQuery {
   public RegexpQuery(Term term, int flags, AutomatonProvider provider) {
     super(term, new RegExp(term.text(), flags).toAutomaton(provider));
   }
+
+  // only regular expressions without custom named automata can be cached
+  private static CompiledAutomatonCache.Entry compile(final String text, final int flags) {
+    return CompiledAutomatonCache.getOrLoad(Arrays.<Object>asList("regexp", text, flags),
+        new CompiledAutomatonCache.Loader() {
+          @Override
+          CompiledAutomatonCache.Entry load() {
+            final Automaton automaton = new RegExp(text, flags).toAutomaton(defaultProvider);
+            return new CompiledAutomatonCache.Entry(automaton, new CompiledAutomaton(automaton));
+          }
+        });
+  }
   
   /** Prints a user-readable version of this query. */
   @Override
@@ -26,11 +26,20 @@ import java.util.Collections;
  * <br>
  * This <code>Scorer</code> implements {@link Scorer#advance(int)},
  * and it uses the skipTo() on the given scorers.
+ * <br>
+ * When the scorers support {@link TwoPhaseIterator two-phase iteration},
+ * exclusion is first checked on approximations so that expensive matches
+ * are only confirmed on documents that may not be excluded.
  */
 class ReqExclScorer extends Scorer {
-  private Scorer reqScorer;
-  private DocIdSetIterator exclDisi;
-  private int doc = -1;
+
+  private final Scorer reqScorer;
+  // approximations of the scorers, or the scorers themselves if they don't support approximations
+  private final DocIdSetIterator reqApproximation;
+  private final DocIdSetIterator exclApproximation;
+  // two-phase views of the scorers, or null if they do not support approximations
+  private final TwoPhaseIterator reqTwoPhaseIterator;
+  private final TwoPhaseIterator exclTwoPhaseIterator;
 
   /** Construct a <code>ReqExclScorer</code>.
    * @param reqScorer The scorer that must match, except where
@@ -39,60 +48,65 @@ class ReqExclScorer extends Scorer {
   public ReqExclScorer(Scorer reqScorer, DocIdSetIterator exclDisi) {
     super(reqScorer.weight);
     this.reqScorer = reqScorer;
-    this.exclDisi = exclDisi;
+    reqTwoPhaseIterator = reqScorer.asTwoPhaseIterator();
+    if (reqTwoPhaseIterator == null) {
+      reqApproximation = reqScorer;
+    } else {
+      reqApproximation = reqTwoPhaseIterator.approximation();
+    }
+    exclTwoPhaseIterator = exclDisi instanceof Scorer ? ((Scorer) exclDisi).asTwoPhaseIterator() : null;
+    if (exclTwoPhaseIterator == null) {
+      exclApproximation = exclDisi;
+    } else {
+      exclApproximation = exclTwoPhaseIterator.approximation();
+    }
+  }
+
+  /** Confirms whether or not the given {@link TwoPhaseIterator}
+   *  matches on the current document. */
+  private static boolean matches(TwoPhaseIterator it) throws IOException {
+    return it == null || it.matches();
+  }
+
+  /** Confirm whether there is a match given the current positions of the
+   *  req and excl approximations. This method only calls matches() on excl
+   *  if the excl approximation is on the same document, and does NOT call
+   *  matches() on req if the document is excluded. */
+  private static boolean matches(int doc, int exclDoc,
+      TwoPhaseIterator reqTwoPhaseIterator,
+      TwoPhaseIterator exclTwoPhaseIterator) throws IOException {
+    assert exclDoc >= doc;
+    if (doc == exclDoc && matches(exclTwoPhaseIterator)) {
+      return false;
+    }
+    return matches(reqTwoPhaseIterator);
   }
 
   @Override
   public int nextDoc() throws IOException {
-    if (reqScorer == null) {
-      return doc;
-    }
-    doc = reqScorer.nextDoc();
-    if (doc == NO_MORE_DOCS) {
-      reqScorer = null; // exhausted, nothing left
-      return doc;
-    }
-    if (exclDisi == null) {
-      return doc;
-    }
-    return doc = toNonExcluded();
+    return toNonExcluded(reqApproximation.nextDoc());
   }
-  
-  /** Advance to non excluded doc.
-   * <br>On entry:
-   * <ul>
-   * <li>reqScorer != null,
-   * <li>exclScorer != null,
-   * <li>reqScorer was advanced once via next() or skipTo()
-   *      and reqScorer.doc() may still be excluded.
-   * </ul>
-   * Advances reqScorer a non excluded required doc, if any.
-   * @return true iff there is a non excluded required doc.
-   */
-  private int toNonExcluded() throws IOException {
-    int exclDoc = exclDisi.docID();
-    int reqDoc = reqScorer.docID(); // may be excluded
-    do {  
-      if (reqDoc < exclDoc) {
-        return reqDoc; // reqScorer advanced to before exclScorer, ie. not excluded
-      } else if (reqDoc > exclDoc) {
-        exclDoc = exclDisi.advance(reqDoc);
-        if (exclDoc == NO_MORE_DOCS) {
-          exclDisi = null; // exhausted, no more exclusions
-          return reqDoc;
-        }
-        if (exclDoc > reqDoc) {
-          return reqDoc; // not excluded
-        }
+
+  /** Advance to the first non excluded doc that is greater than or equal
+   *  to <code>doc</code>, on which the req approximation is positioned. */
+  private int toNonExcluded(int doc) throws IOException {
+    int exclDoc = exclApproximation.docID();
+    for (;; doc = reqApproximation.nextDoc()) {
+      if (doc == NO_MORE_DOCS) {
+        return NO_MORE_DOCS;
+      }
+      if (exclDoc < doc) {
+        exclDoc = exclApproximation.advance(doc);
       }
-    } while ((reqDoc = reqScorer.nextDoc()) != NO_MORE_DOCS);
-    reqScorer = null; // exhausted, nothing left
-    return NO_MORE_DOCS;
+      if (matches(doc, exclDoc, reqTwoPhaseIterator, exclTwoPhaseIterator)) {
+        return doc;
+      }
+    }
   }
 
   @Override
   public int docID() {
-    return doc;
+    return reqApproximation.docID();
   }
 
   /** Returns the score of the current document matching the query.
@@ -101,7 +115,7 @@ class ReqExclScorer extends Scorer {
    */
   @Override
   public float score() throws IOException {
-    return reqScorer.score(); // reqScorer may be null when next() or skipTo() already return false
+    return reqScorer.score();
   }
   
   @Override
@@ -109,6 +123,11 @@ class ReqExclScorer extends Scorer {
     return reqScorer.freq();
   }
 
+  @Override
+  public void setMinCompetitiveScore(float minScore) {
+    reqScorer.setMinCompetitiveScore(minScore); // we have the same scores
+  }
+
   @Override
   public Collection<ChildScorer> getChildren() {
     return Collections.singleton(new ChildScorer(reqScorer, "MUST"));
@@ -116,21 +135,30 @@ class ReqExclScorer extends Scorer {
 
   @Override
   public int advance(int target) throws IOException {
-    if (reqScorer == null) {
-      return doc = NO_MORE_DOCS;
-    }
-    if (exclDisi == null) {
-      return doc = reqScorer.advance(target);
-    }
-    if (reqScorer.advance(target) == NO_MORE_DOCS) {
-      reqScorer = null;
-      return doc = NO_MORE_DOCS;
-    }
-    return doc = toNonExcluded();
+    return toNonExcluded(reqApproximation.advance(target));
   }
 
   @Override
   public long cost() {
     return reqScorer.cost();
   }
+
+  @Override
+  public TwoPhaseIterator asTwoPhaseIterator() {
+    if (reqTwoPhaseIterator == null) {
+      return null;
+    }
+    return new TwoPhaseIterator(reqApproximation) {
+      @Override
+      public boolean matches() throws IOException {
+        final int doc = reqApproximation.docID();
+        // check if the doc is not excluded
+        int exclDoc = exclApproximation.docID();
+        if (exclDoc < doc) {
+          exclDoc = exclApproximation.advance(doc);
+        }
+        return ReqExclScorer.matches(doc, exclDoc, reqTwoPhaseIterator, exclTwoPhaseIterator);
+      }
+    };
+  }
 }
@@ -61,6 +61,12 @@ class ReqOptSumScorer extends Scorer {
   public int docID() {
     return reqScorer.docID();
   }
+
+  @Override
+  public TwoPhaseIterator asTwoPhaseIterator() {
+    // the optional part is only used for scoring
+    return reqScorer.asTwoPhaseIterator();
+  }
   
   /** Returns the score of the current document matching the query.
    * Initially invalid, until {@link #nextDoc()} is called the first time.
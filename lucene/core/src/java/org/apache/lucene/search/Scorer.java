@@ -60,6 +60,40 @@ public abstract class Scorer extends DocsEnum {
    * {@link LeafCollector#collect}.
    */
   public abstract float score() throws IOException;
+
+  /**
+   * Expert: tells this scorer that the caller is not interested in documents
+   * whose score is less than or equal to <code>minScore</code>, so that it
+   * may skip over them. Successive calls must pass non-decreasing values.
+   * This is only a hint: scorers are free to ignore it and keep returning
+   * all matches, which is what the default implementation does.
+   *
+   * @lucene.experimental
+   */
+  public void setMinCompetitiveScore(float minScore) {
+  }
+
+  /**
+   * Optional method: Return a {@link TwoPhaseIterator} view of this
+   * {@link Scorer}. A return value of <code>null</code> indicates that
+   * two-phase iteration is not supported.
+   *
+   * Note that the returned {@link TwoPhaseIterator}'s
+   * {@link TwoPhaseIterator#approximation() approximation} must
+   * advance synchronously with this iterator: advancing the approximation
+   * must advance this iterator and vice-versa.
+   *
+   * Implementing this method is typically useful on {@link Scorer}s
+   * that have a high per-document overhead in order to confirm matches,
+   * such as phrase scorers which need to read positions.
+   *
+   * The default implementation returns <code>null</code>.
+   *
+   * @lucene.experimental
+   */
+  public TwoPhaseIterator asTwoPhaseIterator() {
+    return null;
+  }
   
   /** returns parent Weight
    * @lucene.experimental
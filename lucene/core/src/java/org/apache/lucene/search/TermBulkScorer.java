@@ -0,0 +1,156 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.search.BooleanScorer.BucketTable;
+import org.apache.lucene.search.similarities.Similarity;
+
+/** A {@link BulkScorer} for documents matching a <code>Term</code>. It reads
+ *  postings in blocks through {@link DocsEnum#read(int[], int[])} and
+ *  collects them in a tight loop over the decoded doc IDs and frequencies,
+ *  instead of going through {@link DocsEnum#nextDoc()} and
+ *  {@link DocsEnum#freq()} for every document. */
+final class TermBulkScorer extends BulkScorer {
+
+  // the block size of the default postings format
+  static final int BUFFER_SIZE = 128;
+
+  private final Weight weight;
+  private final DocsEnum docsEnum;
+  private final Similarity.SimScorer docScorer;
+  private final int[] docs = new int[BUFFER_SIZE];
+  private final int[] freqs = new int[BUFFER_SIZE];
+  private final float[] scores = new float[BUFFER_SIZE];
+  private boolean scoresComputed;
+  // buffered docs in [upto, count) have not been collected yet
+  private int upto, count;
+  private boolean exhausted;
+
+  TermBulkScorer(Weight weight, DocsEnum docsEnum, Similarity.SimScorer docScorer) {
+    this.weight = weight;
+    this.docsEnum = docsEnum;
+    this.docScorer = docScorer;
+  }
+
+  /** Refill the buffer, returns false if the postings are exhausted. */
+  private boolean refill() throws IOException {
+    if (exhausted) {
+      return false;
+    }
+    count = docsEnum.read(docs, freqs);
+    upto = 0;
+    scoresComputed = false;
+    if (count == 0) {
+      exhausted = true;
+      return false;
+    }
+    return true;
+  }
+
+  private void computeScores() {
+    final Similarity.SimScorer docScorer = this.docScorer;
+    for (int i = upto; i < count; ++i) {
+      scores[i] = docScorer.score(docs[i], freqs[i]);
+    }
+    scoresComputed = true;
+  }
+
+  @Override
+  public boolean score(LeafCollector collector, int max) throws IOException {
+    final BufferedScorer scorer = new BufferedScorer();
+    collector.setScorer(scorer);
+    while (upto < count || refill()) {
+      for (; upto < count; ++upto) {
+        final int doc = docs[upto];
+        if (doc >= max) {
+          return true;
+        }
+        collector.collect(doc);
+      }
+    }
+    return false;
+  }
+
+  /** Add matches of documents that are less than <code>max</code> to the
+   *  given {@link BucketTable}, with the given mask. This is used by
+   *  {@link BooleanScorer} in order to fill its buckets directly from the
+   *  buffered postings. */
+  boolean score(BucketTable table, int mask, int max) throws IOException {
+    while (upto < count || refill()) {
+      if (scoresComputed == false) {
+        // always needed: compute the scores of the whole block at once
+        computeScores();
+      }
+      for (; upto < count; ++upto) {
+        final int doc = docs[upto];
+        if (doc >= max) {
+          return true;
+        }
+        table.add(doc, scores[upto], mask);
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return "TermBulkScorer(" + weight + ")";
+  }
+
+  /** Exposes the document that is being collected. Scores are only computed
+   *  if the collector asks for them. */
+  private final class BufferedScorer extends Scorer {
+
+    BufferedScorer() {
+      super(TermBulkScorer.this.weight);
+    }
+
+    @Override
+    public int docID() {
+      return docs[upto];
+    }
+
+    @Override
+    public int freq() {
+      return freqs[upto];
+    }
+
+    @Override
+    public float score() {
+      return scoresComputed ? scores[upto] : docScorer.score(docs[upto], freqs[upto]);
+    }
+
+    @Override
+    public int nextDoc() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int advance(int target) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long cost() {
+      return docsEnum.cost();
+    }
+  }
+}
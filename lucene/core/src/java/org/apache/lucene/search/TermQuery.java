@@ -83,7 +83,27 @@ public class TermQuery extends Query {
       }
       DocsEnum docs = termsEnum.docs(acceptDocs, null);
       assert docs != null;
-      return new TermScorer(this, docs, similarity.simScorer(stats, context));
+      final long totalTermFreq = termsEnum.totalTermFreq();
+      final int maxFreq;
+      if (totalTermFreq == -1) {
+        maxFreq = docs.getMaxFreq();
+      } else {
+        // the other docs that contain the term have a freq of at least 1
+        maxFreq = (int) Math.min(Integer.MAX_VALUE, totalTermFreq - termsEnum.docFreq() + 1);
+      }
+      return new TermScorer(this, docs, similarity.simScorer(stats, context), maxFreq);
+    }
+
+    @Override
+    public BulkScorer bulkScorer(AtomicReaderContext context, boolean scoreDocsInOrder, Bits acceptDocs) throws IOException {
+      assert termStates.topReaderContext == ReaderUtil.getTopLevelContext(context) : "The top-reader used to create Weight (" + termStates.topReaderContext + ") is not the same as the current reader's top-reader (" + ReaderUtil.getTopLevelContext(context);
+      final TermsEnum termsEnum = getTermsEnum(context);
+      if (termsEnum == null) {
+        return null;
+      }
+      DocsEnum docs = termsEnum.docs(acceptDocs, null);
+      assert docs != null;
+      return new TermBulkScorer(this, docs, similarity.simScorer(stats, context));
     }
     
     /**
@@ -27,6 +27,7 @@ import org.apache.lucene.search.similarities.Similarity;
 final class TermScorer extends Scorer {
   private final DocsEnum docsEnum;
   private final Similarity.SimScorer docScorer;
+  private final int maxFreq;
   
   /**
    * Construct a <code>TermScorer</code>.
@@ -38,11 +39,14 @@ final class TermScorer extends Scorer {
    * @param docScorer
    *          The </code>Similarity.SimScorer</code> implementation 
    *          to be used for score computations.
+   * @param maxFreq
+   *          An upper bound of the frequency of the term in any document.
    */
-  TermScorer(Weight weight, DocsEnum td, Similarity.SimScorer docScorer) {
+  TermScorer(Weight weight, DocsEnum td, Similarity.SimScorer docScorer, int maxFreq) {
     super(weight);
     this.docScorer = docScorer;
     this.docsEnum = td;
+    this.maxFreq = maxFreq;
   }
 
   @Override
@@ -65,6 +69,11 @@ final class TermScorer extends Scorer {
     return docsEnum.nextDoc();
   }
   
+  @Override
+  public int read(int[] docs, int[] freqs) throws IOException {
+    return docsEnum.read(docs, freqs);
+  }
+
   @Override
   public float score() throws IOException {
     assert docID() != NO_MORE_DOCS;
@@ -90,6 +99,28 @@ final class TermScorer extends Scorer {
     return docsEnum.cost();
   }
 
+  /** Returns an upper bound of the score of any document, or
+   *  {@link Float#POSITIVE_INFINITY} if unknown. */
+  float maxScore() {
+    return docScorer.maxScore(maxFreq);
+  }
+
+  @Override
+  public int advanceShallow(int target) throws IOException {
+    return docsEnum.advanceShallow(target);
+  }
+
+  @Override
+  public int getMaxFreq() {
+    return docsEnum.getMaxFreq();
+  }
+
+  /** Returns an upper bound of the score of the documents of the block
+   *  that was selected by the last call to {@link #advanceShallow(int)}. */
+  float maxBlockScore() {
+    return docScorer.maxScore(Math.min(maxFreq, getMaxFreq()));
+  }
+
   /** Returns a string representation of this <code>TermScorer</code>. */
   @Override
   public String toString() { return "scorer(" + weight + ")"; }
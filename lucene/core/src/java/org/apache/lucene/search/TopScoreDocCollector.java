@@ -38,8 +38,19 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
 
   // Assumes docs are scored in order.
   private static class InOrderTopScoreDocCollector extends TopScoreDocCollector {
-    private InOrderTopScoreDocCollector(int numHits) {
+    private final boolean trackTotalHits;
+
+    private InOrderTopScoreDocCollector(int numHits, boolean trackTotalHits) {
       super(numHits);
+      this.trackTotalHits = trackTotalHits;
+    }
+
+    @Override
+    public void setScorer(Scorer scorer) throws IOException {
+      super.setScorer(scorer);
+      if (!trackTotalHits) {
+        scorer.setMinCompetitiveScore(pqTop.score);
+      }
     }
     
     @Override
@@ -60,6 +71,10 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
       pqTop.doc = doc + docBase;
       pqTop.score = score;
       pqTop = pq.updateTop();
+      if (!trackTotalHits) {
+        // only hits that score better than the bottom of the queue can compete now
+        scorer.setMinCompetitiveScore(pqTop.score);
+      }
     }
     
     @Override
@@ -71,13 +86,23 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
   // Assumes docs are scored in order.
   private static class InOrderPagingScoreDocCollector extends TopScoreDocCollector {
     private final ScoreDoc after;
+    private final boolean trackTotalHits;
     // this is always after.doc - docBase, to save an add when score == after.score
     private int afterDoc;
     private int collectedHits;
 
-    private InOrderPagingScoreDocCollector(ScoreDoc after, int numHits) {
+    private InOrderPagingScoreDocCollector(ScoreDoc after, int numHits, boolean trackTotalHits) {
       super(numHits);
       this.after = after;
+      this.trackTotalHits = trackTotalHits;
+    }
+
+    @Override
+    public void setScorer(Scorer scorer) throws IOException {
+      super.setScorer(scorer);
+      if (!trackTotalHits) {
+        scorer.setMinCompetitiveScore(pqTop.score);
+      }
     }
     
     @Override
@@ -105,6 +130,9 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
       pqTop.doc = doc + docBase;
       pqTop.score = score;
       pqTop = pq.updateTop();
+      if (!trackTotalHits) {
+        scorer.setMinCompetitiveScore(pqTop.score);
+      }
     }
 
     @Override
@@ -249,6 +277,30 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
    * objects.
    */
   public static TopScoreDocCollector create(int numHits, ScoreDoc after, boolean docsScoredInOrder) {
+    return create(numHits, after, docsScoredInOrder, true);
+  }
+
+  /**
+   * Creates a new {@link TopScoreDocCollector} given the number of hits to
+   * collect, the bottom of the previous page, whether documents are scored in
+   * order by the input {@link Scorer} to {@link #setScorer(Scorer)}, and
+   * whether the total number of hits must be counted.
+   *
+   * <p>When <code>trackTotalHits</code> is <code>false</code> and documents
+   * are scored in order, the collector passes the score of the bottom of its
+   * queue to {@link Scorer#setMinCompetitiveScore(float)}, which lets some
+   * queries (such as disjunctions of terms) skip over documents that can't
+   * make it to the top hits. {@link TopDocs#totalHits} is then only a lower
+   * bound of the number of matches.
+   *
+   * <p><b>NOTE</b>: The instances returned by this method
+   * pre-allocate a full array of length
+   * <code>numHits</code>, and fill the array with sentinel
+   * objects.
+   *
+   * @lucene.experimental
+   */
+  public static TopScoreDocCollector create(int numHits, ScoreDoc after, boolean docsScoredInOrder, boolean trackTotalHits) {
     
     if (numHits <= 0) {
       throw new IllegalArgumentException("numHits must be > 0; please use TotalHitCountCollector if you just need the total hit count");
@@ -256,8 +308,8 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
     
     if (docsScoredInOrder) {
       return after == null 
-        ? new InOrderTopScoreDocCollector(numHits) 
-        : new InOrderPagingScoreDocCollector(after, numHits);
+        ? new InOrderTopScoreDocCollector(numHits, trackTotalHits) 
+        : new InOrderPagingScoreDocCollector(after, numHits, trackTotalHits);
     } else {
       return after == null
         ? new OutOfOrderTopScoreDocCollector(numHits)
@@ -0,0 +1,133 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.index.AtomicReaderContext;
+
+/**
+ * A {@link FilterCachingPolicy} that tracks usage statistics of recently-used
+ * filters in order to decide on which filters are worth caching.
+ *
+ * It also uses some heuristics on segments and filters in order to not cache
+ * on small segments, where the cost of caching is likely to outweigh the
+ * benefits, and to cache costly filters more aggressively than cheap ones.
+ *
+ * @lucene.experimental
+ */
+public final class UsageTrackingFilterCachingPolicy implements FilterCachingPolicy {
+
+  static boolean isCostly(Filter filter) {
+    // This does not measure the cost of iterating over the filter (for this we
+    // already have the DocIdSetIterator#cost API) but the cost to build the
+    // DocIdSet in the first place
+    return filter instanceof MultiTermQueryWrapperFilter;
+  }
+
+  static boolean isCheapToCache(DocIdSet set) {
+    // the produced doc set is already cacheable, so caching has no
+    // overhead at all. TODO: extend this to sets whose iterators have a low
+    // cost?
+    return set == null || set.isCacheable();
+  }
+
+  private final FilterCachingPolicy.CacheOnLargeSegments segmentPolicy;
+  private final FrequencyTrackingRingBuffer recentlyUsedFilters;
+  private final int minFrequencyCostlyFilters;
+  private final int minFrequencyCheapFilters;
+  private final int minFrequencyOtherFilters;
+
+  /**
+   * Create a new instance.
+   *
+   * @param minSizeRatio              the minimum size ratio for segments to be cached, see {@link FilterCachingPolicy.CacheOnLargeSegments}
+   * @param historySize               the number of recently used filters to track
+   * @param minFrequencyCostlyFilters how many times filters whose {@link Filter#getDocIdSet(AtomicReaderContext, org.apache.lucene.util.Bits) DocIdSet} is expensive to compute should have been seen before being cached
+   * @param minFrequencyCheapFilters  how many times filters that produce {@link DocIdSet}s that are cheap to cache should have been seen before being cached
+   * @param minFrequencyOtherFilters  how many times other filters should have been seen before being cached
+   */
+  public UsageTrackingFilterCachingPolicy(
+      float minSizeRatio,
+      int historySize,
+      int minFrequencyCostlyFilters,
+      int minFrequencyCheapFilters,
+      int minFrequencyOtherFilters) {
+    this(new FilterCachingPolicy.CacheOnLargeSegments(minSizeRatio), historySize,
+        minFrequencyCostlyFilters, minFrequencyCheapFilters, minFrequencyOtherFilters);
+  }
+
+  /** Create a new instance with sensible defaults. */
+  public UsageTrackingFilterCachingPolicy() {
+    // track the 256 most recently used filters: this is much more than the
+    // frequencies that we require so that popular filters stay cached
+    this(FilterCachingPolicy.CacheOnLargeSegments.DEFAULT, 256, 2, 2, 5);
+  }
+
+  private UsageTrackingFilterCachingPolicy(
+      FilterCachingPolicy.CacheOnLargeSegments segmentPolicy,
+      int historySize,
+      int minFrequencyCostlyFilters,
+      int minFrequencyCheapFilters,
+      int minFrequencyOtherFilters) {
+    this.segmentPolicy = segmentPolicy;
+    if (minFrequencyOtherFilters < minFrequencyCheapFilters || minFrequencyOtherFilters < minFrequencyCostlyFilters) {
+      throw new IllegalArgumentException("it is counter-intuitive to cache other filters more aggressively than cheap and costly filters");
+    }
+    if (minFrequencyOtherFilters > historySize) {
+      throw new IllegalArgumentException("minFrequencyOtherFilters must be less than or equal to historySize, got " + minFrequencyOtherFilters);
+    }
+    this.recentlyUsedFilters = new FrequencyTrackingRingBuffer(historySize);
+    this.minFrequencyCostlyFilters = minFrequencyCostlyFilters;
+    this.minFrequencyCheapFilters = minFrequencyCheapFilters;
+    this.minFrequencyOtherFilters = minFrequencyOtherFilters;
+  }
+
+  @Override
+  public void onUse(Filter filter) {
+    // Using the filter hash codes might help keep this tracking efficient
+    // since ints are cheap to store and compare, at the cost of occasional
+    // false positives due to hash collisions
+    final int hashCode = filter.hashCode();
+    synchronized (this) {
+      recentlyUsedFilters.add(hashCode);
+    }
+  }
+
+  /** Return how many times the given filter has been used recently. */
+  synchronized int frequency(Filter filter) {
+    return recentlyUsedFilters.frequency(filter.hashCode());
+  }
+
+  @Override
+  public boolean shouldCache(Filter filter, AtomicReaderContext context, DocIdSet set) throws IOException {
+    if (segmentPolicy.shouldCache(filter, context, set) == false) {
+      return false;
+    }
+    final int frequency = frequency(filter);
+    if (frequency >= minFrequencyOtherFilters) {
+      return true;
+    } else if (frequency >= minFrequencyCostlyFilters && isCostly(filter)) {
+      return true;
+    } else if (frequency >= minFrequencyCheapFilters && isCheapToCache(set)) {
+      return true;
+    }
+    return false;
+  }
+
+}
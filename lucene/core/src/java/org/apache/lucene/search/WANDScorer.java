@@ -0,0 +1,259 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * A disjunction of {@link TermScorer}s that implements block-max WAND
+ * (Ding and Suel, "Faster top-k document retrieval using block-max
+ * indexes"). Until {@link #setMinCompetitiveScore(float)} is called, it
+ * matches and scores exactly like {@link DisjunctionSumScorer}. Once a
+ * minimum competitive score is known, it only returns documents whose score
+ * may be greater than this score, using the maximum score of every term,
+ * and of every block of postings, to skip over the others.
+ */
+final class WANDScorer extends Scorer {
+
+  // scores are summed in a different order than the upper bounds, and upper
+  // bounds of the sub scorers are computed with floats: leave some room for
+  // rounding errors
+  private static final double MAX_SCORE_SLACK = 1 + 1e-6;
+
+  /** Sub scorers which are not exhausted yet, sorted by doc ID. */
+  private final TermScorer[] scorers;
+  private int numScorers;
+  /** Upper bounds of the scores of the sub scorers, in the same order. */
+  private final float[] maxScores;
+  private final float[] coord;
+  /** maxCoord[i] is the maximum coord factor for up to i matching clauses */
+  private final float[] maxCoord;
+  private final long cost;
+
+  private float minCompetitiveScore = Float.NEGATIVE_INFINITY;
+  private int doc = -1;
+  private int freq;
+  private float score;
+
+  /** Construct a <code>WANDScorer</code>.
+   * @param weight The weight to be used.
+   * @param subScorers Array of at least two subscorers, whose
+   *        {@link TermScorer#maxScore()} must not be infinite.
+   * @param coord Table of coordination factors
+   */
+  WANDScorer(Weight weight, TermScorer[] subScorers, float[] coord) {
+    super(weight);
+    if (subScorers.length <= 1) {
+      throw new IllegalArgumentException("There must be at least 2 subScorers");
+    }
+    this.scorers = subScorers.clone();
+    this.numScorers = scorers.length;
+    this.coord = coord;
+    maxScores = new float[numScorers];
+    long cost = 0;
+    for (int i = 0; i < numScorers; i++) {
+      maxScores[i] = scorers[i].maxScore();
+      cost += scorers[i].cost();
+    }
+    this.cost = cost;
+    maxCoord = new float[coord.length];
+    for (int i = 1; i < coord.length; i++) {
+      maxCoord[i] = Math.max(maxCoord[i - 1], coord[i]);
+    }
+  }
+
+  /** Returns true if the given scorers all have a finite upper bound for
+   *  their scores, so that they can be combined with a {@link WANDScorer}. */
+  static boolean canUse(TermScorer[] scorers) {
+    for (TermScorer scorer : scorers) {
+      final float maxScore = scorer.maxScore();
+      if (Float.isInfinite(maxScore) || Float.isNaN(maxScore)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void setMinCompetitiveScore(float minScore) {
+    assert minScore >= minCompetitiveScore;
+    minCompetitiveScore = minScore;
+  }
+
+  @Override
+  public int docID() {
+    return doc;
+  }
+
+  @Override
+  public int nextDoc() throws IOException {
+    assert doc != NO_MORE_DOCS;
+    return doNext(doc + 1);
+  }
+
+  @Override
+  public int advance(int target) throws IOException {
+    assert doc != NO_MORE_DOCS;
+    return doNext(target);
+  }
+
+  @Override
+  public float score() throws IOException {
+    return score;
+  }
+
+  @Override
+  public int freq() throws IOException {
+    return freq;
+  }
+
+  @Override
+  public long cost() {
+    return cost;
+  }
+
+  @Override
+  public Collection<ChildScorer> getChildren() {
+    ArrayList<ChildScorer> children = new ArrayList<>(numScorers);
+    for (int i = 0; i < numScorers; i++) {
+      children.add(new ChildScorer(scorers[i], "SHOULD"));
+    }
+    return children;
+  }
+
+  /** Upper bound of the score of a document that matches at most
+   *  <code>numMatches</code> clauses whose max scores sum up to
+   *  <code>maxScoreSum</code>. */
+  private float scoreUpperBound(double maxScoreSum, int numMatches) {
+    return (float) (maxScoreSum * maxCoord[numMatches] * MAX_SCORE_SLACK);
+  }
+
+  private boolean isCompetitive(float upperBound) {
+    return minCompetitiveScore == Float.NEGATIVE_INFINITY || upperBound > minCompetitiveScore;
+  }
+
+  /** Advance the first <code>upTo</code> scorers to <code>target</code>
+   *  and restore the ordering of scorers. */
+  private void advanceHead(int upTo, int target) throws IOException {
+    for (int i = 0; i < upTo; i++) {
+      final TermScorer scorer = scorers[i];
+      final int docID = scorer.docID();
+      if (docID < target) {
+        if (docID == target - 1) {
+          scorer.nextDoc();
+        } else {
+          scorer.advance(target);
+        }
+      }
+    }
+    sort(upTo);
+  }
+
+  /** Restore ordering, knowing that only the first <code>upTo</code>
+   *  scorers may be out of order, and remove exhausted scorers. */
+  private void sort(int upTo) {
+    // insertion sort: we usually only have a handful of clauses
+    for (int i = Math.min(upTo, numScorers - 1) - 1; i >= 0; i--) {
+      final TermScorer scorer = scorers[i];
+      final float maxScore = maxScores[i];
+      final int docID = scorer.docID();
+      int j = i;
+      while (j + 1 < numScorers && scorers[j + 1].docID() < docID) {
+        scorers[j] = scorers[j + 1];
+        maxScores[j] = maxScores[j + 1];
+        j++;
+      }
+      scorers[j] = scorer;
+      maxScores[j] = maxScore;
+    }
+    while (numScorers > 0 && scorers[numScorers - 1].docID() == NO_MORE_DOCS) {
+      scorers[--numScorers] = null;
+    }
+  }
+
+  private int doNext(int target) throws IOException {
+    advanceHead(numScorers, target);
+
+    while (true) {
+      if (numScorers == 0) {
+        return doc = NO_MORE_DOCS;
+      }
+
+      // find the pivot: the first scorer so that the sum of max scores
+      // up to this scorer could be competitive
+      int pivot = -1;
+      double maxScoreSum = 0;
+      for (int i = 0; i < numScorers; i++) {
+        maxScoreSum += maxScores[i];
+        if (isCompetitive(scoreUpperBound(maxScoreSum, i + 1))) {
+          pivot = i;
+          break;
+        }
+      }
+      if (pivot == -1) {
+        // even a document that would match all remaining clauses can't compete
+        return doc = NO_MORE_DOCS;
+      }
+      final int pivotDoc = scorers[pivot].docID();
+      while (pivot + 1 < numScorers && scorers[pivot + 1].docID() == pivotDoc) {
+        pivot++;
+      }
+      final int numCandidates = pivot + 1;
+
+      if (minCompetitiveScore != Float.NEGATIVE_INFINITY) {
+        // check whether the blocks that contain pivotDoc may be competitive
+        double blockMaxScoreSum = 0;
+        int blockEnd = NO_MORE_DOCS;
+        for (int i = 0; i < numCandidates; i++) {
+          blockEnd = Math.min(blockEnd, scorers[i].advanceShallow(pivotDoc));
+          blockMaxScoreSum += scorers[i].maxBlockScore();
+        }
+        if (isCompetitive(scoreUpperBound(blockMaxScoreSum, numCandidates)) == false) {
+          // no document can compete until one of the blocks ends, or until
+          // the next scorer matches
+          int next = blockEnd == NO_MORE_DOCS ? NO_MORE_DOCS : blockEnd + 1;
+          if (numCandidates < numScorers) {
+            next = Math.min(next, scorers[numCandidates].docID());
+          }
+          advanceHead(numCandidates, next);
+          continue;
+        }
+      }
+
+      if (scorers[0].docID() == pivotDoc) {
+        // all candidates are positioned on pivotDoc
+        double sum = 0;
+        for (int i = 0; i < numCandidates; i++) {
+          sum += scorers[i].score();
+        }
+        final float score = (float) sum * coord[numCandidates];
+        if (isCompetitive(score)) {
+          this.freq = numCandidates;
+          this.score = score;
+          return doc = pivotDoc;
+        }
+        advanceHead(numCandidates, pivotDoc + 1);
+      } else {
+        // documents before pivotDoc can't be competitive
+        advanceHead(pivot, pivotDoc);
+      }
+    }
+  }
+}
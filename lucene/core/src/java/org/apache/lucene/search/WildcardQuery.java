@@ -18,6 +18,7 @@ package org.apache.lucene.search;
  */
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.lucene.index.Term;
@@ -25,6 +26,7 @@ import org.apache.lucene.util.ToStringUtils;
 import org.apache.lucene.util.automaton.Automata;
 import org.apache.lucene.util.automaton.Operations;
 import org.apache.lucene.util.automaton.Automaton;
+import org.apache.lucene.util.automaton.CompiledAutomaton;
 
 /** Implements the wildcard search query. Supported wildcards are <code>*</code>, which
  * matches any character sequence (including the empty one), and <code>?</code>,
@@ -54,7 +56,18 @@ public class WildcardQuery extends AutomatonQuery {
    * Constructs a query for terms matching <code>term</code>. 
    */
   public WildcardQuery(Term term) {
-    super(term, toAutomaton(term));
+    super(term, compile(term));
+  }
+
+  private static CompiledAutomatonCache.Entry compile(final Term term) {
+    return CompiledAutomatonCache.getOrLoad(Arrays.<Object>asList("wildcard", term.text()),
+        new CompiledAutomatonCache.Loader() {
+          @Override
+          CompiledAutomatonCache.Entry load() {
+            final Automaton automaton = toAutomaton(term);
+            return new CompiledAutomatonCache.Entry(automaton, new CompiledAutomaton(automaton));
+          }
+        });
   }
   
   /**
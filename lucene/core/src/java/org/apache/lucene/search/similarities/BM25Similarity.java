@@ -222,6 +222,7 @@ public class BM25Similarity extends Similarity {
     private final float weightValue; // boost * idf * (k1 + 1)
     private final NumericDocValues norms;
     private final float[] cache;
+    private float minNorm = Float.NaN; // lazily computed by maxScore
     
     BM25DocScorer(BM25Stats stats, NumericDocValues norms) throws IOException {
       this.stats = stats;
@@ -236,6 +237,26 @@ public class BM25Similarity extends Similarity {
       float norm = norms == null ? k1 : cache[(byte)norms.get(doc) & 0xFF];
       return weightValue * freq / (freq + norm);
     }
+
+    @Override
+    public float maxScore(float maxFreq) {
+      if (weightValue < 0) {
+        return Float.POSITIVE_INFINITY;
+      }
+      if (Float.isNaN(minNorm)) {
+        // if there are no norms, we act as if b=0
+        float min = k1;
+        if (norms != null) {
+          min = Float.POSITIVE_INFINITY;
+          for (float norm : cache) {
+            min = Math.min(min, norm);
+          }
+        }
+        minNorm = min;
+      }
+      // the score increases with freq and decreases with the norm factor
+      return weightValue * maxFreq / (maxFreq + minNorm);
+    }
     
     @Override
     public Explanation explain(int doc, Explanation freq) {
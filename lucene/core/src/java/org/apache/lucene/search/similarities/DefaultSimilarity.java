@@ -20,6 +20,7 @@ package org.apache.lucene.search.similarities;
 import org.apache.lucene.index.FieldInvertState;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.SmallFloat;
+import org.apache.lucene.util.VirtualMethod;
 
 /**
  * Expert: Default scoring implementation which {@link #encodeNormValue(float)
@@ -53,6 +54,12 @@ public class DefaultSimilarity extends TFIDFSimilarity {
     }
   }
 
+  private static final VirtualMethod<DefaultSimilarity> tfMethod =
+      new VirtualMethod<>(DefaultSimilarity.class, "tf", float.class);
+
+  // we can only bound tf() if it is our own (monotonic) implementation
+  private final boolean tfOverridden = tfMethod.isOverriddenAsOf(getClass());
+
   /** Sole constructor: parameter-free */
   public DefaultSimilarity() {}
   
@@ -120,6 +127,13 @@ public class DefaultSimilarity extends TFIDFSimilarity {
   public float tf(float freq) {
     return (float)Math.sqrt(freq);
   }
+
+  /** Returns <code>tf(maxFreq)</code> unless {@link #tf(float)} is
+   *  overridden, since <code>sqrt</code> is monotonic. */
+  @Override
+  public float maxTf(float maxFreq) {
+    return tfOverridden ? super.maxTf(maxFreq) : tf(maxFreq);
+  }
     
   /** Implemented as <code>1 / (distance + 1)</code>. */
   @Override
@@ -557,6 +557,19 @@ public abstract class TFIDFSimilarity extends Similarity {
    */
   public abstract float tf(float freq);
 
+  /** Expert: returns an upper bound of {@link #tf(float)} for all
+   * frequencies that are less than or equal to <code>maxFreq</code>, or
+   * {@link Float#POSITIVE_INFINITY} if no such bound is known. This is used
+   * to skip over documents that can't compete when only the top hits are
+   * needed.
+   * <p>The default implementation returns {@link Float#POSITIVE_INFINITY}.
+   *
+   * @lucene.experimental
+   */
+  public float maxTf(float maxFreq) {
+    return Float.POSITIVE_INFINITY;
+  }
+
   /**
    * Computes a score factor for a simple term and returns an explanation
    * for that score factor.
@@ -715,6 +728,15 @@ public abstract class TFIDFSimilarity extends Similarity {
       
       return norms == null ? raw : raw * decodeNormValue(norms.get(doc));  // normalize for field
     }
+
+    @Override
+    public float maxScore(float maxFreq) {
+      if (weightValue < 0 || norms != null) {
+        // norms include index-time boosts, so they can't be bounded
+        return Float.POSITIVE_INFINITY;
+      }
+      return maxTf(maxFreq) * weightValue;
+    }
     
     @Override
     public float computeSlopFactor(int distance) {
@@ -262,12 +262,18 @@ public abstract class BufferedIndexInput extends IndexInput implements RandomAcc
   public final byte readByte(long pos) throws IOException {
     long index = pos - bufferStart;
     if (index < 0 || index >= bufferLength) {
-      bufferStart = pos;
+      long start = pos;
+      if (index < 0 && bufferLength > 0) {
+        // reading backwards (eg. an FST that is read in place): buffer the
+        // bytes that precede pos rather than the ones that follow it
+        start = Math.max(0, pos - bufferSize + 1);
+      }
+      bufferStart = start;
       bufferPosition = 0;
       bufferLength = 0;  // trigger refill() on read()
-      seekInternal(pos);
+      seekInternal(start);
       refill();
-      index = 0;
+      index = pos - start;
     }
     return buffer[(int)index];
   }
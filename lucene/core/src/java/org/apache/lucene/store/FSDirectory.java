@@ -19,6 +19,8 @@ package org.apache.lucene.store;
 
 import org.apache.lucene.util.Constants;
 import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.NamedThreadFactory;
+import org.apache.lucene.util.ThreadInterruptedException;
 
 import java.io.FileOutputStream;
 import java.io.FilterOutputStream;
@@ -32,6 +34,10 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import static java.util.Collections.synchronizedSet;
@@ -117,6 +123,7 @@ public abstract class FSDirectory extends BaseDirectory {
 
   protected final Path directory; // The underlying filesystem directory
   protected final Set<String> staleFiles = synchronizedSet(new HashSet<String>()); // Files written, but not yet sync'ed
+  private volatile int syncThreadCount = 1;
 
   /** Create a new FSDirectory for the named location (ctor for subclasses).
    * @param path the path of the directory
@@ -264,12 +271,73 @@ public abstract class FSDirectory extends BaseDirectory {
     Set<String> toSync = new HashSet<>(names);
     toSync.retainAll(staleFiles);
 
-    for (String name : toSync) {
-      fsync(name);
+    final int threadCount = Math.min(syncThreadCount, toSync.size());
+    if (threadCount > 1) {
+      fsyncConcurrently(toSync, threadCount);
+    } else {
+      for (String name : toSync) {
+        fsync(name);
+      }
     }
     
     staleFiles.removeAll(toSync);
   }
+
+  // fsyncs the given files on a pool of threadCount threads
+  private void fsyncConcurrently(Collection<String> names, int threadCount) throws IOException {
+    final ExecutorService executor = Executors.newFixedThreadPool(threadCount, new NamedThreadFactory("FSDirectory-sync"));
+    try {
+      final List<Future<Void>> futures = new ArrayList<>(names.size());
+      for (final String name : names) {
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws IOException {
+            fsync(name);
+            return null;
+          }
+        }));
+      }
+      Throwable th = null;
+      for (Future<Void> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          if (th == null) {
+            th = e.getCause();
+          } else {
+            th.addSuppressed(e.getCause());
+          }
+        } catch (InterruptedException ie) {
+          throw new ThreadInterruptedException(ie);
+        }
+      }
+      IOUtils.reThrow(th);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Sets the maximum number of threads that {@link #sync(Collection)} uses to
+   * fsync files concurrently. The default is 1, which fsyncs files one after
+   * the other. Higher values can reduce the latency of commits on storage that
+   * serves concurrent flushes well, such as SSDs, RAID arrays or network block
+   * devices.
+   */
+  public void setSyncThreadCount(int syncThreadCount) {
+    if (syncThreadCount < 1) {
+      throw new IllegalArgumentException("syncThreadCount must be >= 1, got " + syncThreadCount);
+    }
+    this.syncThreadCount = syncThreadCount;
+  }
+
+  /**
+   * Returns the maximum number of threads used to fsync files.
+   * @see #setSyncThreadCount(int)
+   */
+  public int getSyncThreadCount() {
+    return syncThreadCount;
+  }
   
   @Override
   public void renameFile(String source, String dest) throws IOException {
@@ -19,6 +19,7 @@ package org.apache.lucene.store;
  
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.ClosedChannelException; // javadoc @link
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
@@ -28,11 +29,20 @@ import java.nio.file.StandardOpenOption;
 import java.security.AccessController;
 import java.security.PrivilegedExceptionAction;
 import java.security.PrivilegedActionException;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.lang.reflect.Method;
 
+import org.apache.lucene.index.IndexFileNames;
 import org.apache.lucene.store.ByteBufferIndexInput.BufferCleaner;
 import org.apache.lucene.util.Constants;
+import org.apache.lucene.util.NamedThreadFactory;
 
 /** File-based {@link Directory} implementation that uses
  *  mmap for reading, and {@link
@@ -77,6 +87,10 @@ import org.apache.lucene.util.Constants;
  * blocked on IO. The channel will remain closed and subsequent access
  * to {@link MMapDirectory} will throw a {@link ClosedChannelException}. 
  * </p>
+ * <p>Files can be preloaded into physical memory as soon as they are
+ * opened, see {@link #setPreloadExtensions}. This is done asynchronously,
+ * so that opening a reader is not slowed down, and avoids that the first
+ * queries after opening an index stall on page faults.
  * @see <a href="http://blog.thetaphi.de/2012/07/use-lucenes-mmapdirectory-on-64bit.html">Blog post about MMapDirectory</a>
  */
 public class MMapDirectory extends FSDirectory {
@@ -87,6 +101,10 @@ public class MMapDirectory extends FSDirectory {
    */
   public static final int DEFAULT_MAX_BUFF = Constants.JRE_IS_64BIT ? (1 << 30) : (1 << 28);
   final int chunkSizePower;
+  private volatile Set<String> preloadExtensions = Collections.emptySet();
+  private volatile Set<IOContext.Context> preloadContexts = EnumSet.of(IOContext.Context.READ, IOContext.Context.DEFAULT);
+  private int preloadThreadCount = 1;
+  private ThreadPoolExecutor preloadExecutor;
 
   /** Create a new MMapDirectory for the named location.
    *
@@ -188,6 +206,88 @@ public class MMapDirectory extends FSDirectory {
     return 1 << chunkSizePower;
   }
 
+  /**
+   * Sets the extensions of the files that should be loaded into physical
+   * memory when they are opened, eg. <code>tim</code>, <code>doc</code> or
+   * <code>dvd</code>, or <code>cfs</code> for compound files. Files are
+   * loaded in the background, using {@link MappedByteBuffer#load()} on each
+   * chunk, and loading stops when the file is closed. By default no file
+   * is preloaded.
+   * <p><b>NOTE:</b> this only helps if there is enough free physical memory
+   * to hold the preloaded files, otherwise they just evict other pages.
+   */
+  public void setPreloadExtensions(Set<String> extensions) {
+    this.preloadExtensions = Collections.unmodifiableSet(new HashSet<>(extensions));
+  }
+
+  /** Returns the extensions of the files that are preloaded.
+   * @see #setPreloadExtensions */
+  public Set<String> getPreloadExtensions() {
+    return preloadExtensions;
+  }
+
+  /**
+   * Sets the {@link IOContext.Context}s for which files are preloaded. The
+   * default is {@link IOContext.Context#READ} and {@link IOContext.Context#DEFAULT},
+   * so that files opened for merging are not preloaded.
+   */
+  public void setPreloadContexts(Set<IOContext.Context> contexts) {
+    this.preloadContexts = contexts.isEmpty()
+        ? EnumSet.noneOf(IOContext.Context.class)
+        : EnumSet.copyOf(contexts);
+  }
+
+  /** Returns the contexts for which files are preloaded.
+   * @see #setPreloadContexts */
+  public Set<IOContext.Context> getPreloadContexts() {
+    return Collections.unmodifiableSet(preloadContexts);
+  }
+
+  /** Sets the maximum number of threads that preload files concurrently.
+   *  The default is 1. */
+  public synchronized void setPreloadThreadCount(int preloadThreadCount) {
+    if (preloadThreadCount < 1) {
+      throw new IllegalArgumentException("preloadThreadCount must be >= 1, got " + preloadThreadCount);
+    }
+    this.preloadThreadCount = preloadThreadCount;
+    if (preloadExecutor != null) {
+      if (preloadThreadCount > preloadExecutor.getMaximumPoolSize()) {
+        preloadExecutor.setMaximumPoolSize(preloadThreadCount);
+        preloadExecutor.setCorePoolSize(preloadThreadCount);
+      } else {
+        preloadExecutor.setCorePoolSize(preloadThreadCount);
+        preloadExecutor.setMaximumPoolSize(preloadThreadCount);
+      }
+    }
+  }
+
+  /** Returns the maximum number of threads that preload files.
+   * @see #setPreloadThreadCount */
+  public synchronized int getPreloadThreadCount() {
+    return preloadThreadCount;
+  }
+
+  private boolean shouldPreload(String name, IOContext context) {
+    final Set<String> extensions = preloadExtensions;
+    return extensions.isEmpty() == false
+        && preloadContexts.contains(context.context)
+        && extensions.contains(IndexFileNames.getExtension(name));
+  }
+
+  private synchronized void preload(Preloader preloader) {
+    if (isOpen == false) {
+      return;
+    }
+    if (preloadExecutor == null) {
+      // threads go away when there is nothing to preload
+      preloadExecutor = new ThreadPoolExecutor(preloadThreadCount, preloadThreadCount,
+          1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+          new NamedThreadFactory("MMapDirectory-preload"));
+      preloadExecutor.allowCoreThreadTimeOut(true);
+    }
+    preloadExecutor.execute(preloader);
+  }
+
   /** Creates an IndexInput for the file with the given name. */
   @Override
   public IndexInput openInput(String name, IOContext context) throws IOException {
@@ -196,10 +296,27 @@ public class MMapDirectory extends FSDirectory {
     try (FileChannel c = FileChannel.open(path, StandardOpenOption.READ)) {
       final String resourceDescription = "MMapIndexInput(path=\"" + path.toString() + "\")";
       final boolean useUnmap = getUseUnmap();
+      final ByteBuffer[] buffers = map(resourceDescription, c, 0, c.size());
+      if (shouldPreload(name, context)) {
+        final Preloader preloader = new Preloader(buffers, useUnmap ? CLEANER : null);
+        final IndexInput in = ByteBufferIndexInput.newInstance(resourceDescription,
+            buffers, c.size(), chunkSizePower, preloader, useUnmap);
+        preload(preloader);
+        return in;
+      }
       return ByteBufferIndexInput.newInstance(resourceDescription,
-          map(resourceDescription, c, 0, c.size()), 
-          c.size(), chunkSizePower, useUnmap ? CLEANER : null, useUnmap);
+          buffers, c.size(), chunkSizePower, useUnmap ? CLEANER : null, useUnmap);
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    if (preloadExecutor != null) {
+      // pending preloads are useless once the directory is closed
+      preloadExecutor.shutdownNow();
+      preloadExecutor = null;
     }
+    super.close();
   }
 
   /** Maps a file into a set of buffers */
@@ -262,6 +379,45 @@ public class MMapDirectory extends FSDirectory {
     return newIoe;
   }
   
+  /**
+   * Loads the buffers of a file into physical memory, chunk by chunk. It is
+   * also the {@link BufferCleaner} of the file, so that closing the file
+   * stops loading, and waits for the chunk being loaded, before buffers may
+   * be unmapped.
+   */
+  private static final class Preloader implements Runnable, BufferCleaner {
+    private final ByteBuffer[] buffers;
+    private final BufferCleaner delegate;
+    private boolean closed; // guarded by this
+
+    Preloader(ByteBuffer[] buffers, BufferCleaner delegate) {
+      this.buffers = buffers;
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void run() {
+      for (ByteBuffer buffer : buffers) {
+        synchronized (this) {
+          if (closed || Thread.currentThread().isInterrupted()) {
+            return;
+          }
+          ((MappedByteBuffer) buffer).load();
+        }
+      }
+    }
+
+    @Override
+    public void freeBuffer(ByteBufferIndexInput parent, ByteBuffer buffer) throws IOException {
+      synchronized (this) {
+        closed = true;
+      }
+      if (delegate != null) {
+        delegate.freeBuffer(parent, buffer);
+      }
+    }
+  }
+
   private static final BufferCleaner CLEANER = new BufferCleaner() {
     @Override
     public void freeBuffer(final ByteBufferIndexInput parent, final ByteBuffer buffer) throws IOException {
@@ -26,14 +26,25 @@ import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 /**
  * On-disk sorting of byte arrays. Each byte array (entry) is a composed of the following
@@ -43,6 +54,13 @@ import java.util.Locale;
  *   <li>exactly the above count of bytes for the sequence to be sorted.
  * </ul>
  * 
+ * <p>
+ * By default, partitions are read, sorted and merged by the calling thread.
+ * When given an {@link ExecutorService}, partitions are sorted concurrently
+ * while the next ones are being read, intermediate merges run in the
+ * background, and the final merge is split into ranges of keys that are
+ * merged concurrently.
+ * 
  * @see #sort(Path, Path)
  * @lucene.experimental
  * @lucene.internal
@@ -69,6 +87,13 @@ public final class OfflineSorter {
    */
   public final static int MAX_TEMPFILES = 128;
 
+  /**
+   * When sorting concurrently, sorted temporary files record one of their
+   * entries at least every that many bytes. These samples are used to split
+   * the final merge into ranges of keys.
+   */
+  static final int SAMPLE_INTERVAL_BYTES = 64 * 1024;
+
   /** 
    * A bit more descriptive unit for constructors.
    * 
@@ -148,6 +173,8 @@ public final class OfflineSorter {
     public long totalTime;
     /** time spent in i/o read (in milliseconds) */
     public long readTime;
+    // NOTE: when sorting concurrently, sortTime and mergeTime are summed over
+    // all threads, so they may exceed totalTime
     /** read buffer size (in bytes) */
     public final long bufferSize = ramBufferSize.bytes;
     
@@ -172,6 +199,8 @@ public final class OfflineSorter {
   private SortInfo sortInfo;
   private int maxTempFiles;
   private final Comparator<BytesRef> comparator;
+  private final ExecutorService exec;
+  private final int maxPartitionsInRAM;
   
   /** Default comparator: sorts in binary (codepoint) order */
   public static final Comparator<BytesRef> DEFAULT_COMPARATOR = BytesRef.getUTF8SortedAsUnicodeComparator();
@@ -200,6 +229,20 @@ public final class OfflineSorter {
    * All-details constructor.
    */
   public OfflineSorter(Comparator<BytesRef> comparator, BufferSize ramBufferSize, Path tempDirectory, int maxTempfiles) {
+    this(comparator, ramBufferSize, tempDirectory, maxTempfiles, null, 1);
+  }
+
+  /**
+   * All-details constructor for concurrent sorting. Partitions are sorted and
+   * merged on the given executor, which should have at least
+   * <code>maxPartitionsInRAM</code> threads. At most
+   * <code>maxPartitionsInRAM</code> partitions are buffered in RAM at once,
+   * each of them getting an equal share of <code>ramBufferSize</code>, and the
+   * final merge is split into at most <code>maxPartitionsInRAM</code> ranges.
+   * If <code>exec</code> is null, sorting happens in the calling thread.
+   */
+  public OfflineSorter(Comparator<BytesRef> comparator, BufferSize ramBufferSize, Path tempDirectory, int maxTempfiles,
+      ExecutorService exec, int maxPartitionsInRAM) {
     if (ramBufferSize.bytes < ABSOLUTE_MIN_SORT_BUFFER_SIZE) {
       throw new IllegalArgumentException(MIN_BUFFER_SIZE_MSG + ": " + ramBufferSize.bytes);
     }
@@ -208,10 +251,16 @@ public final class OfflineSorter {
       throw new IllegalArgumentException("maxTempFiles must be >= 2");
     }
 
+    if (maxPartitionsInRAM < 1) {
+      throw new IllegalArgumentException("maxPartitionsInRAM must be >= 1");
+    }
+
     this.ramBufferSize = ramBufferSize;
     this.tempDirectory = tempDirectory;
     this.maxTempFiles = maxTempfiles;
     this.comparator = comparator;
+    this.exec = exec;
+    this.maxPartitionsInRAM = maxPartitionsInRAM;
   }
 
   /** 
@@ -224,6 +273,12 @@ public final class OfflineSorter {
 
     Files.deleteIfExists(output);
 
+    if (exec != null) {
+      sortConcurrently(input, output);
+      sortInfo.totalTime = (System.currentTimeMillis() - sortInfo.totalTime); 
+      return sortInfo;
+    }
+
     ArrayList<Path> merges = new ArrayList<>();
     boolean success3 = false;
     try {
@@ -388,6 +443,10 @@ public final class OfflineSorter {
 
   /** Read in a single partition of data */
   int readPartition(ByteSequencesReader reader) throws IOException {
+    return readPartition(reader, buffer, bufferBytesUsed, ramBufferSize.bytes);
+  }
+
+  private int readPartition(ByteSequencesReader reader, BytesRefArray buffer, Counter bufferBytesUsed, long maxBytes) throws IOException {
     long start = System.currentTimeMillis();
     final BytesRef scratch = new BytesRef();
     while ((scratch.bytes = reader.read()) != null) {
@@ -395,7 +454,7 @@ public final class OfflineSorter {
       buffer.append(scratch);
       // Account for the created objects.
       // (buffer slots do not account to buffer size.) 
-      if (ramBufferSize.bytes < bufferBytesUsed.get()) {
+      if (maxBytes < bufferBytesUsed.get()) {
         break;
       }
     }
@@ -403,6 +462,416 @@ public final class OfflineSorter {
     return buffer.size();
   }
 
+  /**
+   * Sorts concurrently: the calling thread reads partitions while previous
+   * ones are sorted on the executor, and then waits for merges.
+   */
+  private void sortConcurrently(Path input, Path output) throws IOException {
+    // temp files that were created and not deleted yet
+    final Set<Path> tempFiles = Collections.synchronizedSet(new HashSet<Path>());
+    // all submitted tasks, so that we can wait for them on exception
+    final List<Future<?>> tasks = new ArrayList<>();
+    final Semaphore partitionsInRAM = new Semaphore(maxPartitionsInRAM);
+    final long partitionBytes = ramBufferSize.bytes / maxPartitionsInRAM;
+
+    List<Future<SortedFile>> merges = new ArrayList<>();
+    boolean success = false;
+    try {
+      ByteSequencesReader is = new ByteSequencesReader(input);
+      boolean success2 = false;
+      try {
+        while (true) {
+          acquire(partitionsInRAM);
+          final Counter bytesUsed = Counter.newCounter();
+          final BytesRefArray partition = new BytesRefArray(bytesUsed);
+          boolean submitted = false;
+          final int lines;
+          try {
+            lines = readPartition(is, partition, bytesUsed, partitionBytes);
+            if (lines > 0) {
+              final Future<SortedFile> sorted = exec.submit(new Callable<SortedFile>() {
+                @Override
+                public SortedFile call() throws IOException {
+                  try {
+                    return sortPartition(partition, tempFiles);
+                  } finally {
+                    partitionsInRAM.release();
+                  }
+                }
+              });
+              tasks.add(sorted);
+              merges.add(sorted);
+              submitted = true;
+            }
+          } finally {
+            if (submitted == false) {
+              partitionsInRAM.release();
+            }
+          }
+          if (lines == 0) {
+            break;
+          }
+          sortInfo.tempMergeFiles++;
+          sortInfo.lines += lines;
+
+          // Handle intermediate merges, in the background.
+          if (merges.size() == maxTempFiles) {
+            final List<SortedFile> toMerge = get(merges);
+            final Future<SortedFile> merged = exec.submit(new Callable<SortedFile>() {
+              @Override
+              public SortedFile call() throws IOException {
+                return mergeSortedFiles(toMerge, tempFiles);
+              }
+            });
+            tasks.add(merged);
+            merges = new ArrayList<>();
+            merges.add(merged);
+            sortInfo.tempMergeFiles++;
+          }
+        }
+        success2 = true;
+      } finally {
+        if (success2)
+          IOUtils.close(is);
+        else
+          IOUtils.closeWhileHandlingException(is);
+      }
+
+      final List<SortedFile> sorted = get(merges);
+      if (sorted.isEmpty()) {
+        // empty input: the output is empty too, as with the sequential sort
+        Files.createFile(output);
+      } else if (sorted.size() == 1) {
+        Path single = sorted.get(0).path;
+        try {
+          Files.move(single, output, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | UnsupportedOperationException e) {
+          Files.copy(single, output);
+        }
+      } else if (sorted.size() > 1) {
+        mergeConcurrently(sorted, output);
+      }
+      success = true;
+    } finally {
+      if (success) {
+        IOUtils.deleteFilesIfExist(tempFiles);
+      } else {
+        // running tasks might still create or write temp files
+        for (Future<?> task : tasks) {
+          try {
+            task.get();
+          } catch (ExecutionException | InterruptedException | RuntimeException e) {
+            // ignore, we are already throwing an exception
+          }
+        }
+        IOUtils.deleteFilesIgnoringExceptions(tempFiles);
+        IOUtils.deleteFilesIgnoringExceptions(output);
+      }
+    }
+  }
+
+  /** Sorts a partition and writes it to a new temporary file. */
+  private SortedFile sortPartition(BytesRefArray data, Set<Path> tempFiles) throws IOException {
+    final long start = System.currentTimeMillis();
+    final Path tempFile = Files.createTempFile(tempDirectory, "sort", "partition");
+    tempFiles.add(tempFile);
+    final SortedFileWriter out = new SortedFileWriter(tempFile);
+    try {
+      BytesRefIterator iter = data.iterator(comparator);
+      BytesRef spare;
+      while((spare = iter.next()) != null) {
+        assert spare.length <= Short.MAX_VALUE;
+        out.write(spare.bytes, spare.offset, spare.length);
+      }
+    } finally {
+      out.close();
+    }
+    data.clear();
+    synchronized (sortInfo) {
+      sortInfo.sortTime += System.currentTimeMillis() - start;
+    }
+    return out.sortedFile();
+  }
+
+  /** Merges sorted files into a new temporary file, and deletes them. */
+  private SortedFile mergeSortedFiles(List<SortedFile> files, Set<Path> tempFiles) throws IOException {
+    final long start = System.currentTimeMillis();
+    final Path intermediate = Files.createTempFile(tempDirectory, "sort", "intermediate");
+    tempFiles.add(intermediate);
+    final long[] from = new long[files.size()];
+    final long[] to = new long[files.size()];
+    for (int i = 0; i < files.size(); i++) {
+      to[i] = Files.size(files.get(i).path);
+    }
+    final SortedFileWriter out = new SortedFileWriter(intermediate);
+    try {
+      merge(files, from, to, out);
+    } finally {
+      out.close();
+    }
+    for (SortedFile file : files) {
+      Files.delete(file.path);
+      tempFiles.remove(file.path);
+    }
+    synchronized (sortInfo) {
+      sortInfo.mergeTime += System.currentTimeMillis() - start;
+      sortInfo.mergeRounds++;
+    }
+    return out.sortedFile();
+  }
+
+  /**
+   * Merges sorted files into the output, by splitting keys into ranges that
+   * are merged concurrently. Each range is written directly at its final
+   * position in the output.
+   */
+  private void mergeConcurrently(final List<SortedFile> files, final Path output) throws IOException {
+    final long start = System.currentTimeMillis();
+    final BytesRef[] splitters = pickSplitters(files);
+    final int numRanges = splitters.length + 1;
+
+    // boundaries[i][r] is the offset of the first entry of the range r in
+    // the i-th file, boundaries[i][numRanges] is the length of the file
+    final List<Future<long[]>> boundaryFutures = new ArrayList<>();
+    for (final SortedFile file : files) {
+      boundaryFutures.add(exec.submit(new Callable<long[]>() {
+        @Override
+        public long[] call() throws IOException {
+          return file.boundaries(splitters, comparator);
+        }
+      }));
+    }
+    final List<long[]> boundaries = get(boundaryFutures);
+
+    // compute the offset of each range in the output
+    final long[] outputOffsets = new long[numRanges + 1];
+    for (int r = 0; r < numRanges; r++) {
+      long length = 0;
+      for (long[] fileBoundaries : boundaries) {
+        length += fileBoundaries[r + 1] - fileBoundaries[r];
+      }
+      outputOffsets[r + 1] = outputOffsets[r] + length;
+    }
+
+    // only create the file, ranges are written concurrently below
+    Files.createFile(output);
+    final List<Future<Void>> rangeFutures = new ArrayList<>();
+    for (int r = 0; r < numRanges; r++) {
+      final long[] from = new long[files.size()];
+      final long[] to = new long[files.size()];
+      for (int i = 0; i < files.size(); i++) {
+        from[i] = boundaries.get(i)[r];
+        to[i] = boundaries.get(i)[r + 1];
+      }
+      final long outputOffset = outputOffsets[r];
+      rangeFutures.add(exec.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws IOException {
+          try (ByteSequencesWriter out = openWriter(output, outputOffset)) {
+            merge(files, from, to, out);
+          }
+          return null;
+        }
+      }));
+    }
+    get(rangeFutures);
+    assert Files.size(output) == outputOffsets[numRanges];
+
+    sortInfo.mergeTime += System.currentTimeMillis() - start;
+    sortInfo.mergeRounds++;
+  }
+
+  /** Picks at most <code>maxPartitionsInRAM-1</code> distinct keys that split
+   *  the samples of the given files into ranges of about the same size. */
+  private BytesRef[] pickSplitters(List<SortedFile> files) {
+    final List<BytesRef> samples = new ArrayList<>();
+    for (SortedFile file : files) {
+      samples.addAll(file.sampleKeys);
+    }
+    Collections.sort(samples, comparator);
+    final List<BytesRef> splitters = new ArrayList<>();
+    for (int r = 1; r < maxPartitionsInRAM; r++) {
+      final BytesRef splitter = samples.get((int) ((long) r * samples.size() / maxPartitionsInRAM));
+      // the first sample is the smallest key, no need to split before it
+      if (comparator.compare(splitter, samples.get(0)) > 0
+          && (splitters.isEmpty() || comparator.compare(splitters.get(splitters.size() - 1), splitter) < 0)) {
+        splitters.add(splitter);
+      }
+    }
+    return splitters.toArray(new BytesRef[splitters.size()]);
+  }
+
+  /** Merges the entries between offsets <code>from[i]</code> (inclusive) and
+   *  <code>to[i]</code> (exclusive) of every file into <code>out</code>. */
+  private void merge(List<SortedFile> files, long[] from, final long[] to, ByteSequencesWriter out) throws IOException {
+    PriorityQueue<FileAndTop> queue = new PriorityQueue<FileAndTop>(files.size()) {
+      @Override
+      protected boolean lessThan(FileAndTop a, FileAndTop b) {
+        return comparator.compare(a.current.get(), b.current.get()) < 0;
+      }
+    };
+
+    final ByteSequencesReader[] streams = new ByteSequencesReader[files.size()];
+    final long[] offsets = from.clone();
+    try {
+      for (int i = 0; i < files.size(); i++) {
+        if (offsets[i] < to[i]) {
+          streams[i] = openReader(files.get(i).path, offsets[i]);
+          final byte[] line = streams[i].read();
+          offsets[i] += 2 + line.length;
+          queue.add(new FileAndTop(i, line));
+        }
+      }
+
+      FileAndTop top;
+      while ((top = queue.top()) != null) {
+        out.write(top.current.bytes(), 0, top.current.length());
+        if (offsets[top.fd] == to[top.fd]) {
+          queue.pop();
+        } else {
+          if (!streams[top.fd].read(top.current)) {
+            throw new EOFException("unexpected end of sorted file " + files.get(top.fd).path);
+          }
+          offsets[top.fd] += 2 + top.current.length();
+          queue.updateTop();
+        }
+      }
+    } finally {
+      IOUtils.close(streams);
+    }
+  }
+
+  private static ByteSequencesWriter openWriter(Path path, long offset) throws IOException {
+    final FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE);
+    boolean success = false;
+    try {
+      channel.position(offset);
+      final ByteSequencesWriter writer = new ByteSequencesWriter(new DataOutputStream(
+          new BufferedOutputStream(Channels.newOutputStream(channel))));
+      success = true;
+      return writer;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(channel);
+      }
+    }
+  }
+
+  private static ByteSequencesReader openReader(Path path, long offset) throws IOException {
+    final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    boolean success = false;
+    try {
+      channel.position(offset);
+      final ByteSequencesReader reader = new ByteSequencesReader(new DataInputStream(
+          new BufferedInputStream(Channels.newInputStream(channel))));
+      success = true;
+      return reader;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(channel);
+      }
+    }
+  }
+
+  private static void acquire(Semaphore semaphore) {
+    try {
+      semaphore.acquire();
+    } catch (InterruptedException ie) {
+      throw new ThreadInterruptedException(ie);
+    }
+  }
+
+  private static <T> List<T> get(List<Future<T>> futures) throws IOException {
+    final List<T> results = new ArrayList<>(futures.size());
+    for (Future<T> future : futures) {
+      try {
+        results.add(future.get());
+      } catch (InterruptedException ie) {
+        throw new ThreadInterruptedException(ie);
+      } catch (ExecutionException e) {
+        IOUtils.reThrow(e.getCause());
+      }
+    }
+    return results;
+  }
+
+  /** A sorted temporary file, together with a sample of its entries. */
+  private static final class SortedFile {
+    final Path path;
+    final List<BytesRef> sampleKeys;
+    final long[] sampleOffsets;
+
+    SortedFile(Path path, List<BytesRef> sampleKeys, long[] sampleOffsets) {
+      this.path = path;
+      this.sampleKeys = sampleKeys;
+      this.sampleOffsets = sampleOffsets;
+    }
+
+    /** Returns the offsets of the first entries that are greater than or
+     *  equal to each splitter, surrounded by 0 and the length of the file. */
+    long[] boundaries(BytesRef[] splitters, Comparator<BytesRef> comparator) throws IOException {
+      final long[] boundaries = new long[splitters.length + 2];
+      boundaries[splitters.length + 1] = Files.size(path);
+      final BytesRefBuilder scratch = new BytesRefBuilder();
+      for (int r = 0; r < splitters.length; r++) {
+        // start from the last sample that is less than the splitter
+        int sample = -1;
+        int lo = 0, hi = sampleKeys.size() - 1;
+        while (lo <= hi) {
+          final int mid = (lo + hi) >>> 1;
+          if (comparator.compare(sampleKeys.get(mid), splitters[r]) < 0) {
+            sample = mid;
+            lo = mid + 1;
+          } else {
+            hi = mid - 1;
+          }
+        }
+        long offset = Math.max(boundaries[r], sample == -1 ? 0 : sampleOffsets[sample]);
+        // then skip entries until the splitter
+        try (ByteSequencesReader reader = openReader(path, offset)) {
+          while (offset < boundaries[splitters.length + 1]) {
+            reader.read(scratch);
+            if (comparator.compare(scratch.get(), splitters[r]) >= 0) {
+              break;
+            }
+            offset += 2 + scratch.length();
+          }
+        }
+        boundaries[r + 1] = offset;
+      }
+      return boundaries;
+    }
+  }
+
+  /** Writes a sorted temporary file, sampling its entries along the way. */
+  private static final class SortedFileWriter extends ByteSequencesWriter {
+    private final Path path;
+    private final List<BytesRef> sampleKeys = new ArrayList<>();
+    private long[] sampleOffsets = new long[8];
+    private long offset, nextSampleOffset;
+
+    SortedFileWriter(Path path) throws IOException {
+      super(path);
+      this.path = path;
+    }
+
+    @Override
+    public void write(byte[] bytes, int off, int len) throws IOException {
+      if (offset >= nextSampleOffset) {
+        sampleOffsets = ArrayUtil.grow(sampleOffsets, sampleKeys.size() + 1);
+        sampleOffsets[sampleKeys.size()] = offset;
+        sampleKeys.add(BytesRef.deepCopyOf(new BytesRef(bytes, off, len)));
+        nextSampleOffset = offset + SAMPLE_INTERVAL_BYTES;
+      }
+      super.write(bytes, off, len);
+      offset += 2 + len;
+    }
+
+    SortedFile sortedFile() {
+      return new SortedFile(path, sampleKeys, sampleOffsets);
+    }
+  }
+
   static class FileAndTop {
     final int fd;
     final BytesRefBuilder current;
@@ -33,9 +33,11 @@ import org.apache.lucene.codecs.CodecUtil;
 import org.apache.lucene.store.ByteArrayDataOutput;
 import org.apache.lucene.store.DataInput;
 import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.InputStreamDataInput;
 import org.apache.lucene.store.OutputStreamDataOutput;
 import org.apache.lucene.store.RAMOutputStream;
+import org.apache.lucene.store.RandomAccessInput;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Accountables;
 import org.apache.lucene.util.ArrayUtil;
@@ -153,8 +155,13 @@ public final class FST<T> implements Accountable {
   // produces this output
   T emptyOutput;
 
+  /** The bytes of the FST, or null if they are read in place from offHeapBytes. */
   final BytesStore bytes;
 
+  /** Slice of the input that holds the bytes of this FST, if it was loaded
+   *  off-heap. */
+  private final IndexInput offHeapBytes;
+
   private long startNode = -1;
 
   public final Outputs<T> outputs;
@@ -300,6 +307,7 @@ public final class FST<T> implements Accountable {
     this.allowArrayArcs = allowArrayArcs;
     version = VERSION_CURRENT;
     bytes = new BytesStore(bytesPageBits);
+    offHeapBytes = null;
     // pad: ensure no node gets address 0 which is reserved to mean
     // the stop state w/ no arcs
     bytes.writeByte((byte) 0);
@@ -327,6 +335,20 @@ public final class FST<T> implements Accountable {
   /** Load a previously saved FST; maxBlockBits allows you to
    *  control the size of the byte[] pages used to hold the FST bytes. */
   public FST(DataInput in, Outputs<T> outputs, int maxBlockBits) throws IOException {
+    this(in, outputs, maxBlockBits, false);
+  }
+
+  /** Load a previously saved FST. If <code>offHeap</code> is true, the bytes
+   *  of the FST are not copied to the heap: they are read in place from
+   *  <code>in</code> whenever the FST is traversed, which must thus remain
+   *  open for as long as this FST is used. This saves heap and makes loading
+   *  faster, at the cost of slower traversals unless <code>in</code>
+   *  supports fast random access, eg. if it is memory-mapped. */
+  public FST(IndexInput in, Outputs<T> outputs, boolean offHeap) throws IOException {
+    this(in, outputs, DEFAULT_MAX_BLOCK_BITS, offHeap);
+  }
+
+  private FST(DataInput in, Outputs<T> outputs, int maxBlockBits, boolean offHeap) throws IOException {
     this.outputs = outputs;
 
     if (maxBlockBits < 1 || maxBlockBits > 30) {
@@ -386,7 +408,16 @@ public final class FST<T> implements Accountable {
     arcWithOutputCount = in.readVLong();
 
     long numBytes = in.readVLong();
-    bytes = new BytesStore(in, numBytes, 1<<maxBlockBits);
+    if (offHeap) {
+      final IndexInput indexIn = (IndexInput) in;
+      final long startFP = indexIn.getFilePointer();
+      offHeapBytes = indexIn.slice("fst", startFP, numBytes);
+      indexIn.seek(startFP + numBytes);
+      bytes = null;
+    } else {
+      offHeapBytes = null;
+      bytes = new BytesStore(in, numBytes, 1<<maxBlockBits);
+    }
     
     NO_OUTPUT = outputs.getNoOutput();
 
@@ -435,7 +466,9 @@ public final class FST<T> implements Accountable {
   @Override
   public long ramBytesUsed() {
     long size = BASE_RAM_BYTES_USED;
-    size += bytes.ramBytesUsed();
+    if (bytes != null) {
+      size += bytes.ramBytesUsed();
+    }
     if (packed) {
       size += nodeRefToAddress.ramBytesUsed();
     } else if (nodeAddress != null) {
@@ -625,9 +658,16 @@ public final class FST<T> implements Accountable {
     out.writeVLong(nodeCount);
     out.writeVLong(arcCount);
     out.writeVLong(arcWithOutputCount);
-    long numBytes = bytes.getPosition();
-    out.writeVLong(numBytes);
-    bytes.writeTo(out);
+    if (bytes != null) {
+      long numBytes = bytes.getPosition();
+      out.writeVLong(numBytes);
+      bytes.writeTo(out);
+    } else {
+      final IndexInput in = offHeapBytes.clone();
+      in.seek(0);
+      out.writeVLong(in.length());
+      out.copyBytes(in, in.length());
+    }
   }
   
   /**
@@ -1355,7 +1395,20 @@ public final class FST<T> implements Accountable {
    *  position 0. */
   public BytesReader getBytesReader() {
     BytesReader in;
-    if (packed) {
+    if (offHeapBytes != null) {
+      final RandomAccessInput input;
+      try {
+        // a new slice per reader since random-access inputs may not be thread-safe
+        input = offHeapBytes.randomAccessSlice(0, offHeapBytes.length());
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      if (packed) {
+        in = new ForwardRandomAccessReader(input);
+      } else {
+        in = new ReverseRandomAccessReader(input);
+      }
+    } else if (packed) {
       in = bytes.getForwardReader();
     } else {
       in = bytes.getReverseReader();
@@ -1500,6 +1553,7 @@ public final class FST<T> implements Accountable {
     packed = true;
     this.inputType = inputType;
     bytes = new BytesStore(bytesPageBits);
+    offHeapBytes = null;
     this.outputs = outputs;
     NO_OUTPUT = outputs.getNoOutput();
     
@@ -0,0 +1,65 @@
+package org.apache.lucene.util.fst;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.store.RandomAccessInput;
+
+/** Reads from a {@link RandomAccessInput}, so that the bytes of
+ *  an FST can be read in place instead of being loaded on the heap. */
+final class ForwardRandomAccessReader extends FST.BytesReader {
+  private final RandomAccessInput in;
+  private long pos;
+
+  public ForwardRandomAccessReader(RandomAccessInput in) {
+    this.in = in;
+  }
+
+  @Override
+  public byte readByte() throws IOException {
+    return in.readByte(pos++);
+  }
+
+  @Override
+  public void readBytes(byte[] b, int offset, int len) throws IOException {
+    for(int i=0;i<len;i++) {
+      b[offset+i] = in.readByte(pos++);
+    }
+  }
+
+  @Override
+  public void skipBytes(long count) {
+    pos += count;
+  }
+
+  @Override
+  public long getPosition() {
+    return pos;
+  }
+
+  @Override
+  public void setPosition(long pos) {
+    this.pos = pos;
+  }
+
+  @Override
+  public boolean reversed() {
+    return false;
+  }
+}
@@ -110,6 +110,69 @@ public abstract class AbstractTestCompressionMode extends LuceneTestCase {
     }
   }
 
+  public void testDictionary() throws IOException {
+    final int maxDictLength = mode.getMaxDictionaryLength();
+    if (maxDictLength == 0) {
+      try {
+        mode.newCompressor(new byte[0], 0, 0);
+        fail();
+      } catch (UnsupportedOperationException expected) {
+        // ok
+      }
+      return;
+    }
+    final int iterations = atLeast(10);
+    for (int i = 0; i < iterations; ++i) {
+      final byte[] dict = randomArray(TestUtil.nextInt(random(), 0, maxDictLength), random().nextBoolean() ? 3 : 255);
+      final int dictOff = dict.length == 0 ? 0 : random().nextInt(dict.length);
+      final int dictLen = TestUtil.nextInt(random(), 0, dict.length - dictOff);
+      // data that shares content with the dictionary
+      final byte[] decompressed = randomArray();
+      for (int j = 0; dictLen > 0 && j < decompressed.length; j += TestUtil.nextInt(random(), 1, 100)) {
+        final int start = dictOff + random().nextInt(dictLen);
+        final int len = Math.min(TestUtil.nextInt(random(), 1, dictOff + dictLen - start), decompressed.length - j);
+        System.arraycopy(dict, start, decompressed, j, len);
+        j += len;
+      }
+      final byte[] compressed = compress(mode.newCompressor(dict, dictOff, dictLen), decompressed, 0, decompressed.length);
+      final Decompressor decompressor = mode.newDecompressor(dict, dictOff, dictLen);
+      assertArrayEquals(decompressed, decompress(decompressor, compressed, decompressed.length));
+      assertArrayEquals(decompressed, decompress(decompressor.clone(), compressed, decompressed.length));
+
+      final int offset, length;
+      if (decompressed.length == 0) {
+        offset = length = 0;
+      } else {
+        offset = random().nextInt(decompressed.length);
+        length = random().nextInt(decompressed.length - offset);
+      }
+      final BytesRef bytes = new BytesRef();
+      decompressor.decompress(new ByteArrayDataInput(compressed), decompressed.length, offset, length, bytes);
+      assertEquals(new BytesRef(decompressed, offset, length), bytes);
+    }
+  }
+
+  public void testDictionaryImprovesCompression() throws IOException {
+    final int maxDictLength = mode.getMaxDictionaryLength();
+    assumeTrue("mode doesn't support dictionaries", maxDictLength > 0);
+    final byte[] dict = randomArray(maxDictLength, 255);
+    final byte[] compressedWithoutDict = compress(dict, 0, dict.length);
+    final byte[] compressedWithDict = compress(mode.newCompressor(dict, 0, dict.length), dict, 0, dict.length);
+    assertTrue(compressedWithDict.length < compressedWithoutDict.length / 4);
+    assertArrayEquals(dict, decompress(mode.newDecompressor(dict, 0, dict.length), compressedWithDict, dict.length));
+  }
+
+  public void testTooLargeDictionary() {
+    final int maxDictLength = mode.getMaxDictionaryLength();
+    assumeTrue("mode doesn't support dictionaries", maxDictLength > 0);
+    try {
+      mode.newCompressor(new byte[maxDictLength + 1], 0, maxDictLength + 1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+      // ok
+    }
+  }
+
   public byte[] test(byte[] decompressed) throws IOException {
     return test(decompressed, 0, decompressed.length);
   }
@@ -0,0 +1,134 @@
+package org.apache.lucene.codecs.lucene41;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.index.FieldInfo.IndexOptions;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+/** 
+ * Tests that bulk reads of postings return the same documents and
+ * frequencies as iterating with nextDoc/freq.
+ */
+public class TestBlockPostingsFormatBulkRead extends LuceneTestCase {
+
+  public void testDocsAndFreqs() throws Exception {
+    doTestBulkRead(IndexOptions.DOCS_AND_FREQS);
+  }
+
+  public void testDocsOnly() throws Exception {
+    doTestBulkRead(IndexOptions.DOCS_ONLY);
+  }
+
+  private void doTestBulkRead(IndexOptions options) throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(TestUtil.alwaysPostingsFormat(new Lucene41PostingsFormat()));
+    RandomIndexWriter iw = new RandomIndexWriter(random(), dir, iwc);
+    FieldType ft = new FieldType(TextField.TYPE_NOT_STORED);
+    ft.setIndexOptions(options);
+    ft.freeze();
+    final int numDocs = atLeast(1000);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(new StringField("id", Integer.toString(i), Field.Store.NO));
+      StringBuilder sb = new StringBuilder();
+      // "a" is dense, "b" is sparse and "c" only appears once
+      final int freqA = random().nextInt(10) == 0 ? 0 : TestUtil.nextInt(random(), 1, 10);
+      for (int j = 0; j < freqA; j++) {
+        sb.append("a ");
+      }
+      if (random().nextInt(20) == 0) {
+        sb.append("b b ");
+      }
+      if (i == numDocs / 2) {
+        sb.append("c");
+      }
+      doc.add(new Field("field", sb.toString(), ft));
+      iw.addDocument(doc);
+    }
+    for (int i = 0; i < numDocs / 20; i++) {
+      iw.deleteDocuments(new Term("id", Integer.toString(random().nextInt(numDocs))));
+    }
+    DirectoryReader ir = iw.getReader();
+    iw.close();
+
+    for (AtomicReaderContext ctx : ir.leaves()) {
+      final AtomicReader reader = ctx.reader();
+      if (reader.terms("field") == null) {
+        // tiny segment whose documents have no terms
+        continue;
+      }
+      final TermsEnum termsEnum = reader.terms("field").iterator(null);
+      for (String term : new String[] { "a", "b", "c" }) {
+        if (termsEnum.seekExact(new BytesRef(term)) == false) {
+          continue;
+        }
+        final DocsEnum expected = termsEnum.docs(reader.getLiveDocs(), null);
+        final DocsEnum actual = termsEnum.docs(reader.getLiveDocs(), null);
+        final int[] docs = new int[TestUtil.nextInt(random(), 1, 300)];
+        final int[] freqs = new int[docs.length];
+        while (true) {
+          final int count;
+          if (random().nextInt(10) == 0) {
+            // mix bulk reads with regular iteration
+            final int doc = actual.nextDoc();
+            assertEquals(expected.nextDoc(), doc);
+            if (doc == DocIdSetIterator.NO_MORE_DOCS) {
+              break;
+            }
+            assertEquals(expected.freq(), actual.freq());
+            continue;
+          } else {
+            count = actual.read(docs, random().nextBoolean() ? freqs : null);
+          }
+          if (count == 0) {
+            assertEquals(DocIdSetIterator.NO_MORE_DOCS, expected.nextDoc());
+            assertEquals(DocIdSetIterator.NO_MORE_DOCS, actual.docID());
+            break;
+          }
+          for (int i = 0; i < count; ++i) {
+            assertEquals(expected.nextDoc(), docs[i]);
+          }
+          assertEquals(expected.docID(), actual.docID());
+          assertEquals(expected.freq(), actual.freq());
+        }
+      }
+    }
+
+    ir.close();
+    dir.close();
+  }
+}
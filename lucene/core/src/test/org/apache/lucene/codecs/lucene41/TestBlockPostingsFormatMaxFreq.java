@@ -0,0 +1,127 @@
+package org.apache.lucene.codecs.lucene41;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.index.FieldInfo.IndexOptions;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+/** 
+ * Tests the per-block maximum term frequencies of the skip data.
+ */
+public class TestBlockPostingsFormatMaxFreq extends LuceneTestCase {
+
+  public void testMaxFreq() throws Exception {
+    doTestMaxFreq(IndexOptions.DOCS_AND_FREQS);
+  }
+
+  public void testMaxFreqWithPositions() throws Exception {
+    doTestMaxFreq(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS);
+  }
+
+  public void testDocsOnly() throws Exception {
+    doTestMaxFreq(IndexOptions.DOCS_ONLY);
+  }
+
+  private void doTestMaxFreq(IndexOptions options) throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(TestUtil.alwaysPostingsFormat(new Lucene41PostingsFormat()));
+    RandomIndexWriter iw = new RandomIndexWriter(random(), dir, iwc);
+    FieldType ft = new FieldType(TextField.TYPE_NOT_STORED);
+    ft.setIndexOptions(options);
+    ft.freeze();
+    final int numDocs = atLeast(2000);
+    for (int i = 0; i < numDocs; i++) {
+      StringBuilder sb = new StringBuilder();
+      final int freqA = random().nextInt(10) == 0 ? 0 : TestUtil.nextInt(random(), 1, 20);
+      for (int j = 0; j < freqA; j++) {
+        sb.append("a ");
+      }
+      if (random().nextInt(5) == 0) {
+        sb.append("b ");
+      }
+      Document doc = new Document();
+      doc.add(new Field("body", sb.toString(), ft));
+      iw.addDocument(doc);
+    }
+    DirectoryReader reader = iw.getReader();
+    iw.close();
+
+    for (AtomicReaderContext context : reader.leaves()) {
+      Terms terms = context.reader().terms("body");
+      if (terms == null) {
+        continue;
+      }
+      TermsEnum termsEnum = terms.iterator(null);
+      while (termsEnum.next() != null) {
+        // collect the actual max freq of every block
+        List<Integer> blockEnds = new ArrayList<>();
+        List<Integer> blockMaxFreqs = new ArrayList<>();
+        DocsEnum docs = termsEnum.docs(null, null, DocsEnum.FLAG_FREQS);
+        DocsEnum shallow = termsEnum.docs(null, null, DocsEnum.FLAG_FREQS);
+        for (int doc = docs.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docs.nextDoc()) {
+          final int blockEnd = shallow.advanceShallow(doc);
+          assertTrue(blockEnd >= doc);
+          final int maxFreq = shallow.getMaxFreq();
+          assertTrue(docs.freq() + " > " + maxFreq, docs.freq() <= maxFreq);
+          if (options == IndexOptions.DOCS_ONLY) {
+            assertEquals(1, maxFreq);
+          }
+          if (blockEnds.isEmpty() || blockEnds.get(blockEnds.size() - 1) != blockEnd) {
+            blockEnds.add(blockEnd);
+            blockMaxFreqs.add(docs.freq());
+          } else {
+            final int last = blockMaxFreqs.size() - 1;
+            blockMaxFreqs.set(last, Math.max(blockMaxFreqs.get(last), docs.freq()));
+          }
+          assertEquals(blockEnd, docs.advanceShallow(doc));
+        }
+
+        // bounds of full blocks are exact
+        shallow = termsEnum.docs(null, null, DocsEnum.FLAG_FREQS);
+        for (int i = 0; i < blockEnds.size(); i++) {
+          final int blockEnd = blockEnds.get(i);
+          if (blockEnd != DocIdSetIterator.NO_MORE_DOCS) {
+            assertEquals(blockEnd, shallow.advanceShallow(blockEnd));
+            assertEquals(blockMaxFreqs.get(i).intValue(), shallow.getMaxFreq());
+          }
+        }
+      }
+    }
+    reader.close();
+    dir.close();
+  }
+}
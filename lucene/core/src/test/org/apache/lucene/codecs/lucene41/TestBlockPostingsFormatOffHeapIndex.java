@@ -0,0 +1,96 @@
+package org.apache.lucene.codecs.lucene41;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+/**
+ * Tests that terms index FSTs that are read in place from memory-mapped
+ * files behave like FSTs that are loaded on the heap.
+ */
+public class TestBlockPostingsFormatOffHeapIndex extends LuceneTestCase {
+
+  public void testMMapVsNIOFS() throws Exception {
+    final Path path = createTempDir("offHeapIndex");
+    Directory dir = newFSDirectory(path);
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(TestUtil.alwaysPostingsFormat(new Lucene41PostingsFormat()));
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final List<String> terms = new ArrayList<>();
+    final int numDocs = atLeast(5000);
+    for (int i = 0; i < numDocs; ++i) {
+      final String term = TestUtil.randomSimpleString(random(), 1, 15);
+      terms.add(term);
+      Document doc = new Document();
+      doc.add(new StringField("field", term, Field.Store.NO));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    w.close();
+    dir.close();
+
+    Directory onHeapDir = new NIOFSDirectory(path);
+    Directory offHeapDir = new MMapDirectory(path);
+    DirectoryReader onHeapReader = DirectoryReader.open(onHeapDir);
+    DirectoryReader offHeapReader = DirectoryReader.open(offHeapDir);
+    SegmentReader onHeapSegment = (SegmentReader) onHeapReader.leaves().get(0).reader();
+    SegmentReader offHeapSegment = (SegmentReader) offHeapReader.leaves().get(0).reader();
+    // the terms index is not on the heap anymore
+    assertTrue(offHeapSegment.ramBytesUsed() < onHeapSegment.ramBytesUsed());
+
+    TermsEnum expected = onHeapSegment.terms("field").iterator(null);
+    TermsEnum actual = offHeapSegment.terms("field").iterator(null);
+    Collections.shuffle(terms, random());
+    for (String term : terms) {
+      assertTrue(actual.seekExact(new BytesRef(term)));
+    }
+    for (int i = 0; i < 1000; ++i) {
+      final BytesRef term = new BytesRef(TestUtil.randomSimpleString(random(), 1, 15));
+      assertEquals(expected.seekExact(term), actual.seekExact(term));
+      assertEquals(expected.seekCeil(term), actual.seekCeil(term));
+      if (expected.term() != null) {
+        assertEquals(expected.term(), actual.term());
+      }
+    }
+    offHeapSegment.checkIntegrity();
+
+    onHeapReader.close();
+    offHeapReader.close();
+    onHeapDir.close();
+    offHeapDir.close();
+  }
+}
@@ -28,22 +28,35 @@ import org.apache.lucene.codecs.PostingsFormat;
 import org.apache.lucene.codecs.blocktreeords.Ords41PostingsFormat;
 import org.apache.lucene.codecs.lucene41ords.Lucene41WithOrds;
 import org.apache.lucene.codecs.memory.FSTOrdPostingsFormat;
+import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.SortedNumericDocValuesField;
 import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.AtomicReader;
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.BaseCompressingDocValuesFormatTestCase;
+import org.apache.lucene.index.BinaryDocValues;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.index.SerialMergeScheduler;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.index.StorableField;
+import org.apache.lucene.index.StoredDocument;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.index.TermsEnum.SeekStatus;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.TestUtil;
 
@@ -113,6 +126,101 @@ public class TestLucene410DocValuesFormat extends BaseCompressingDocValuesFormat
     }
   }
   
+  public void testSparseDocValuesVsStoredFields() throws Exception {
+    int numIterations = atLeast(1);
+    for (int i = 0; i < numIterations; i++) {
+      doTestSparseDocValuesVsStoredFields(TestUtil.nextInt(random(), 1000, 5000), random().nextInt(3));
+    }
+  }
+
+  private void doTestSparseDocValuesVsStoredFields(int numDocs, int numDocsWithValuePerThousand) throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig conf = newIndexWriterConfig(new MockAnalyzer(random()));
+    conf.setCodec(getCodec());
+    RandomIndexWriter writer = new RandomIndexWriter(random(), dir, conf);
+
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(new StringField("id", Integer.toString(i), Field.Store.NO));
+      if (random().nextInt(1000) < numDocsWithValuePerThousand) {
+        final long value = random().nextInt(3) == 0 ? 0 : random().nextLong();
+        final BytesRef bytes = new BytesRef(TestUtil.randomSimpleString(random(), random().nextBoolean() ? 0 : 1, 10));
+        doc.add(new StoredField("storedNumeric", value));
+        doc.add(new NumericDocValuesField("numeric", value));
+        doc.add(new SortedNumericDocValuesField("sortedNumeric", value));
+        doc.add(new StoredField("storedBytes", bytes));
+        doc.add(new BinaryDocValuesField("binary", bytes));
+        doc.add(new SortedDocValuesField("sorted", bytes));
+      }
+      writer.addDocument(doc);
+      if (random().nextInt(500) == 0) {
+        writer.commit();
+      }
+    }
+
+    // delete some docs
+    int numDeletions = random().nextInt(numDocs/10);
+    for (int i = 0; i < numDeletions; i++) {
+      int id = random().nextInt(numDocs);
+      writer.deleteDocuments(new Term("id", Integer.toString(id)));
+    }
+
+    DirectoryReader ir = writer.getReader();
+    assertSparseDocValues(ir);
+    ir.close();
+
+    writer.forceMerge(1);
+    ir = writer.getReader();
+    assertSparseDocValues(ir);
+    ir.close();
+
+    writer.close();
+    dir.close();
+  }
+
+  private void assertSparseDocValues(DirectoryReader ir) throws Exception {
+    for (AtomicReaderContext context : ir.leaves()) {
+      AtomicReader r = context.reader();
+      final int maxDoc = r.maxDoc();
+      // look documents up in order, and then in random order
+      int[] docs = new int[2 * maxDoc];
+      for (int i = 0; i < maxDoc; ++i) {
+        docs[i] = i;
+        docs[maxDoc + i] = random().nextInt(maxDoc);
+      }
+      NumericDocValues numeric = DocValues.getNumeric(r, "numeric");
+      Bits numericDocsWithField = DocValues.getDocsWithField(r, "numeric");
+      SortedNumericDocValues sortedNumeric = DocValues.getSortedNumeric(r, "sortedNumeric");
+      BinaryDocValues binary = DocValues.getBinary(r, "binary");
+      Bits binaryDocsWithField = DocValues.getDocsWithField(r, "binary");
+      SortedDocValues sorted = DocValues.getSorted(r, "sorted");
+      for (int doc : docs) {
+        StoredDocument stored = r.document(doc);
+        StorableField storedNumeric = stored.getField("storedNumeric");
+        if (storedNumeric == null) {
+          assertFalse(numericDocsWithField.get(doc));
+          assertEquals(0, numeric.get(doc));
+          sortedNumeric.setDocument(doc);
+          assertEquals(0, sortedNumeric.count());
+          assertFalse(binaryDocsWithField.get(doc));
+          assertEquals(new BytesRef(), binary.get(doc));
+          assertEquals(-1, sorted.getOrd(doc));
+        } else {
+          final long value = storedNumeric.numericValue().longValue();
+          final BytesRef bytes = stored.getBinaryValue("storedBytes");
+          assertTrue(numericDocsWithField.get(doc));
+          assertEquals(value, numeric.get(doc));
+          sortedNumeric.setDocument(doc);
+          assertEquals(1, sortedNumeric.count());
+          assertEquals(value, sortedNumeric.valueAt(0));
+          assertTrue(binaryDocsWithField.get(doc));
+          assertEquals(bytes, binary.get(doc));
+          assertEquals(bytes, sorted.get(doc));
+        }
+      }
+    }
+  }
+
   // TODO: try to refactor this and some termsenum tests into the base class.
   // to do this we need to fix the test class to get a DVF not a Codec so we can setup
   // the postings format correctly.
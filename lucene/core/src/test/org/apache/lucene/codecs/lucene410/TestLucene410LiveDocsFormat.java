@@ -0,0 +1,180 @@
+package org.apache.lucene.codecs.lucene410;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.codecs.FilterCodec;
+import org.apache.lucene.codecs.LiveDocsFormat;
+import org.apache.lucene.codecs.lucene40.Lucene40LiveDocsFormat;
+import org.apache.lucene.codecs.sparselivedocs.SparseLiveDocsCodec;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.LuceneTestCase;
+
+/**
+ * Tests Lucene410LiveDocsFormat
+ */
+public class TestLucene410LiveDocsFormat extends LuceneTestCase {
+
+  private static IndexWriterConfig newConfig() {
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(new SparseLiveDocsCodec());
+    // keep deletions around
+    iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+    iwc.setRAMBufferSizeMB(16);
+    iwc.setMaxBufferedDocs(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+    return iwc;
+  }
+
+  private static void addDocs(IndexWriter w, int numDocs) throws Exception {
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("id", Integer.toString(i), Field.Store.NO));
+      w.addDocument(doc);
+    }
+  }
+
+  private static void assertLiveDocs(DirectoryReader reader, boolean[] deleted, Class<?> expectedClass) {
+    assertEquals(1, reader.leaves().size());
+    final AtomicReaderContext context = reader.leaves().get(0);
+    final Bits liveDocs = context.reader().getLiveDocs();
+    assertNotNull(liveDocs);
+    if (expectedClass != null) {
+      assertEquals(expectedClass, liveDocs.getClass());
+    }
+    assertEquals(deleted.length, liveDocs.length());
+    for (int i = 0; i < deleted.length; ++i) {
+      assertEquals(!deleted[i], liveDocs.get(i));
+    }
+  }
+
+  private void doTest(int numDocs, int numDeletes, Class<?> expectedClass) throws Exception {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newConfig());
+    addDocs(w, numDocs);
+    w.commit();
+
+    final boolean[] deleted = new boolean[numDocs];
+    for (int i = 0; i < numDeletes; ++i) {
+      final int id = random().nextInt(numDocs);
+      deleted[id] = true;
+      w.deleteDocuments(new Term("id", Integer.toString(id)));
+    }
+    w.close();
+
+    DirectoryReader reader = DirectoryReader.open(dir);
+    assertLiveDocs(reader, deleted, expectedClass);
+    reader.close();
+
+    // more deletes on top of the existing generation
+    w = new IndexWriter(dir, newConfig());
+    for (int i = 0; i < numDeletes; ++i) {
+      final int id = random().nextInt(numDocs);
+      deleted[id] = true;
+      w.deleteDocuments(new Term("id", Integer.toString(id)));
+    }
+    w.close();
+    reader = DirectoryReader.open(dir);
+    assertLiveDocs(reader, deleted, null);
+    reader.close();
+    dir.close();
+  }
+
+  public void testSparse() throws Exception {
+    final int numDocs = atLeast(2000);
+    doTest(numDocs, 1 + random().nextInt(numDocs / 500), Lucene410LiveDocsFormat.SparseLiveDocs.class);
+  }
+
+  public void testDense() throws Exception {
+    final int numDocs = atLeast(2000);
+    doTest(numDocs, numDocs / 10 + random().nextInt(numDocs / 2), Lucene410LiveDocsFormat.DenseLiveDocs.class);
+  }
+
+  public void testSparseGet() {
+    final int maxDoc = 1 + random().nextInt(100000);
+    final boolean[] deleted = new boolean[maxDoc];
+    int numDeleted = 0;
+    final int numDeletes = random().nextInt(Math.min(maxDoc, 1000));
+    for (int i = 0; i < numDeletes; ++i) {
+      final int doc = random().nextInt(maxDoc);
+      if (deleted[doc] == false) {
+        deleted[doc] = true;
+        numDeleted++;
+      }
+    }
+    final int[] deletedDocs = new int[numDeleted];
+    for (int doc = 0, i = 0; doc < maxDoc; ++doc) {
+      if (deleted[doc]) {
+        deletedDocs[i++] = doc;
+      }
+    }
+    final Bits liveDocs = new Lucene410LiveDocsFormat.SparseLiveDocs(deletedDocs, maxDoc);
+    assertEquals(maxDoc, liveDocs.length());
+    for (int doc = 0; doc < maxDoc; ++doc) {
+      assertEquals(!deleted[doc], liveDocs.get(doc));
+    }
+  }
+
+  /** Deletions written by {@link Lucene40LiveDocsFormat} can be read and updated. */
+  public void testReadLegacyDeletes() throws Exception {
+    final int numDocs = atLeast(100);
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newConfig();
+    // same codec name, but the old live docs format
+    iwc.setCodec(new FilterCodec("SparseLiveDocs", new Lucene410Codec()) {
+      final LiveDocsFormat liveDocsFormat = new Lucene40LiveDocsFormat();
+      @Override
+      public LiveDocsFormat liveDocsFormat() {
+        return liveDocsFormat;
+      }
+    });
+    IndexWriter w = new IndexWriter(dir, iwc);
+    addDocs(w, numDocs);
+    w.commit();
+    final boolean[] deleted = new boolean[numDocs];
+    for (int i = 0; i < 5; ++i) {
+      final int id = random().nextInt(numDocs);
+      deleted[id] = true;
+      w.deleteDocuments(new Term("id", Integer.toString(id)));
+    }
+    w.close();
+
+    DirectoryReader reader = DirectoryReader.open(dir);
+    assertLiveDocs(reader, deleted, null);
+    reader.close();
+
+    w = new IndexWriter(dir, newConfig());
+    final int id = random().nextInt(numDocs);
+    deleted[id] = true;
+    w.deleteDocuments(new Term("id", Integer.toString(id)));
+    w.close();
+    reader = DirectoryReader.open(dir);
+    assertLiveDocs(reader, deleted, null);
+    reader.close();
+    dir.close();
+  }
+}
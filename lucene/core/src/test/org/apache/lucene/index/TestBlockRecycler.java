@@ -0,0 +1,126 @@
+package org.apache.lucene.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Random;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.ByteBlockPool;
+import org.apache.lucene.util.Counter;
+import org.apache.lucene.util.IntBlockPool;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.TestUtil;
+
+public class TestBlockRecycler extends LuceneTestCase {
+
+  public void testRecycleUpToMaxBytes() {
+    final int intBlockBytes = IntBlockPool.INT_BLOCK_SIZE * RamUsageEstimator.NUM_BYTES_INT;
+    final BlockRecycler recycler = new BlockRecycler(3 * ByteBlockPool.BYTE_BLOCK_SIZE + intBlockBytes);
+    final Counter bytesUsed = Counter.newCounter();
+    final ByteBlockPool.Allocator byteAllocator = recycler.newByteBlockAllocator(bytesUsed);
+    final IntBlockPool.Allocator intAllocator = recycler.newIntBlockAllocator(bytesUsed);
+
+    final byte[][] byteBlocks = new byte[5][];
+    for (int i = 0; i < byteBlocks.length; i++) {
+      byteBlocks[i] = byteAllocator.getByteBlock();
+    }
+    final int[][] intBlocks = new int[] [] { intAllocator.getIntBlock() };
+    assertEquals(5 * ByteBlockPool.BYTE_BLOCK_SIZE + intBlockBytes, bytesUsed.get());
+    assertEquals(0, recycler.getRecycledBytes());
+
+    intAllocator.recycleIntBlocks(intBlocks, 0, 1);
+    assertNull(intBlocks[0]);
+    assertEquals(5 * ByteBlockPool.BYTE_BLOCK_SIZE, bytesUsed.get());
+    assertEquals(intBlockBytes, recycler.getRecycledBytes());
+
+    final byte[] first = byteBlocks[0];
+    byteAllocator.recycleByteBlocks(byteBlocks, 0, byteBlocks.length);
+    for (byte[] block : byteBlocks) {
+      assertNull(block);
+    }
+    assertEquals(0, bytesUsed.get());
+    // only 3 blocks fit
+    assertEquals(3 * ByteBlockPool.BYTE_BLOCK_SIZE + intBlockBytes, recycler.getRecycledBytes());
+
+    boolean sawFirst = false;
+    for (int i = 0; i < 3; i++) {
+      sawFirst |= byteAllocator.getByteBlock() == first;
+    }
+    assertTrue(sawFirst);
+    assertEquals(3 * ByteBlockPool.BYTE_BLOCK_SIZE, bytesUsed.get());
+    assertEquals(intBlockBytes, recycler.getRecycledBytes());
+    assertNull(recycler.takeByteBlock());
+    assertNotNull(recycler.takeIntBlock());
+    assertEquals(0, recycler.getRecycledBytes());
+  }
+
+  public void testIndexWithRecycledBuffers() throws Exception {
+    Directory dir = newDirectory();
+    Directory expectedDir = newDirectory();
+    final long seed = random().nextLong();
+    final int numDocs = atLeast(500);
+    for (Directory d : new Directory[] { dir, expectedDir }) {
+      IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+      // many small segments, so that buffers get recycled often
+      iwc.setMaxBufferedDocs(TestUtil.nextInt(random(), 2, 20));
+      iwc.setMaxRecycledRAMBufferMB(d == dir ? TestUtil.nextInt(random(), 1, 8) : 0);
+      IndexWriter w = new IndexWriter(d, iwc);
+      FieldType vectorsType = new FieldType(TextField.TYPE_NOT_STORED);
+      vectorsType.setStoreTermVectors(true);
+      vectorsType.setStoreTermVectorPositions(true);
+      vectorsType.setStoreTermVectorOffsets(true);
+      final Random r = new Random(seed);
+      for (int i = 0; i < numDocs; i++) {
+        Document doc = new Document();
+        StringBuilder text = new StringBuilder();
+        final int numTerms = 1 + r.nextInt(50);
+        for (int j = 0; j < numTerms; j++) {
+          text.append("t").append(r.nextInt(100)).append(' ');
+        }
+        doc.add(new Field("body", text.toString(), TextField.TYPE_NOT_STORED));
+        doc.add(new Field("vectors", text.toString(), vectorsType));
+        w.addDocument(doc);
+      }
+      w.close();
+    }
+
+    DirectoryReader reader = DirectoryReader.open(dir);
+    DirectoryReader expectedReader = DirectoryReader.open(expectedDir);
+    IndexSearcher searcher = newSearcher(reader);
+    IndexSearcher expectedSearcher = newSearcher(expectedReader);
+    for (int i = 0; i < 100; i++) {
+      final Term term = new Term("body", "t" + i);
+      assertEquals(expectedReader.docFreq(term), reader.docFreq(term));
+      assertEquals(expectedReader.totalTermFreq(term), reader.totalTermFreq(term));
+      assertEquals(expectedSearcher.search(new TermQuery(term), 1).totalHits,
+                   searcher.search(new TermQuery(term), 1).totalHits);
+    }
+    reader.close();
+    expectedReader.close();
+    expectedDir.close();
+    dir.close(); // runs CheckIndex, which also verifies term vectors against postings
+  }
+}
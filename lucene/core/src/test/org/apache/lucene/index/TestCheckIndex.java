@@ -25,6 +25,7 @@ import java.util.ArrayList;
 
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.analysis.CannedTokenStream;
 import org.apache.lucene.analysis.MockAnalyzer;
@@ -32,6 +33,7 @@ import org.apache.lucene.analysis.Token;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.TextField;
 
 public class TestCheckIndex extends LuceneTestCase {
@@ -98,6 +100,78 @@ public class TestCheckIndex extends LuceneTestCase {
     dir.close();
   }
   
+  public void testConcurrentCheck() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter writer = new IndexWriter(dir, newIndexWriterConfig(new MockAnalyzer(random()))
+                                                 .setMaxBufferedDocs(5)
+                                                 .setMergePolicy(NoMergePolicy.INSTANCE));
+    for(int i=0;i<47;i++) {
+      Document doc = new Document();
+      FieldType customType = new FieldType(TextField.TYPE_STORED);
+      customType.setStoreTermVectors(true);
+      doc.add(newField("field", "aaa"+i, customType));
+      doc.add(new NumericDocValuesField("dv", i));
+      writer.addDocument(doc);
+    }
+    writer.deleteDocuments(new Term("field","aaa5"));
+    writer.close();
+
+    CheckIndex checker = new CheckIndex(dir);
+    ByteArrayOutputStream serialOutput = new ByteArrayOutputStream(1024);
+    checker.setInfoStream(new PrintStream(serialOutput, false, IOUtils.UTF_8));
+    CheckIndex.Status serial = checker.checkIndex();
+    assertTrue(serial.clean);
+
+    checker.setThreadCount(TestUtil.nextInt(random(), 2, 4));
+    ByteArrayOutputStream concurrentOutput = new ByteArrayOutputStream(1024);
+    checker.setInfoStream(new PrintStream(concurrentOutput, false, IOUtils.UTF_8));
+    CheckIndex.Status concurrent = checker.checkIndex();
+    assertTrue(concurrent.clean);
+
+    assertEquals(serial.segmentInfos.size(), concurrent.segmentInfos.size());
+    assertTrue(serial.segmentInfos.size() > 1);
+    for (int i = 0; i < serial.segmentInfos.size(); i++) {
+      CheckIndex.Status.SegmentInfoStatus expected = serial.segmentInfos.get(i);
+      CheckIndex.Status.SegmentInfoStatus actual = concurrent.segmentInfos.get(i);
+      assertEquals(expected.name, actual.name);
+      assertEquals(expected.numDeleted, actual.numDeleted);
+      assertEquals(expected.termIndexStatus.termCount, actual.termIndexStatus.termCount);
+      assertEquals(expected.storedFieldStatus.totFields, actual.storedFieldStatus.totFields);
+      assertEquals(expected.termVectorStatus.totVectors, actual.termVectorStatus.totVectors);
+      assertEquals(expected.docValuesStatus.totalNumericFields, actual.docValuesStatus.totalNumericFields);
+    }
+    // segments are reported in order, as if they had been checked serially
+    assertEquals(serialOutput.toString(IOUtils.UTF_8), concurrentOutput.toString(IOUtils.UTF_8));
+    dir.close();
+  }
+
+  public void testChecksumsOnly() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter writer = new IndexWriter(dir, newIndexWriterConfig(new MockAnalyzer(random())));
+    for(int i=0;i<19;i++) {
+      Document doc = new Document();
+      doc.add(newTextField("field", "aaa"+i, Field.Store.YES));
+      writer.addDocument(doc);
+    }
+    writer.close();
+
+    CheckIndex checker = new CheckIndex(dir);
+    checker.setChecksumsOnly(true);
+    if (random().nextBoolean()) {
+      checker.setThreadCount(TestUtil.nextInt(random(), 2, 4));
+    }
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(1024);
+    checker.setInfoStream(new PrintStream(bos, false, IOUtils.UTF_8));
+    CheckIndex.Status indexStatus = checker.checkIndex();
+    assertTrue(indexStatus.clean);
+    for (CheckIndex.Status.SegmentInfoStatus seg : indexStatus.segmentInfos) {
+      assertTrue(seg.openReaderPassed);
+      assertNull(seg.termIndexStatus);
+      assertNull(seg.storedFieldStatus);
+    }
+    dir.close();
+  }
+
   // LUCENE-4221: we have to let these thru, for now
   public void testBogusTermVectors() throws IOException {
     Directory dir = newDirectory();
@@ -22,6 +22,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.codecs.lucene41.Lucene41PostingsFormat;
@@ -32,6 +33,7 @@ import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.MockDirectoryWrapper;
+import org.apache.lucene.store.RateLimiter;
 import org.apache.lucene.util.LuceneTestCase;
 import org.apache.lucene.util.TestUtil;
 
@@ -455,4 +457,86 @@ public class TestConcurrentMergeScheduler extends LuceneTestCase {
     w.close();
     d.close();
   }
+
+  public void testAutoIOThrottleSettings() throws Exception {
+    ConcurrentMergeScheduler cms = new ConcurrentMergeScheduler();
+    assertTrue(cms.getAutoIOThrottle());
+    assertEquals(ConcurrentMergeScheduler.START_MB_PER_SEC, cms.getIORateLimitMBPerSec(), 0.0);
+    cms.disableAutoIOThrottle();
+    assertFalse(cms.getAutoIOThrottle());
+    assertEquals(Double.POSITIVE_INFINITY, cms.getIORateLimitMBPerSec(), 0.0);
+    cms.enableAutoIOThrottle();
+    assertTrue(cms.getAutoIOThrottle());
+    assertEquals(ConcurrentMergeScheduler.START_MB_PER_SEC, cms.getIORateLimitMBPerSec(), 0.0);
+  }
+
+  public void testSmallAndForcedMergesNotThrottled() throws Exception {
+    Directory d = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setMaxBufferedDocs(2);
+    final AtomicInteger mergeCount = new AtomicInteger();
+    final AtomicInteger rateLimitedMergeCount = new AtomicInteger();
+    iwc.setMergeScheduler(new ConcurrentMergeScheduler() {
+        @Override
+        protected void doMerge(MergePolicy.OneMerge merge) throws IOException {
+          mergeCount.incrementAndGet();
+          if (merge.getRateLimiter() != null) {
+            rateLimitedMergeCount.incrementAndGet();
+          }
+          super.doMerge(merge);
+        }
+      });
+    IndexWriter w = new IndexWriter(d, iwc);
+    for(int i=0;i<50;i++) {
+      Document doc = new Document();
+      doc.add(newTextField("field", "some text " + i, Field.Store.YES));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    w.close();
+    assertTrue(mergeCount.get() > 0);
+    assertEquals(0, rateLimitedMergeCount.get());
+    assertEquals(ConcurrentMergeScheduler.START_MB_PER_SEC,
+                 ((ConcurrentMergeScheduler) iwc.getMergeScheduler()).getIORateLimitMBPerSec(), 0.0);
+    d.close();
+  }
+
+  public void testMergeWritesAreRateLimited() throws Exception {
+    Directory d = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setMaxBufferedDocs(2);
+    final AtomicLong pausedBytes = new AtomicLong();
+    final AtomicInteger rateLimitedMergeCount = new AtomicInteger();
+    iwc.setMergeScheduler(new ConcurrentMergeScheduler() {
+        @Override
+        protected synchronized void updateIOThrottle(MergePolicy.OneMerge newMerge) {
+          // Rate limit every merge with a fast limiter that
+          // records how many bytes went through it:
+          rateLimitedMergeCount.incrementAndGet();
+          newMerge.setRateLimiter(new RateLimiter.SimpleRateLimiter(1024.0) {
+              @Override
+              public long getMinPauseCheckBytes() {
+                return 0;
+              }
+
+              @Override
+              public long pause(long bytes) {
+                pausedBytes.addAndGet(bytes);
+                return 0;
+              }
+            });
+        }
+      });
+    IndexWriter w = new IndexWriter(d, iwc);
+    for(int i=0;i<50;i++) {
+      Document doc = new Document();
+      doc.add(newTextField("field", "some text " + i, Field.Store.YES));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    w.close();
+    assertTrue(rateLimitedMergeCount.get() > 0);
+    assertTrue(pausedBytes.get() > 0);
+    d.close();
+  }
 }
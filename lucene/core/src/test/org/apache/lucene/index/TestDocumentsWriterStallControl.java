@@ -53,6 +53,24 @@ public class TestDocumentsWriterStallControl extends LuceneTestCase {
     assertFalse(ctrl.anyStalledThreads());
     join(waitThreads);
   }
+
+  public void testStallStats() throws InterruptedException {
+    DocumentsWriterStallControl ctrl = new DocumentsWriterStallControl();
+    ctrl.updateStalled(false);
+    assertEquals(0, ctrl.waitIfStalled());
+    assertEquals(0, ctrl.getStallCount());
+    assertEquals(0, ctrl.getTotalStallTimeNS());
+
+    ctrl.updateStalled(true);
+    Thread[] waitThreads = waitThreads(atLeast(1), ctrl);
+    start(waitThreads);
+    awaitState(Thread.State.WAITING, waitThreads);
+    Thread.sleep(10);
+    ctrl.updateStalled(false);
+    join(waitThreads);
+    assertEquals(waitThreads.length, ctrl.getStallCount());
+    assertTrue(ctrl.getTotalStallTimeNS() >= waitThreads.length * 10000000L);
+  }
   
   public void testRandom() throws InterruptedException {
     final DocumentsWriterStallControl ctrl = new DocumentsWriterStallControl();
@@ -75,6 +75,7 @@ public class TestIndexWriterConfig extends LuceneTestCase {
     assertEquals(DocumentsWriterPerThreadPool.class, conf.getIndexerThreadPool().getClass());
     assertEquals(FlushByRamOrCountsPolicy.class, conf.getFlushPolicy().getClass());
     assertEquals(IndexWriterConfig.DEFAULT_RAM_PER_THREAD_HARD_LIMIT_MB, conf.getRAMPerThreadHardLimitMB());
+    assertEquals(IndexWriterConfig.DEFAULT_MAX_RECYCLED_RAM_BUFFER_MB, conf.getMaxRecycledRAMBufferMB(), 0.0);
     assertEquals(Codec.getDefault(), conf.getCodec());
     assertEquals(InfoStream.getDefault(), conf.getInfoStream());
     assertEquals(IndexWriterConfig.DEFAULT_USE_COMPOUND_FILE_SYSTEM, conf.getUseCompoundFile());
@@ -100,6 +101,7 @@ public class TestIndexWriterConfig extends LuceneTestCase {
     getters.add("getIndexerThreadPool");
     getters.add("getFlushPolicy");
     getters.add("getRAMPerThreadHardLimitMB");
+    getters.add("getMaxRecycledRAMBufferMB");
     getters.add("getCodec");
     getters.add("getInfoStream");
     getters.add("getUseCompoundFile");
@@ -303,6 +305,13 @@ public class TestIndexWriterConfig extends LuceneTestCase {
     } catch (IllegalArgumentException e) {
       // this is expected
     }
+
+    try {
+      conf.setMaxRecycledRAMBufferMB(-1);
+      fail("should not have succeeded to set MaxRecycledRAMBufferMB to -1");
+    } catch (IllegalArgumentException e) {
+      // this is expected
+    }
     
     // Test MergePolicy
     assertEquals(TieredMergePolicy.class, conf.getMergePolicy().getClass());
@@ -19,11 +19,17 @@ package org.apache.lucene.index;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.lucene.analysis.MockAnalyzer;
@@ -31,13 +37,19 @@ import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.codecs.lucene46.Lucene46SegmentInfoFormat;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FilterDirectory;
 import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.LuceneTestCase;
 import org.apache.lucene.util.TestUtil;
+import org.apache.lucene.util.ThreadInterruptedException;
 
 public class TestIndexWriterThreadsToSegments extends LuceneTestCase {
 
@@ -350,4 +362,163 @@ public class TestIndexWriterThreadsToSegments extends LuceneTestCase {
     w.close();
     dir.close();
   }
+
+  /** Holds back the first segment flush until a later segment has been
+   *  published, and randomly delays the start of all other segment flushes,
+   *  so that flushes complete out of order. */
+  private static class DelayedFlushDirectory extends FilterDirectory {
+    private final Random random;
+    private final Set<String> flushedSegments = new HashSet<>();
+    private final AtomicBoolean holdBackFirst = new AtomicBoolean(true);
+    volatile IndexWriter writer;
+    volatile boolean overtaken;
+
+    public DelayedFlushDirectory(Directory in, Random random) throws IOException {
+      super(in);
+      this.random = random;
+    }
+
+    @Override
+    public IndexOutput createOutput(String name, IOContext context) throws IOException {
+      final IndexWriter w = writer;
+      if (w != null && context.context == IOContext.Context.FLUSH && startsSegmentFlush(name)) {
+        try {
+          if (holdBackFirst.compareAndSet(true, false)) {
+            // nothing is published yet: wait until another thread publishes the segment it flushed after this one
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (w.getSegmentCount() == 0 && System.nanoTime() < deadline) {
+              Thread.sleep(1);
+            }
+            overtaken = w.getSegmentCount() > 0;
+          } else {
+            final int sleepMS;
+            synchronized (random) {
+              sleepMS = random.nextInt(4) == 0 ? random.nextInt(5) : 0;
+            }
+            Thread.sleep(sleepMS);
+          }
+        } catch (InterruptedException ie) {
+          throw new ThreadInterruptedException(ie);
+        }
+      }
+      return in.createOutput(name, context);
+    }
+
+    private synchronized boolean startsSegmentFlush(String name) {
+      return flushedSegments.add(IndexFileNames.parseSegmentName(name));
+    }
+  }
+
+  // Flushed segments may be published ahead of segments that are still flushing: verify that deletes
+  // and doc values updates, which force in order publishing again, are still applied correctly
+  public void testOutOfOrderFlushWithDeletesAndUpdates() throws Exception {
+    final DelayedFlushDirectory dir = new DelayedFlushDirectory(newDirectory(), new Random(random().nextLong()));
+    IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(random()));
+    final int maxBufferedDocs = TestUtil.nextInt(random(), 2, 20);
+    iwc.setMaxBufferedDocs(maxBufferedDocs);
+    iwc.setRAMBufferSizeMB(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+    if (random().nextBoolean()) {
+      // also publish global deletes tickets between the segment tickets
+      iwc.setMaxBufferedDeleteTerms(TestUtil.nextInt(random(), 2, 20));
+    }
+    final IndexWriter w = new IndexWriter(dir, iwc);
+    dir.writer = w;
+
+    final int numThreads = TestUtil.nextInt(random(), 2, 5);
+    final int numOps = atLeast(500);
+    final CyclicBarrier barrier = new CyclicBarrier(numThreads);
+    final Map<String,Long> model = new HashMap<>();
+    Thread[] threads = new Thread[numThreads];
+    for(int i=0;i<threads.length;i++) {
+      final int threadID = i;
+      final Random threadRandom = new Random(random().nextLong());
+      threads[i] = new Thread() {
+          @Override
+          public void run() {
+            try {
+              // each thread only touches its own ids, so the final state of
+              // its documents does not depend on how the threads interleave
+              final Map<String,Long> values = new HashMap<>();
+              final List<String> ids = new ArrayList<>();
+              int nextID = 0;
+
+              // only add documents at first, so the first flushed segment
+              // carries no global deletes and may be overtaken:
+              for(int j=0;j<2*maxBufferedDocs;j++) {
+                final String id = threadID + "_" + nextID++;
+                final long value = threadRandom.nextLong();
+                w.addDocument(newDoc(id, value));
+                values.put(id, value);
+                ids.add(id);
+              }
+              barrier.await();
+
+              for(int j=0;j<numOps;j++) {
+                final int op = threadRandom.nextInt(10);
+                if (op < 5 || ids.isEmpty()) {
+                  final String id = threadID + "_" + nextID++;
+                  final long value = threadRandom.nextLong();
+                  w.addDocument(newDoc(id, value));
+                  values.put(id, value);
+                  ids.add(id);
+                } else if (op < 7) {
+                  final int idx = threadRandom.nextInt(ids.size());
+                  final String id = ids.get(idx);
+                  ids.set(idx, ids.get(ids.size()-1));
+                  ids.remove(ids.size()-1);
+                  w.deleteDocuments(new Term("id", id));
+                  values.remove(id);
+                } else {
+                  final String id = ids.get(threadRandom.nextInt(ids.size()));
+                  final long value = threadRandom.nextLong();
+                  w.updateNumericDocValue(new Term("id", id), "val", value);
+                  values.put(id, value);
+                }
+              }
+
+              synchronized (model) {
+                model.putAll(values);
+              }
+            } catch (Exception e) {
+              throw new RuntimeException(e);
+            }
+          }
+        };
+      threads[i].start();
+    }
+
+    for(Thread t : threads) {
+      t.join();
+    }
+    assertTrue("first flushed segment was not published out of order", dir.overtaken);
+    w.close();
+
+    DirectoryReader r = DirectoryReader.open(dir);
+    assertEquals(model.size(), r.numDocs());
+    Set<String> seen = new HashSet<>();
+    for(AtomicReaderContext ctx : r.leaves()) {
+      AtomicReader reader = ctx.reader();
+      Bits liveDocs = reader.getLiveDocs();
+      NumericDocValues values = reader.getNumericDocValues("val");
+      for(int docID=0;docID<reader.maxDoc();docID++) {
+        if (liveDocs == null || liveDocs.get(docID)) {
+          String id = reader.document(docID).get("id");
+          assertTrue("duplicate id=" + id, seen.add(id));
+          Long expected = model.get(id);
+          assertNotNull("deleted id=" + id + " is still live", expected);
+          assertEquals("wrong value for id=" + id, expected.longValue(), values.get(docID));
+        }
+      }
+    }
+    assertEquals(model.size(), seen.size());
+    r.close();
+    dir.close();
+  }
+
+  private static Document newDoc(String id, long value) {
+    Document doc = new Document();
+    doc.add(new StringField("id", id, Field.Store.YES));
+    doc.add(new NumericDocValuesField("val", value));
+    return doc;
+  }
 }
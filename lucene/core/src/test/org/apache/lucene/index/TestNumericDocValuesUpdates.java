@@ -1329,4 +1329,88 @@ public class TestNumericDocValuesUpdates extends LuceneTestCase {
     IOUtils.close(reader, writer, cachingDir);
   }
   
+  @Test
+  public void testStackedUpdates() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig conf = newIndexWriterConfig(new MockAnalyzer(random()));
+    conf.setMaxBufferedDocs(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+    conf.setRAMBufferSizeMB(IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB);
+    conf.setMergePolicy(newLogMergePolicy()); // single segment until the final merge
+    IndexWriter writer = new IndexWriter(dir, conf);
+    final int numDocs = atLeast(500);
+    final long[] expectedValues = new long[numDocs];
+    for (int i = 0; i < numDocs; i++) {
+      writer.addDocument(doc(i));
+      expectedValues[i] = i + 1;
+    }
+    writer.commit();
+
+    int maxStackedGens = 0;
+    final int numRounds = atLeast(2 * ReadersAndUpdates.MAX_STACKED_DV_GENS);
+    for (int round = 0; round < numRounds; round++) {
+      // few updates are stacked on top of the current values
+      final int numUpdates = TestUtil.nextInt(random(), 1, 3);
+      for (int j = 0; j < numUpdates; j++) {
+        final int doc = random().nextInt(numDocs);
+        expectedValues[doc] = random().nextLong();
+        writer.updateNumericDocValue(new Term("id", "doc-" + doc), "val", expectedValues[doc]);
+      }
+      if (random().nextBoolean()) {
+        writer.commit();
+      }
+
+      final DirectoryReader reader = DirectoryReader.open(writer, true);
+      assertEquals(1, reader.leaves().size());
+      final SegmentReader r = (SegmentReader) reader.leaves().get(0).reader();
+      final int numStackedGens = r.getFieldInfos().fieldInfo("val").getStackedDocValuesGens().length;
+      assertTrue(numStackedGens > 0 || round > 0);
+      assertTrue(numStackedGens <= ReadersAndUpdates.MAX_STACKED_DV_GENS);
+      maxStackedGens = Math.max(maxStackedGens, numStackedGens);
+      final NumericDocValues ndv = r.getNumericDocValues("val");
+      final Bits docsWithField = r.getDocsWithField("val");
+      for (int i = 0; i < numDocs; i++) {
+        assertTrue(docsWithField.get(i));
+        assertEquals(expectedValues[i], ndv.get(i));
+      }
+      reader.close();
+    }
+    assertEquals(ReadersAndUpdates.MAX_STACKED_DV_GENS, maxStackedGens);
+
+    // updating many documents rewrites the field
+    for (int i = 0; i < numDocs; i += 2) {
+      expectedValues[i] = random().nextLong();
+      writer.updateNumericDocValue(new Term("id", "doc-" + i), "val", expectedValues[i]);
+    }
+    DirectoryReader reader = DirectoryReader.open(writer, true);
+    SegmentReader r = (SegmentReader) reader.leaves().get(0).reader();
+    assertEquals(0, r.getFieldInfos().fieldInfo("val").getStackedDocValuesGens().length);
+    NumericDocValues ndv = r.getNumericDocValues("val");
+    for (int i = 0; i < numDocs; i++) {
+      assertEquals(expectedValues[i], ndv.get(i));
+    }
+    reader.close();
+
+    // stack again, then make sure merging compacts the stacked generations
+    final int doc = random().nextInt(numDocs);
+    expectedValues[doc] = random().nextLong();
+    writer.updateNumericDocValue(new Term("id", "doc-" + doc), "val", expectedValues[doc]);
+    writer.addDocument(doc(numDocs));
+    writer.commit();
+    writer.forceMerge(1);
+    writer.close();
+
+    reader = DirectoryReader.open(dir);
+    assertEquals(1, reader.leaves().size());
+    r = (SegmentReader) reader.leaves().get(0).reader();
+    assertEquals(0, r.getFieldInfos().fieldInfo("val").getStackedDocValuesGens().length);
+    ndv = r.getNumericDocValues("val");
+    for (int i = 0; i < numDocs; i++) {
+      assertEquals(expectedValues[i], ndv.get(i));
+    }
+    assertEquals(numDocs + 1, ndv.get(numDocs));
+    reader.close();
+
+    dir.close();
+  }
+
 }
@@ -251,4 +251,51 @@ public class TestBooleanScorer extends LuceneTestCase {
     r.close();
     dir.close();
   }
+
+  // BooleanScorer fills its buckets directly from the blocks of postings that
+  // TermBulkScorer decodes: make sure it matches in-order scoring
+  public void testTermBulkScorers() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    final int numDocs = atLeast(3000);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      StringBuilder sb = new StringBuilder();
+      for (String term : new String[] { "a", "b", "c", "d" }) {
+        if (random().nextInt(term.charAt(0) - 'a' + 2) == 0) {
+          sb.append(term).append(' ');
+        }
+      }
+      doc.add(newTextField(FIELD, sb.toString(), Field.Store.NO));
+      w.addDocument(doc);
+    }
+    w.deleteDocuments(new Term(FIELD, "d"));
+    IndexReader r = w.getReader();
+    w.close();
+    // not newSearcher: asserting wrappers would hide TermBulkScorer from BooleanScorer
+    IndexSearcher s = new IndexSearcher(r);
+
+    BooleanQuery q = new BooleanQuery();
+    q.add(new TermQuery(new Term(FIELD, "a")), BooleanClause.Occur.SHOULD);
+    q.add(new TermQuery(new Term(FIELD, "b")), BooleanClause.Occur.SHOULD);
+    q.add(new TermQuery(new Term(FIELD, "c")), BooleanClause.Occur.MUST_NOT);
+
+    TopScoreDocCollector outOfOrder = TopScoreDocCollector.create(numDocs, false);
+    s.search(q, outOfOrder);
+    TopScoreDocCollector inOrder = TopScoreDocCollector.create(numDocs, true);
+    s.search(q, inOrder);
+
+    TopDocs expected = inOrder.topDocs();
+    TopDocs actual = outOfOrder.topDocs();
+    assertEquals(expected.totalHits, actual.totalHits);
+    float[] expectedScores = new float[r.maxDoc()];
+    for (ScoreDoc scoreDoc : expected.scoreDocs) {
+      expectedScores[scoreDoc.doc] = scoreDoc.score;
+    }
+    for (ScoreDoc scoreDoc : actual.scoreDocs) {
+      assertEquals(expectedScores[scoreDoc.doc], scoreDoc.score, 1e-5f);
+    }
+    r.close();
+    dir.close();
+  }
 }
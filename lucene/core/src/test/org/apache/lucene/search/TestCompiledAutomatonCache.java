@@ -0,0 +1,148 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+import org.apache.lucene.util.automaton.RegExp;
+
+public class TestCompiledAutomatonCache extends LuceneTestCase {
+
+  private CompiledAutomatonCache previousCache;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    previousCache = CompiledAutomatonCache.getDefault();
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    CompiledAutomatonCache.setDefault(previousCache);
+    super.tearDown();
+  }
+
+  public void testHitsAndMisses() {
+    final CompiledAutomatonCache cache = new CompiledAutomatonCache(10);
+    CompiledAutomatonCache.setDefault(cache);
+
+    final WildcardQuery w1 = new WildcardQuery(new Term("f", "ab*"));
+    assertEquals(0, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+    final WildcardQuery w2 = new WildcardQuery(new Term("g", "ab*"));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+    assertSame(w1.compiled, w2.compiled);
+    assertSame(w1.getAutomaton(), w2.getAutomaton());
+    assertEquals(w1, new WildcardQuery(new Term("f", "ab*")));
+    assertEquals(2, cache.getHitCount());
+
+    // same pattern, different query type
+    final RegexpQuery r1 = new RegexpQuery(new Term("f", "ab*"));
+    assertEquals(2, cache.getMissCount());
+    assertNotSame(w1.compiled, r1.compiled);
+    final RegexpQuery r2 = new RegexpQuery(new Term("f", "ab*"), RegExp.NONE);
+    assertEquals(3, cache.getMissCount());
+    new RegexpQuery(new Term("f", "ab*"));
+    assertEquals(3, cache.getHitCount());
+    assertEquals(3, cache.getCacheSize());
+    assertEquals(6, cache.getTotalCount());
+    assertNotSame(r1.compiled, r2.compiled);
+
+    cache.clear();
+    assertEquals(0, cache.getCacheSize());
+    new RegexpQuery(new Term("f", "ab*"));
+    assertEquals(4, cache.getMissCount());
+  }
+
+  public void testEviction() {
+    final CompiledAutomatonCache cache = new CompiledAutomatonCache(2);
+    CompiledAutomatonCache.setDefault(cache);
+
+    new WildcardQuery(new Term("f", "a*"));
+    new WildcardQuery(new Term("f", "b*"));
+    new WildcardQuery(new Term("f", "a*")); // a* is now the most recently used
+    new WildcardQuery(new Term("f", "c*"));
+    assertEquals(2, cache.getCacheSize());
+    assertEquals(1, cache.getEvictionCount());
+    new WildcardQuery(new Term("f", "a*"));
+    assertEquals(2, cache.getHitCount());
+    new WildcardQuery(new Term("f", "b*"));
+    assertEquals(4, cache.getMissCount());
+  }
+
+  public void testNoDefaultCache() {
+    CompiledAutomatonCache.setDefault(null);
+    final WildcardQuery w1 = new WildcardQuery(new Term("f", "ab*"));
+    final WildcardQuery w2 = new WildcardQuery(new Term("f", "ab*"));
+    assertNotSame(w1.compiled, w2.compiled);
+    assertEquals(w1, w2);
+  }
+
+  public void testSameResults() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    for (String value : new String[] { "lucene", "lucid", "lucy", "solr", "solar", "luke" }) {
+      Document doc = new Document();
+      doc.add(new StringField("f", value, Store.NO));
+      w.addDocument(doc);
+    }
+    IndexReader reader = w.getReader();
+    w.close();
+    IndexSearcher searcher = newSearcher(reader);
+
+    final Query[] queries = new Query[] {
+        new WildcardQuery(new Term("f", "luc*")),
+        new RegexpQuery(new Term("f", "so.a?r")),
+        new FuzzyQuery(new Term("f", "lucie"), 2, 2),
+        new FuzzyQuery(new Term("f", "solra"), 1, 0, 50, true)
+    };
+    final int[] expected = new int[queries.length];
+    CompiledAutomatonCache.setDefault(null);
+    for (int i = 0; i < queries.length; i++) {
+      expected[i] = searcher.search(queries[i], 10).totalHits;
+    }
+
+    final CompiledAutomatonCache cache = new CompiledAutomatonCache(TestUtil.nextInt(random(), 1, 10));
+    CompiledAutomatonCache.setDefault(cache);
+    for (int iter = 0; iter < 3; iter++) {
+      for (int i = 0; i < queries.length; i++) {
+        final Query query;
+        if (queries[i] instanceof WildcardQuery) {
+          query = new WildcardQuery(((WildcardQuery) queries[i]).term);
+        } else if (queries[i] instanceof RegexpQuery) {
+          query = new RegexpQuery(((RegexpQuery) queries[i]).term);
+        } else {
+          query = queries[i];
+        }
+        assertEquals(expected[i], searcher.search(query, 10).totalHits);
+      }
+    }
+    assertTrue(cache.getMissCount() > 0);
+
+    reader.close();
+    dir.close();
+  }
+}
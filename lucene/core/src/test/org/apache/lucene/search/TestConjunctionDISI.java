@@ -0,0 +1,204 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestConjunctionDISI extends LuceneTestCase {
+
+  private int numMatchesCalls;
+
+  /** Create a {@link Scorer} whose approximation
+   *  iterates over <code>approximationSet</code> and whose matches are the
+   *  docs of <code>confirmed</code>. */
+  private Scorer twoPhaseScorer(final FixedBitSet approximationSet, final FixedBitSet confirmed) {
+    final DocIdSetIterator approx = approximationSet.iterator();
+    final TwoPhaseIterator twoPhaseIterator = new TwoPhaseIterator(approx) {
+      @Override
+      public boolean matches() throws IOException {
+        numMatchesCalls++;
+        final int doc = approximation().docID();
+        assertTrue(approximationSet.get(doc));
+        return confirmed.get(doc);
+      }
+    };
+    final DocIdSetIterator disi = TwoPhaseIterator.asDocIdSetIterator(twoPhaseIterator);
+    return new Scorer(null) {
+
+      @Override
+      public TwoPhaseIterator asTwoPhaseIterator() {
+        return twoPhaseIterator;
+      }
+
+      @Override
+      public int docID() {
+        return disi.docID();
+      }
+
+      @Override
+      public int nextDoc() throws IOException {
+        return disi.nextDoc();
+      }
+
+      @Override
+      public int advance(int target) throws IOException {
+        return disi.advance(target);
+      }
+
+      @Override
+      public long cost() {
+        return disi.cost();
+      }
+
+      @Override
+      public int freq() {
+        return 1;
+      }
+
+      @Override
+      public float score() {
+        return 1f;
+      }
+    };
+  }
+
+  private static FixedBitSet randomSet(int maxDoc) {
+    final int step = TestUtil.nextInt(random(), 1, 10);
+    FixedBitSet set = new FixedBitSet(maxDoc);
+    for (int doc = random().nextInt(step); doc < maxDoc; doc += TestUtil.nextInt(random(), 1, step)) {
+      set.set(doc);
+    }
+    return set;
+  }
+
+  private static FixedBitSet toBitSet(int maxDoc, DocIdSetIterator iterator) throws IOException {
+    final FixedBitSet set = new FixedBitSet(maxDoc);
+    for (int doc = iterator.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = iterator.nextDoc()) {
+      set.set(doc);
+    }
+    return set;
+  }
+
+  private static FixedBitSet intersect(int maxDoc, List<FixedBitSet> sets) {
+    final FixedBitSet intersection = new FixedBitSet(maxDoc);
+    intersection.set(0, maxDoc);
+    for (FixedBitSet set : sets) {
+      intersection.and(set);
+    }
+    return intersection;
+  }
+
+  public void testConjunction() throws IOException {
+    final int iters = atLeast(100);
+    for (int iter = 0; iter < iters; ++iter) {
+      final int maxDoc = TestUtil.nextInt(random(), 100, 10000);
+      final int numIterators = TestUtil.nextInt(random(), 2, 5);
+      final List<DocIdSetIterator> iterators = new ArrayList<>();
+      final List<FixedBitSet> matches = new ArrayList<>();
+      final List<FixedBitSet> approximations = new ArrayList<>();
+      boolean hasTwoPhase = false;
+      for (int i = 0; i < numIterators; ++i) {
+        final FixedBitSet set = randomSet(maxDoc);
+        if (random().nextBoolean()) {
+          // the approximation is a superset of the matches
+          final FixedBitSet approximation = set.clone();
+          approximation.or(randomSet(maxDoc));
+          iterators.add(twoPhaseScorer(approximation, set));
+          approximations.add(approximation);
+          hasTwoPhase = true;
+        } else {
+          iterators.add(set.iterator());
+          approximations.add(set);
+        }
+        matches.add(set);
+      }
+
+      numMatchesCalls = 0;
+      final ConjunctionDISI conjunction = ConjunctionDISI.intersect(iterators);
+      assertEquals(intersect(maxDoc, matches), toBitSet(maxDoc, conjunction));
+      // matches are only confirmed on docs that match all approximations
+      assertTrue(numMatchesCalls <= intersect(maxDoc, approximations).cardinality() * numIterators);
+
+      final TwoPhaseIterator twoPhaseIterator = ConjunctionDISI.intersect(iterators).asTwoPhaseIterator();
+      assertEquals(hasTwoPhase, twoPhaseIterator != null);
+    }
+  }
+
+  public void testTwoPhaseView() throws IOException {
+    final int iters = atLeast(100);
+    for (int iter = 0; iter < iters; ++iter) {
+      final int maxDoc = TestUtil.nextInt(random(), 100, 10000);
+      final FixedBitSet set1 = randomSet(maxDoc);
+      final FixedBitSet approximation1 = set1.clone();
+      approximation1.or(randomSet(maxDoc));
+      final FixedBitSet set2 = randomSet(maxDoc);
+      final List<DocIdSetIterator> iterators = new ArrayList<>();
+      iterators.add(twoPhaseScorer(approximation1, set1));
+      iterators.add(set2.iterator());
+
+      final TwoPhaseIterator twoPhaseIterator = ConjunctionDISI.intersect(iterators).asTwoPhaseIterator();
+      final List<FixedBitSet> approximations = new ArrayList<>();
+      approximations.add(approximation1);
+      approximations.add(set2);
+      final List<FixedBitSet> matches = new ArrayList<>();
+      matches.add(set1);
+      matches.add(set2);
+      if (random().nextBoolean()) {
+        assertEquals(intersect(maxDoc, approximations), toBitSet(maxDoc, twoPhaseIterator.approximation()));
+      } else {
+        assertEquals(intersect(maxDoc, matches), toBitSet(maxDoc, TwoPhaseIterator.asDocIdSetIterator(twoPhaseIterator)));
+      }
+    }
+  }
+
+  public void testAdvance() throws IOException {
+    final int iters = atLeast(100);
+    for (int iter = 0; iter < iters; ++iter) {
+      final int maxDoc = TestUtil.nextInt(random(), 100, 10000);
+      final List<DocIdSetIterator> iterators = new ArrayList<>();
+      final List<FixedBitSet> matches = new ArrayList<>();
+      for (int i = 0; i < 3; ++i) {
+        final FixedBitSet set = randomSet(maxDoc);
+        if (random().nextBoolean()) {
+          final FixedBitSet approximation = set.clone();
+          approximation.or(randomSet(maxDoc));
+          iterators.add(twoPhaseScorer(approximation, set));
+        } else {
+          iterators.add(set.iterator());
+        }
+        matches.add(set);
+      }
+      final FixedBitSet expected = intersect(maxDoc, matches);
+      final ConjunctionDISI conjunction = ConjunctionDISI.intersect(iterators);
+      int doc = -1;
+      while (doc != DocIdSetIterator.NO_MORE_DOCS) {
+        final int target = doc + TestUtil.nextInt(random(), 1, 100);
+        final int expectedDoc = target >= maxDoc ? DocIdSetIterator.NO_MORE_DOCS : expected.nextSetBit(target);
+        doc = conjunction.advance(target);
+        assertEquals(expectedDoc == -1 ? DocIdSetIterator.NO_MORE_DOCS : expectedDoc, doc);
+        assertEquals(doc, conjunction.docID());
+      }
+    }
+  }
+}
@@ -17,6 +17,9 @@ package org.apache.lucene.search;
  * limitations under the License.
  */
 
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -24,6 +27,7 @@ import java.util.concurrent.TimeUnit;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.index.Term;
@@ -33,6 +37,7 @@ import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.LuceneTestCase;
 import org.apache.lucene.util.NamedThreadFactory;
 import org.apache.lucene.util.TestUtil;
+import org.apache.lucene.search.IndexSearcher.LeafSlice;
 import org.junit.Test;
 
 public class TestIndexSearcher extends LuceneTestCase {
@@ -139,4 +144,81 @@ public class TestIndexSearcher extends LuceneTestCase {
     }
   }
   
+  public void testSlices() throws Exception {
+    final List<AtomicReaderContext> leaves = reader.leaves();
+    final int maxDocsPerSlice = TestUtil.nextInt(random(), 1, 40);
+    final int maxSegmentsPerSlice = TestUtil.nextInt(random(), 1, 5);
+    final LeafSlice[] slices = IndexSearcher.slices(leaves, maxDocsPerSlice, maxSegmentsPerSlice);
+    // every document must be covered exactly once, in order
+    int nextDoc = 0;
+    for (LeafSlice slice : slices) {
+      assertTrue(slice.leaves.length > 0);
+      assertTrue(slice.leaves.length <= maxSegmentsPerSlice);
+      int numDocs = 0;
+      for (int i = 0; i < slice.leaves.length; i++) {
+        assertEquals(nextDoc, slice.leaves[i].docBase + slice.minDocs[i]);
+        assertTrue(slice.minDocs[i] < slice.maxDocs[i]);
+        numDocs += slice.maxDocs[i] - slice.minDocs[i];
+        nextDoc = slice.leaves[i].docBase + slice.maxDocs[i];
+      }
+      assertTrue(numDocs <= maxDocsPerSlice);
+    }
+    assertEquals(reader.maxDoc(), nextDoc);
+  }
+
+  public void testCollectorManager() throws Exception {
+    ExecutorService service = new ThreadPoolExecutor(4, 4, 0L, TimeUnit.MILLISECONDS,
+                                   new LinkedBlockingQueue<Runnable>(),
+                                   new NamedThreadFactory("TestIndexSearcher"));
+    // small slices so that segments get split
+    IndexSearcher searcher = new IndexSearcher(reader, service) {
+      @Override
+      protected LeafSlice[] slices(List<AtomicReaderContext> leaves) {
+        return slices(leaves, 7, 3);
+      }
+    };
+    IndexSearcher singleThreaded = new IndexSearcher(reader);
+
+    CollectorManager<TotalHitCountCollector, Integer> manager = new CollectorManager<TotalHitCountCollector, Integer>() {
+      @Override
+      public TotalHitCountCollector newCollector() throws IOException {
+        return new TotalHitCountCollector();
+      }
+
+      @Override
+      public Integer reduce(Collection<TotalHitCountCollector> collectors) throws IOException {
+        int totalHits = 0;
+        for (TotalHitCountCollector collector : collectors) {
+          totalHits += collector.getTotalHits();
+        }
+        return totalHits;
+      }
+    };
+    Query[] queries = new Query[] {
+        new MatchAllDocsQuery(),
+        new TermQuery(new Term("field", "1")),
+        new TermQuery(new Term("field2", "true"))
+    };
+    for (Query query : queries) {
+      assertEquals(singleThreaded.search(query, 1).totalHits, searcher.search(query, manager).intValue());
+      assertEquals(singleThreaded.search(query, 1).totalHits, singleThreaded.search(query, manager).intValue());
+
+      final int n = TestUtil.nextInt(random(), 1, 120);
+      assertSameHits(singleThreaded.search(query, n), searcher.search(query, n));
+      Sort sort = new Sort(new SortField("field2", SortField.Type.STRING), new SortField("field", SortField.Type.STRING, true));
+      assertSameHits(singleThreaded.search(query, n, sort), searcher.search(query, n, sort));
+    }
+
+    TestUtil.shutdownExecutorService(service);
+  }
+
+  private static void assertSameHits(TopDocs expected, TopDocs actual) {
+    assertEquals(expected.totalHits, actual.totalHits);
+    assertEquals(expected.scoreDocs.length, actual.scoreDocs.length);
+    for (int i = 0; i < expected.scoreDocs.length; i++) {
+      assertEquals(expected.scoreDocs[i].doc, actual.scoreDocs[i].doc);
+      assertEquals(expected.scoreDocs[i].score, actual.scoreDocs[i].score, 0f);
+    }
+  }
+
 }
@@ -0,0 +1,285 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestLRUFilterCache extends LuceneTestCase {
+
+  private static final FilterCachingPolicy NEVER_CACHE = new FilterCachingPolicy() {
+
+    @Override
+    public void onUse(Filter filter) {}
+
+    @Override
+    public boolean shouldCache(Filter filter, AtomicReaderContext context, DocIdSet set) throws IOException {
+      return false;
+    }
+
+  };
+
+  // not a QueryWrapperFilter since ConstantScoreQuery would rewrite it to a query
+  private static Filter termFilter(String field, String value) {
+    return TermRangeFilter.newStringRange(field, value, value, true, true);
+  }
+
+  public void testLRUEviction() throws Exception {
+    Directory dir = newDirectory();
+    final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+
+    Document doc = new Document();
+    StringField f = new StringField("color", "blue", Store.NO);
+    doc.add(f);
+    w.addDocument(doc);
+    f.setStringValue("red");
+    w.addDocument(doc);
+    f.setStringValue("green");
+    w.addDocument(doc);
+    final DirectoryReader reader = w.getReader();
+    final IndexSearcher searcher = new IndexSearcher(reader);
+    final LRUFilterCache filterCache = new LRUFilterCache(2, 100000);
+    searcher.setFilterCache(filterCache);
+
+    final Filter blue = termFilter("color", "blue");
+    final Filter red = termFilter("color", "red");
+    final Filter green = termFilter("color", "green");
+
+    assertEquals(Collections.emptyList(), filterCache.cachedFilters());
+
+    // the filter is not cached on any segment: no changes
+    searcher.setFilterCachingPolicy(NEVER_CACHE);
+    searcher.search(new ConstantScoreQuery(green), 1);
+    assertEquals(Collections.emptyList(), filterCache.cachedFilters());
+
+    searcher.setFilterCachingPolicy(FilterCachingPolicy.ALWAYS_CACHE);
+    searcher.search(new ConstantScoreQuery(red), 1);
+    assertEquals(Collections.singletonList(red), filterCache.cachedFilters());
+
+    searcher.search(new ConstantScoreQuery(green), 1);
+    assertEquals(Arrays.asList(red, green), filterCache.cachedFilters());
+
+    searcher.search(new FilteredQuery(new MatchAllDocsQuery(), red), 1);
+    assertEquals(Arrays.asList(green, red), filterCache.cachedFilters());
+
+    searcher.search(new ConstantScoreQuery(blue), 1);
+    assertEquals(Arrays.asList(red, blue), filterCache.cachedFilters());
+
+    searcher.search(new ConstantScoreQuery(blue), 1);
+    assertEquals(Arrays.asList(red, blue), filterCache.cachedFilters());
+
+    searcher.search(new ConstantScoreQuery(green), 1);
+    assertEquals(Arrays.asList(blue, green), filterCache.cachedFilters());
+
+    searcher.setFilterCachingPolicy(NEVER_CACHE);
+    searcher.search(new ConstantScoreQuery(red), 1);
+    assertEquals(Arrays.asList(blue, green), filterCache.cachedFilters());
+
+    filterCache.assertConsistent();
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
+  public void testClearFilter() throws IOException {
+    Directory dir = newDirectory();
+    final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+
+    Document doc = new Document();
+    StringField f = new StringField("color", "", Store.NO);
+    doc.add(f);
+    final int numDocs = atLeast(10);
+    for (int i = 0; i < numDocs; ++i) {
+      f.setStringValue(random().nextBoolean() ? "red" : "blue");
+      w.addDocument(doc);
+    }
+    final DirectoryReader reader = w.getReader();
+    final IndexSearcher searcher = new IndexSearcher(reader);
+
+    final Filter filter1 = termFilter("color", "blue");
+    // different instance yet equal
+    final Filter filter2 = termFilter("color", "blue");
+
+    final LRUFilterCache filterCache = new LRUFilterCache(Integer.MAX_VALUE, Long.MAX_VALUE);
+    searcher.setFilterCache(filterCache);
+    searcher.setFilterCachingPolicy(FilterCachingPolicy.ALWAYS_CACHE);
+
+    searcher.search(new ConstantScoreQuery(filter1), 1);
+    assertEquals(1, filterCache.cachedFilters().size());
+
+    filterCache.clearFilter(filter2);
+
+    assertTrue(filterCache.cachedFilters().isEmpty());
+    filterCache.assertConsistent();
+
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
+  public void testRandom() throws IOException {
+    Directory dir = newDirectory();
+    final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    Document doc = new Document();
+    StringField f = new StringField("color", "", Store.NO);
+    doc.add(f);
+    final String[] colors = new String[] { "blue", "red", "green", "yellow", "purple" };
+    final int numDocs = atLeast(100);
+    for (int i = 0; i < numDocs; ++i) {
+      f.setStringValue(colors[random().nextInt(colors.length)]);
+      w.addDocument(doc);
+      if (random().nextInt(50) == 0) {
+        w.deleteDocuments(new Term("color", colors[random().nextInt(colors.length)]));
+      }
+    }
+    final DirectoryReader reader = w.getReader();
+    final IndexSearcher searcher = newSearcher(reader);
+    final IndexSearcher uncachedSearcher = new IndexSearcher(reader);
+    uncachedSearcher.setFilterCache(null);
+
+    final int maxSize = TestUtil.nextInt(random(), 1, 4);
+    final long maxRamBytesUsed = TestUtil.nextLong(random(), 0, 10000);
+    final LRUFilterCache filterCache = new LRUFilterCache(maxSize, maxRamBytesUsed);
+    searcher.setFilterCache(filterCache);
+    searcher.setFilterCachingPolicy(FilterCachingPolicy.ALWAYS_CACHE);
+
+    final int iters = atLeast(50);
+    for (int i = 0; i < iters; ++i) {
+      final Filter filter1 = termFilter("color", colors[random().nextInt(colors.length)]);
+      final Filter filter2 = termFilter("color", colors[random().nextInt(colors.length)]);
+      final BooleanQuery query = new BooleanQuery();
+      query.add(new ConstantScoreQuery(filter1), Occur.SHOULD);
+      query.add(new FilteredQuery(new MatchAllDocsQuery(), filter2), Occur.MUST);
+      assertEquals(uncachedSearcher.search(query, 1).totalHits, searcher.search(query, 1).totalHits);
+      filterCache.assertConsistent();
+      assertTrue(filterCache.cachedFilters().size() <= maxSize);
+    }
+
+    reader.close();
+    w.close();
+    // all cache entries are removed when the reader is closed
+    assertEquals(0, filterCache.getCacheSize());
+    filterCache.assertConsistent();
+    dir.close();
+  }
+
+  public void testStats() throws IOException {
+    final LRUFilterCache filterCache = new LRUFilterCache(1, Long.MAX_VALUE);
+
+    Directory dir = newDirectory();
+    final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    for (int i = 0; i < 10; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("color", i % 2 == 0 ? "red" : "blue", Store.NO));
+      w.addDocument(doc);
+    }
+    final DirectoryReader reader = w.getReader();
+    final int segmentCount = reader.leaves().size();
+    final IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setFilterCache(filterCache);
+    searcher.setFilterCachingPolicy(FilterCachingPolicy.ALWAYS_CACHE);
+    final Filter filter = termFilter("color", "red");
+    final Filter filter2 = termFilter("color", "blue");
+
+    // search on the first filter: cache misses on all segments
+    for (int i = 0; i < 10; ++i) {
+      searcher.search(new ConstantScoreQuery(filter), 1);
+    }
+    assertEquals(10 * segmentCount, filterCache.getTotalCount());
+    assertEquals(9 * segmentCount, filterCache.getHitCount());
+    assertEquals(segmentCount, filterCache.getMissCount());
+    assertEquals(segmentCount, filterCache.getCacheCount());
+    assertEquals(segmentCount, filterCache.getCacheSize());
+    assertEquals(0, filterCache.getEvictionCount());
+
+    // the second filter evicts the first one since the cache can only hold one filter
+    for (int i = 0; i < 10; ++i) {
+      searcher.search(new ConstantScoreQuery(filter2), 1);
+    }
+    assertEquals(20 * segmentCount, filterCache.getTotalCount());
+    assertEquals(18 * segmentCount, filterCache.getHitCount());
+    assertEquals(2 * segmentCount, filterCache.getMissCount());
+    assertEquals(2 * segmentCount, filterCache.getCacheCount());
+    assertEquals(segmentCount, filterCache.getCacheSize());
+    assertEquals(segmentCount, filterCache.getEvictionCount());
+
+    filterCache.clear();
+    assertEquals(0, filterCache.getCacheSize());
+    assertEquals(0, filterCache.ramBytesUsed());
+
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
+  public void testUsageTrackingPolicy() throws IOException {
+    Directory dir = newDirectory();
+    final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    Document doc = new Document();
+    doc.add(new StringField("color", "red", Store.NO));
+    w.addDocument(doc);
+    final DirectoryReader reader = w.getReader();
+    final IndexSearcher searcher = new IndexSearcher(reader);
+    final LRUFilterCache filterCache = new LRUFilterCache(Integer.MAX_VALUE, Long.MAX_VALUE);
+    searcher.setFilterCache(filterCache);
+    // filters need to be used 3 times before being cached
+    searcher.setFilterCachingPolicy(new UsageTrackingFilterCachingPolicy(0.01f, 16, 3, 3, 3));
+
+    final Filter filter = termFilter("color", "red");
+    for (int i = 0; i < 2; ++i) {
+      searcher.search(new ConstantScoreQuery(filter), 1);
+      assertEquals(0, filterCache.getCacheSize());
+    }
+    searcher.search(new ConstantScoreQuery(filter), 1);
+    assertEquals(1, filterCache.getCacheSize());
+
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
+  public void testFrequencyTrackingRingBuffer() {
+    final FrequencyTrackingRingBuffer buffer = new FrequencyTrackingRingBuffer(3);
+    buffer.add(1);
+    buffer.add(2);
+    buffer.add(1);
+    assertEquals(3, buffer.size());
+    assertEquals(2, buffer.frequency(1));
+    assertEquals(1, buffer.frequency(2));
+    buffer.add(3); // evicts the first 1
+    assertEquals(3, buffer.size());
+    assertEquals(1, buffer.frequency(1));
+    buffer.add(3); // evicts 2
+    assertEquals(0, buffer.frequency(2));
+    assertEquals(2, buffer.frequency(3));
+  }
+
+}
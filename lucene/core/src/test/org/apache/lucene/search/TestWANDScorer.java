@@ -0,0 +1,175 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.codecs.lucene41.Lucene41PostingsFormat;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FieldInfo.IndexOptions;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.search.similarities.DefaultSimilarity;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+/**
+ * Tests that top-k disjunctions that skip non-competitive documents
+ * return the same hits as exhaustive evaluation.
+ */
+public class TestWANDScorer extends LuceneTestCase {
+
+  private static final String[] TERMS = { "a", "b", "c", "d", "e", "f" };
+
+  private Directory dir;
+  private DirectoryReader reader;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(TestUtil.alwaysPostingsFormat(new Lucene41PostingsFormat()));
+    iwc.setSimilarity(new BM25Similarity());
+    RandomIndexWriter iw = new RandomIndexWriter(random(), dir, iwc);
+    FieldType omitNorms = new FieldType(TextField.TYPE_NOT_STORED);
+    omitNorms.setOmitNorms(true);
+    omitNorms.setIndexOptions(IndexOptions.DOCS_AND_FREQS);
+    omitNorms.freeze();
+    final int numDocs = atLeast(3000);
+    for (int i = 0; i < numDocs; i++) {
+      StringBuilder sb = new StringBuilder();
+      for (int j = 0; j < TERMS.length; j++) {
+        // the first terms are more frequent, but have lower freqs
+        if (random().nextInt(1 << j) == 0) {
+          final int freq = TestUtil.nextInt(random(), 1, 1 + random().nextInt(1 + 2 * j));
+          for (int k = 0; k < freq; k++) {
+            sb.append(TERMS[j]).append(' ');
+          }
+        }
+      }
+      Document doc = new Document();
+      doc.add(new TextField("body", sb.toString(), Field.Store.NO));
+      doc.add(new Field("omitnorms", sb.toString(), omitNorms));
+      iw.addDocument(doc);
+    }
+    if (random().nextBoolean()) {
+      iw.deleteDocuments(new Term("body", "f"));
+    }
+    reader = iw.getReader();
+    iw.close();
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    reader.close();
+    dir.close();
+    super.tearDown();
+  }
+
+  public void testBM25() throws Exception {
+    doTestRandomQueries(new BM25Similarity(), "body");
+  }
+
+  public void testDefaultSimilarityOmitNorms() throws Exception {
+    doTestRandomQueries(new DefaultSimilarity(), "omitnorms");
+  }
+
+  public void testUsesWANDScorer() throws Exception {
+    IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setSimilarity(new BM25Similarity());
+    BooleanQuery query = new BooleanQuery();
+    query.add(new TermQuery(new Term("body", "a")), Occur.SHOULD);
+    query.add(new TermQuery(new Term("body", "b")), Occur.SHOULD);
+    Weight weight = searcher.createNormalizedWeight(query);
+    for (AtomicReaderContext context : reader.leaves()) {
+      Scorer scorer = weight.scorer(context, context.reader().getLiveDocs());
+      if (scorer != null) {
+        assertTrue(scorer.toString(), scorer instanceof WANDScorer);
+      }
+    }
+
+    // norms may include index-time boosts, so TF-IDF can't bound scores
+    searcher.setSimilarity(new DefaultSimilarity());
+    weight = searcher.createNormalizedWeight(query);
+    for (AtomicReaderContext context : reader.leaves()) {
+      Scorer scorer = weight.scorer(context, context.reader().getLiveDocs());
+      if (scorer != null) {
+        assertFalse(scorer instanceof WANDScorer);
+      }
+    }
+  }
+
+  public void testSkipsNonCompetitiveDocs() throws Exception {
+    IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setSimilarity(new BM25Similarity());
+    BooleanQuery query = new BooleanQuery();
+    query.add(new TermQuery(new Term("body", "a")), Occur.SHOULD);
+    query.add(new TermQuery(new Term("body", "f")), Occur.SHOULD);
+    TopScoreDocCollector exact = TopScoreDocCollector.create(1, null, true, true);
+    searcher.search(query, exact);
+    TopScoreDocCollector pruned = TopScoreDocCollector.create(1, null, true, false);
+    searcher.search(query, pruned);
+    assertTopDocsEquals(exact.topDocs(), pruned.topDocs());
+    assertTrue(pruned.getTotalHits() <= exact.getTotalHits());
+  }
+
+  private void doTestRandomQueries(Similarity similarity, String field) throws Exception {
+    IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setSimilarity(similarity);
+    final int iters = atLeast(30);
+    for (int iter = 0; iter < iters; iter++) {
+      BooleanQuery query = new BooleanQuery(random().nextBoolean());
+      final int numClauses = TestUtil.nextInt(random(), 2, TERMS.length);
+      for (int i = 0; i < numClauses; i++) {
+        TermQuery clause = new TermQuery(new Term(field, TERMS[random().nextInt(TERMS.length)]));
+        if (random().nextBoolean()) {
+          clause.setBoost(TestUtil.nextInt(random(), 1, 10));
+        }
+        query.add(clause, Occur.SHOULD);
+      }
+      if (random().nextInt(5) == 0) {
+        query.add(new TermQuery(new Term(field, TERMS[random().nextInt(TERMS.length)])), Occur.MUST_NOT);
+      }
+      final int numHits = TestUtil.nextInt(random(), 1, 100);
+      TopScoreDocCollector exact = TopScoreDocCollector.create(numHits, null, true, true);
+      searcher.search(query, exact);
+      TopScoreDocCollector pruned = TopScoreDocCollector.create(numHits, null, true, false);
+      searcher.search(query, pruned);
+      assertTopDocsEquals(exact.topDocs(), pruned.topDocs());
+      assertTrue(pruned.getTotalHits() <= exact.getTotalHits());
+    }
+  }
+
+  private static void assertTopDocsEquals(TopDocs expected, TopDocs actual) {
+    assertEquals(expected.scoreDocs.length, actual.scoreDocs.length);
+    for (int i = 0; i < expected.scoreDocs.length; i++) {
+      assertEquals(expected.scoreDocs[i].doc, actual.scoreDocs[i].doc);
+      assertEquals(expected.scoreDocs[i].score, actual.scoreDocs[i].score, 0f);
+    }
+  }
+}
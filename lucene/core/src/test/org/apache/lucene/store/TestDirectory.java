@@ -23,8 +23,12 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.TestUtil;
@@ -172,5 +176,51 @@ public class TestDirectory extends BaseDirectoryTestCase {
       IOUtils.rm(path);
     }
   }
-}
 
+  public void testConcurrentSync() throws Throwable {
+    Path path = createTempDir("testConcurrentSync");
+    final Set<String> synced = Collections.synchronizedSet(new HashSet<String>());
+    final Set<String> failing = Collections.synchronizedSet(new HashSet<String>());
+    FSDirectory fsDir = new SimpleFSDirectory(path, null) {
+      @Override
+      protected void fsync(String name) throws IOException {
+        if (failing.contains(name)) {
+          throw new IOException("fake fsync failure on " + name);
+        }
+        assertTrue(synced.add(name));
+        super.fsync(name);
+      }
+    };
+    try {
+      fsDir.setSyncThreadCount(TestUtil.nextInt(random(), 2, 8));
+      final int numFiles = TestUtil.nextInt(random(), 2, 50);
+      final List<String> names = new ArrayList<>();
+      for (int i = 0; i < numFiles; i++) {
+        final String name = "file" + i;
+        IndexOutput out = fsDir.createOutput(name, newIOContext(random()));
+        out.writeInt(i);
+        out.close();
+        names.add(name);
+      }
+
+      failing.add(names.get(random().nextInt(numFiles)));
+      try {
+        fsDir.sync(names);
+        fail("did not hit expected exception");
+      } catch (IOException expected) {
+        // Expected
+      }
+      // failed syncs must be retried
+      assertEquals(names.size(), fsDir.staleFiles.size());
+
+      failing.clear();
+      synced.clear();
+      fsDir.sync(names);
+      assertEquals(new HashSet<>(names), synced);
+      assertTrue(fsDir.staleFiles.isEmpty());
+    } finally {
+      fsDir.close();
+      IOUtils.rm(path);
+    }
+  }
+}
@@ -19,6 +19,13 @@ package org.apache.lucene.store;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.TestUtil;
 
 /**
  * Tests MMapDirectory
@@ -27,6 +34,63 @@ public class TestMmapDirectory extends BaseDirectoryTestCase {
 
   @Override
   protected Directory getDirectory(Path path) throws IOException {
-    return new MMapDirectory(path);
+    MMapDirectory dir = new MMapDirectory(path);
+    if (random().nextBoolean()) {
+      dir.setPreloadExtensions(Collections.singleton("txt"));
+    }
+    return dir;
+  }
+
+  public void testPreload() throws Exception {
+    MMapDirectory dir = new MMapDirectory(createTempDir("testPreload"), null, 1 << TestUtil.nextInt(random(), 10, 16));
+    dir.setPreloadExtensions(new HashSet<>(Arrays.asList("tim", "doc")));
+    assertEquals(new HashSet<>(Arrays.asList("tim", "doc")), dir.getPreloadExtensions());
+    dir.setPreloadThreadCount(TestUtil.nextInt(random(), 1, 3));
+    if (random().nextBoolean()) {
+      dir.setPreloadContexts(EnumSet.allOf(IOContext.Context.class));
+    }
+
+    final String[] names = new String[] { "_0.tim", "_0.doc", "_0.fdt" };
+    final byte[][] contents = new byte[names.length][];
+    for (int i = 0; i < names.length; i++) {
+      contents[i] = new byte[TestUtil.nextInt(random(), 0, 1 << 18)];
+      random().nextBytes(contents[i]);
+      IndexOutput out = dir.createOutput(names[i], newIOContext(random()));
+      out.writeBytes(contents[i], contents[i].length);
+      out.close();
+    }
+
+    for (int iter = 0; iter < 10; iter++) {
+      for (int i = 0; i < names.length; i++) {
+        IndexInput in = dir.openInput(names[i], IOContext.READ);
+        if (random().nextBoolean()) {
+          // close while the file is probably still being preloaded
+          in.close();
+          continue;
+        }
+        IndexInput clone = in.clone();
+        byte[] actual = new byte[contents[i].length];
+        clone.readBytes(actual, 0, actual.length);
+        assertEquals(new BytesRef(contents[i]), new BytesRef(actual));
+        in.close();
+      }
+    }
+    dir.close();
+  }
+
+  public void testPreloadOptions() throws Exception {
+    MMapDirectory dir = new MMapDirectory(createTempDir("testPreloadOptions"));
+    assertTrue(dir.getPreloadExtensions().isEmpty());
+    assertEquals(EnumSet.of(IOContext.Context.READ, IOContext.Context.DEFAULT), dir.getPreloadContexts());
+    assertEquals(1, dir.getPreloadThreadCount());
+    try {
+      dir.setPreloadThreadCount(0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+      // ok
+    }
+    dir.setPreloadContexts(EnumSet.noneOf(IOContext.Context.class));
+    assertTrue(dir.getPreloadContexts().isEmpty());
+    dir.close();
   }
 }
@@ -25,6 +25,9 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.LuceneTestCase;
@@ -76,6 +79,64 @@ public class TestOfflineSorter extends LuceneTestCase {
     assertEquals(1, sortInfo.mergeRounds);
   }
 
+  public void testConcurrentEmpty() throws Exception {
+    final int numThreads = TestUtil.nextInt(random(), 2, 6);
+    final ExecutorService exec = Executors.newFixedThreadPool(numThreads, new NamedThreadFactory("TestOfflineSorter"));
+    try {
+      checkSort(new OfflineSorter(OfflineSorter.DEFAULT_COMPARATOR, BufferSize.megabytes(1), OfflineSorter.defaultTempDir(), OfflineSorter.MAX_TEMPFILES, exec, numThreads), 
+          new byte [][] {});
+    } finally {
+      exec.shutdown();
+      exec.awaitTermination(1, TimeUnit.MINUTES);
+    }
+  }
+
+  public void testConcurrentSmallRandom() throws Exception {
+    final int numThreads = TestUtil.nextInt(random(), 2, 6);
+    final ExecutorService exec = Executors.newFixedThreadPool(numThreads, new NamedThreadFactory("TestOfflineSorter"));
+    try {
+      // Sort 20 mb worth of data with 2mb buffer, split across partitions.
+      SortInfo sortInfo = checkSort(new OfflineSorter(OfflineSorter.DEFAULT_COMPARATOR, BufferSize.megabytes(2), OfflineSorter.defaultTempDir(), OfflineSorter.MAX_TEMPFILES, exec, numThreads), 
+          generateRandom((int)OfflineSorter.MB * 20));
+      assertEquals(1, sortInfo.mergeRounds);
+    } finally {
+      exec.shutdown();
+      exec.awaitTermination(1, TimeUnit.MINUTES);
+    }
+  }
+
+  public void testConcurrentIntermediateMerges() throws Exception {
+    final int numThreads = TestUtil.nextInt(random(), 2, 6);
+    final ExecutorService exec = Executors.newFixedThreadPool(numThreads, new NamedThreadFactory("TestOfflineSorter"));
+    try {
+      // Sort 10 mb worth of data with 1mb buffer, binary merging.
+      SortInfo info = checkSort(new OfflineSorter(OfflineSorter.DEFAULT_COMPARATOR, BufferSize.megabytes(1), OfflineSorter.defaultTempDir(), 2, exec, numThreads), 
+          generateRandom((int)OfflineSorter.MB * 10));
+      assertTrue(info.mergeRounds > 5);
+    } finally {
+      exec.shutdown();
+      exec.awaitTermination(1, TimeUnit.MINUTES);
+    }
+  }
+
+  public void testConcurrentFewDistinctValues() throws Exception {
+    final int numThreads = TestUtil.nextInt(random(), 2, 6);
+    final ExecutorService exec = Executors.newFixedThreadPool(numThreads, new NamedThreadFactory("TestOfflineSorter"));
+    try {
+      // many duplicates make splitters collapse
+      final byte[][] values = generateRandom(TestUtil.nextInt(random(), 1, 5) * 100);
+      final byte[][] data = new byte[atLeast(50000)][];
+      for (int i = 0; i < data.length; i++) {
+        data[i] = values[random().nextInt(values.length)];
+      }
+      checkSort(new OfflineSorter(OfflineSorter.DEFAULT_COMPARATOR, BufferSize.megabytes(1), OfflineSorter.defaultTempDir(), OfflineSorter.MAX_TEMPFILES, exec, numThreads), 
+          data);
+    } finally {
+      exec.shutdown();
+      exec.awaitTermination(1, TimeUnit.MINUTES);
+    }
+  }
+
   @Nightly
   public void testLargerRandom() throws Exception {
     // Sort 100MB worth of data with 15mb buffer.
@@ -978,6 +978,75 @@ public class TestFSTs extends LuceneTestCase {
     dir.close();
   }
 
+  public void testOffHeap() throws Exception {
+    final PositiveIntOutputs outputs = PositiveIntOutputs.getSingleton();
+    final boolean doPack = random().nextBoolean();
+    final Builder<Long> builder = new Builder<>(FST.INPUT_TYPE.BYTE1, 0, 0, true, true, Integer.MAX_VALUE, outputs,
+                                                doPack, PackedInts.DEFAULT, true, 15);
+    final TreeSet<BytesRef> terms = new TreeSet<>();
+    final int numTerms = atLeast(500);
+    while (terms.size() < numTerms) {
+      terms.add(new BytesRef(TestUtil.randomSimpleString(random(), 1, 10)));
+    }
+    final IntsRefBuilder scratch = new IntsRefBuilder();
+    long output = 0;
+    for (BytesRef term : terms) {
+      builder.add(Util.toIntsRef(term, scratch), output);
+      output += 1 + random().nextInt(10);
+    }
+    final FST<Long> fst = builder.finish();
+
+    final Directory[] dirs = new Directory[] {
+        newDirectory(),
+        // unwrapped, to test inputs that support random access natively
+        FSDirectory.open(createTempDir("offHeapFST"))
+    };
+    for (Directory dir : dirs) {
+      IndexOutput out = dir.createOutput("fst", IOContext.DEFAULT);
+      // make sure the FST does not start at offset 0
+      out.writeVInt(42);
+      fst.save(out);
+      out.writeVInt(43);
+      out.close();
+
+      IndexInput in = dir.openInput("fst", IOContext.DEFAULT);
+      assertEquals(42, in.readVInt());
+      final FST<Long> offHeapFST = new FST<>(in, outputs, true);
+      assertEquals(43, in.readVInt());
+      assertTrue(offHeapFST.ramBytesUsed() < fst.ramBytesUsed());
+
+      for (BytesRef term : terms) {
+        assertEquals(Util.get(fst, term), Util.get(offHeapFST, term));
+      }
+      for (int i = 0; i < 100; ++i) {
+        final BytesRef term = new BytesRef(TestUtil.randomSimpleString(random(), 1, 10));
+        assertEquals(Util.get(fst, term), Util.get(offHeapFST, term));
+      }
+      final BytesRefFSTEnum<Long> expected = new BytesRefFSTEnum<>(fst);
+      final BytesRefFSTEnum<Long> actual = new BytesRefFSTEnum<>(offHeapFST);
+      for (InputOutput<Long> io = expected.next(); io != null; io = expected.next()) {
+        final InputOutput<Long> io2 = actual.next();
+        assertEquals(io.input, io2.input);
+        assertEquals(io.output, io2.output);
+      }
+      assertNull(actual.next());
+
+      // saving an off-heap FST writes the same bytes
+      IndexOutput out2 = dir.createOutput("fst2", IOContext.DEFAULT);
+      offHeapFST.save(out2);
+      out2.close();
+      IndexInput in2 = dir.openInput("fst2", IOContext.DEFAULT);
+      final FST<Long> fst2 = new FST<>(in2, outputs);
+      in2.close();
+      for (BytesRef term : terms) {
+        assertEquals(Util.get(fst, term), Util.get(fst2, term));
+      }
+
+      in.close();
+      dir.close();
+    }
+  }
+
   public void testRandomTermLookup() throws Exception {
     Directory dir = newDirectory();
 
@@ -0,0 +1,105 @@
+package org.apache.lucene.bkdtree;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * Field that indexes a multi-dimensional point of <code>long</code> values,
+ * so that documents can be found by a box with a {@link BKDRangeFilter}.
+ * The field must use {@link BKDTreeDocValuesFormat}. Each document may have
+ * at most one point per field and all points of a field must have the same
+ * number of dimensions. Here's an example usage:
+ *
+ * <pre class="prettyprint">
+ *   document.add(new BKDPointField(name, x, y));
+ * </pre>
+ *
+ * <p>Doubles can be indexed by converting them with
+ * {@link org.apache.lucene.util.NumericUtils#doubleToSortableLong(double)}.
+ *
+ * @lucene.experimental */
+public final class BKDPointField extends Field {
+
+  /** Number of bytes used to encode each dimension. */
+  public static final int BYTES_PER_DIM = 8;
+
+  /**
+   * Type for a point.
+   */
+  public static final FieldType TYPE = new FieldType();
+  static {
+    TYPE.setDocValueType(FieldInfo.DocValuesType.BINARY);
+    TYPE.freeze();
+  }
+
+  /**
+   * Create a new point.
+   * @param name field name
+   * @param values the value of each dimension
+   * @throws IllegalArgumentException if the field name is null or if the
+   *         number of dimensions is not between 1 and {@link BKDTreeDocValuesFormat#MAX_DIMS}
+   */
+  public BKDPointField(String name, long... values) {
+    super(name, TYPE);
+    if (values.length == 0 || values.length > BKDTreeDocValuesFormat.MAX_DIMS) {
+      throw new IllegalArgumentException("points must have 1 .. " + BKDTreeDocValuesFormat.MAX_DIMS + " dimensions (got: " + values.length + ")");
+    }
+    fieldsData = encode(values);
+  }
+
+  static BytesRef encode(long[] values) {
+    final byte[] bytes = new byte[values.length * BYTES_PER_DIM];
+    int upto = 0;
+    for (long v : values) {
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        bytes[upto++] = (byte) (v >>> shift);
+      }
+    }
+    return new BytesRef(bytes);
+  }
+
+  /** Decode <code>point.length</code> dimensions from <code>bytes</code>. */
+  static void decode(BytesRef bytes, long[] point) {
+    int upto = bytes.offset;
+    for (int dim = 0; dim < point.length; ++dim) {
+      long v = 0;
+      for (int i = 0; i < BYTES_PER_DIM; ++i) {
+        v = (v << 8) | (bytes.bytes[upto++] & 0xFFL);
+      }
+      point[dim] = v;
+    }
+  }
+
+  /** Return the number of dimensions of an encoded point. */
+  static int getNumDims(String fieldName, BytesRef bytes) {
+    if (bytes.length % BYTES_PER_DIM != 0) {
+      throw new IllegalArgumentException("field=\"" + fieldName + "\": invalid point of length " + bytes.length
+          + ", was it indexed with " + BKDPointField.class.getSimpleName() + "?");
+    }
+    final int numDims = bytes.length / BYTES_PER_DIM;
+    if (numDims > BKDTreeDocValuesFormat.MAX_DIMS) {
+      throw new IllegalArgumentException("field=\"" + fieldName + "\": points must have at most "
+          + BKDTreeDocValuesFormat.MAX_DIMS + " dimensions (got: " + numDims + ")");
+    }
+    return numDims;
+  }
+}
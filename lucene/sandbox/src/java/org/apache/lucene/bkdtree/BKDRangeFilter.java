@@ -0,0 +1,137 @@
+package org.apache.lucene.bkdtree;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.search.BitsFilteredDocIdSet;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocValuesDocIdSet;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * A {@link Filter} that matches documents whose {@link BKDPointField} is in
+ * a box. Both bounds are inclusive. The field should have been indexed with
+ * {@link BKDTreeDocValuesFormat}: segments whose tree can't be reached, eg.
+ * under composite reader wrappers, are filtered by checking the point of
+ * every document, which is much slower.
+ *
+ * @lucene.experimental */
+public class BKDRangeFilter extends Filter {
+
+  private final String field;
+  private final long[] min;
+  private final long[] max;
+
+  /** Sole constructor.
+   * @param field the field to filter on
+   * @param min the minimum value of each dimension, inclusive
+   * @param max the maximum value of each dimension, inclusive */
+  public BKDRangeFilter(String field, long[] min, long[] max) {
+    if (min.length != max.length) {
+      throw new IllegalArgumentException("min and max must have the same number of dimensions (got: " + min.length + " and " + max.length + ")");
+    }
+    if (min.length == 0 || min.length > BKDTreeDocValuesFormat.MAX_DIMS) {
+      throw new IllegalArgumentException("ranges must have 1 .. " + BKDTreeDocValuesFormat.MAX_DIMS + " dimensions (got: " + min.length + ")");
+    }
+    this.field = field;
+    this.min = min.clone();
+    this.max = max.clone();
+  }
+
+  @Override
+  public DocIdSet getDocIdSet(AtomicReaderContext context, Bits acceptDocs) throws IOException {
+    final AtomicReader reader = context.reader();
+    final BinaryDocValues values = reader.getBinaryDocValues(field);
+    if (values == null) {
+      return null;
+    }
+    final BKDTreeReader treeReader = BKDTreeDocValuesFormat.getTreeReader(reader, field);
+    if (treeReader != null) {
+      return BitsFilteredDocIdSet.wrap(treeReader.intersect(min, max, reader.maxDoc()), acceptDocs);
+    }
+    // the tree is not reachable, eg. because the reader is a wrapper that
+    // may remap doc IDs or because the field was not indexed with BKDTreeDocValuesFormat:
+    // fall back to checking the point of every document
+    final Bits docsWithField = reader.getDocsWithField(field);
+    final long[] point = new long[min.length];
+    return new DocValuesDocIdSet(reader.maxDoc(), acceptDocs) {
+      @Override
+      protected boolean matchDoc(int doc) {
+        if (docsWithField.get(doc) == false) {
+          return false;
+        }
+        final BytesRef bytes = values.get(doc);
+        final int numDims = BKDPointField.getNumDims(field, bytes);
+        if (numDims != point.length) {
+          throw new IllegalArgumentException("field=\"" + field + "\": points have " + numDims
+              + " dimensions but the range has " + point.length);
+        }
+        BKDPointField.decode(bytes, point);
+        for (int dim = 0; dim < point.length; ++dim) {
+          if (point[dim] < min[dim] || point[dim] > max[dim]) {
+            return false;
+          }
+        }
+        return true;
+      }
+    };
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null || obj.getClass() != getClass()) {
+      return false;
+    }
+    final BKDRangeFilter other = (BKDRangeFilter) obj;
+    return field.equals(other.field)
+        && Arrays.equals(min, other.min)
+        && Arrays.equals(max, other.max);
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = getClass().hashCode();
+    hash = 31 * hash + field.hashCode();
+    hash = 31 * hash + Arrays.hashCode(min);
+    hash = 31 * hash + Arrays.hashCode(max);
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append(getClass().getSimpleName()).append('(').append(field).append(':');
+    for (int dim = 0; dim < min.length; ++dim) {
+      if (dim > 0) {
+        sb.append(',');
+      }
+      sb.append('[').append(min[dim]).append(" TO ").append(max[dim]).append(']');
+    }
+    return sb.append(')').toString();
+  }
+}
@@ -0,0 +1,39 @@
+package org.apache.lucene.bkdtree;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.util.BytesRef;
+
+/** Binary doc values that also give access to the block KD-tree of the
+ *  field, see {@link BKDTreeDocValuesFormat#getTreeReader}. */
+class BKDTreeBinaryDocValues extends BinaryDocValues {
+
+  final BinaryDocValues delegate;
+  final BKDTreeReader bkdTreeReader;
+
+  BKDTreeBinaryDocValues(BinaryDocValues delegate, BKDTreeReader bkdTreeReader) {
+    this.delegate = delegate;
+    this.bkdTreeReader = bkdTreeReader;
+  }
+
+  @Override
+  public BytesRef get(int docID) {
+    return delegate.get(docID);
+  }
+}
@@ -0,0 +1,127 @@
+package org.apache.lucene.bkdtree;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.DocValuesConsumer;
+import org.apache.lucene.codecs.DocValuesFormat;
+import org.apache.lucene.codecs.DocValuesProducer;
+import org.apache.lucene.codecs.lucene410.Lucene410DocValuesFormat;
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.util.IOUtils;
+
+/**
+ * A {@link DocValuesFormat} that indexes the points of {@link BKDPointField}s
+ * in a block KD-tree, so that {@link BKDRangeFilter} can find the documents
+ * whose point is in a box by only visiting the leaf blocks that intersect with
+ * the box. Compared to trie-encoded numeric terms, this does not add any
+ * terms to the terms dictionary and a range only needs to read a few leaf
+ * blocks instead of merging many postings lists.
+ *
+ * <p>Values are also written with {@link Lucene410DocValuesFormat} so that
+ * they can be retrieved as regular binary doc values. This format is
+ * typically configured per-field, eg. by overriding
+ * {@link org.apache.lucene.codecs.lucene410.Lucene410Codec#getDocValuesFormatForField(String)},
+ * since all binary fields that it sees must be points. Trees are built when
+ * segments are flushed and rebuilt from the merged points on merge.
+ *
+ * @lucene.experimental
+ */
+public class BKDTreeDocValuesFormat extends DocValuesFormat {
+
+  static final String DATA_CODEC_NAME = "BKDData";
+  static final int DATA_VERSION_START = 0;
+  static final int DATA_VERSION_CURRENT = DATA_VERSION_START;
+  static final String DATA_EXTENSION = "kdd";
+
+  static final String META_CODEC_NAME = "BKDMeta";
+  static final int META_VERSION_START = 0;
+  static final int META_VERSION_CURRENT = META_VERSION_START;
+  static final String META_EXTENSION = "kdm";
+
+  /** Default maximum number of points in a leaf block. */
+  public static final int DEFAULT_MAX_POINTS_IN_LEAF_NODE = 1024;
+
+  /** Maximum number of dimensions. */
+  public static final int MAX_DIMS = 8;
+
+  private final int maxPointsInLeafNode;
+  private final DocValuesFormat delegate = new Lucene410DocValuesFormat();
+
+  /** Default constructor */
+  public BKDTreeDocValuesFormat() {
+    this(DEFAULT_MAX_POINTS_IN_LEAF_NODE);
+  }
+
+  /** Creates this with a custom configuration.
+   *
+   * @param maxPointsInLeafNode Maximum number of points in each leaf block.
+   *
+   * @lucene.experimental */
+  public BKDTreeDocValuesFormat(int maxPointsInLeafNode) {
+    super("BKDTree");
+    verifyParams(1, maxPointsInLeafNode);
+    this.maxPointsInLeafNode = maxPointsInLeafNode;
+  }
+
+  static void verifyParams(int numDims, int maxPointsInLeafNode) {
+    if (numDims < 1 || numDims > MAX_DIMS) {
+      throw new IllegalArgumentException("numDims must be 1 .. " + MAX_DIMS + " (got: " + numDims + ")");
+    }
+    if (maxPointsInLeafNode <= 0) {
+      throw new IllegalArgumentException("maxPointsInLeafNode must be > 0; got " + maxPointsInLeafNode);
+    }
+  }
+
+  /** Returns the block KD-tree of <code>field</code> for the given reader,
+   *  or null if the field was not indexed with this format or if the reader
+   *  doesn't expose the tree's doc values as they are. Wrappers are not
+   *  unwrapped: they may remap doc IDs, eg. when sorting an index, and the
+   *  doc IDs of the tree would then be wrong. */
+  static BKDTreeReader getTreeReader(AtomicReader reader, String field) throws IOException {
+    final BinaryDocValues values = reader.getBinaryDocValues(field);
+    if (values instanceof BKDTreeBinaryDocValues) {
+      return ((BKDTreeBinaryDocValues) values).bkdTreeReader;
+    }
+    return null;
+  }
+
+  @Override
+  public DocValuesConsumer fieldsConsumer(final SegmentWriteState state) throws IOException {
+    return new BKDTreeDocValuesConsumer(delegate.fieldsConsumer(state), state, maxPointsInLeafNode);
+  }
+
+  @Override
+  public DocValuesProducer fieldsProducer(SegmentReadState state) throws IOException {
+    final DocValuesProducer delegateProducer = delegate.fieldsProducer(state);
+    boolean success = false;
+    try {
+      final DocValuesProducer producer = new BKDTreeDocValuesProducer(delegateProducer, state);
+      success = true;
+      return producer;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(delegateProducer);
+      }
+    }
+  }
+}
@@ -0,0 +1,170 @@
+package org.apache.lucene.bkdtree;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.DocValuesProducer;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.store.ChecksumIndexInput;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.Accountables;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.IOUtils;
+
+class BKDTreeDocValuesProducer extends DocValuesProducer {
+
+  private final Map<Integer,Long> fieldToIndexFPs = new HashMap<>();
+  // trees are loaded lazily, on first use
+  private final Map<String,BKDTreeReader> treeReaders = new HashMap<>();
+  private final IndexInput datIn;
+  private final DocValuesProducer delegate;
+
+  public BKDTreeDocValuesProducer(DocValuesProducer delegate, SegmentReadState state) throws IOException {
+    String metaFileName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, BKDTreeDocValuesFormat.META_EXTENSION);
+    try (ChecksumIndexInput metaIn = state.directory.openChecksumInput(metaFileName, state.context)) {
+      CodecUtil.checkHeader(metaIn, BKDTreeDocValuesFormat.META_CODEC_NAME,
+                            BKDTreeDocValuesFormat.META_VERSION_START, BKDTreeDocValuesFormat.META_VERSION_CURRENT);
+      while (true) {
+        final int fieldNumber = metaIn.readVInt();
+        if (fieldNumber == -1) {
+          break;
+        }
+        final long indexFP = metaIn.readVLong();
+        if (fieldToIndexFPs.put(fieldNumber, indexFP) != null) {
+          throw new CorruptIndexException("duplicate field number " + fieldNumber, metaIn);
+        }
+      }
+      CodecUtil.checkFooter(metaIn);
+    }
+
+    String datFileName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, BKDTreeDocValuesFormat.DATA_EXTENSION);
+    IndexInput datIn = null;
+    boolean success = false;
+    try {
+      datIn = state.directory.openInput(datFileName, state.context);
+      CodecUtil.checkHeader(datIn, BKDTreeDocValuesFormat.DATA_CODEC_NAME,
+                            BKDTreeDocValuesFormat.DATA_VERSION_START, BKDTreeDocValuesFormat.DATA_VERSION_CURRENT);
+      // NOTE: data file is too costly to verify checksum against all the bytes on open,
+      // but for now we at least verify proper structure of the checksum footer: which looks
+      // for FOOTER_MAGIC + algorithmID. This is cheap and can detect some forms of corruption
+      // such as file truncation.
+      CodecUtil.retrieveChecksum(datIn);
+      success = true;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(datIn);
+      }
+    }
+    this.datIn = datIn;
+    this.delegate = delegate;
+  }
+
+  @Override
+  public BinaryDocValues getBinary(FieldInfo field) throws IOException {
+    final BinaryDocValues values = delegate.getBinary(field);
+    final Long indexFP = fieldToIndexFPs.get(field.number);
+    if (indexFP == null) {
+      // no document has a point for this field
+      return values;
+    }
+    BKDTreeReader treeReader;
+    synchronized (this) {
+      treeReader = treeReaders.get(field.name);
+      if (treeReader == null) {
+        final IndexInput in = datIn.clone();
+        in.seek(indexFP);
+        treeReader = new BKDTreeReader(in);
+        treeReaders.put(field.name, treeReader);
+      }
+    }
+    return new BKDTreeBinaryDocValues(values, treeReader);
+  }
+
+  @Override
+  public NumericDocValues getNumeric(FieldInfo field) throws IOException {
+    return delegate.getNumeric(field);
+  }
+
+  @Override
+  public SortedDocValues getSorted(FieldInfo field) throws IOException {
+    return delegate.getSorted(field);
+  }
+
+  @Override
+  public SortedNumericDocValues getSortedNumeric(FieldInfo field) throws IOException {
+    return delegate.getSortedNumeric(field);
+  }
+
+  @Override
+  public SortedSetDocValues getSortedSet(FieldInfo field) throws IOException {
+    return delegate.getSortedSet(field);
+  }
+
+  @Override
+  public Bits getDocsWithField(FieldInfo field) throws IOException {
+    return delegate.getDocsWithField(field);
+  }
+
+  @Override
+  public void close() throws IOException {
+    IOUtils.close(datIn, delegate);
+  }
+
+  @Override
+  public synchronized long ramBytesUsed() {
+    long sizeInBytes = delegate.ramBytesUsed();
+    for (BKDTreeReader reader : treeReaders.values()) {
+      sizeInBytes += reader.ramBytesUsed();
+    }
+    return sizeInBytes;
+  }
+
+  @Override
+  public synchronized Iterable<? extends Accountable> getChildResources() {
+    List<Accountable> resources = new ArrayList<>();
+    resources.addAll(Accountables.namedAccountables("field", treeReaders));
+    resources.add(Accountables.namedAccountable("delegate", delegate));
+    return resources;
+  }
+
+  @Override
+  public void checkIntegrity() throws IOException {
+    delegate.checkIntegrity();
+    CodecUtil.checksumEntireFile(datIn);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(fields=" + fieldToIndexFPs.size() + ",delegate=" + delegate + ")";
+  }
+}
@@ -0,0 +1,250 @@
+package org.apache.lucene.bkdtree;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.RoaringDocIdSet;
+
+/** Handles intersection of a box with a block KD-tree previously written
+ *  with {@link BKDTreeWriter}. The index (split dimensions and values and
+ *  leaf block file pointers) is loaded in heap, leaf blocks are read from
+ *  disk.
+ *
+ * @lucene.experimental */
+
+final class BKDTreeReader implements Accountable {
+
+  private final int numDims;
+  private final int numLeaves;
+  private final int numPoints;
+  private final long[] minValues;
+  private final long[] maxValues;
+  private final byte[] splitDims;
+  private final long[] splitValues;
+  private final long[] leafBlockFPs;
+  private final IndexInput in;
+
+  BKDTreeReader(IndexInput in) throws IOException {
+    numDims = in.readVInt();
+    numLeaves = in.readVInt();
+    numPoints = in.readVInt();
+    minValues = new long[numDims];
+    maxValues = new long[numDims];
+    for (int dim = 0; dim < numDims; ++dim) {
+      minValues[dim] = in.readLong();
+      maxValues[dim] = in.readLong();
+    }
+    splitDims = new byte[numLeaves];
+    splitValues = new long[numLeaves];
+    for (int node = 1; node < numLeaves; ++node) {
+      splitDims[node] = in.readByte();
+      splitValues[node] = in.readLong();
+    }
+    leafBlockFPs = new long[numLeaves];
+    long lastFP = 0;
+    for (int leaf = 0; leaf < numLeaves; ++leaf) {
+      lastFP += in.readVLong();
+      leafBlockFPs[leaf] = lastFP;
+    }
+    this.in = in;
+  }
+
+  /** Return the number of dimensions of the indexed points. */
+  int getNumDims() {
+    return numDims;
+  }
+
+  /** Return the number of indexed points. */
+  int getNumPoints() {
+    return numPoints;
+  }
+
+  private static final class QueryState {
+    final IndexInput in;
+    final long[] queryMin;
+    final long[] queryMax;
+    // buffers for the leaf blocks
+    int[] docIDs = new int[16];
+    long[] values = new long[16];
+    // doc IDs that match, in no particular order
+    int[] matches = new int[16];
+    int numMatches;
+
+    QueryState(IndexInput in, long[] queryMin, long[] queryMax) {
+      this.in = in;
+      this.queryMin = queryMin;
+      this.queryMax = queryMax;
+    }
+
+    void addMatch(int docID) {
+      if (numMatches == matches.length) {
+        matches = ArrayUtil.grow(matches, numMatches + 1);
+      }
+      matches[numMatches++] = docID;
+    }
+  }
+
+  /** Return the set of documents whose point is in the box defined by
+   *  <code>queryMin</code> and <code>queryMax</code>, both inclusive, or
+   *  <code>null</code> if there are no such documents. */
+  DocIdSet intersect(long[] queryMin, long[] queryMax, int maxDoc) throws IOException {
+    if (queryMin.length != numDims || queryMax.length != numDims) {
+      throw new IllegalArgumentException("expected " + numDims + " dimensions, got " + queryMin.length + " and " + queryMax.length);
+    }
+    final QueryState state = new QueryState(in.clone(), queryMin, queryMax);
+    final long[] cellMin = minValues.clone();
+    final long[] cellMax = maxValues.clone();
+    intersect(state, 1, cellMin, cellMax);
+    if (state.numMatches == 0) {
+      return null;
+    }
+    final int[] matches = state.matches;
+    Arrays.sort(matches, 0, state.numMatches);
+    final RoaringDocIdSet.Builder builder = new RoaringDocIdSet.Builder(maxDoc);
+    int previous = -1;
+    for (int i = 0; i < state.numMatches; ++i) {
+      final int doc = matches[i];
+      // a document may have been indexed with several points
+      if (doc != previous) {
+        builder.add(doc);
+        previous = doc;
+      }
+    }
+    return builder.build();
+  }
+
+  private void intersect(QueryState state, int nodeID, long[] cellMin, long[] cellMax) throws IOException {
+    boolean inside = true;
+    for (int dim = 0; dim < numDims; ++dim) {
+      if (cellMin[dim] > state.queryMax[dim] || cellMax[dim] < state.queryMin[dim]) {
+        // the cell is fully outside of the query
+        return;
+      }
+      if (cellMin[dim] < state.queryMin[dim] || cellMax[dim] > state.queryMax[dim]) {
+        inside = false;
+      }
+    }
+
+    if (inside) {
+      // the cell is fully contained in the query: only read doc IDs
+      addAll(state, nodeID);
+    } else if (nodeID >= numLeaves) {
+      visitLeaf(state, nodeID - numLeaves);
+    } else {
+      final int splitDim = splitDims[nodeID];
+      final long splitValue = splitValues[nodeID];
+
+      final long max = cellMax[splitDim];
+      cellMax[splitDim] = splitValue;
+      intersect(state, 2 * nodeID, cellMin, cellMax);
+      cellMax[splitDim] = max;
+
+      final long min = cellMin[splitDim];
+      cellMin[splitDim] = splitValue;
+      intersect(state, 2 * nodeID + 1, cellMin, cellMax);
+      cellMin[splitDim] = min;
+    }
+  }
+
+  /** Add all documents under the given node. */
+  private void addAll(QueryState state, int nodeID) throws IOException {
+    // leaves of a node are contiguous
+    int firstLeaf = nodeID;
+    int lastLeaf = nodeID;
+    while (firstLeaf < numLeaves) {
+      firstLeaf = 2 * firstLeaf;
+      lastLeaf = 2 * lastLeaf + 1;
+    }
+    for (int leaf = firstLeaf - numLeaves; leaf <= lastLeaf - numLeaves; ++leaf) {
+      final int count = readDocIDs(state, leaf);
+      for (int i = 0; i < count; ++i) {
+        state.addMatch(state.docIDs[i]);
+      }
+    }
+  }
+
+  private int readDocIDs(QueryState state, int leaf) throws IOException {
+    final IndexInput in = state.in;
+    in.seek(leafBlockFPs[leaf]);
+    final int count = in.readVInt();
+    if (state.docIDs.length < count) {
+      state.docIDs = new int[ArrayUtil.oversize(count, RamUsageEstimator.NUM_BYTES_INT)];
+    }
+    final int[] docIDs = state.docIDs;
+    int doc = 0;
+    for (int i = 0; i < count; ++i) {
+      doc += in.readVInt();
+      docIDs[i] = doc;
+    }
+    return count;
+  }
+
+  /** Check every point of a leaf block that crosses the query. */
+  private void visitLeaf(QueryState state, int leaf) throws IOException {
+    final int count = readDocIDs(state, leaf);
+    final int valueCount = count * numDims;
+    if (state.values.length < valueCount) {
+      state.values = new long[ArrayUtil.oversize(valueCount, RamUsageEstimator.NUM_BYTES_LONG)];
+    }
+    final long[] values = state.values;
+    for (int i = 0; i < valueCount; ++i) {
+      values[i] = state.in.readLong();
+    }
+
+    // values are stored one dimension after the other: test the whole block
+    // one dimension at a time
+    final boolean[] matches = new boolean[count];
+    Arrays.fill(matches, true);
+    for (int dim = 0; dim < numDims; ++dim) {
+      final long min = state.queryMin[dim];
+      final long max = state.queryMax[dim];
+      final int offset = dim * count;
+      for (int i = 0; i < count; ++i) {
+        final long v = values[offset + i];
+        matches[i] &= v >= min & v <= max;
+      }
+    }
+    for (int i = 0; i < count; ++i) {
+      if (matches[i]) {
+        state.addMatch(state.docIDs[i]);
+      }
+    }
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return RamUsageEstimator.sizeOf(minValues)
+        + RamUsageEstimator.sizeOf(maxValues)
+        + RamUsageEstimator.sizeOf(splitDims)
+        + RamUsageEstimator.sizeOf(splitValues)
+        + RamUsageEstimator.sizeOf(leafBlockFPs);
+  }
+
+  @Override
+  public Iterable<? extends Accountable> getChildResources() {
+    return Collections.emptyList();
+  }
+}
@@ -0,0 +1,255 @@
+package org.apache.lucene.bkdtree;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/** Buffers points in heap and writes them as a block KD-tree.
+ *
+ *  <p>The tree is a complete binary tree whose number of leaves is a power
+ *  of two. Each inner node splits its points in half, at the median of the
+ *  dimension that has the widest range of values in the node, so that all
+ *  leaf blocks have about the same number of points. Leaf blocks are written
+ *  first, in tree order: the number of points, their doc IDs, delta-encoded
+ *  since points are sorted by doc ID within a block, and their values, one
+ *  dimension after the other. The index is written last: the bounding box of
+ *  all points, the split dimension and value of every inner node and the
+ *  file pointer of every leaf block.
+ *
+ *  <p><b>NOTE</b>: all points of a segment are buffered in heap until the
+ *  tree is written, which takes <code>4 + 8 * numDims</code> bytes per
+ *  point, on flush and on merge.
+ *
+ * @lucene.experimental */
+
+final class BKDTreeWriter {
+
+  private final int numDims;
+  private final int maxPointsInLeafNode;
+
+  // values of point i in dimension d are at values[i * numDims + d]
+  private long[] values;
+  private int[] docIDs;
+  private int numPoints;
+  private int lastDocID = -1;
+
+  BKDTreeWriter(int numDims, int maxPointsInLeafNode) {
+    BKDTreeDocValuesFormat.verifyParams(numDims, maxPointsInLeafNode);
+    this.numDims = numDims;
+    this.maxPointsInLeafNode = maxPointsInLeafNode;
+    values = new long[16 * numDims];
+    docIDs = new int[16];
+  }
+
+  /** Add a point. Doc IDs must be added in non-decreasing order. */
+  void add(long[] point, int docID) {
+    assert point.length == numDims;
+    if (docID < lastDocID) {
+      throw new IllegalArgumentException("docIDs must be added in order, got " + docID + " after " + lastDocID);
+    }
+    // all values are buffered in a single array, whose offsets must not overflow
+    if ((long) (numPoints + 1) * numDims > ArrayUtil.MAX_ARRAY_LENGTH) {
+      throw new IllegalStateException("cannot index more than " + (ArrayUtil.MAX_ARRAY_LENGTH / numDims)
+          + " points with " + numDims + " dimensions per field per segment");
+    }
+    if (numPoints == docIDs.length) {
+      docIDs = ArrayUtil.grow(docIDs, numPoints + 1);
+      values = Arrays.copyOf(values, (int) Math.min((long) docIDs.length * numDims, ArrayUtil.MAX_ARRAY_LENGTH));
+    }
+    System.arraycopy(point, 0, values, numPoints * numDims, numDims);
+    docIDs[numPoints] = docID;
+    numPoints++;
+    lastDocID = docID;
+  }
+
+  /** Return the number of bytes that are used to buffer points. */
+  long ramBytesUsed() {
+    return RamUsageEstimator.sizeOf(values) + RamUsageEstimator.sizeOf(docIDs);
+  }
+
+  /** Write the tree to <code>out</code> and return the file pointer of the index. */
+  long finish(IndexOutput out) throws IOException {
+    // number of leaves: the smallest power of two so that leaves have at most maxPointsInLeafNode points
+    int numLeaves = 1;
+    while ((numPoints + numLeaves - 1) / numLeaves > maxPointsInLeafNode) {
+      numLeaves *= 2;
+    }
+
+    final long[] minValues = new long[numDims];
+    final long[] maxValues = new long[numDims];
+    Arrays.fill(minValues, Long.MAX_VALUE);
+    Arrays.fill(maxValues, Long.MIN_VALUE);
+    for (int i = 0; i < numPoints; ++i) {
+      for (int dim = 0; dim < numDims; ++dim) {
+        final long v = values[i * numDims + dim];
+        minValues[dim] = Math.min(minValues[dim], v);
+        maxValues[dim] = Math.max(maxValues[dim], v);
+      }
+    }
+
+    // points are added in doc ID order, so sorting ords also sorts doc IDs
+    final int[] ords = new int[numPoints];
+    for (int i = 0; i < numPoints; ++i) {
+      ords[i] = i;
+    }
+
+    final byte[] splitDims = new byte[numLeaves];
+    final long[] splitValues = new long[numLeaves];
+    final long[] leafBlockFPs = new long[numLeaves];
+    build(1, numLeaves, ords, 0, numPoints, splitDims, splitValues, leafBlockFPs, out);
+
+    final long indexFP = out.getFilePointer();
+    out.writeVInt(numDims);
+    out.writeVInt(numLeaves);
+    out.writeVInt(numPoints);
+    for (int dim = 0; dim < numDims; ++dim) {
+      out.writeLong(minValues[dim]);
+      out.writeLong(maxValues[dim]);
+    }
+    // node 0 does not exist, the root is node 1
+    for (int node = 1; node < numLeaves; ++node) {
+      out.writeByte(splitDims[node]);
+      out.writeLong(splitValues[node]);
+    }
+    long lastFP = 0;
+    for (int leaf = 0; leaf < numLeaves; ++leaf) {
+      out.writeVLong(leafBlockFPs[leaf] - lastFP);
+      lastFP = leafBlockFPs[leaf];
+    }
+
+    // release memory
+    values = null;
+    docIDs = null;
+    return indexFP;
+  }
+
+  private void build(int nodeID, int numLeaves, int[] ords, int from, int to,
+      byte[] splitDims, long[] splitValues, long[] leafBlockFPs, IndexOutput out) throws IOException {
+    if (nodeID >= numLeaves) {
+      leafBlockFPs[nodeID - numLeaves] = out.getFilePointer();
+      writeLeafBlock(ords, from, to, out);
+      return;
+    }
+
+    // split on the dimension that has the widest range of values
+    int splitDim = 0;
+    if (numDims > 1) {
+      long maxSpread = 0;
+      for (int dim = 0; dim < numDims; ++dim) {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = from; i < to; ++i) {
+          final long v = value(ords, i, dim);
+          min = Math.min(min, v);
+          max = Math.max(max, v);
+        }
+        // the spread may overflow: compare as unsigned longs
+        final long spread = max - min;
+        if (dim == 0 || spread + Long.MIN_VALUE > maxSpread + Long.MIN_VALUE) {
+          maxSpread = spread;
+          splitDim = dim;
+        }
+      }
+    }
+
+    final int mid = (from + to) >>> 1;
+    if (from < to) {
+      select(ords, from, to, mid, splitDim);
+      splitValues[nodeID] = values[ords[mid] * numDims + splitDim];
+    }
+    splitDims[nodeID] = (byte) splitDim;
+
+    build(2 * nodeID, numLeaves, ords, from, mid, splitDims, splitValues, leafBlockFPs, out);
+    build(2 * nodeID + 1, numLeaves, ords, mid, to, splitDims, splitValues, leafBlockFPs, out);
+  }
+
+  private void writeLeafBlock(int[] ords, int from, int to, IndexOutput out) throws IOException {
+    Arrays.sort(ords, from, to);
+    out.writeVInt(to - from);
+    int lastDoc = 0;
+    for (int i = from; i < to; ++i) {
+      final int doc = docIDs[ords[i]];
+      out.writeVInt(doc - lastDoc);
+      lastDoc = doc;
+    }
+    for (int dim = 0; dim < numDims; ++dim) {
+      for (int i = from; i < to; ++i) {
+        out.writeLong(values[ords[i] * numDims + dim]);
+      }
+    }
+  }
+
+  private long value(int[] ords, int i, int dim) {
+    return values[ords[i] * numDims + dim];
+  }
+
+  private static void swap(int[] ords, int i, int j) {
+    final int tmp = ords[i];
+    ords[i] = ords[j];
+    ords[j] = tmp;
+  }
+
+  /** Reorder <code>ords[from:to]</code> so that the value at <code>k</code>
+   *  is the one that would be there if ords were sorted by their value in
+   *  <code>dim</code>, lower values before and greater values after. */
+  private void select(int[] ords, int from, int to, int k, int dim) {
+    int lo = from;
+    int hi = to - 1;
+    while (hi > lo) {
+      // median of three pivot
+      final int m = (lo + hi) >>> 1;
+      if (value(ords, m, dim) < value(ords, lo, dim)) {
+        swap(ords, m, lo);
+      }
+      if (value(ords, hi, dim) < value(ords, lo, dim)) {
+        swap(ords, hi, lo);
+      }
+      if (value(ords, hi, dim) < value(ords, m, dim)) {
+        swap(ords, hi, m);
+      }
+      final long pivot = value(ords, m, dim);
+      int i = lo;
+      int j = hi;
+      while (i <= j) {
+        while (value(ords, i, dim) < pivot) {
+          i++;
+        }
+        while (value(ords, j, dim) > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          swap(ords, i, j);
+          i++;
+          j--;
+        }
+      }
+      if (k <= j) {
+        hi = j;
+      } else if (k >= i) {
+        lo = i;
+      } else {
+        return;
+      }
+    }
+  }
+}
@@ -0,0 +1,303 @@
+package org.apache.lucene.bkdtree;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.codecs.lucene410.Lucene410DocValuesFormat;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FilterAtomicReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestBKDTree extends LuceneTestCase {
+
+  private static Set<Integer> search(IndexSearcher searcher, BKDRangeFilter filter) throws IOException {
+    final Set<Integer> ids = new HashSet<>();
+    searcher.search(new ConstantScoreQuery(filter), new SimpleCollector() {
+
+      private NumericDocValues idValues;
+
+      @Override
+      protected void doSetNextReader(AtomicReaderContext context) throws IOException {
+        idValues = context.reader().getNumericDocValues("id");
+      }
+
+      @Override
+      public void collect(int doc) throws IOException {
+        ids.add((int) idValues.get(doc));
+      }
+
+      @Override
+      public boolean acceptsDocsOutOfOrder() {
+        return true;
+      }
+    });
+    return ids;
+  }
+
+  private static long randomValue(long range) {
+    if (range == Long.MAX_VALUE) {
+      return random().nextLong();
+    }
+    return TestUtil.nextLong(random(), -range, range);
+  }
+
+  public void testRandom() throws Exception {
+    final int numDims = TestUtil.nextInt(random(), 1, 3);
+    final int numDocs = atLeast(1000);
+    // small ranges create many duplicate values
+    final long range = random().nextBoolean() ? Long.MAX_VALUE : TestUtil.nextInt(random(), 1, 100);
+    final long[][] points = new long[numDocs][];
+    final boolean[] deleted = new boolean[numDocs];
+
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(TestUtil.alwaysDocValuesFormat(new BKDTreeDocValuesFormat(TestUtil.nextInt(random(), 1, 50))));
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, iwc);
+    for (int id = 0; id < numDocs; ++id) {
+      Document doc = new Document();
+      doc.add(new NumericDocValuesField("id", id));
+      doc.add(new StringField("idString", Integer.toString(id), Field.Store.NO));
+      if (random().nextInt(10) != 0) {
+        points[id] = new long[numDims];
+        for (int dim = 0; dim < numDims; ++dim) {
+          points[id][dim] = randomValue(range);
+        }
+        doc.add(new BKDPointField("point", points[id]));
+      }
+      w.addDocument(doc);
+      if (random().nextInt(20) == 0) {
+        final int toDelete = random().nextInt(id + 1);
+        w.deleteDocuments(new Term("idString", Integer.toString(toDelete)));
+        deleted[toDelete] = true;
+      }
+    }
+    if (random().nextBoolean()) {
+      w.forceMerge(1);
+    }
+    IndexReader r = w.getReader();
+    w.close();
+    IndexSearcher searcher = newSearcher(r);
+
+    final int numQueries = atLeast(50);
+    for (int iter = 0; iter < numQueries; ++iter) {
+      final long[] min = new long[numDims];
+      final long[] max = new long[numDims];
+      for (int dim = 0; dim < numDims; ++dim) {
+        long a = randomValue(range);
+        long b = randomValue(range);
+        min[dim] = Math.min(a, b);
+        max[dim] = Math.max(a, b);
+      }
+      final Set<Integer> expected = new HashSet<>();
+      for (int id = 0; id < numDocs; ++id) {
+        if (points[id] == null || deleted[id]) {
+          continue;
+        }
+        boolean matches = true;
+        for (int dim = 0; dim < numDims; ++dim) {
+          matches &= points[id][dim] >= min[dim] && points[id][dim] <= max[dim];
+        }
+        if (matches) {
+          expected.add(id);
+        }
+      }
+      assertEquals(expected, search(searcher, new BKDRangeFilter("point", min, max)));
+    }
+
+    r.close();
+    dir.close();
+  }
+
+  public void testMixedNumDims() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(TestUtil.alwaysDocValuesFormat(new BKDTreeDocValuesFormat()));
+    // both documents must be in the same segment
+    iwc.setRAMBufferSizeMB(16);
+    iwc.setMaxBufferedDocs(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    Document doc = new Document();
+    doc.add(new BKDPointField("point", 1L, 2L));
+    w.addDocument(doc);
+    doc = new Document();
+    doc.add(new BKDPointField("point", 1L));
+    w.addDocument(doc);
+    try {
+      w.commit();
+      fail("didn't hit expected exception");
+    } catch (IllegalArgumentException iae) {
+      // expected
+    }
+    w.rollback();
+    dir.close();
+  }
+
+  public void testNotIndexedWithBKDTree() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(TestUtil.alwaysDocValuesFormat(new Lucene410DocValuesFormat()));
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, iwc);
+    Document doc = new Document();
+    doc.add(new BKDPointField("point", 0L));
+    w.addDocument(doc);
+    doc = new Document();
+    doc.add(new BKDPointField("point", 5L));
+    w.addDocument(doc);
+    w.addDocument(new Document());
+    IndexReader r = w.getReader();
+    w.close();
+    IndexSearcher searcher = newSearcher(r);
+    // without the tree, points are checked one by one
+    assertEquals(1, searcher.search(new ConstantScoreQuery(new BKDRangeFilter("point", new long[] {0}, new long[] {1})), 1).totalHits);
+    assertEquals(2, searcher.search(new ConstantScoreQuery(new BKDRangeFilter("point", new long[] {0}, new long[] {5})), 1).totalHits);
+    r.close();
+    dir.close();
+  }
+
+  /** Reverses the doc IDs of a reader without deletions, as a sorting reader would remap them. */
+  private static class ReversedAtomicReader extends FilterAtomicReader {
+
+    ReversedAtomicReader(AtomicReader in) {
+      super(in);
+      assert in.hasDeletions() == false;
+    }
+
+    private int reverse(int docID) {
+      return maxDoc() - 1 - docID;
+    }
+
+    @Override
+    public NumericDocValues getNumericDocValues(String field) throws IOException {
+      final NumericDocValues values = super.getNumericDocValues(field);
+      if (values == null) {
+        return null;
+      }
+      return new NumericDocValues() {
+        @Override
+        public long get(int docID) {
+          return values.get(reverse(docID));
+        }
+      };
+    }
+
+    @Override
+    public BinaryDocValues getBinaryDocValues(String field) throws IOException {
+      final BinaryDocValues values = super.getBinaryDocValues(field);
+      if (values == null) {
+        return null;
+      }
+      return new BinaryDocValues() {
+        @Override
+        public BytesRef get(int docID) {
+          return values.get(reverse(docID));
+        }
+      };
+    }
+
+    @Override
+    public Bits getDocsWithField(String field) throws IOException {
+      final Bits docsWithField = super.getDocsWithField(field);
+      if (docsWithField == null) {
+        return null;
+      }
+      return new Bits() {
+        @Override
+        public boolean get(int index) {
+          return docsWithField.get(reverse(index));
+        }
+
+        @Override
+        public int length() {
+          return docsWithField.length();
+        }
+      };
+    }
+  }
+
+  public void testDocIDRemappingWrapper() throws Exception {
+    final int numDocs = atLeast(100);
+    final long[] points = new long[numDocs];
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(TestUtil.alwaysDocValuesFormat(new BKDTreeDocValuesFormat(TestUtil.nextInt(random(), 1, 50))));
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, iwc);
+    for (int id = 0; id < numDocs; ++id) {
+      Document doc = new Document();
+      doc.add(new NumericDocValuesField("id", id));
+      points[id] = id;
+      doc.add(new BKDPointField("point", points[id]));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    DirectoryReader r = w.getReader();
+    w.close();
+    // the tree's doc IDs are those of the segment, not of the wrapper
+    IndexSearcher searcher = new IndexSearcher(new ReversedAtomicReader(getOnlySegmentReader(r)));
+
+    final int numQueries = atLeast(20);
+    for (int iter = 0; iter < numQueries; ++iter) {
+      long a = random().nextInt(numDocs);
+      long b = random().nextInt(numDocs);
+      final long min = Math.min(a, b);
+      final long max = Math.max(a, b);
+      final Set<Integer> expected = new HashSet<>();
+      for (int id = 0; id < numDocs; ++id) {
+        if (points[id] >= min && points[id] <= max) {
+          expected.add(id);
+        }
+      }
+      assertEquals(expected, search(searcher, new BKDRangeFilter("point", new long[] {min}, new long[] {max})));
+    }
+
+    r.close();
+    dir.close();
+  }
+
+  public void testEqualsAndHashCode() {
+    BKDRangeFilter f1 = new BKDRangeFilter("point", new long[] {0, 1}, new long[] {2, 3});
+    BKDRangeFilter f2 = new BKDRangeFilter("point", new long[] {0, 1}, new long[] {2, 3});
+    BKDRangeFilter f3 = new BKDRangeFilter("point", new long[] {0, 1}, new long[] {2, 4});
+    assertEquals(f1, f2);
+    assertEquals(f1.hashCode(), f2.hashCode());
+    assertFalse(f1.equals(f3));
+  }
+}
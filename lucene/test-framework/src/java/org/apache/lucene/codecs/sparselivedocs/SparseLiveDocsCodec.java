@@ -0,0 +1,38 @@
+package org.apache.lucene.codecs.sparselivedocs;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.codecs.FilterCodec;
+import org.apache.lucene.codecs.LiveDocsFormat;
+import org.apache.lucene.codecs.lucene410.Lucene410Codec;
+import org.apache.lucene.codecs.lucene410.Lucene410LiveDocsFormat;
+
+/** Acts like {@link Lucene410Codec} but stores deletions with {@link Lucene410LiveDocsFormat}. */
+public class SparseLiveDocsCodec extends FilterCodec {
+
+  private final LiveDocsFormat liveDocsFormat = new Lucene410LiveDocsFormat();
+
+  public SparseLiveDocsCodec() {
+    super("SparseLiveDocs", new Lucene410Codec());
+  }
+
+  @Override
+  public LiveDocsFormat liveDocsFormat() {
+    return liveDocsFormat;
+  }
+}
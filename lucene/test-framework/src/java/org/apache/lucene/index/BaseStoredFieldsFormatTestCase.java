@@ -35,6 +35,7 @@ import org.apache.lucene.codecs.StoredFieldsFormat;
 import org.apache.lucene.codecs.lucene410.Lucene410Codec;
 import org.apache.lucene.codecs.simpletext.SimpleTextCodec;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DocumentStoredFieldVisitor;
 import org.apache.lucene.document.DoubleField;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.Field.Store;
@@ -582,6 +583,68 @@ public abstract class BaseStoredFieldsFormatTestCase extends BaseIndexFileFormat
     dir.close();
   }
   
+  public void testVisitDocuments() throws IOException {
+    Directory dir = newDirectory();
+    RandomIndexWriter iw = new RandomIndexWriter(random(), dir);
+    final int numDocs = atLeast(300);
+    final String[] values = new String[numDocs];
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      if (random().nextInt(10) != 0) { // some docs have no stored fields
+        doc.add(new StoredField("id", i));
+        if (rarely()) {
+          values[i] = TestUtil.randomSimpleString(random(), 10000, 50000);
+        } else {
+          values[i] = TestUtil.randomSimpleString(random(), 0, 200);
+        }
+        doc.add(new StoredField("value", values[i]));
+      }
+      iw.addDocument(doc);
+    }
+    iw.forceMerge(TestUtil.nextInt(random(), 1, 3));
+    DirectoryReader reader = iw.getReader();
+    iw.close();
+
+    for (int iter = 0; iter < 10; ++iter) {
+      List<Integer> docList = new ArrayList<>();
+      final int stride = TestUtil.nextInt(random(), 1, 5);
+      for (int i = random().nextInt(stride); i < numDocs; i += TestUtil.nextInt(random(), 1, stride)) {
+        docList.add(i);
+      }
+      final int[] docIDs = new int[docList.size()];
+      final DocumentStoredFieldVisitor[] visitors = new DocumentStoredFieldVisitor[docIDs.length];
+      for (int i = 0; i < docIDs.length; ++i) {
+        docIDs[i] = docList.get(i);
+        visitors[i] = new DocumentStoredFieldVisitor();
+      }
+      reader.document(docIDs, visitors);
+      for (int i = 0; i < docIDs.length; ++i) {
+        final StoredDocument expected = reader.document(docIDs[i]);
+        final StoredDocument actual = visitors[i].getDocument();
+        assertEquals(expected.getFields().size(), actual.getFields().size());
+        if (actual.getFields().isEmpty() == false) {
+          // merges may have reordered documents: look up the value by id
+          final int id = actual.getField("id").numericValue().intValue();
+          assertEquals(expected.getField("id").numericValue().intValue(), id);
+          assertEquals(values[id], actual.get("value"));
+        }
+      }
+    }
+
+    // doc IDs must be sorted
+    if (numDocs > 1) {
+      try {
+        reader.document(new int[] {1, 0}, new StoredFieldVisitor[] {new DocumentStoredFieldVisitor(), new DocumentStoredFieldVisitor()});
+        fail();
+      } catch (IllegalArgumentException expected) {
+        // ok
+      }
+    }
+
+    reader.close();
+    dir.close();
+  }
+
   @Nightly
   public void testBigDocuments() throws IOException {
     // "big" as "much bigger than the chunk size"
@@ -130,6 +130,24 @@ public class AssertingScorer extends Scorer {
     return in.cost();
   }
 
+  @Override
+  public TwoPhaseIterator asTwoPhaseIterator() {
+    final TwoPhaseIterator in = this.in.asTwoPhaseIterator();
+    if (in == null) {
+      return null;
+    }
+    final DocIdSetIterator inApproximation = in.approximation();
+    assert inApproximation.docID() == docID();
+    return new TwoPhaseIterator(inApproximation) {
+      @Override
+      public boolean matches() throws IOException {
+        final int doc = approximation.docID();
+        assert doc != -1 && doc != NO_MORE_DOCS : "matches() should only be called on a positioned approximation, got doc=" + doc;
+        return in.matches();
+      }
+    };
+  }
+
   @Override
   public String toString() {
     return "AssertingScorer(" + in + ")";
@@ -120,6 +120,7 @@ import org.apache.lucene.store.FlushInfo;
 import org.apache.lucene.store.IOContext.Context;
 import org.apache.lucene.store.IOContext;
 import org.apache.lucene.store.LockFactory;
+import org.apache.lucene.store.MMapDirectory;
 import org.apache.lucene.store.MergeInfo;
 import org.apache.lucene.store.MockDirectoryWrapper.Throttling;
 import org.apache.lucene.store.MockDirectoryWrapper;
@@ -886,6 +887,9 @@ public abstract class LuceneTestCase extends Assert {
       int maxMergeCount = TestUtil.nextInt(r, maxThreadCount, maxThreadCount + 4);
       ConcurrentMergeScheduler cms = new ConcurrentMergeScheduler();
       cms.setMaxMergesAndThreads(maxMergeCount, maxThreadCount);
+      if (r.nextBoolean()) {
+        cms.disableAutoIOThrottle();
+      }
       c.setMergeScheduler(cms);
     }
     if (r.nextBoolean()) {
@@ -903,6 +907,9 @@ public abstract class LuceneTestCase extends Assert {
 
       c.setMaxThreadStates(maxNumThreadStates);
     }
+    if (rarely(r)) {
+      c.setMaxRecycledRAMBufferMB(TestUtil.nextInt(r, 1, 32));
+    }
 
     c.setMergePolicy(newMergePolicy(r));
 
@@ -1212,7 +1219,7 @@ public abstract class LuceneTestCase extends Assert {
         clazz = CommandLineUtil.loadFSDirectoryClass(fsdirClass);
       }
 
-      Directory fsdir = newFSDirectoryImpl(clazz, f);
+      Directory fsdir = newFSDirectoryImpl(random(), clazz, f);
       BaseDirectoryWrapper wrapped = wrapDirectory(random(), fsdir, bare);
       if (lf != null) {
         wrapped.setLockFactory(lf);
@@ -1411,13 +1418,19 @@ public abstract class LuceneTestCase extends Assert {
     }
   }
 
-  private static Directory newFSDirectoryImpl(Class<? extends FSDirectory> clazz, Path path) throws IOException {
+  private static Directory newFSDirectoryImpl(Random random, Class<? extends FSDirectory> clazz, Path path) throws IOException {
     FSDirectory d = null;
     try {
       d = CommandLineUtil.newFSDirectory(clazz, path);
     } catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
       Rethrow.rethrow(e);
     }
+    if (rarely(random)) {
+      d.setSyncThreadCount(TestUtil.nextInt(random, 2, 4));
+    }
+    if (d instanceof MMapDirectory && rarely(random)) {
+      ((MMapDirectory) d).setPreloadExtensions(new HashSet<>(Arrays.asList("tim", "doc", "dvd", "cfs")));
+    }
     return d;
   }
 
@@ -1435,7 +1448,7 @@ public abstract class LuceneTestCase extends Assert {
       // If it is a FSDirectory type, try its ctor(Path)
       if (FSDirectory.class.isAssignableFrom(clazz)) {
         final Path dir = createTempDir("index-" + clazzName);
-        return newFSDirectoryImpl(clazz.asSubclass(FSDirectory.class), dir);
+        return newFSDirectoryImpl(random, clazz.asSubclass(FSDirectory.class), dir);
       }
 
       // See if it has a Path ctor even though it's not an
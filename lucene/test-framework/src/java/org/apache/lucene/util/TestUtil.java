@@ -218,6 +218,9 @@ public final class TestUtil {
     CheckIndex checker = new CheckIndex(dir);
     checker.setCrossCheckTermVectors(crossCheckTermVectors);
     checker.setFailFast(failFast);
+    if (LuceneTestCase.rarely()) {
+      checker.setThreadCount(nextInt(LuceneTestCase.random(), 2, 4));
+    }
     checker.setInfoStream(new PrintStream(bos, false, IOUtils.UTF_8), false);
     CheckIndex.Status indexStatus = checker.checkIndex(null);
     if (indexStatus == null || indexStatus.clean == false) {
@@ -210,6 +210,7 @@ public class SolrConfig extends Config {
 
 
     filterCacheConfig = CacheConfig.getConfig(this, "query/filterCache");
+    segmentFilterCacheMaxRamMB = getDouble("query/segmentFilterCache/@maxRamMB", 0);
     queryResultCacheConfig = CacheConfig.getConfig(this, "query/queryResultCache");
     documentCacheConfig = CacheConfig.getConfig(this, "query/documentCache");
     CacheConfig conf = CacheConfig.getConfig(this, "query/fieldValueCache");
@@ -376,6 +377,8 @@ public class SolrConfig extends Config {
 //  public final float filtOptThreshold;
   // SolrIndexSearcher - caches configurations
   public final CacheConfig filterCacheConfig ;
+  // per-segment filter cache shared by all searchers of a core, disabled if <= 0
+  public final double segmentFilterCacheMaxRamMB;
   public final CacheConfig queryResultCacheConfig;
   public final CacheConfig documentCacheConfig;
   public final CacheConfig fieldValueCacheConfig;
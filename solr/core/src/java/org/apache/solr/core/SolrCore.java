@@ -44,6 +44,7 @@ import org.apache.solr.handler.admin.ShowFileRequestHandler;
 import org.apache.solr.handler.component.DebugComponent;
 import org.apache.solr.handler.component.ExpandComponent;
 import org.apache.solr.handler.component.FacetComponent;
+import org.apache.solr.handler.component.FacetModuleComponent;
 import org.apache.solr.handler.component.HighlightComponent;
 import org.apache.solr.handler.component.MoreLikeThisComponent;
 import org.apache.solr.handler.component.QueryComponent;
@@ -74,6 +75,7 @@ import org.apache.solr.schema.IndexSchema;
 import org.apache.solr.schema.IndexSchemaFactory;
 import org.apache.solr.schema.SimilarityFactory;
 import org.apache.solr.search.QParserPlugin;
+import org.apache.solr.search.SegmentDocSetCache;
 import org.apache.solr.search.SolrFieldCacheMBean;
 import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.search.ValueSourceParser;
@@ -176,6 +178,7 @@ public final class SolrCore implements SolrInfoMBean, Closeable {
   private DirectoryFactory directoryFactory;
   private IndexReaderFactory indexReaderFactory;
   private final Codec codec;
+  private final SegmentDocSetCache segmentDocSetCache;
   
   private final ReentrantLock ruleExpiryLock;
   
@@ -352,6 +355,14 @@ public final class SolrCore implements SolrInfoMBean, Closeable {
     return infoRegistry;
   }
 
+  /**
+   * Returns the cache of per-segment filter results that is shared by the
+   * searchers of this core, or null if it is not enabled.
+   */
+  public SegmentDocSetCache getSegmentDocSetCache() {
+    return segmentDocSetCache;
+  }
+
    private void initDeletionPolicy() {
      PluginInfo info = solrConfig.getPluginInfo(IndexDeletionPolicy.class.getName());
      IndexDeletionPolicy delPolicy = null;
@@ -673,6 +684,7 @@ public final class SolrCore implements SolrInfoMBean, Closeable {
     this.updateProcessorChains = null;
     this.infoRegistry = null;
     this.codec = null;
+    this.segmentDocSetCache = null;
     this.ruleExpiryLock = null;
 
     solrCoreState = null;
@@ -752,6 +764,13 @@ public final class SolrCore implements SolrInfoMBean, Closeable {
 
     infoRegistry.put("fieldCache", new SolrFieldCacheMBean());
 
+    if (solrConfig.segmentFilterCacheMaxRamMB > 0) {
+      segmentDocSetCache = new SegmentDocSetCache(solrConfig.segmentFilterCacheMaxRamMB);
+      infoRegistry.put("segmentFilterCache", segmentDocSetCache);
+    } else {
+      segmentDocSetCache = null;
+    }
+
     if (schema==null) {
       schema = IndexSchemaFactory.buildIndexSchema(IndexSchema.DEFAULT_SCHEMA_FILE, config);
     }
@@ -1122,6 +1141,11 @@ public final class SolrCore implements SolrInfoMBean, Closeable {
         throw (Error) e;
       }
     }
+
+    if (segmentDocSetCache != null) {
+      // segment cores may outlive this core if the index writer is shared with a reloaded core
+      segmentDocSetCache.clear();
+    }
     
     if (coreStateClosed) {
       
@@ -1277,6 +1301,7 @@ public final class SolrCore implements SolrInfoMBean, Closeable {
     addIfNotPresent(components,HighlightComponent.COMPONENT_NAME,HighlightComponent.class);
     addIfNotPresent(components,QueryComponent.COMPONENT_NAME,QueryComponent.class);
     addIfNotPresent(components,FacetComponent.COMPONENT_NAME,FacetComponent.class);
+    addIfNotPresent(components,FacetModuleComponent.COMPONENT_NAME,FacetModuleComponent.class);
     addIfNotPresent(components,MoreLikeThisComponent.COMPONENT_NAME,MoreLikeThisComponent.class);
     addIfNotPresent(components,StatsComponent.COMPONENT_NAME,StatsComponent.class);
     addIfNotPresent(components,DebugComponent.COMPONENT_NAME,DebugComponent.class);
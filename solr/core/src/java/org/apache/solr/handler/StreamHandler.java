@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.handler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.apache.solr.client.solrj.io.CloudSolrStream;
+import org.apache.solr.client.solrj.io.ParallelStream;
+import org.apache.solr.client.solrj.io.SolrStream;
+import org.apache.solr.client.solrj.io.StreamContext;
+import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleStream;
+import org.apache.solr.cloud.ZkController;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.cloud.ZkStateReader;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.request.SolrRequestInfo;
+import org.apache.solr.response.SolrQueryResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the stream that a {@link ParallelStream} sends to a worker and returns
+ * its tuples, under <code>tuples</code>, as they are read. The stream is in the
+ * <code>stream</code> parameter, and the worker in the <code>workerID</code>
+ * and <code>numWorkers</code> parameters. An error while the tuples are written
+ * ends them with a tuple with an {@link Tuple#EXCEPTION_FIELD} field.
+ * <p/>
+ * The stream is sent as its JSON description, from which only the streams of
+ * the streaming API are created, and it may only read from the cluster of this
+ * node: its ZooKeeper address and the <code>/export</code> and
+ * <code>/stream</code> handlers of the live nodes of the cluster, without
+ * content streams. This handler requires SolrCloud.
+ */
+public class StreamHandler extends RequestHandlerBase {
+
+  private static final Logger log = LoggerFactory.getLogger(StreamHandler.class);
+
+  @Override
+  public void handleRequestBody(SolrQueryRequest req, SolrQueryResponse rsp) throws Exception {
+    SolrParams params = req.getParams();
+    ZkController zkController = req.getCore().getCoreDescriptor().getCoreContainer().getZkController();
+    if (zkController == null) {
+      throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "The stream handler requires SolrCloud");
+    }
+    String serialized = params.get("stream");
+    if (serialized == null) {
+      throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "Missing parameter: stream");
+    }
+
+    final TupleStream stream;
+    try {
+      stream = ParallelStream.deserialize(serialized);
+    } catch (IOException e) {
+      throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "Invalid stream", e);
+    }
+    checkStream(stream, zkController);
+    StreamContext context = new StreamContext();
+    context.workerID = params.getInt("workerID", 0);
+    context.numWorkers = params.getInt("numWorkers", 1);
+    stream.setStreamContext(context);
+
+    // the tuples are read while the response is written, the stream is closed after
+    SolrRequestInfo.getRequestInfo().addCloseHook(new Closeable() {
+      @Override
+      public void close() throws IOException {
+        stream.close();
+      }
+    });
+    stream.open();
+    rsp.add("tuples", new TupleIterator(stream));
+  }
+
+  /**
+   * Check that a stream only reads from the cluster of this node, and only
+   * sends it the requests of streams, so that a request cannot make this node
+   * connect to other hosts or call other handlers.
+   */
+  private static void checkStream(TupleStream stream, ZkController zkController) {
+    if (stream instanceof CloudSolrStream) {
+      String zkHost = ((CloudSolrStream) stream).getZkHost();
+      if (!zkController.getZkServerAddress().equals(zkHost)) {
+        throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+            "A stream can only read from the ZooKeeper of this node, not: " + zkHost);
+      }
+      checkParams(((CloudSolrStream) stream).getParams());
+    } else if (stream instanceof SolrStream) {
+      String baseUrl = ((SolrStream) stream).getBaseUrl();
+      if (!isLiveNodeUrl(baseUrl, zkController.getZkStateReader())) {
+        throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+            "A stream can only read from the live nodes of this cluster, not: " + baseUrl);
+      }
+      checkParams(((SolrStream) stream).getParams());
+    }
+    for (TupleStream child : stream.children()) {
+      checkStream(child, zkController);
+    }
+  }
+
+  /** Check that the parameters of a stream only call the export or stream handlers, without content streams. */
+  private static void checkParams(Map<String,String> params) {
+    String handler = params.get(CommonParams.QT);
+    if (handler != null && !SolrStream.DEFAULT_HANDLER.equals(handler) && !ParallelStream.STREAM_HANDLER.equals(handler)) {
+      throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+          "A stream can only read from the " + SolrStream.DEFAULT_HANDLER + " or " + ParallelStream.STREAM_HANDLER
+          + " handlers, not: " + handler);
+    }
+    for (String name : params.keySet()) {
+      if (name.startsWith("stream.")) {
+        throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+            "A stream can not send content streams: " + name);
+      }
+    }
+  }
+
+  private static boolean isLiveNodeUrl(String url, ZkStateReader zkStateReader) {
+    for (String nodeName : zkStateReader.getClusterState().getLiveNodes()) {
+      if (url.startsWith(zkStateReader.getBaseUrlForNodeName(nodeName) + "/")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Iterates over the fields of the tuples of a stream. */
+  private static class TupleIterator implements Iterator<Map<String,Object>> {
+    private final TupleStream stream;
+    private Tuple next;
+    private boolean done;
+
+    TupleIterator(TupleStream stream) {
+      this.stream = stream;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (next == null && !done) {
+        try {
+          next = stream.read();
+          if (next.EOF) {
+            next = null;
+            done = true;
+          }
+        } catch (Exception e) {
+          log.error("Unable to read the stream", e);
+          Map<String,Object> fields = new HashMap<>();
+          fields.put(Tuple.EXCEPTION_FIELD, e.getMessage() == null ? e.toString() : e.getMessage());
+          next = new Tuple(fields);
+          done = true;
+        }
+      }
+      return next != null;
+    }
+
+    @Override
+    public Map<String,Object> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Tuple tuple = next;
+      next = null;
+      return tuple.fields;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /////////////////////////////////////////////
+  ///  SolrInfoMBean
+  ////////////////////////////////////////////
+
+  @Override
+  public String getDescription() {
+    return "Runs the streams of parallel workers";
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.handler.component;
+
+import java.io.IOException;
+
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.ShardParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.search.SyntaxError;
+import org.apache.solr.search.facet.FacetContext;
+import org.apache.solr.search.facet.FacetMerger;
+import org.apache.solr.search.facet.FacetParser;
+import org.apache.solr.search.facet.FacetProcessor;
+import org.apache.solr.search.facet.FacetRequest;
+
+/**
+ * Computes the nested facets and per-bucket metrics of the <code>json.facet</code>
+ * parameter, see {@link FacetParser} for the syntax. All the buckets of a facet
+ * and their metrics are computed in a single pass over the matching documents,
+ * and the results of shards are merged bucket by bucket.
+ *
+ * @see org.apache.solr.search.facet
+ */
+public class FacetModuleComponent extends SearchComponent {
+
+  public static final String COMPONENT_NAME = "facet_module";
+
+  /** The JSON facet request. */
+  public static final String JSON_FACET = "json.facet";
+
+  /** The key of the facets in the response. */
+  public static final String RESPONSE_KEY = "facets";
+
+  @Override
+  public void prepare(ResponseBuilder rb) throws IOException {
+    String json = rb.req.getParams().get(JSON_FACET);
+    if (json == null) return;
+
+    try {
+      rb._facetModuleInfo = new FacetModuleInfo(FacetParser.parse(rb.req, json));
+    } catch (SyntaxError e) {
+      throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, e);
+    }
+    rb.setNeedDocSet(true);
+  }
+
+  @Override
+  public void process(ResponseBuilder rb) throws IOException {
+    if (rb._facetModuleInfo == null) return;
+
+    boolean isShard = rb.req.getParams().getBool(ShardParams.IS_SHARD, false);
+    FacetContext fcontext = new FacetContext(rb.req, rb.getResults().docSet, isShard);
+    FacetProcessor<?> processor = rb._facetModuleInfo.request.createFacetProcessor(fcontext);
+    processor.process();
+    rb.rsp.add(RESPONSE_KEY, processor.getResponse());
+  }
+
+  @Override
+  public int distributedProcess(ResponseBuilder rb) throws IOException {
+    return ResponseBuilder.STAGE_DONE;
+  }
+
+  @Override
+  public void modifyRequest(ResponseBuilder rb, SearchComponent who, ShardRequest sreq) {
+    if (rb._facetModuleInfo == null) return;
+
+    if ((sreq.purpose & ShardRequest.PURPOSE_GET_TOP_IDS) != 0) {
+      sreq.purpose |= ShardRequest.PURPOSE_GET_FACET_MODULE;
+    } else {
+      // turn off the facets on other requests
+      sreq.params.remove(JSON_FACET);
+    }
+  }
+
+  @Override
+  public void handleResponses(ResponseBuilder rb, ShardRequest sreq) {
+    if (rb._facetModuleInfo == null || (sreq.purpose & ShardRequest.PURPOSE_GET_FACET_MODULE) == 0) return;
+
+    FacetMerger merger = rb._facetModuleInfo.merger;
+    for (ShardResponse srsp : sreq.responses) {
+      NamedList<?> facets = null;
+      try {
+        facets = (NamedList<?>) srsp.getSolrResponse().getResponse().get(RESPONSE_KEY);
+      } catch (Exception e) {
+        if (rb.req.getParams().getBool(ShardParams.SHARDS_TOLERANT, false)) {
+          continue; // looks like a shard did not return anything
+        }
+        throw new SolrException(SolrException.ErrorCode.SERVER_ERROR,
+            "Unable to read facets for shard: " + srsp.getShard(), e);
+      }
+      merger.merge(facets);
+    }
+  }
+
+  @Override
+  public void finishStage(ResponseBuilder rb) {
+    if (rb._facetModuleInfo == null || rb.stage != ResponseBuilder.STAGE_GET_FIELDS) return;
+    // wait until STAGE_GET_FIELDS
+    // so that "result" is already stored in the response (for aesthetics)
+
+    rb.rsp.add(RESPONSE_KEY, rb._facetModuleInfo.merger.getMergedResult());
+    rb._facetModuleInfo = null; // free some objects
+  }
+
+  /////////////////////////////////////////////
+  ///  SolrInfoMBean
+  ////////////////////////////////////////////
+
+  @Override
+  public String getDescription() {
+    return "Nested facets with per-bucket metrics";
+  }
+
+  /** The parsed facet request and, on the aggregator, the merger of the shard results. */
+  public static class FacetModuleInfo {
+    final FacetRequest request;
+    final FacetMerger merger;
+
+    FacetModuleInfo(FacetRequest request) {
+      this.request = request;
+      this.merger = request.createFacetMerger();
+    }
+  }
+}
@@ -0,0 +1,463 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.request;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.PriorityQueue;
+import org.apache.lucene.util.UnicodeUtil;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.FacetParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.schema.FieldType;
+import org.apache.solr.search.DocSet;
+import org.apache.solr.search.SolrIndexSearcher;
+
+/**
+ * Computes facet counts on multi-valued fields per segment, using the
+ * {@link SortedSetDocValues} of each segment.
+ * <p/>
+ * Unlike {@link DocValuesFacets}, this doesn't need top-level ordinals, so
+ * that nothing has to be rebuilt when a new searcher is opened: counts are
+ * computed in the ordinal space of each segment (in parallel if several
+ * threads are allowed) and are then merged by term. When sorting by count
+ * with a limit, only the terms that are among the top counts of at least
+ * one segment are looked up in the other segments, and the full merge is
+ * only needed if these candidates can't be proven to be the top terms.
+ */
+class PerSegmentMultiValuedFaceting {
+
+  // input params
+  SolrIndexSearcher searcher;
+  DocSet docs;
+  String fieldName;
+  int offset;
+  int limit;
+  int mincount;
+  boolean missing;
+  String sort;
+  String prefix;
+
+  Filter baseSet;
+
+  int nThreads;
+
+  public PerSegmentMultiValuedFaceting(SolrIndexSearcher searcher, DocSet docs, String fieldName, int offset, int limit, int mincount, boolean missing, String sort, String prefix) {
+    this.searcher = searcher;
+    this.docs = docs;
+    this.fieldName = fieldName;
+    this.offset = offset;
+    this.limit = limit;
+    this.mincount = mincount;
+    this.missing = missing;
+    this.sort = sort;
+    this.prefix = prefix;
+  }
+
+  public void setNumThreads(int threads) {
+    nThreads = threads;
+  }
+
+  private boolean isCountSorted() {
+    return sort.equals(FacetParams.FACET_SORT_COUNT) || sort.equals(FacetParams.FACET_SORT_COUNT_LEGACY);
+  }
+
+  NamedList<Integer> getFacetCounts(Executor executor) throws IOException {
+
+    CompletionService<SegFacet> completionService = new ExecutorCompletionService<>(executor);
+
+    // reuse the translation logic to go from top level set to per-segment set
+    baseSet = docs.getTopFilter();
+
+    // number of top terms that each segment proposes as candidates, 0 to merge all terms
+    final int numCandidates = isCountSorted() && limit > 0 ? offset + limit : 0;
+
+    final List<AtomicReaderContext> leaves = searcher.getTopReaderContext().leaves();
+    // The list of pending tasks that aren't immediately submitted
+    LinkedList<Callable<SegFacet>> pending = new LinkedList<>();
+
+    int threads = nThreads <= 0 ? Integer.MAX_VALUE : nThreads;
+
+    for (final AtomicReaderContext leave : leaves) {
+      final SegFacet segFacet = new SegFacet(leave);
+
+      Callable<SegFacet> task = new Callable<SegFacet>() {
+        @Override
+        public SegFacet call() throws Exception {
+          segFacet.countTerms();
+          if (numCandidates > 0) {
+            segFacet.collectCandidates(numCandidates);
+          }
+          return segFacet;
+        }
+      };
+
+      if (--threads >= 0) {
+        completionService.submit(task);
+      } else {
+        pending.add(task);
+      }
+    }
+
+    List<SegFacet> segs = new ArrayList<>(leaves.size());
+    boolean hasMissingCount=false;
+    int missingCount=0;
+    for (int i=0, c=leaves.size(); i<c; i++) {
+      SegFacet seg = null;
+
+      try {
+        Future<SegFacet> future = completionService.take();
+        seg = future.get();
+        if (!pending.isEmpty()) {
+          completionService.submit(pending.removeFirst());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException)cause;
+        } else {
+          throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "Error in per-segment faceting on field: " + fieldName, cause);
+        }
+      }
+
+      if (seg.startTermIndex==-1 && seg.counts != null) {
+        hasMissingCount=true;
+        missingCount += seg.counts[0];
+      }
+      segs.add(seg);
+    }
+
+    NamedList<Integer> res = null;
+    if (numCandidates > 0) {
+      res = getTopCandidateCounts(segs);
+    }
+    if (res == null) {
+      res = mergeAll(segs);
+    }
+
+    // convert labels to readable form
+    FieldType ft = searcher.getSchema().getFieldType(fieldName);
+    int sz = res.size();
+    for (int i=0; i<sz; i++) {
+      res.setName(i, ft.indexedToReadable(res.getName(i)));
+    }
+
+    if (missing) {
+      if (!hasMissingCount) {
+        missingCount = SimpleFacets.getFieldMissingCount(searcher,docs,fieldName);
+      }
+      res.add(null, missingCount);
+    }
+
+    return res;
+  }
+
+  /**
+   * Compute the exact counts of the union of the top terms of all segments
+   * and return the top counts among them, or null if a term that is not a
+   * candidate could still make it into the top counts.
+   */
+  private NamedList<Integer> getTopCandidateCounts(List<SegFacet> segs) throws IOException {
+    // the sum of the counts that a term which is not a candidate can have in each segment
+    long maxOtherCount = 0;
+    Set<BytesRef> candidateSet = new HashSet<>();
+    for (SegFacet seg : segs) {
+      maxOtherCount += seg.maxOtherCount;
+      if (seg.candidates != null) {
+        for (int idx : seg.candidates) {
+          candidateSet.add(BytesRef.deepCopyOf(seg.si.lookupOrd(idx + seg.startTermIndex)));
+        }
+      }
+    }
+
+    // the collector expects terms in index order
+    BytesRef[] candidates = candidateSet.toArray(new BytesRef[candidateSet.size()]);
+    Arrays.sort(candidates);
+    int[] candidateCounts = new int[candidates.length];
+    int numCompetitive = 0;
+    FacetCollector collector = new CountSortedFacetCollector(offset, limit, mincount);
+    for (int i = 0; i < candidates.length; i++) {
+      int count = 0;
+      for (SegFacet seg : segs) {
+        count += seg.getCount(candidates[i]);
+      }
+      collector.collect(candidates[i], count);
+      if (count >= mincount) {
+        candidateCounts[numCompetitive++] = count;
+      }
+    }
+
+    if (maxOtherCount >= mincount) {
+      // the candidates are only the top terms if at least offset+limit of them
+      // have a higher count than any other term
+      final int numTop = offset + limit;
+      if (numCompetitive < numTop) {
+        return null;
+      }
+      Arrays.sort(candidateCounts, 0, numCompetitive);
+      if (candidateCounts[numCompetitive - numTop] <= maxOtherCount) {
+        return null;
+      }
+    }
+    return collector.getFacetCounts();
+  }
+
+  /** Merge the counts of all terms of all segments in index order. */
+  private NamedList<Integer> mergeAll(List<SegFacet> segs) throws IOException {
+    PriorityQueue<SegFacet> queue = new PriorityQueue<SegFacet>(segs.size()) {
+      @Override
+      protected boolean lessThan(SegFacet a, SegFacet b) {
+        return a.tempBR.compareTo(b.tempBR) < 0;
+      }
+    };
+
+    // terms that don't match any document are only needed for zero counts
+    final boolean skipZeros = mincount > 0;
+    for (SegFacet seg : segs) {
+      if (seg.startTermIndex < seg.endTermIndex) {
+        seg.tenum = seg.si.termsEnum();
+        if (seg.seekFirst(skipZeros)) {
+          queue.add(seg);
+        }
+      }
+    }
+
+    FacetCollector collector;
+    if (isCountSorted()) {
+      collector = new CountSortedFacetCollector(offset, limit, mincount);
+    } else {
+      collector = new IndexSortedFacetCollector(offset, limit, mincount);
+    }
+
+    BytesRefBuilder val = new BytesRefBuilder();
+
+    while (queue.size() > 0) {
+      SegFacet seg = queue.top();
+
+      // we will normally end up advancing the term enum for this segment
+      // while still using "val", so we need to make a copy since the BytesRef
+      // may be shared across calls.
+      val.copyBytes(seg.tempBR);
+
+      int count = 0;
+
+      do {
+        count += seg.counts[seg.pos - seg.startTermIndex];
+        if (seg.next(skipZeros)) {
+          seg = queue.updateTop();
+        } else {
+          queue.pop();
+          seg = queue.top();
+        }
+      } while (seg != null && val.get().compareTo(seg.tempBR) == 0);
+
+      boolean stop = collector.collect(val.get(), count);
+      if (stop) break;
+    }
+
+    return collector.getFacetCounts();
+  }
+
+  class SegFacet {
+    AtomicReaderContext context;
+    SegFacet(AtomicReaderContext context) {
+      this.context = context;
+    }
+
+    SortedSetDocValues si;
+    int startTermIndex;
+    int endTermIndex;
+    int[] counts;
+
+    int[] candidates; // indexes in counts of the top terms of this segment
+    int maxOtherCount; // upper bound of the counts of the other terms
+
+    int pos; // only used when merging
+    TermsEnum tenum; // only used when merging
+
+    BytesRef tempBR = new BytesRef();
+
+    void countTerms() throws IOException {
+      si = DocValues.getSortedSet(context.reader(), fieldName);
+
+      if (prefix!=null) {
+        BytesRefBuilder prefixRef = new BytesRefBuilder();
+        prefixRef.copyChars(prefix);
+        startTermIndex = (int) si.lookupTerm(prefixRef.get());
+        if (startTermIndex<0) startTermIndex=-startTermIndex-1;
+        prefixRef.append(UnicodeUtil.BIG_TERM);
+        endTermIndex = (int) si.lookupTerm(prefixRef.get());
+        assert endTermIndex < 0;
+        endTermIndex = -endTermIndex-1;
+      } else {
+        startTermIndex=-1;
+        endTermIndex=(int) si.getValueCount();
+      }
+
+      final int nTerms=endTermIndex-startTermIndex;
+      if (nTerms>0) {
+        // count collection array only needs to be as big as the number of terms we are
+        // going to collect counts for.
+        final int[] counts = this.counts = new int[nTerms];
+        DocIdSet idSet = baseSet.getDocIdSet(context, null);  // this set only includes live docs
+        DocIdSetIterator iter = idSet.iterator();
+        if (iter == null) {
+          return;
+        }
+
+        int doc;
+        final SortedDocValues singleton = DocValues.unwrapSingleton(si);
+        if (singleton != null) {
+          // fields that have at most one value per document in this segment
+          while ((doc = iter.nextDoc()) < DocIdSetIterator.NO_MORE_DOCS) {
+            int arrIdx = singleton.getOrd(doc)-startTermIndex;
+            if (arrIdx>=0 && arrIdx<nTerms) counts[arrIdx]++;
+          }
+        } else if (prefix==null) {
+          // specialized version when collecting counts for all terms
+          while ((doc = iter.nextDoc()) < DocIdSetIterator.NO_MORE_DOCS) {
+            si.setDocument(doc);
+            long ord = si.nextOrd();
+            if (ord == SortedSetDocValues.NO_MORE_ORDS) {
+              counts[0]++;
+            } else {
+              do {
+                counts[1+(int) ord]++;
+              } while ((ord = si.nextOrd()) != SortedSetDocValues.NO_MORE_ORDS);
+            }
+          }
+        } else {
+          // version that adjusts term numbers because we aren't collecting the full range
+          while ((doc = iter.nextDoc()) < DocIdSetIterator.NO_MORE_DOCS) {
+            si.setDocument(doc);
+            for (long ord = si.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = si.nextOrd()) {
+              int arrIdx = (int) ord-startTermIndex;
+              if (arrIdx>=0 && arrIdx<nTerms) counts[arrIdx]++;
+            }
+          }
+        }
+      }
+    }
+
+    /** Select the indexes of the terms that have the top counts in this segment. */
+    void collectCandidates(int numCandidates) {
+      if (counts == null) {
+        return;
+      }
+      // a min-heap of (count << 32 | index), the missing count isn't a candidate
+      final int first = startTermIndex == -1 ? 1 : 0;
+      final long[] heap = new long[Math.min(numCandidates, counts.length - first)];
+      int size = 0;
+      for (int idx = first; idx < counts.length; idx++) {
+        final int count = counts[idx];
+        if (count == 0) {
+          continue;
+        }
+        final long entry = ((long) count << 32) | idx;
+        if (size < heap.length) {
+          heap[size++] = entry;
+          if (size == heap.length) {
+            Arrays.sort(heap);
+          }
+        } else if (count > (int) (heap[0] >>> 32)) {
+          // this term can't be a candidate anymore
+          maxOtherCount = Math.max(maxOtherCount, (int) (heap[0] >>> 32));
+          heap[0] = entry;
+          downHeap(heap);
+        } else {
+          maxOtherCount = Math.max(maxOtherCount, count);
+        }
+      }
+      candidates = new int[size];
+      for (int i = 0; i < size; i++) {
+        candidates[i] = (int) heap[i];
+      }
+    }
+
+    // a sorted array is a valid min-heap, restore the heap property after the root has been replaced
+    private void downHeap(long[] heap) {
+      int i = 0;
+      final long entry = heap[0];
+      while (true) {
+        int child = 2 * i + 1;
+        if (child >= heap.length) break;
+        if (child + 1 < heap.length && heap[child + 1] < heap[child]) child++;
+        if (heap[child] >= entry) break;
+        heap[i] = heap[child];
+        i = child;
+      }
+      heap[i] = entry;
+    }
+
+    /** Return the count of the given term in this segment. */
+    int getCount(BytesRef term) {
+      if (counts == null) {
+        return 0;
+      }
+      final long ord = si.lookupTerm(term);
+      if (ord < 0) {
+        return 0;
+      }
+      final long arrIdx = ord - startTermIndex;
+      return arrIdx >= 0 && arrIdx < counts.length ? counts[(int) arrIdx] : 0;
+    }
+
+    /** Position on the first term of the range, returns false if there is none. */
+    boolean seekFirst(boolean skipZeros) throws IOException {
+      pos = Math.max(startTermIndex, 0) - 1;
+      return next(skipZeros);
+    }
+
+    /** Move to the next term of the range, returns false if there is none. */
+    boolean next(boolean skipZeros) throws IOException {
+      int next = pos + 1;
+      if (skipZeros) {
+        while (next < endTermIndex && counts[next - startTermIndex] == 0) {
+          next++;
+        }
+      }
+      if (next >= endTermIndex) {
+        return false;
+      }
+      if (next == pos + 1 && pos >= Math.max(startTermIndex, 0)) {
+        tempBR = tenum.next();
+      } else {
+        tenum.seekExact(next);
+        tempBR = tenum.term();
+      }
+      pos = next;
+      return true;
+    }
+  }
+
+}
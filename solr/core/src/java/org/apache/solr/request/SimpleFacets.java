@@ -422,11 +422,6 @@ public class SimpleFacets {
       method = FacetMethod.FC;
     }
 
-    if (method == FacetMethod.FCS && multiToken) {
-      // only fc knows how to deal with multi-token fields
-      method = FacetMethod.FC;
-    }
-    
     if (method == FacetMethod.ENUM && sf.hasDocValues()) {
       // only fc can handle docvalues types
       method = FacetMethod.FC;
@@ -442,13 +437,18 @@ public class SimpleFacets {
           counts = getFacetTermEnumCounts(searcher, base, field, offset, limit, mincount,missing,sort,prefix);
           break;
         case FCS:
-          assert !multiToken;
           if (ft.getNumericType() != null && !sf.multiValued()) {
             // force numeric faceting
             if (prefix != null && !prefix.isEmpty()) {
               throw new SolrException(ErrorCode.BAD_REQUEST, FacetParams.FACET_PREFIX + " is not supported on numeric types");
             }
             counts = NumericFacets.getCounts(searcher, base, field, offset, limit, mincount, missing, sort);
+          } else if (multiToken) {
+            // count per segment rather than on top-level ordinals that need to be rebuilt on every commit
+            PerSegmentMultiValuedFaceting ps = new PerSegmentMultiValuedFaceting(searcher, base, field, offset,limit, mincount, missing, sort, prefix);
+            Executor executor = threads == 0 ? directExecutor : facetExecutor;
+            ps.setNumThreads(threads);
+            counts = ps.getFacetCounts(executor);
           } else {
             PerSegmentSingleValuedFaceting ps = new PerSegmentSingleValuedFaceting(searcher, base, field, offset,limit, mincount, missing, sort, prefix);
             Executor executor = threads == 0 ? directExecutor : facetExecutor;
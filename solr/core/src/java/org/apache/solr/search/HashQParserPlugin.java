@@ -0,0 +1,187 @@
+package org.apache.solr.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.queries.function.FunctionValues;
+import org.apache.lucene.queries.function.ValueSource;
+import org.apache.lucene.search.BitsFilteredDocIdSet;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.Hash;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.schema.SchemaField;
+
+/**
+ * Filters the documents of one partition out of <code>workers</code> partitions,
+ * for example <code>{!hash workers=4 worker=0}</code>. Documents are partitioned
+ * by the hash of the values of the <code>partitionKeys</code> fields, so all the
+ * documents with the same values are in the same partition on every shard. This
+ * is how the workers of a parallel stream each read their own share of a
+ * collection.
+ * <br>Parameters:
+ * <br><code>workers</code>: the number of partitions (mandatory)
+ * <br><code>worker</code>: the partition to match, from 0 (mandatory)
+ * <br><code>partitionKeys</code>: comma-separated single-valued fields with
+ * doc values or that can be un-inverted (mandatory)
+ */
+public class HashQParserPlugin extends QParserPlugin {
+  public static final String NAME = "hash";
+
+  @Override
+  public void init(NamedList args) {
+  }
+
+  @Override
+  public QParser createParser(String qstr, SolrParams localParams, SolrParams params, SolrQueryRequest req) {
+    return new QParser(qstr, localParams, params, req) {
+      @Override
+      public Query parse() throws SyntaxError {
+        final int workers = localParams.getInt("workers", 0);
+        final int worker = localParams.getInt("worker", -1);
+        if (workers <= 0 || worker < 0 || worker >= workers) {
+          throw new SyntaxError("Invalid partition " + worker + " of " + workers + " workers");
+        }
+        final String keys = localParams.get("partitionKeys", params.get("partitionKeys"));
+        if (keys == null) {
+          throw new SyntaxError("Missing partitionKeys");
+        }
+        String[] fields = keys.trim().split("\\s*,\\s*");
+        SchemaField[] schemaFields = new SchemaField[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+          try {
+            schemaFields[i] = req.getSchema().getField(fields[i]);
+          } catch (SolrException e) {
+            throw new SyntaxError("Unknown partition key: " + fields[i], e);
+          }
+          if (schemaFields[i].multiValued()) {
+            throw new SyntaxError("Partition keys must be single-valued: " + fields[i]);
+          }
+        }
+        return new SolrConstantScoreQuery(new HashFilter(schemaFields, workers, worker));
+      }
+    };
+  }
+
+  /** Matches the documents whose hash of the partition keys modulo the number of workers is the worker. */
+  static class HashFilter extends SolrFilter {
+    private final SchemaField[] fields;
+    private final ValueSource[] valueSources;
+    private final int workers;
+    private final int worker;
+
+    HashFilter(SchemaField[] fields, int workers, int worker) {
+      this.fields = fields;
+      this.workers = workers;
+      this.worker = worker;
+      this.valueSources = new ValueSource[fields.length];
+      for (int i = 0; i < fields.length; i++) {
+        valueSources[i] = fields[i].getType().getValueSource(fields[i], null);
+      }
+    }
+
+    @Override
+    public void createWeight(Map context, IndexSearcher searcher) throws IOException {
+      for (ValueSource vs : valueSources) {
+        vs.createWeight(context, searcher);
+      }
+    }
+
+    @Override
+    public DocIdSet getDocIdSet(Map context, AtomicReaderContext readerContext, Bits acceptDocs) throws IOException {
+      final int maxDoc = readerContext.reader().maxDoc();
+      final FunctionValues[] values = new FunctionValues[valueSources.length];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = valueSources[i].getValues(context, readerContext);
+      }
+      final BytesRefBuilder bytes = new BytesRefBuilder();
+      final FixedBitSet bits = new FixedBitSet(maxDoc);
+      for (int doc = 0; doc < maxDoc; doc++) {
+        int hash = 0;
+        for (int i = 0; i < values.length; i++) {
+          hash = 31 * hash + hash(fields[i], values[i], doc, bytes);
+        }
+        if ((hash & 0x7fffffff) % workers == worker) {
+          bits.set(doc);
+        }
+      }
+      return BitsFilteredDocIdSet.wrap(bits, acceptDocs);
+    }
+
+    /** The hash of the value of a field, which does not depend on the segment or shard of the document. */
+    private static int hash(SchemaField field, FunctionValues values, int doc, BytesRefBuilder bytes) {
+      if (!values.exists(doc)) {
+        return 0;
+      }
+      if (field.getType().getNumericType() != null) {
+        long v;
+        switch (field.getType().getNumericType()) {
+          case FLOAT:
+          case DOUBLE:
+            v = Double.doubleToLongBits(values.doubleVal(doc));
+            break;
+          default:
+            v = values.longVal(doc);
+        }
+        // the finalization mix of murmur3, so that the low bits depend on all the bits
+        v ^= v >>> 33;
+        v *= 0xff51afd7ed558ccdL;
+        v ^= v >>> 33;
+        v *= 0xc4ceb9fe1a85ec53L;
+        v ^= v >>> 33;
+        return (int) v;
+      }
+      values.bytesVal(doc, bytes);
+      return Hash.murmurhash3_x86_32(bytes.bytes(), 0, bytes.length(), 0);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof HashFilter)) return false;
+      HashFilter other = (HashFilter) o;
+      return workers == other.workers && worker == other.worker && Arrays.equals(fields, other.fields);
+    }
+
+    @Override
+    public int hashCode() {
+      return (Arrays.hashCode(fields) * 31 + workers) * 31 + worker;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder("hash(");
+      for (int i = 0; i < fields.length; i++) {
+        if (i > 0) sb.append(',');
+        sb.append(fields[i].getName());
+      }
+      return sb.append("):").append(worker).append('/').append(workers).toString();
+    }
+  }
+}
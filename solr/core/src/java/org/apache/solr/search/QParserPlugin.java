@@ -63,7 +63,8 @@ public abstract class QParserPlugin implements NamedListInitializedPlugin, SolrI
     SimpleQParserPlugin.NAME, SimpleQParserPlugin.class,
     ComplexPhraseQParserPlugin.NAME, ComplexPhraseQParserPlugin.class,
     ReRankQParserPlugin.NAME, ReRankQParserPlugin.class,
-    ExportQParserPlugin.NAME, ExportQParserPlugin.class
+    ExportQParserPlugin.NAME, ExportQParserPlugin.class,
+    HashQParserPlugin.NAME, HashQParserPlugin.class
   };
 
   /** return a {@link QParser} */
@@ -0,0 +1,301 @@
+package org.apache.solr.search;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.DisjunctionMaxQuery;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.MultiPhraseQuery;
+import org.apache.lucene.search.MultiTermQuery;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.RoaringDocIdSet;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.core.SolrInfoMBean;
+import org.apache.solr.util.ConcurrentTinyLFUCache;
+
+/**
+ * A cache of the documents that match filters on each segment, which is shared
+ * by all the searchers of a core.
+ * <p/>
+ * Entries are keyed by the {@link AtomicReader#getCoreCacheKey() core key} of
+ * segments and ignore deletions, which are applied when the per-segment sets
+ * are stitched into a top-level {@link DocSet}. As a consequence, after a
+ * reopen, only the segments that were not searched before need to be searched
+ * in order to compute the {@link DocSet} of a filter, so that the cost of
+ * autowarming the filterCache is proportional to the size of the new segments
+ * instead of the size of the index.
+ * <p/>
+ * This cache is bounded by the RAM usage of its entries and is enabled with
+ * <code>&lt;segmentFilterCache maxRamMB="..."/&gt;</code> in the
+ * <code>&lt;query&gt;</code> section of solrconfig.xml. Only queries whose
+ * matches on a segment don't depend on other segments are cached.
+ *
+ * @see SolrIndexSearcher#getDocSet(Query)
+ */
+public class SegmentDocSetCache implements SolrInfoMBean {
+
+  private static final ConcurrentTinyLFUCache.Weigher<Key,DocIdSet> RAM_WEIGHER = new ConcurrentTinyLFUCache.Weigher<Key,DocIdSet>() {
+    @Override
+    public long weigh(Key key, DocIdSet value) {
+      return TinyLFUCache.RAM_WEIGHER.weigh(key, value);
+    }
+  };
+
+  private final double maxRamMB;
+  private final ConcurrentTinyLFUCache<Key,DocIdSet> cache;
+  // segment cores that have a listener to remove their entries when they are closed
+  private final Set<Object> cores = Collections.newSetFromMap(new ConcurrentHashMap<Object,Boolean>());
+
+  private final AtomicReader.CoreClosedListener purgeListener = new AtomicReader.CoreClosedListener() {
+    @Override
+    public void onClose(Object ownerCoreCacheKey) {
+      purge(ownerCoreCacheKey);
+    }
+  };
+
+  public SegmentDocSetCache(double maxRamMB) {
+    if (maxRamMB <= 0) {
+      throw new IllegalArgumentException("maxRamMB must be > 0, got " + maxRamMB);
+    }
+    this.maxRamMB = maxRamMB;
+    this.cache = new ConcurrentTinyLFUCache<>((long) (maxRamMB * 1024 * 1024), 1024, RAM_WEIGHER);
+  }
+
+  /**
+   * Return true if the documents that the given query matches on a segment
+   * only depend on the content of this segment.
+   */
+  static boolean isSegmentLocal(Query query) {
+    if (query instanceof ExtendedQuery) {
+      return false;
+    } else if (query instanceof TermQuery || query instanceof PhraseQuery || query instanceof MultiPhraseQuery) {
+      return true;
+    } else if (query instanceof MultiTermQuery) {
+      return isSegmentLocal(((MultiTermQuery) query).getRewriteMethod());
+    } else if (query instanceof BooleanQuery) {
+      for (BooleanClause clause : ((BooleanQuery) query).clauses()) {
+        if (!isSegmentLocal(clause.getQuery())) {
+          return false;
+        }
+      }
+      return true;
+    } else if (query instanceof DisjunctionMaxQuery) {
+      for (Query disjunct : ((DisjunctionMaxQuery) query).getDisjuncts()) {
+        if (!isSegmentLocal(disjunct)) {
+          return false;
+        }
+      }
+      return true;
+    } else if (query instanceof ConstantScoreQuery) {
+      final Query inner = ((ConstantScoreQuery) query).getQuery();
+      return inner != null && isSegmentLocal(inner);
+    }
+    return false;
+  }
+
+  /**
+   * Constant-score rewrites match the documents that contain any matching term
+   * while top-terms rewrites, eg. of {@link org.apache.lucene.search.FuzzyQuery},
+   * pick terms based on the terms of all segments.
+   */
+  private static boolean isSegmentLocal(MultiTermQuery.RewriteMethod rewriteMethod) {
+    return rewriteMethod == MultiTermQuery.CONSTANT_SCORE_FILTER_REWRITE
+        || rewriteMethod == MultiTermQuery.CONSTANT_SCORE_BOOLEAN_QUERY_REWRITE
+        || rewriteMethod instanceof MultiTermQuery.ConstantScoreAutoRewrite;
+  }
+
+  /**
+   * Return the set of live documents of the given searcher that match the
+   * given positive query, or null if the query can't be cached per segment.
+   * Only the segments that are not in the cache yet are searched.
+   */
+  public DocSet getDocSet(SolrIndexSearcher searcher, Query query) throws IOException {
+    if (!isSegmentLocal(query)) {
+      return null;
+    }
+    final int maxDoc = searcher.maxDoc();
+    final DocSetCollector collector = new DocSetCollector(maxDoc >> 6, maxDoc);
+    Weight weight = null;
+    for (AtomicReaderContext leaf : searcher.getTopReaderContext().leaves()) {
+      final AtomicReader reader = leaf.reader();
+      final Key key = new Key(reader.getCoreCacheKey(), query);
+      DocIdSet set = cache.get(key);
+      if (set == null) {
+        if (weight == null) {
+          weight = searcher.createNormalizedWeight(query);
+        }
+        set = getSegmentDocIdSet(weight, leaf);
+        put(reader, key, set);
+      }
+
+      final DocIdSetIterator it = set.iterator();
+      if (it == null) {
+        continue;
+      }
+      final LeafCollector leafCollector = collector.getLeafCollector(leaf);
+      final Bits liveDocs = reader.getLiveDocs();
+      for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
+        if (liveDocs == null || liveDocs.get(doc)) {
+          leafCollector.collect(doc);
+        }
+      }
+    }
+    return collector.getDocSet();
+  }
+
+  // matches of the query on the segment, including deleted documents
+  private static DocIdSet getSegmentDocIdSet(Weight weight, AtomicReaderContext leaf) throws IOException {
+    final Scorer scorer = weight.scorer(leaf, null);
+    if (scorer == null) {
+      return DocIdSet.EMPTY;
+    }
+    return new RoaringDocIdSet.Builder(leaf.reader().maxDoc()).add(scorer).build();
+  }
+
+  private void put(AtomicReader reader, Key key, DocIdSet set) {
+    if (cores.add(key.coreKey)) {
+      reader.addCoreClosedListener(purgeListener);
+    }
+    cache.put(key, set);
+  }
+
+  private void purge(Object coreKey) {
+    if (cores.remove(coreKey)) {
+      // the cache is the only index of the entries of a core, so that evicted
+      // entries don't leave anything behind
+      for (Key key : cache.keySet()) {
+        if (key.coreKey == coreKey) {
+          cache.remove(key);
+        }
+      }
+    }
+  }
+
+  /** Remove all entries from this cache. */
+  public void clear() {
+    cache.clear();
+  }
+
+  /** Return the number of cached per-segment sets. */
+  public int size() {
+    return cache.size();
+  }
+
+  private static final class Key {
+    final Object coreKey;
+    final Query query;
+
+    Key(Object coreKey, Query query) {
+      this.coreKey = coreKey;
+      this.query = query;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      final Key other = (Key) obj;
+      return coreKey == other.coreKey && query.equals(other.query);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(coreKey) + query.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return query.toString();
+    }
+  }
+
+  //////////////////////// SolrInfoMBeans methods //////////////////////
+  @Override
+  public String getName() {
+    return SegmentDocSetCache.class.getName();
+  }
+
+  @Override
+  public String getVersion() {
+    return SolrCore.version;
+  }
+
+  @Override
+  public String getDescription() {
+    return "Per-segment filter cache(maxRamMB=" + maxRamMB + ")";
+  }
+
+  @Override
+  public Category getCategory() {
+    return Category.CACHE;
+  }
+
+  @Override
+  public String getSource() {
+    return null;
+  }
+
+  @Override
+  public URL[] getDocs() {
+    return null;
+  }
+
+  @Override
+  public NamedList getStatistics() {
+    NamedList<Object> lst = new SimpleOrderedMap<>();
+    ConcurrentTinyLFUCache.Stats stats = cache.getStats();
+    long lookups = stats.getCumulativeLookups();
+    long hits = stats.getCumulativeHits();
+    lst.add("lookups", lookups);
+    lst.add("hits", hits);
+    lst.add("hitratio", SolrCacheBase.calcHitRatio(lookups, hits));
+    lst.add("inserts", stats.getCumulativePuts());
+    lst.add("evictions", stats.getCumulativeEvictions());
+    lst.add("evictedBytes", stats.getCumulativeEvictedWeight());
+    lst.add("admissionRejects", stats.getCumulativeAdmissionRejects());
+    lst.add("size", cache.size());
+    lst.add("segments", cores.size());
+    lst.add("ramBytesUsed", cache.weight());
+    lst.add("maxRamBytes", cache.maxWeight());
+    return lst;
+  }
+
+  @Override
+  public String toString() {
+    return getName() + getStatistics().toString();
+  }
+}
@@ -149,6 +149,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
   
   private final boolean cachingEnabled;
   private final SolrCache<Query,DocSet> filterCache;
+  private final SegmentDocSetCache segmentDocSetCache;
   private final SolrCache<QueryResultKey,DocList> queryResultCache;
   private final SolrCache<Integer,StoredDocument> documentCache;
   private final SolrCache<String,UnInvertedField> fieldValueCache;
@@ -281,6 +282,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
       if (fieldValueCache!=null) clist.add(fieldValueCache);
       filterCache= solrConfig.filterCacheConfig==null ? null : solrConfig.filterCacheConfig.newInstance();
       if (filterCache!=null) clist.add(filterCache);
+      segmentDocSetCache = core.getSegmentDocSetCache();
       queryResultCache = solrConfig.queryResultCacheConfig==null ? null : solrConfig.queryResultCacheConfig.newInstance();
       if (queryResultCache!=null) clist.add(queryResultCache);
       documentCache = solrConfig.documentCacheConfig==null ? null : solrConfig.documentCacheConfig.newInstance();
@@ -303,6 +305,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
       cacheList = clist.toArray(new SolrCache[clist.size()]);
     } else {
       filterCache=null;
+      segmentDocSetCache=null;
       queryResultCache=null;
       documentCache=null;
       fieldValueCache=null;
@@ -882,7 +885,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
       }
     }
 
-    DocSet absAnswer = getDocSetNC(absQ, null);
+    DocSet absAnswer = getDocSetNCBySegment(absQ);
     DocSet answer = positive ? absAnswer : getPositiveDocSet(matchAllDocsQuery).andNot(absAnswer);
 
     if (filterCache != null) {
@@ -900,7 +903,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
       answer = filterCache.get(q);
       if (answer!=null) return answer;
     }
-    answer = getDocSetNC(q,null);
+    answer = getDocSetNCBySegment(q);
     if (filterCache != null) filterCache.put(
         q,answer);
     return answer;
@@ -1220,6 +1223,17 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
     return collector.getDocSet();
   }
 
+  // query must be positive
+  // reuses the per-segment results of previous searchers, if enabled, so that
+  // only the segments that are new to this searcher need to be searched
+  private DocSet getDocSetNCBySegment(Query query) throws IOException {
+    if (segmentDocSetCache != null) {
+      DocSet answer = segmentDocSetCache.getDocSet(this, query);
+      if (answer != null) return answer;
+    }
+    return getDocSetNC(query, null);
+  }
+
 
   /**
    * Returns the set of document ids matching both the query and the filter.
@@ -1252,7 +1266,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable,SolrIn
     if (filterCache != null) {
       first = filterCache.get(absQ);
       if (first==null) {
-        first = getDocSetNC(absQ,null);
+        first = getDocSetNCBySegment(absQ);
         filterCache.put(absQ,first);
       }
       return positive ? first.intersection(filter) : filter.andNot(first);
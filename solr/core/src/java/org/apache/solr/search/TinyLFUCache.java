@@ -0,0 +1,283 @@
+package org.apache.solr.search;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.util.ConcurrentTinyLFUCache;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SolrCache based on the ConcurrentTinyLFUCache implementation.
+ * <p/>
+ * This cache is bounded by an estimation of the RAM usage of its entries rather
+ * than by their number, which makes it a better fit than {@link FastLRUCache}
+ * for caches whose values have very different sizes, such as the filterCache.
+ * {@link DocSet}s are sized using {@link DocSet#memSize()}, {@link Accountable}
+ * keys and values using {@link Accountable#ramBytesUsed()}, and other keys and
+ * values are assumed to use a fixed amount of memory.
+ * <p/>
+ * Entries are only kept if their estimated access frequency is higher than
+ * the one of the entries that would have to be evicted to make room for them,
+ * so that queries which are run only once can't flush out hot entries.
+ * <p/>
+ * Supported arguments are <code>maxRamMB</code> (default 100),
+ * <code>initialSize</code>, <code>autowarmCount</code> and <code>showItems</code>.
+ *
+ * @see org.apache.solr.util.ConcurrentTinyLFUCache
+ * @see org.apache.solr.search.SolrCache
+ */
+public class TinyLFUCache<K,V> extends SolrCacheBase implements SolrCache<K,V> {
+
+  /** Estimated RAM usage of keys and values that are neither {@link DocSet}s nor {@link Accountable}s. */
+  public static final long DEFAULT_RAM_BYTES_USED = 192;
+
+  // hash table entry, cache node and their references
+  private static final long ENTRY_RAM_BYTES_USED = 2 * RamUsageEstimator.NUM_BYTES_OBJECT_HEADER
+      + 6 * RamUsageEstimator.NUM_BYTES_OBJECT_REF + 2 * RamUsageEstimator.NUM_BYTES_LONG;
+
+  static final ConcurrentTinyLFUCache.Weigher<Object,Object> RAM_WEIGHER = new ConcurrentTinyLFUCache.Weigher<Object,Object>() {
+    @Override
+    public long weigh(Object key, Object value) {
+      return ENTRY_RAM_BYTES_USED + ramBytesUsed(key) + ramBytesUsed(value);
+    }
+  };
+
+  // contains the statistics objects for all open caches of the same type
+  private List<ConcurrentTinyLFUCache.Stats> statsList;
+
+  private long warmupTime = 0;
+
+  private String description = "Concurrent TinyLFU Cache";
+  private ConcurrentTinyLFUCache<K,V> cache;
+  private int showItems = 0;
+
+  static long ramBytesUsed(Object o) {
+    if (o instanceof DocSet) {
+      return ((DocSet) o).memSize();
+    } else if (o instanceof Accountable) {
+      return ((Accountable) o).ramBytesUsed();
+    } else {
+      return DEFAULT_RAM_BYTES_USED;
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Object init(Map args, Object persistence, CacheRegenerator regenerator) {
+    super.init(args, regenerator);
+    String str = (String) args.get("maxRamMB");
+    final double maxRamMB = str == null ? 100 : Double.parseDouble(str);
+    final long maxRamBytes = (long) (maxRamMB * 1024 * 1024);
+    if (maxRamBytes <= 0) {
+      throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "maxRamMB must be > 0, got " + str);
+    }
+    str = (String) args.get("initialSize");
+    final int initialSize = str == null ? 1024 : Integer.parseInt(str);
+
+    str = (String) args.get("showItems");
+    showItems = str == null ? 0 : Integer.parseInt(str);
+    description = generateDescription(maxRamMB, initialSize);
+    cache = new ConcurrentTinyLFUCache<>(maxRamBytes, initialSize, (ConcurrentTinyLFUCache.Weigher<K,V>) RAM_WEIGHER);
+    cache.setAlive(false);
+
+    statsList = (List<ConcurrentTinyLFUCache.Stats>) persistence;
+    if (statsList == null) {
+      // must be the first time a cache of this type is being created
+      // Use a CopyOnWriteArrayList since puts are very rare and iteration may be a frequent operation
+      // because it is used in getStatistics()
+      statsList = new CopyOnWriteArrayList<>();
+
+      // the first entry will be for cumulative stats of caches that have been closed.
+      statsList.add(new ConcurrentTinyLFUCache.Stats());
+    }
+    statsList.add(cache.getStats());
+    return statsList;
+  }
+
+  /**
+   * @return Returns the description of this Cache.
+   */
+  protected String generateDescription(double maxRamMB, int initialSize) {
+    String description = "Concurrent TinyLFU Cache(maxRamMB=" + maxRamMB + ", initialSize=" + initialSize;
+    if (isAutowarmingOn()) {
+      description += ", " + getAutowarmDescription();
+    }
+    description += ')';
+    return description;
+  }
+
+  @Override
+  public int size() {
+    return cache.size();
+  }
+
+  @Override
+  public V put(K key, V value) {
+    return cache.put(key, value);
+  }
+
+  @Override
+  public V get(K key) {
+    return cache.get(key);
+  }
+
+  @Override
+  public void clear() {
+    cache.clear();
+  }
+
+  @Override
+  public void setState(State state) {
+    super.setState(state);
+    cache.setAlive(state == State.LIVE);
+  }
+
+  @Override
+  public void warm(SolrIndexSearcher searcher, SolrCache old) {
+    if (regenerator == null) return;
+    long warmingStartTime = System.nanoTime();
+    TinyLFUCache other = (TinyLFUCache) old;
+    // warm entries
+    if (isAutowarmingOn()) {
+      int sz = autowarm.getWarmCount(other.size());
+      Map items = other.cache.getHottestItems(sz);
+      Map.Entry[] itemsArr = new Map.Entry[items.size()];
+      int counter = 0;
+      for (Object mapEntry : items.entrySet()) {
+        itemsArr[counter++] = (Map.Entry) mapEntry;
+      }
+      // regenerate the hottest entries last so that they are the most recently used ones
+      for (int i = itemsArr.length - 1; i >= 0; i--) {
+        try {
+          boolean continueRegen = regenerator.regenerateItem(searcher,
+                  this, old, itemsArr[i].getKey(), itemsArr[i].getValue());
+          if (!continueRegen) break;
+        }
+        catch (Exception e) {
+          SolrException.log(log, "Error during auto-warming of key:" + itemsArr[i].getKey(), e);
+        }
+      }
+    }
+    warmupTime = TimeUnit.MILLISECONDS.convert(System.nanoTime() - warmingStartTime, TimeUnit.NANOSECONDS);
+  }
+
+
+  @Override
+  public void close() {
+    // add the stats to the cumulative stats object (the first in the statsList)
+    statsList.get(0).add(cache.getStats());
+    statsList.remove(cache.getStats());
+    cache.clear();
+  }
+
+  //////////////////////// SolrInfoMBeans methods //////////////////////
+  @Override
+  public String getName() {
+    return TinyLFUCache.class.getName();
+  }
+
+  @Override
+  public String getDescription() {
+    return description;
+  }
+
+  @Override
+  public String getSource() {
+    return null;
+  }
+
+
+  @Override
+  public NamedList getStatistics() {
+    NamedList<Serializable> lst = new SimpleOrderedMap<>();
+    if (cache == null)  return lst;
+    ConcurrentTinyLFUCache.Stats stats = cache.getStats();
+    long lookups = stats.getCumulativeLookups();
+    long hits = stats.getCumulativeHits();
+    long inserts = stats.getCumulativePuts();
+    long evictions = stats.getCumulativeEvictions();
+    long evictedBytes = stats.getCumulativeEvictedWeight();
+    long admissionRejects = stats.getCumulativeAdmissionRejects();
+    long size = cache.size();
+    long clookups = 0;
+    long chits = 0;
+    long cinserts = 0;
+    long cevictions = 0;
+    long cevictedBytes = 0;
+    long cadmissionRejects = 0;
+
+    // NOTE: It is safe to iterate on a CopyOnWriteArrayList
+    for (ConcurrentTinyLFUCache.Stats statistics : statsList) {
+      clookups += statistics.getCumulativeLookups();
+      chits += statistics.getCumulativeHits();
+      cinserts += statistics.getCumulativePuts();
+      cevictions += statistics.getCumulativeEvictions();
+      cevictedBytes += statistics.getCumulativeEvictedWeight();
+      cadmissionRejects += statistics.getCumulativeAdmissionRejects();
+    }
+
+    lst.add("lookups", lookups);
+    lst.add("hits", hits);
+    lst.add("hitratio", calcHitRatio(lookups, hits));
+    lst.add("inserts", inserts);
+    lst.add("evictions", evictions);
+    lst.add("evictedBytes", evictedBytes);
+    lst.add("admissionRejects", admissionRejects);
+    lst.add("size", size);
+    lst.add("ramBytesUsed", cache.weight());
+    lst.add("maxRamBytes", cache.maxWeight());
+
+    lst.add("warmupTime", warmupTime);
+    lst.add("cumulative_lookups", clookups);
+    lst.add("cumulative_hits", chits);
+    lst.add("cumulative_hitratio", calcHitRatio(clookups, chits));
+    lst.add("cumulative_inserts", cinserts);
+    lst.add("cumulative_evictions", cevictions);
+    lst.add("cumulative_evictedBytes", cevictedBytes);
+    lst.add("cumulative_admissionRejects", cadmissionRejects);
+
+    if (showItems != 0) {
+      Map items = cache.getHottestItems( showItems == -1 ? Integer.MAX_VALUE : showItems );
+      for (Map.Entry e : (Set <Map.Entry>)items.entrySet()) {
+        Object k = e.getKey();
+        Object v = e.getValue();
+
+        String ks = "item_" + k;
+        String vs = v.toString();
+        lst.add(ks,vs);
+      }
+
+    }
+
+    return lst;
+  }
+
+  @Override
+  public String toString() {
+    return name() + getStatistics().toString();
+  }
+}
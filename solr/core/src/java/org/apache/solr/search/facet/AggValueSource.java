@@ -0,0 +1,51 @@
+package org.apache.solr.search.facet;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+/**
+ * A metric that is computed for each bucket of a facet, such as
+ * <code>sum(price)</code>.
+ */
+public abstract class AggValueSource {
+  protected final String name;
+
+  protected AggValueSource(String name) {
+    this.name = name;
+  }
+
+  /** The name of the function, such as <code>sum</code>. */
+  public String getName() {
+    return name;
+  }
+
+  /** Create an accumulator of this metric for the given number of buckets. */
+  public abstract SlotAcc createSlotAcc(FacetContext fcontext, int numSlots) throws IOException;
+
+  /** Create a merger of the values that shards return for a bucket. */
+  public abstract FacetMerger createFacetMerger();
+
+  /** Return the description of this metric, which is also its syntax. */
+  public abstract String description();
+
+  @Override
+  public String toString() {
+    return description();
+  }
+}
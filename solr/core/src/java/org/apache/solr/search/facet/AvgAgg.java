@@ -0,0 +1,114 @@
+package org.apache.solr.search.facet;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.queries.function.ValueSource;
+
+/**
+ * <code>avg(x)</code>: the average value of a function over the documents
+ * of a bucket that have a value. Shards return the number of values and
+ * their sum so that averages can be merged.
+ */
+public class AvgAgg extends AggValueSource {
+  private final ValueSource vs;
+
+  public AvgAgg(ValueSource vs) {
+    super("avg");
+    this.vs = vs;
+  }
+
+  @Override
+  public SlotAcc createSlotAcc(FacetContext fcontext, int numSlots) throws IOException {
+    return new AvgSlotAcc(vs, fcontext, numSlots);
+  }
+
+  @Override
+  public FacetMerger createFacetMerger() {
+    return new FacetMerger() {
+      long count;
+      double sum;
+
+      @Override
+      public void merge(Object shardResult) {
+        if (shardResult != null) {
+          List<?> countAndSum = (List<?>) shardResult;
+          count += ((Number) countAndSum.get(0)).longValue();
+          sum += ((Number) countAndSum.get(1)).doubleValue();
+        }
+      }
+
+      @Override
+      public Object getMergedResult() {
+        return count == 0 ? null : sum / count;
+      }
+    };
+  }
+
+  @Override
+  public String description() {
+    return name + "(" + vs.description() + ")";
+  }
+
+  static class AvgSlotAcc extends SlotAcc.FuncSlotAcc {
+    final double[] sums;
+    final int[] counts;
+
+    AvgSlotAcc(ValueSource vs, FacetContext fcontext, int numSlots) throws IOException {
+      super(vs, fcontext);
+      sums = new double[numSlots];
+      counts = new int[numSlots];
+    }
+
+    @Override
+    public void collect(int doc, int slot) {
+      if (values.exists(doc)) {
+        sums[slot] += values.doubleVal(doc);
+        counts[slot]++;
+      }
+    }
+
+    private double avg(int slot) {
+      return counts[slot] == 0 ? Double.NaN : sums[slot] / counts[slot];
+    }
+
+    @Override
+    public int compare(int slotA, int slotB) {
+      final double a = avg(slotA);
+      final double b = avg(slotB);
+      if (Double.isNaN(a) || Double.isNaN(b)) {
+        return Double.isNaN(a) ? (Double.isNaN(b) ? 0 : -1) : 1;
+      }
+      return Double.compare(a, b);
+    }
+
+    @Override
+    public Object getValue(int slot) {
+      if (fcontext.isShard()) {
+        List<Object> countAndSum = new ArrayList<>(2);
+        countAndSum.add((long) counts[slot]);
+        countAndSum.add(sums[slot]);
+        return countAndSum;
+      }
+      return counts[slot] == 0 ? null : avg(slot);
+    }
+  }
+}
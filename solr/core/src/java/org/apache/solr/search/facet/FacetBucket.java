@@ -0,0 +1,90 @@
+package org.apache.solr.search.facet;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+
+/**
+ * Merges the buckets that shards return for the same value of a facet: their
+ * counts, their metrics and their sub-facets.
+ */
+final class FacetBucket {
+  final FacetRequest freq;
+  final Object val; // null for query facets
+  long count;
+  private final Map<String,FacetMerger> stats = new LinkedHashMap<>();
+  private final Map<String,FacetMerger> subs = new LinkedHashMap<>();
+
+  FacetBucket(FacetRequest freq, Object val) {
+    this.freq = freq;
+    this.val = val;
+    for (Map.Entry<String,AggValueSource> stat : freq.getStats().entrySet()) {
+      stats.put(stat.getKey(), stat.getValue().createFacetMerger());
+    }
+  }
+
+  void merge(NamedList<?> shardBucket) {
+    count += ((Number) shardBucket.get("count")).longValue();
+    for (Map.Entry<String,FacetMerger> stat : stats.entrySet()) {
+      stat.getValue().merge(shardBucket.get(stat.getKey()));
+    }
+    for (Map.Entry<String,FacetRequest> sub : freq.getSubFacets().entrySet()) {
+      final Object shardSub = shardBucket.get(sub.getKey());
+      if (shardSub != null) {
+        FacetMerger merger = subs.get(sub.getKey());
+        if (merger == null) {
+          merger = sub.getValue().createFacetMerger();
+          subs.put(sub.getKey(), merger);
+        }
+        merger.merge(shardSub);
+      }
+    }
+  }
+
+  /** Return the merger of the metric with the given key. */
+  FacetMerger getStat(String key) {
+    return stats.get(key);
+  }
+
+  SimpleOrderedMap<Object> getMergedBucket() {
+    SimpleOrderedMap<Object> bucket = new SimpleOrderedMap<>();
+    if (val != null) {
+      bucket.add("val", val);
+    }
+    bucket.add("count", count);
+    for (Map.Entry<String,FacetMerger> stat : stats.entrySet()) {
+      final Object value = stat.getValue().getMergedResult();
+      if (value != null) {
+        bucket.add(stat.getKey(), value);
+      }
+    }
+    for (Map.Entry<String,FacetRequest> sub : freq.getSubFacets().entrySet()) {
+      FacetMerger merger = subs.get(sub.getKey());
+      if (merger == null) {
+        // no shard had documents in this bucket
+        merger = sub.getValue().createFacetMerger();
+      }
+      bucket.add(sub.getKey(), merger.getMergedResult());
+    }
+    return bucket;
+  }
+}
@@ -0,0 +1,65 @@
+package org.apache.solr.search.facet;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Map;
+
+import org.apache.lucene.queries.function.ValueSource;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.search.DocSet;
+import org.apache.solr.search.SolrIndexSearcher;
+
+/**
+ * The state that is needed to compute a facet: the documents to facet on
+ * and the searcher and request they come from.
+ */
+public class FacetContext {
+  final SolrQueryRequest req;
+  final SolrIndexSearcher searcher;
+  final DocSet base;
+  final boolean isShard;
+  // shared by all the value sources of the request
+  final Map<Object,Object> qcontext;
+
+  @SuppressWarnings("unchecked")
+  public FacetContext(SolrQueryRequest req, DocSet base, boolean isShard) {
+    this(req, req.getSearcher(), base, isShard, ValueSource.newContext(req.getSearcher()));
+  }
+
+  private FacetContext(SolrQueryRequest req, SolrIndexSearcher searcher, DocSet base, boolean isShard, Map<Object,Object> qcontext) {
+    this.req = req;
+    this.searcher = searcher;
+    this.base = base;
+    this.isShard = isShard;
+    this.qcontext = qcontext;
+  }
+
+  /** Return a context to compute facets on a subset of the documents of this context. */
+  FacetContext subContext(DocSet subBase) {
+    return new FacetContext(req, searcher, subBase, isShard, qcontext);
+  }
+
+  public DocSet getBase() {
+    return base;
+  }
+
+  /** Whether the results are partial results that will be merged with the ones of other shards. */
+  public boolean isShard() {
+    return isShard;
+  }
+}
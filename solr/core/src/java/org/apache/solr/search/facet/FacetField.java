@@ -0,0 +1,324 @@
+package org.apache.solr.search.facet;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.PriorityQueue;
+import org.apache.lucene.util.UnicodeUtil;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.schema.SchemaField;
+
+/**
+ * A facet with a bucket per value of a field, such as
+ * <code>{"terms":{"field":"cat", "limit":10, "sort":"count desc"}}</code>.
+ * <p/>
+ * Buckets can be sorted by <code>count</code>, by <code>index</code> order
+ * or by any of their metrics. On shards, more buckets than requested are
+ * returned so that the merged top buckets are accurate, but there is no
+ * refinement of the buckets that some shards didn't return.
+ */
+public class FacetField extends FacetRequest {
+  public static final String SORT_COUNT = "count";
+  public static final String SORT_INDEX = "index";
+
+  final SchemaField sf;
+  int offset = 0;
+  int limit = 10;
+  int mincount = 1;
+  String prefix;
+  String sortVariable = SORT_COUNT; // count, index or the key of a metric
+  boolean sortDescending = true;
+  // number of extra buckets that shards return, -1 for the default
+  int overrequest = -1;
+
+  public FacetField(SchemaField sf) {
+    this.sf = sf;
+  }
+
+  /** The number of buckets that shards return. */
+  int getShardLimit() {
+    if (limit < 0) {
+      return -1;
+    }
+    final long numBuckets = (long) offset + limit;
+    final long extra = overrequest >= 0 ? overrequest : (long) (numBuckets * 0.5) + 10;
+    return (int) Math.min(Integer.MAX_VALUE, numBuckets + extra);
+  }
+
+  @Override
+  public FacetProcessor<?> createFacetProcessor(FacetContext fcontext) {
+    return new FacetFieldProcessor(fcontext, this);
+  }
+
+  @Override
+  public FacetMerger createFacetMerger() {
+    return new FacetFieldMerger(this);
+  }
+
+  static class FacetFieldProcessor extends FacetProcessor<FacetField> {
+    FieldOrdinals ords;
+    int startTermIndex;
+    int numTerms;
+    int[] docSlots = new int[8]; // slots of the current document
+
+    FacetFieldProcessor(FacetContext fcontext, FacetField freq) {
+      super(fcontext, freq);
+    }
+
+    @Override
+    public void process() throws IOException {
+      response = new SimpleOrderedMap<>();
+      ords = new FieldOrdinals(fcontext.searcher, freq.sf.getName());
+
+      int endTermIndex;
+      if (freq.prefix != null && freq.prefix.length() > 0) {
+        BytesRefBuilder prefixRef = new BytesRefBuilder();
+        prefixRef.copyChars(freq.prefix);
+        startTermIndex = (int) ords.si.lookupTerm(prefixRef.get());
+        if (startTermIndex < 0) startTermIndex = -startTermIndex - 1;
+        prefixRef.append(UnicodeUtil.BIG_TERM);
+        endTermIndex = (int) ords.si.lookupTerm(prefixRef.get());
+        assert endTermIndex < 0;
+        endTermIndex = -endTermIndex - 1;
+      } else {
+        startTermIndex = 0;
+        endTermIndex = ords.getValueCount();
+      }
+      numTerms = endTermIndex - startTermIndex;
+
+      // a single pass over the documents computes the counts and metrics of all buckets
+      createAccs(numTerms);
+      if (numTerms > 0) {
+        collectDocs(fcontext.base);
+      }
+
+      final List<SimpleOrderedMap<Object>> buckets = new ArrayList<>();
+      for (int slot : selectSlots()) {
+        final int ord = startTermIndex + slot;
+        SimpleOrderedMap<Object> bucket = new SimpleOrderedMap<>();
+        bucket.add("val", ords.readableValue(ord));
+        bucket.add("count", (long) countAcc.counts[slot]);
+        addStats(bucket, slot);
+        if (!freq.getSubFacets().isEmpty()) {
+          processSubs(bucket, fcontext.searcher.getDocSet(getBucketQuery(ord), fcontext.base));
+        }
+        buckets.add(bucket);
+      }
+      response.add("buckets", buckets);
+    }
+
+    private Query getBucketQuery(int ord) {
+      final BytesRef term = BytesRef.deepCopyOf(ords.lookupOrd(ord));
+      if (freq.sf.indexed()) {
+        return new TermQuery(new Term(freq.sf.getName(), term));
+      }
+      final String val = ords.readableValue(ord);
+      return freq.sf.getType().getRangeQuery(null, freq.sf, val, val, true, true);
+    }
+
+    @Override
+    protected void setNextReader(AtomicReaderContext leaf) throws IOException {
+      super.setNextReader(leaf);
+      ords.setNextReader(leaf);
+    }
+
+    @Override
+    protected void collect(int doc) throws IOException {
+      // read all ords first since metrics may iterate over the same doc values
+      int numSlots = 0;
+      ords.setDocument(doc);
+      for (int ord = ords.nextOrd(); ord >= 0; ord = ords.nextOrd()) {
+        final int slot = ord - startTermIndex;
+        if (slot >= 0 && slot < numTerms) {
+          if (numSlots == docSlots.length) {
+            docSlots = ArrayUtil.grow(docSlots);
+          }
+          docSlots[numSlots++] = slot;
+        }
+      }
+      for (int i = 0; i < numSlots; i++) {
+        collectSlot(doc, docSlots[i]);
+      }
+    }
+
+    /** Return the slots of the buckets to return, in order. */
+    private int[] selectSlots() {
+      final int offset = fcontext.isShard() ? 0 : freq.offset;
+      final int limit = fcontext.isShard() ? freq.getShardLimit() : freq.limit;
+      // shards also return buckets that may only reach the min count once merged
+      final int mincount = fcontext.isShard() ? Math.min(freq.mincount, 1) : freq.mincount;
+      if (limit == 0) {
+        return new int[0];
+      }
+
+      if (FacetField.SORT_INDEX.equals(freq.sortVariable)) {
+        final int[] slots = new int[limit < 0 ? numTerms : Math.min(numTerms, limit)];
+        int numSlots = 0;
+        int off = offset;
+        for (int i = 0; i < numTerms && numSlots < slots.length; i++) {
+          final int slot = freq.sortDescending ? numTerms - 1 - i : i;
+          if (countAcc.counts[slot] < mincount || --off >= 0) continue;
+          slots[numSlots++] = slot;
+        }
+        return numSlots == slots.length ? slots : Arrays.copyOf(slots, numSlots);
+      }
+
+      final SlotAcc sortAcc = getSortAcc();
+      final boolean desc = freq.sortDescending;
+      final int maxSize = limit < 0 ? numTerms : (int) Math.min(numTerms, (long) offset + limit);
+      // a queue of the top slots, the least competitive one at the top
+      PriorityQueue<int[]> queue = new PriorityQueue<int[]>(maxSize) {
+        @Override
+        protected boolean lessThan(int[] a, int[] b) {
+          int cmp = sortAcc.compare(a[0], b[0]);
+          if (cmp == 0) {
+            // ties are sorted by index order
+            return a[0] > b[0];
+          }
+          return desc ? cmp < 0 : cmp > 0;
+        }
+      };
+      int[] spare = null;
+      for (int slot = 0; slot < numTerms; slot++) {
+        if (countAcc.counts[slot] < mincount) continue;
+        if (spare == null) {
+          spare = new int[1];
+        }
+        spare[0] = slot;
+        spare = queue.insertWithOverflow(spare);
+      }
+
+      final int numSlots = Math.max(0, queue.size() - offset);
+      final int[] slots = new int[numSlots];
+      // pop from the least competitive slot, the first offset slots are skipped
+      for (int i = queue.size() - 1; i >= offset; i--) {
+        slots[i - offset] = queue.pop()[0];
+      }
+      return slots;
+    }
+
+    private SlotAcc getSortAcc() {
+      if (FacetField.SORT_COUNT.equals(freq.sortVariable)) {
+        return countAcc;
+      }
+      int i = 0;
+      for (String key : freq.getStats().keySet()) {
+        if (key.equals(freq.sortVariable)) {
+          return accs[i];
+        }
+        i++;
+      }
+      throw new IllegalStateException("Unknown sort: " + freq.sortVariable);
+    }
+  }
+
+  /** Merges the buckets of shards by value. */
+  static class FacetFieldMerger extends FacetMerger {
+    final FacetField freq;
+    final Map<Object,FacetBucket> buckets = new HashMap<>();
+
+    FacetFieldMerger(FacetField freq) {
+      this.freq = freq;
+    }
+
+    @Override
+    public void merge(Object shardResult) {
+      if (shardResult == null) {
+        return;
+      }
+      List<?> shardBuckets = (List<?>) ((NamedList<?>) shardResult).get("buckets");
+      for (Object o : shardBuckets) {
+        NamedList<?> shardBucket = (NamedList<?>) o;
+        final Object val = shardBucket.get("val");
+        FacetBucket bucket = buckets.get(val);
+        if (bucket == null) {
+          bucket = new FacetBucket(freq, val);
+          buckets.put(val, bucket);
+        }
+        bucket.merge(shardBucket);
+      }
+    }
+
+    @Override
+    public Object getMergedResult() {
+      final List<FacetBucket> sorted = new ArrayList<>(buckets.size());
+      final Map<FacetBucket,BytesRef> indexed = new HashMap<>();
+      for (FacetBucket bucket : buckets.values()) {
+        if (bucket.count >= freq.mincount) {
+          sorted.add(bucket);
+          BytesRefBuilder term = new BytesRefBuilder();
+          freq.sf.getType().readableToIndexed(bucket.val.toString(), term);
+          indexed.put(bucket, term.get());
+        }
+      }
+
+      final Comparator<FacetBucket> indexOrder = new Comparator<FacetBucket>() {
+        @Override
+        public int compare(FacetBucket a, FacetBucket b) {
+          return indexed.get(a).compareTo(indexed.get(b));
+        }
+      };
+      Comparator<FacetBucket> comparator;
+      if (SORT_INDEX.equals(freq.sortVariable)) {
+        comparator = freq.sortDescending ? Collections.reverseOrder(indexOrder) : indexOrder;
+      } else {
+        comparator = new Comparator<FacetBucket>() {
+          @Override
+          public int compare(FacetBucket a, FacetBucket b) {
+            int cmp;
+            if (SORT_COUNT.equals(freq.sortVariable)) {
+              cmp = Long.compare(a.count, b.count);
+            } else {
+              cmp = FacetMerger.compareMerged(a.getStat(freq.sortVariable), b.getStat(freq.sortVariable));
+            }
+            if (cmp == 0) {
+              return indexOrder.compare(a, b);
+            }
+            return freq.sortDescending ? -cmp : cmp;
+          }
+        };
+      }
+      Collections.sort(sorted, comparator);
+
+      final List<SimpleOrderedMap<Object>> result = new ArrayList<>();
+      final int end = freq.limit < 0 ? sorted.size() : (int) Math.min(sorted.size(), (long) freq.offset + freq.limit);
+      for (int i = freq.offset; i < end; i++) {
+        result.add(sorted.get(i).getMergedBucket());
+      }
+      SimpleOrderedMap<Object> response = new SimpleOrderedMap<>();
+      response.add("buckets", result);
+      return response;
+    }
+  }
+}
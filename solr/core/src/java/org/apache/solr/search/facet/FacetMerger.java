@@ -0,0 +1,54 @@
+package org.apache.solr.search.facet;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.List;
+
+/**
+ * Merges the partial results that shards return for a facet or a metric into
+ * the final result of a distributed request.
+ */
+public abstract class FacetMerger {
+
+  /** Merge the result of a shard, which may be null if the shard didn't return any. */
+  public abstract void merge(Object shardResult);
+
+  /** Return the final result, or null if there is none. */
+  public abstract Object getMergedResult();
+
+  /**
+   * Compare the merged results of two mergers of the same metric, in order
+   * to sort buckets. A missing value is smaller than any other value.
+   */
+  static int compareMerged(FacetMerger a, FacetMerger b) {
+    final Object va = a.getMergedResult();
+    final Object vb = b.getMergedResult();
+    if (va == null || vb == null) {
+      return va == null ? (vb == null ? 0 : -1) : 1;
+    }
+    return Double.compare(toSortValue(va), toSortValue(vb));
+  }
+
+  private static double toSortValue(Object value) {
+    if (value instanceof Number) {
+      return ((Number) value).doubleValue();
+    }
+    // multiple percentiles sort by the first one
+    return ((Number) ((List<?>) value).get(0)).doubleValue();
+  }
+}
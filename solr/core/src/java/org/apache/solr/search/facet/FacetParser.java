@@ -0,0 +1,382 @@
+package org.apache.solr.search.facet;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.lucene.queries.function.FunctionQuery;
+import org.apache.lucene.queries.function.ValueSource;
+import org.apache.lucene.search.Query;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.schema.EnumField;
+import org.apache.solr.schema.FieldType;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.schema.TrieField;
+import org.apache.solr.search.FunctionQParserPlugin;
+import org.apache.solr.search.QParser;
+import org.apache.solr.search.SyntaxError;
+import org.noggit.JSONParser;
+import org.noggit.ObjectBuilder;
+
+/**
+ * Parses the JSON syntax of facet requests, for example:
+ * <pre>
+ * {
+ *   "avg_price" : "avg(price)",
+ *   "categories" : {
+ *     "terms" : {
+ *       "field" : "cat",
+ *       "sort" : "avg_price desc",
+ *       "facet" : {
+ *         "avg_price" : "avg(price)",
+ *         "price_99" : "percentile(price,99)",
+ *         "sellers" : "unique(seller)"
+ *       }
+ *     }
+ *   }
+ * }
+ * </pre>
+ * A string value is a metric: <code>sum</code>, <code>min</code>,
+ * <code>max</code>, <code>avg</code> and <code>percentile</code> take a
+ * function query, <code>unique</code> takes a field. An object value is a
+ * facet of type <code>terms</code>, <code>range</code> or <code>query</code>,
+ * either as <code>{"terms":{...}}</code> or as
+ * <code>{"type":"terms", ...}</code>, and its <code>facet</code> option has
+ * the metrics and facets of each of its buckets.
+ */
+public class FacetParser {
+  private static final Pattern METRIC = Pattern.compile("\\s*(\\w+)\\s*\\((.*)\\)\\s*", Pattern.DOTALL);
+
+  private final SolrQueryRequest req;
+
+  public FacetParser(SolrQueryRequest req) {
+    this.req = req;
+  }
+
+  /** Parse a JSON facet request into the facet of all the matching documents. */
+  public static FacetRequest parse(SolrQueryRequest req, String json) throws SyntaxError {
+    final Object o;
+    try {
+      o = ObjectBuilder.fromJSON(json);
+    } catch (IOException | JSONParser.ParseException e) {
+      throw new SyntaxError("Invalid JSON facet request: " + json, e);
+    }
+    if (!(o instanceof Map)) {
+      throw new SyntaxError("Expected a JSON object of facets: " + json);
+    }
+    FacetQuery root = new FacetQuery(null);
+    new FacetParser(req).parseSubs(root, (Map<?,?>) o);
+    return root;
+  }
+
+  void parseSubs(FacetRequest freq, Map<?,?> subs) throws SyntaxError {
+    for (Map.Entry<?,?> entry : subs.entrySet()) {
+      final String key = entry.getKey().toString();
+      final Object value = entry.getValue();
+      if (value instanceof String) {
+        freq.getStats().put(key, parseMetric((String) value));
+      } else if (value instanceof Map) {
+        freq.getSubFacets().put(key, parseFacet(key, (Map<?,?>) value));
+      } else {
+        throw new SyntaxError("Expected a metric or a facet for '" + key + "' but got " + value);
+      }
+    }
+  }
+
+  AggValueSource parseMetric(String metric) throws SyntaxError {
+    Matcher m = METRIC.matcher(metric);
+    if (!m.matches()) {
+      throw new SyntaxError("Invalid metric: " + metric);
+    }
+    final String name = m.group(1);
+    final List<String> args = splitArgs(m.group(2));
+    if (args.isEmpty()) {
+      throw new SyntaxError("Missing argument of metric: " + metric);
+    }
+    if ("unique".equals(name)) {
+      if (args.size() != 1) {
+        throw new SyntaxError("Expected a single field: " + metric);
+      }
+      getOrdinalsField(args.get(0));
+      return new UniqueAgg(args.get(0));
+    }
+
+    final ValueSource vs = parseValueSource(args.get(0));
+    if ("percentile".equals(name)) {
+      if (args.size() < 2) {
+        throw new SyntaxError("Missing percentiles: " + metric);
+      }
+      double[] percentiles = new double[args.size() - 1];
+      for (int i = 0; i < percentiles.length; i++) {
+        try {
+          percentiles[i] = Double.parseDouble(args.get(i + 1));
+        } catch (NumberFormatException e) {
+          throw new SyntaxError("Invalid percentile '" + args.get(i + 1) + "' in " + metric);
+        }
+        if (percentiles[i] < 0 || percentiles[i] > 100) {
+          throw new SyntaxError("Percentiles must be between 0 and 100: " + metric);
+        }
+      }
+      return new PercentileAgg(vs, percentiles);
+    }
+    if (args.size() != 1) {
+      throw new SyntaxError("Expected a single argument: " + metric);
+    }
+    switch (name) {
+      case "sum":
+        return new SumAgg(vs);
+      case "min":
+        return new MinMaxAgg(vs, true);
+      case "max":
+        return new MinMaxAgg(vs, false);
+      case "avg":
+        return new AvgAgg(vs);
+      default:
+        throw new SyntaxError("Unknown metric '" + name + "' in " + metric);
+    }
+  }
+
+  /** Split the arguments of a metric on the commas that are not nested in a function. */
+  private static List<String> splitArgs(String args) {
+    List<String> result = new ArrayList<>();
+    int depth = 0;
+    int start = 0;
+    for (int i = 0; i < args.length(); i++) {
+      final char c = args.charAt(i);
+      if (c == '(') {
+        depth++;
+      } else if (c == ')') {
+        depth--;
+      } else if (c == ',' && depth == 0) {
+        result.add(args.substring(start, i).trim());
+        start = i + 1;
+      }
+    }
+    final String last = args.substring(start).trim();
+    if (last.length() > 0 || !result.isEmpty()) {
+      result.add(last);
+    }
+    return result;
+  }
+
+  private ValueSource parseValueSource(String func) throws SyntaxError {
+    Query q = QParser.getParser(func, FunctionQParserPlugin.NAME, req).getQuery();
+    if (!(q instanceof FunctionQuery)) {
+      throw new SyntaxError("Expected a function: " + func);
+    }
+    return ((FunctionQuery) q).getValueSource();
+  }
+
+  FacetRequest parseFacet(String key, Map<?,?> facet) throws SyntaxError {
+    String type;
+    Object options;
+    if (facet.containsKey("type")) {
+      type = facet.get("type").toString();
+      options = facet;
+    } else if (facet.size() == 1) {
+      Map.Entry<?,?> entry = facet.entrySet().iterator().next();
+      type = entry.getKey().toString();
+      options = entry.getValue();
+    } else {
+      throw new SyntaxError("Expected a single facet type for '" + key + "' but got " + facet.keySet());
+    }
+
+    switch (type) {
+      case "terms":
+        return parseTermsFacet(key, options);
+      case "range":
+        return parseRangeFacet(key, options);
+      case "query":
+        return parseQueryFacet(key, options);
+      default:
+        throw new SyntaxError("Unknown facet type '" + type + "' for '" + key + "'");
+    }
+  }
+
+  private FacetRequest parseTermsFacet(String key, Object options) throws SyntaxError {
+    if (options instanceof String) {
+      return new FacetField(getOrdinalsField((String) options));
+    }
+    Map<?,?> map = getOptions(key, options);
+    FacetField freq = new FacetField(getOrdinalsField(getString(map, "field", key, true)));
+    freq.offset = getInt(map, "offset", key, freq.offset);
+    freq.limit = getInt(map, "limit", key, freq.limit);
+    freq.mincount = getInt(map, "mincount", key, freq.mincount);
+    freq.overrequest = getInt(map, "overrequest", key, freq.overrequest);
+    freq.prefix = getString(map, "prefix", key, false);
+    if (freq.offset < 0) {
+      throw new SyntaxError("The offset of '" + key + "' must not be negative");
+    }
+    parseNested(freq, key, map);
+
+    // parsed after the metrics since buckets may be sorted by one of them
+    final String sort = getString(map, "sort", key, false);
+    if (sort != null) {
+      String[] parts = sort.trim().split("\\s+");
+      if (parts.length > 2) {
+        throw new SyntaxError("Invalid sort '" + sort + "' for '" + key + "'");
+      }
+      freq.sortVariable = parts[0];
+      if (!FacetField.SORT_COUNT.equals(freq.sortVariable) && !FacetField.SORT_INDEX.equals(freq.sortVariable)
+          && !freq.getStats().containsKey(freq.sortVariable)) {
+        throw new SyntaxError("Unknown sort '" + freq.sortVariable + "' for '" + key + "'");
+      }
+      if (parts.length == 2) {
+        final String direction = parts[1].toLowerCase(Locale.ROOT);
+        if (!"asc".equals(direction) && !"desc".equals(direction)) {
+          throw new SyntaxError("Invalid sort direction '" + parts[1] + "' for '" + key + "'");
+        }
+        freq.sortDescending = "desc".equals(direction);
+      } else {
+        freq.sortDescending = !FacetField.SORT_INDEX.equals(freq.sortVariable);
+      }
+    }
+    return freq;
+  }
+
+  private FacetRequest parseRangeFacet(String key, Object options) throws SyntaxError {
+    Map<?,?> map = getOptions(key, options);
+    SchemaField sf = getField(getString(map, "field", key, true));
+    FieldType ft = sf.getType();
+    if (!(ft instanceof TrieField) || ((TrieField) ft).getType() == TrieField.TrieTypes.DATE || sf.multiValued()) {
+      throw new SyntaxError("Range facets require a single-valued numeric field: " + sf.getName());
+    }
+    final TrieField.TrieTypes numericType = ((TrieField) ft).getType();
+    final boolean isInteger = numericType == TrieField.TrieTypes.INTEGER || numericType == TrieField.TrieTypes.LONG;
+    final double start = getNumber(map, "start", key, isInteger);
+    final double end = getNumber(map, "end", key, isInteger);
+    final double gap = getNumber(map, "gap", key, isInteger);
+    if (gap <= 0) {
+      throw new SyntaxError("The gap of '" + key + "' must be positive");
+    }
+    if (end <= start) {
+      throw new SyntaxError("The end of '" + key + "' must be greater than its start");
+    }
+    if ((end - start) / gap > FacetRange.MAX_BUCKETS) {
+      throw new SyntaxError("Too many buckets for '" + key + "', the limit is " + FacetRange.MAX_BUCKETS);
+    }
+    FacetRange freq = new FacetRange(sf, isInteger, start, end, gap);
+    freq.mincount = getInt(map, "mincount", key, freq.mincount);
+    parseNested(freq, key, map);
+    return freq;
+  }
+
+  private FacetRequest parseQueryFacet(String key, Object options) throws SyntaxError {
+    String q;
+    Map<?,?> map = null;
+    if (options instanceof String) {
+      q = (String) options;
+    } else {
+      map = getOptions(key, options);
+      q = getString(map, "q", key, true);
+    }
+    FacetQuery freq = new FacetQuery(QParser.getParser(q, null, req).getQuery());
+    if (map != null) {
+      parseNested(freq, key, map);
+    }
+    return freq;
+  }
+
+  private void parseNested(FacetRequest freq, String key, Map<?,?> options) throws SyntaxError {
+    Object nested = options.get("facet");
+    if (nested == null) {
+      return;
+    }
+    if (!(nested instanceof Map)) {
+      throw new SyntaxError("Expected an object of facets under '" + key + "'");
+    }
+    parseSubs(freq, (Map<?,?>) nested);
+  }
+
+  private SchemaField getField(String name) throws SyntaxError {
+    SchemaField sf = req.getSchema().getFieldOrNull(name);
+    if (sf == null) {
+      throw new SyntaxError("Unknown field: " + name);
+    }
+    return sf;
+  }
+
+  /**
+   * Return the field of a terms facet or of <code>unique()</code>, which read
+   * the ordinals of its values. Single-valued numeric fields have no ordinals
+   * since Solr un-inverts them to numbers.
+   */
+  private SchemaField getOrdinalsField(String name) throws SyntaxError {
+    final SchemaField sf = getField(name);
+    final FieldType ft = sf.getType();
+    if (!sf.multiValued() && (ft.getNumericType() != null || ft instanceof EnumField)) {
+      throw new SyntaxError("Terms facets and unique() are not supported on single-valued numeric field " + name
+          + ", use a range facet or a string or multiValued copy of the field");
+    }
+    return sf;
+  }
+
+  private static Map<?,?> getOptions(String key, Object options) throws SyntaxError {
+    if (!(options instanceof Map)) {
+      throw new SyntaxError("Expected an object of options for '" + key + "' but got " + options);
+    }
+    return (Map<?,?>) options;
+  }
+
+  private static String getString(Map<?,?> map, String option, String key, boolean required) throws SyntaxError {
+    Object o = map.get(option);
+    if (o == null) {
+      if (required) {
+        throw new SyntaxError("Missing '" + option + "' for '" + key + "'");
+      }
+      return null;
+    }
+    if (!(o instanceof String)) {
+      throw new SyntaxError("Expected a string for the '" + option + "' of '" + key + "' but got " + o);
+    }
+    return (String) o;
+  }
+
+  private static int getInt(Map<?,?> map, String option, String key, int def) throws SyntaxError {
+    Object o = map.get(option);
+    if (o == null) {
+      return def;
+    }
+    if (!(o instanceof Long)) {
+      throw new SyntaxError("Expected an integer for the '" + option + "' of '" + key + "' but got " + o);
+    }
+    final long value = (Long) o;
+    if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+      throw new SyntaxError("Out of range '" + option + "' for '" + key + "': " + o);
+    }
+    return (int) value;
+  }
+
+  private static double getNumber(Map<?,?> map, String option, String key, boolean isInteger) throws SyntaxError {
+    Object o = map.get(option);
+    if (o == null) {
+      throw new SyntaxError("Missing '" + option + "' for '" + key + "'");
+    }
+    if (isInteger ? !(o instanceof Long) : !(o instanceof Number)) {
+      throw new SyntaxError("Expected " + (isInteger ? "an integer" : "a number") + " for the '" + option
+          + "' of '" + key + "' but got " + o);
+    }
+    return ((Number) o).doubleValue();
+  }
+}
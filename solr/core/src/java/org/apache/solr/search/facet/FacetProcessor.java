@@ -0,0 +1,132 @@
+package org.apache.solr.search.facet;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Filter;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.search.DocSet;
+
+/**
+ * Computes a facet on the documents of a {@link FacetContext}.
+ * <p/>
+ * The counts and metrics of all the buckets of a facet are accumulated in
+ * {@link SlotAcc}s during a single pass over the matching documents:
+ * subclasses map each document to the slots of its buckets. Sub-facets are
+ * then computed on the documents of the buckets that are returned.
+ */
+public abstract class FacetProcessor<FacetRequestT extends FacetRequest> {
+  protected final FacetContext fcontext;
+  protected final FacetRequestT freq;
+  protected SimpleOrderedMap<Object> response;
+
+  protected SlotAcc.CountSlotAcc countAcc;
+  protected SlotAcc[] accs; // one per metric of the request, in order
+
+  protected FacetProcessor(FacetContext fcontext, FacetRequestT freq) {
+    this.fcontext = fcontext;
+    this.freq = freq;
+  }
+
+  /** Compute the facet, the result is then available with {@link #getResponse()}. */
+  public abstract void process() throws IOException;
+
+  public SimpleOrderedMap<Object> getResponse() {
+    return response;
+  }
+
+  /** Create the accumulators of the count and metrics of the given number of buckets. */
+  protected void createAccs(int numSlots) throws IOException {
+    countAcc = new SlotAcc.CountSlotAcc(fcontext, numSlots);
+    accs = new SlotAcc[freq.getStats().size()];
+    int i = 0;
+    for (AggValueSource stat : freq.getStats().values()) {
+      accs[i++] = stat.createSlotAcc(fcontext, numSlots);
+    }
+  }
+
+  /** Pass all the given documents to {@link #collect(int)}, segment by segment. */
+  protected void collectDocs(DocSet docs) throws IOException {
+    Filter filter = docs.getTopFilter();
+    for (AtomicReaderContext leaf : fcontext.searcher.getTopReaderContext().leaves()) {
+      DocIdSet dis = filter.getDocIdSet(leaf, null); // solr docsets already exclude any deleted docs
+      DocIdSetIterator disi = dis == null ? null : dis.iterator();
+      if (disi == null) {
+        continue;
+      }
+      setNextReader(leaf);
+      int doc;
+      while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+        collect(doc);
+      }
+    }
+  }
+
+  protected void setNextReader(AtomicReaderContext leaf) throws IOException {
+    for (SlotAcc acc : accs) {
+      acc.setNextReader(leaf);
+    }
+  }
+
+  /** Map a document of the current segment to the slots of its buckets. */
+  protected abstract void collect(int doc) throws IOException;
+
+  /** Add a document of the current segment to a bucket. */
+  protected final void collectSlot(int doc, int slot) throws IOException {
+    countAcc.collect(doc, slot);
+    for (SlotAcc acc : accs) {
+      acc.collect(doc, slot);
+    }
+  }
+
+  /** Add the metrics of a slot to a bucket of the response. */
+  protected void addStats(SimpleOrderedMap<Object> bucket, int slot) throws IOException {
+    int i = 0;
+    for (String key : freq.getStats().keySet()) {
+      Object value = accs[i++].getValue(slot);
+      if (value != null) {
+        bucket.add(key, value);
+      }
+    }
+  }
+
+  /** Compute the sub-facets of a bucket on its documents. */
+  protected void processSubs(SimpleOrderedMap<Object> bucket, DocSet docs) throws IOException {
+    for (Map.Entry<String,FacetRequest> sub : freq.getSubFacets().entrySet()) {
+      FacetProcessor<?> subProcessor = sub.getValue().createFacetProcessor(fcontext.subContext(docs));
+      subProcessor.process();
+      bucket.add(sub.getKey(), subProcessor.getResponse());
+    }
+  }
+
+  /** Fill a bucket with the count, metrics and sub-facets of the given documents. */
+  protected void fillBucket(SimpleOrderedMap<Object> bucket, DocSet docs) throws IOException {
+    bucket.add("count", (long) docs.size());
+    if (!freq.getStats().isEmpty()) {
+      createAccs(1);
+      collectDocs(docs);
+      addStats(bucket, 0);
+    }
+    processSubs(bucket, docs);
+  }
+}
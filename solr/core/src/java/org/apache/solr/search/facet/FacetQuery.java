@@ -0,0 +1,87 @@
+package org.apache.solr.search.facet;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.search.Query;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.search.DocSet;
+
+/**
+ * A facet with a single bucket: the documents that match a query. The facet
+ * at the root of a request is a query facet on all the documents that match
+ * the main query.
+ */
+public class FacetQuery extends FacetRequest {
+  final Query q; // null to use all the documents of the context
+
+  public FacetQuery(Query q) {
+    this.q = q;
+  }
+
+  @Override
+  public FacetProcessor<?> createFacetProcessor(FacetContext fcontext) {
+    return new FacetQueryProcessor(fcontext, this);
+  }
+
+  @Override
+  public FacetMerger createFacetMerger() {
+    return new FacetQueryMerger(this);
+  }
+
+  static class FacetQueryProcessor extends FacetProcessor<FacetQuery> {
+
+    FacetQueryProcessor(FacetContext fcontext, FacetQuery freq) {
+      super(fcontext, freq);
+    }
+
+    @Override
+    public void process() throws IOException {
+      final DocSet docs = freq.q == null ? fcontext.base : fcontext.searcher.getDocSet(freq.q, fcontext.base);
+      response = new SimpleOrderedMap<>();
+      fillBucket(response, docs);
+    }
+
+    @Override
+    protected void collect(int doc) throws IOException {
+      collectSlot(doc, 0);
+    }
+  }
+
+  static class FacetQueryMerger extends FacetMerger {
+    final FacetBucket bucket;
+
+    FacetQueryMerger(FacetQuery freq) {
+      bucket = new FacetBucket(freq, null);
+    }
+
+    @Override
+    public void merge(Object shardResult) {
+      if (shardResult != null) {
+        bucket.merge((NamedList<?>) shardResult);
+      }
+    }
+
+    @Override
+    public Object getMergedResult() {
+      return bucket.getMergedBucket();
+    }
+  }
+}
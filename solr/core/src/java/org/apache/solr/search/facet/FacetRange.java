@@ -0,0 +1,202 @@
+package org.apache.solr.search.facet;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.queries.function.FunctionValues;
+import org.apache.lucene.queries.function.ValueSource;
+import org.apache.lucene.search.Query;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.schema.SchemaField;
+
+/**
+ * A facet with a bucket per range of values of a numeric field, such as
+ * <code>{"range":{"field":"price", "start":0, "end":100, "gap":10}}</code>.
+ * <p/>
+ * Buckets include their lower bound and exclude their upper bound, and the
+ * last bucket ends at <code>end</code>. Integer fields have integer bounds,
+ * other numeric fields have floating-point bounds.
+ */
+public class FacetRange extends FacetRequest {
+  /** The maximum number of buckets of a range facet. */
+  public static final int MAX_BUCKETS = 100000;
+
+  final SchemaField sf;
+  final boolean isInteger;
+  final double start;
+  final double end;
+  final double gap;
+  int mincount = 0;
+
+  public FacetRange(SchemaField sf, boolean isInteger, double start, double end, double gap) {
+    this.sf = sf;
+    this.isInteger = isInteger;
+    this.start = start;
+    this.end = end;
+    this.gap = gap;
+  }
+
+  int getNumBuckets() {
+    return (int) Math.ceil((end - start) / gap);
+  }
+
+  /** The value of the lower bound of a bucket. */
+  Object getBucketValue(int slot) {
+    final double low = start + slot * gap;
+    return isInteger ? (Object) (long) low : (Object) low;
+  }
+
+  private String toString(double bound) {
+    return isInteger ? Long.toString((long) bound) : Double.toString(bound);
+  }
+
+  Query getBucketQuery(int slot) {
+    final double low = start + slot * gap;
+    final double high = Math.min(low + gap, end);
+    return sf.getType().getRangeQuery(null, sf, toString(low), toString(high), true, false);
+  }
+
+  @Override
+  public FacetProcessor<?> createFacetProcessor(FacetContext fcontext) {
+    return new FacetRangeProcessor(fcontext, this);
+  }
+
+  @Override
+  public FacetMerger createFacetMerger() {
+    return new FacetRangeMerger(this);
+  }
+
+  static class FacetRangeProcessor extends FacetProcessor<FacetRange> {
+    final ValueSource vs;
+    FunctionValues values;
+    int numBuckets;
+
+    FacetRangeProcessor(FacetContext fcontext, FacetRange freq) {
+      super(fcontext, freq);
+      vs = freq.sf.getType().getValueSource(freq.sf, null);
+    }
+
+    @Override
+    public void process() throws IOException {
+      response = new SimpleOrderedMap<>();
+      numBuckets = freq.getNumBuckets();
+      vs.createWeight(fcontext.qcontext, fcontext.searcher);
+
+      // a single pass over the documents computes the counts and metrics of all buckets
+      createAccs(numBuckets);
+      collectDocs(fcontext.base);
+
+      final int mincount = fcontext.isShard() ? Math.min(freq.mincount, 1) : freq.mincount;
+      final List<SimpleOrderedMap<Object>> buckets = new ArrayList<>();
+      for (int slot = 0; slot < numBuckets; slot++) {
+        if (countAcc.counts[slot] < mincount) continue;
+        SimpleOrderedMap<Object> bucket = new SimpleOrderedMap<>();
+        bucket.add("val", freq.getBucketValue(slot));
+        bucket.add("count", (long) countAcc.counts[slot]);
+        addStats(bucket, slot);
+        if (!freq.getSubFacets().isEmpty()) {
+          processSubs(bucket, fcontext.searcher.getDocSet(freq.getBucketQuery(slot), fcontext.base));
+        }
+        buckets.add(bucket);
+      }
+      response.add("buckets", buckets);
+    }
+
+    @Override
+    protected void setNextReader(AtomicReaderContext leaf) throws IOException {
+      super.setNextReader(leaf);
+      values = vs.getValues(fcontext.qcontext, leaf);
+    }
+
+    @Override
+    protected void collect(int doc) throws IOException {
+      if (!values.exists(doc)) {
+        return;
+      }
+      int slot;
+      if (freq.isInteger) {
+        final long val = values.longVal(doc);
+        if (val < freq.start || val >= freq.end) {
+          return;
+        }
+        slot = (int) ((val - (long) freq.start) / (long) freq.gap);
+      } else {
+        final double val = values.doubleVal(doc);
+        if (val < freq.start || val >= freq.end) {
+          return;
+        }
+        slot = (int) ((val - freq.start) / freq.gap);
+      }
+      collectSlot(doc, Math.min(slot, numBuckets - 1));
+    }
+  }
+
+  /** Merges the buckets of shards by lower bound. */
+  static class FacetRangeMerger extends FacetMerger {
+    final FacetRange freq;
+    final Map<Object,FacetBucket> buckets = new HashMap<>();
+
+    FacetRangeMerger(FacetRange freq) {
+      this.freq = freq;
+    }
+
+    @Override
+    public void merge(Object shardResult) {
+      if (shardResult == null) {
+        return;
+      }
+      List<?> shardBuckets = (List<?>) ((NamedList<?>) shardResult).get("buckets");
+      for (Object o : shardBuckets) {
+        NamedList<?> shardBucket = (NamedList<?>) o;
+        final Object val = shardBucket.get("val");
+        FacetBucket bucket = buckets.get(val);
+        if (bucket == null) {
+          bucket = new FacetBucket(freq, val);
+          buckets.put(val, bucket);
+        }
+        bucket.merge(shardBucket);
+      }
+    }
+
+    @Override
+    public Object getMergedResult() {
+      final List<SimpleOrderedMap<Object>> result = new ArrayList<>();
+      // buckets that no shard returned have a zero count
+      for (int slot = 0, numBuckets = freq.getNumBuckets(); slot < numBuckets; slot++) {
+        final Object val = freq.getBucketValue(slot);
+        FacetBucket bucket = buckets.get(val);
+        if (bucket == null) {
+          bucket = new FacetBucket(freq, val);
+        }
+        if (bucket.count >= freq.mincount) {
+          result.add(bucket.getMergedBucket());
+        }
+      }
+      SimpleOrderedMap<Object> response = new SimpleOrderedMap<>();
+      response.add("buckets", result);
+      return response;
+    }
+  }
+}
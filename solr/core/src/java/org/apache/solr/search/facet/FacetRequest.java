@@ -0,0 +1,48 @@
+package org.apache.solr.search.facet;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A facet of a request: the metrics to compute on each of its buckets and
+ * the facets to compute, recursively, on the documents of each bucket.
+ *
+ * @see FacetParser
+ */
+public abstract class FacetRequest {
+  protected final Map<String,AggValueSource> stats = new LinkedHashMap<>();
+  protected final Map<String,FacetRequest> subFacets = new LinkedHashMap<>();
+
+  /** The metrics of each bucket, by output key. */
+  public Map<String,AggValueSource> getStats() {
+    return stats;
+  }
+
+  /** The facets to compute on the documents of each bucket, by output key. */
+  public Map<String,FacetRequest> getSubFacets() {
+    return subFacets;
+  }
+
+  /** Create a processor that computes this facet on the documents of the given context. */
+  public abstract FacetProcessor<?> createFacetProcessor(FacetContext fcontext);
+
+  /** Create a merger of the results that shards return for this facet. */
+  public abstract FacetMerger createFacetMerger();
+}
@@ -0,0 +1,113 @@
+package org.apache.solr.search.facet;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.MultiDocValues.MultiSortedDocValues;
+import org.apache.lucene.index.MultiDocValues.MultiSortedSetDocValues;
+import org.apache.lucene.index.MultiDocValues.OrdinalMap;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.apache.lucene.util.LongValues;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.schema.FieldType;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.SolrIndexSearcher;
+
+/**
+ * Gives access to the top-level ordinals of the values of a field while
+ * iterating over the documents of each segment, in the same way as
+ * {@link org.apache.solr.request.DocValuesFacets}.
+ */
+final class FieldOrdinals {
+  final SchemaField sf;
+  final FieldType ft;
+  final boolean multiValued;
+  final SortedSetDocValues si; // for term lookups only
+  final OrdinalMap ordinalMap; // for mapping per-segment ords to global ones, null if there is a single segment
+
+  private SortedSetDocValues segValues;
+  private LongValues segToGlobal;
+  private final CharsRefBuilder charsRef = new CharsRefBuilder();
+
+  FieldOrdinals(SolrIndexSearcher searcher, String fieldName) throws IOException {
+    sf = searcher.getSchema().getField(fieldName);
+    ft = sf.getType();
+    multiValued = sf.multiValued() || ft.multiValuedFieldCache();
+
+    if (multiValued) {
+      SortedSetDocValues values = searcher.getAtomicReader().getSortedSetDocValues(fieldName);
+      si = values == null ? DocValues.emptySortedSet() : values;
+      ordinalMap = values instanceof MultiSortedSetDocValues ? ((MultiSortedSetDocValues) values).mapping : null;
+    } else {
+      SortedDocValues single = searcher.getAtomicReader().getSortedDocValues(fieldName);
+      si = single == null ? DocValues.emptySortedSet() : DocValues.singleton(single);
+      ordinalMap = single instanceof MultiSortedDocValues ? ((MultiSortedDocValues) single).mapping : null;
+    }
+    if (si.getValueCount() >= Integer.MAX_VALUE) {
+      throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+          "Field " + fieldName + " has too many unique values to be faceted on");
+    }
+  }
+
+  int getValueCount() {
+    return (int) si.getValueCount();
+  }
+
+  void setNextReader(AtomicReaderContext leaf) throws IOException {
+    if (multiValued) {
+      segValues = leaf.reader().getSortedSetDocValues(sf.getName());
+      if (segValues == null) {
+        segValues = DocValues.emptySortedSet();
+      }
+    } else {
+      SortedDocValues single = leaf.reader().getSortedDocValues(sf.getName());
+      segValues = DocValues.singleton(single == null ? DocValues.emptySorted() : single);
+    }
+    segToGlobal = ordinalMap == null ? null : ordinalMap.getGlobalOrds(leaf.ord);
+  }
+
+  /** Position on the given document of the current segment. */
+  void setDocument(int doc) {
+    segValues.setDocument(doc);
+  }
+
+  /** Return the next global ordinal of the current document, or -1 if there is none. */
+  int nextOrd() {
+    final long ord = segValues.nextOrd();
+    if (ord == SortedSetDocValues.NO_MORE_ORDS) {
+      return -1;
+    }
+    return segToGlobal == null ? (int) ord : (int) segToGlobal.get(ord);
+  }
+
+  BytesRef lookupOrd(int ord) {
+    return si.lookupOrd(ord);
+  }
+
+  /** Return the readable form of the value that has the given global ordinal. */
+  String readableValue(int ord) {
+    ft.indexedToReadable(si.lookupOrd(ord), charsRef);
+    return charsRef.toString();
+  }
+}
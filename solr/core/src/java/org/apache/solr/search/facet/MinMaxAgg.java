@@ -0,0 +1,110 @@
+package org.apache.solr.search.facet;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.queries.function.ValueSource;
+
+/**
+ * <code>min(x)</code> and <code>max(x)</code>: the minimum or maximum value
+ * of a function over the documents of a bucket. Buckets whose documents
+ * have no value don't have a result.
+ */
+public class MinMaxAgg extends AggValueSource {
+  private final ValueSource vs;
+  private final boolean isMin;
+
+  public MinMaxAgg(ValueSource vs, boolean isMin) {
+    super(isMin ? "min" : "max");
+    this.vs = vs;
+    this.isMin = isMin;
+  }
+
+  @Override
+  public SlotAcc createSlotAcc(FacetContext fcontext, int numSlots) throws IOException {
+    return new MinMaxSlotAcc(vs, fcontext, numSlots, isMin);
+  }
+
+  @Override
+  public FacetMerger createFacetMerger() {
+    return new FacetMerger() {
+      double val = Double.NaN;
+
+      @Override
+      public void merge(Object shardResult) {
+        if (shardResult != null) {
+          val = select(val, ((Number) shardResult).doubleValue(), isMin);
+        }
+      }
+
+      @Override
+      public Object getMergedResult() {
+        return Double.isNaN(val) ? null : val;
+      }
+    };
+  }
+
+  @Override
+  public String description() {
+    return name + "(" + vs.description() + ")";
+  }
+
+  // NaN means that there is no value yet
+  static double select(double current, double val, boolean isMin) {
+    if (Double.isNaN(current)) {
+      return val;
+    }
+    return isMin ? Math.min(current, val) : Math.max(current, val);
+  }
+
+  static class MinMaxSlotAcc extends SlotAcc.FuncSlotAcc {
+    final double[] result;
+    final boolean isMin;
+
+    MinMaxSlotAcc(ValueSource vs, FacetContext fcontext, int numSlots, boolean isMin) throws IOException {
+      super(vs, fcontext);
+      this.isMin = isMin;
+      result = new double[numSlots];
+      Arrays.fill(result, Double.NaN);
+    }
+
+    @Override
+    public void collect(int doc, int slot) {
+      if (values.exists(doc)) {
+        result[slot] = select(result[slot], values.doubleVal(doc), isMin);
+      }
+    }
+
+    @Override
+    public int compare(int slotA, int slotB) {
+      final double a = result[slotA];
+      final double b = result[slotB];
+      if (Double.isNaN(a) || Double.isNaN(b)) {
+        return Double.isNaN(a) ? (Double.isNaN(b) ? 0 : -1) : 1;
+      }
+      return Double.compare(a, b);
+    }
+
+    @Override
+    public Object getValue(int slot) {
+      return Double.isNaN(result[slot]) ? null : result[slot];
+    }
+  }
+}
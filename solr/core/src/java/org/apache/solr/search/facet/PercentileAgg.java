@@ -0,0 +1,133 @@
+package org.apache.solr.search.facet;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.queries.function.ValueSource;
+
+/**
+ * <code>percentile(x,p1,p2,...)</code>: estimations of percentiles of the
+ * values of a function over the documents of a bucket. The result is a
+ * single value if a single percentile is requested and a list otherwise.
+ *
+ * @see PercentileDigest
+ */
+public class PercentileAgg extends AggValueSource {
+  private final ValueSource vs;
+  private final double[] percentiles;
+
+  public PercentileAgg(ValueSource vs, double[] percentiles) {
+    super("percentile");
+    this.vs = vs;
+    this.percentiles = percentiles;
+  }
+
+  @Override
+  public SlotAcc createSlotAcc(FacetContext fcontext, int numSlots) throws IOException {
+    return new PercentileSlotAcc(vs, fcontext, numSlots);
+  }
+
+  @Override
+  public FacetMerger createFacetMerger() {
+    return new FacetMerger() {
+      final PercentileDigest digest = new PercentileDigest();
+
+      @Override
+      public void merge(Object shardResult) {
+        if (shardResult != null) {
+          digest.merge((List<?>) shardResult);
+        }
+      }
+
+      @Override
+      public Object getMergedResult() {
+        return getPercentiles(digest);
+      }
+    };
+  }
+
+  Object getPercentiles(PercentileDigest digest) {
+    if (digest == null || digest.getTotalWeight() == 0) {
+      return null;
+    }
+    if (percentiles.length == 1) {
+      return digest.quantile(percentiles[0] / 100);
+    }
+    List<Double> values = new ArrayList<>(percentiles.length);
+    for (double percentile : percentiles) {
+      values.add(digest.quantile(percentile / 100));
+    }
+    return values;
+  }
+
+  @Override
+  public String description() {
+    StringBuilder sb = new StringBuilder(name).append('(').append(vs.description());
+    for (double percentile : percentiles) {
+      sb.append(',').append(percentile);
+    }
+    return sb.append(')').toString();
+  }
+
+  class PercentileSlotAcc extends SlotAcc.FuncSlotAcc {
+    final PercentileDigest[] digests; // allocated on demand
+
+    PercentileSlotAcc(ValueSource vs, FacetContext fcontext, int numSlots) throws IOException {
+      super(vs, fcontext);
+      digests = new PercentileDigest[numSlots];
+    }
+
+    @Override
+    public void collect(int doc, int slot) {
+      if (values.exists(doc)) {
+        PercentileDigest digest = digests[slot];
+        if (digest == null) {
+          digest = digests[slot] = new PercentileDigest();
+        }
+        digest.add(values.doubleVal(doc));
+      }
+    }
+
+    // sorts by the first percentile
+    private double sortValue(int slot) {
+      final PercentileDigest digest = digests[slot];
+      return digest == null ? Double.NaN : digest.quantile(percentiles[0] / 100);
+    }
+
+    @Override
+    public int compare(int slotA, int slotB) {
+      final double a = sortValue(slotA);
+      final double b = sortValue(slotB);
+      if (Double.isNaN(a) || Double.isNaN(b)) {
+        return Double.isNaN(a) ? (Double.isNaN(b) ? 0 : -1) : 1;
+      }
+      return Double.compare(a, b);
+    }
+
+    @Override
+    public Object getValue(int slot) {
+      if (fcontext.isShard()) {
+        return digests[slot] == null ? null : digests[slot].toList();
+      }
+      return getPercentiles(digests[slot]);
+    }
+  }
+}
@@ -0,0 +1,172 @@
+package org.apache.solr.search.facet;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.InPlaceMergeSorter;
+
+/**
+ * A mergeable summary of a distribution of values that can estimate its
+ * percentiles with bounded memory.
+ * <p/>
+ * Values are summarized as weighted centroids, in the same way as a
+ * t-digest: adjacent centroids are merged as long as their weight stays
+ * below a bound that is proportional to <code>q * (1 - q)</code> where
+ * <code>q</code> is their quantile, so that percentiles close to 0 or 100
+ * are more accurate than median values. Distributions with fewer values than
+ * the compression factor are kept exactly.
+ */
+final class PercentileDigest {
+  static final int DEFAULT_COMPRESSION = 100;
+
+  private final int compression;
+  // centroids, sorted by mean after a compression
+  private double[] means = new double[16];
+  private double[] weights = new double[16];
+  private int size;
+  private int compressedSize; // the number of centroids that are sorted
+  private double totalWeight;
+  private double min = Double.POSITIVE_INFINITY;
+  private double max = Double.NEGATIVE_INFINITY;
+
+  PercentileDigest(int compression) {
+    this.compression = compression;
+  }
+
+  PercentileDigest() {
+    this(DEFAULT_COMPRESSION);
+  }
+
+  void add(double value) {
+    add(value, 1);
+  }
+
+  void add(double mean, double weight) {
+    if (size == means.length) {
+      if (size >= 4 * compression) {
+        compress();
+      }
+      if (size == means.length) {
+        means = ArrayUtil.grow(means, size + 1);
+        weights = ArrayUtil.grow(weights, means.length);
+      }
+    }
+    means[size] = mean;
+    weights[size] = weight;
+    size++;
+    totalWeight += weight;
+    min = Math.min(min, mean);
+    max = Math.max(max, mean);
+  }
+
+  double getTotalWeight() {
+    return totalWeight;
+  }
+
+  private void compress() {
+    if (size == compressedSize) {
+      return;
+    }
+    new InPlaceMergeSorter() {
+      @Override
+      protected int compare(int i, int j) {
+        return Double.compare(means[i], means[j]);
+      }
+
+      @Override
+      protected void swap(int i, int j) {
+        double tmp = means[i];
+        means[i] = means[j];
+        means[j] = tmp;
+        tmp = weights[i];
+        weights[i] = weights[j];
+        weights[j] = tmp;
+      }
+    }.sort(0, size);
+
+    int newSize = 0;
+    double weightSoFar = 0;
+    for (int i = 1; i < size; i++) {
+      final double merged = weights[newSize] + weights[i];
+      final double q = (weightSoFar + merged / 2) / totalWeight;
+      final double maxWeight = Math.max(1, 4 * totalWeight * q * (1 - q) / compression);
+      if (merged <= maxWeight) {
+        means[newSize] += (means[i] - means[newSize]) * weights[i] / merged;
+        weights[newSize] = merged;
+      } else {
+        weightSoFar += weights[newSize];
+        newSize++;
+        means[newSize] = means[i];
+        weights[newSize] = weights[i];
+      }
+    }
+    size = compressedSize = size == 0 ? 0 : newSize + 1;
+  }
+
+  /** Return the estimated value at the given quantile, between 0 and 1. */
+  double quantile(double q) {
+    compress();
+    if (size == 0) {
+      return Double.NaN;
+    } else if (size == 1) {
+      return means[0];
+    }
+    // each centroid covers the weight around its mean, interpolate between their centers
+    final double index = q * totalWeight;
+    if (index <= weights[0] / 2) {
+      return min + (means[0] - min) * index / (weights[0] / 2);
+    }
+    double center = weights[0] / 2;
+    for (int i = 1; i < size; i++) {
+      final double nextCenter = center + (weights[i - 1] + weights[i]) / 2;
+      if (index <= nextCenter) {
+        return means[i - 1] + (means[i] - means[i - 1]) * (index - center) / (nextCenter - center);
+      }
+      center = nextCenter;
+    }
+    final double lastHalf = weights[size - 1] / 2;
+    return means[size - 1] + (max - means[size - 1]) * Math.min(1, (index - center) / lastHalf);
+  }
+
+  /** Serialize this digest as a list of min, max and (mean, weight) pairs. */
+  List<Double> toList() {
+    compress();
+    List<Double> list = new ArrayList<>(2 + 2 * size);
+    list.add(min);
+    list.add(max);
+    for (int i = 0; i < size; i++) {
+      list.add(means[i]);
+      list.add(weights[i]);
+    }
+    return list;
+  }
+
+  /** Merge a digest that has been serialized with {@link #toList()}. */
+  void merge(List<?> list) {
+    for (int i = 2; i < list.size(); i += 2) {
+      add(((Number) list.get(i)).doubleValue(), ((Number) list.get(i + 1)).doubleValue());
+    }
+    if (list.size() > 2) {
+      min = Math.min(min, ((Number) list.get(0)).doubleValue());
+      max = Math.max(max, ((Number) list.get(1)).doubleValue());
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package org.apache.solr.search.facet;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.queries.function.FunctionValues;
+import org.apache.lucene.queries.function.ValueSource;
+
+/**
+ * Accumulates a metric for a fixed number of buckets, called slots, while
+ * the documents that match a facet are collected in a single pass.
+ * <p/>
+ * Documents are collected segment by segment: {@link #setNextReader} is
+ * called before the documents of a segment are passed to {@link #collect}
+ * with the slots of the buckets they belong to.
+ */
+public abstract class SlotAcc {
+  protected final FacetContext fcontext;
+
+  protected SlotAcc(FacetContext fcontext) {
+    this.fcontext = fcontext;
+  }
+
+  /** Called before the documents of the given segment are collected. */
+  public void setNextReader(AtomicReaderContext readerContext) throws IOException {
+  }
+
+  /** Add the given document of the current segment to the given slot. */
+  public abstract void collect(int doc, int slot) throws IOException;
+
+  /** Compare the values of two slots, in order to sort buckets by this metric. */
+  public abstract int compare(int slotA, int slotB);
+
+  /**
+   * Return the value of the given slot, or null if it doesn't have any. On
+   * shards, this is the partial value that is merged by the
+   * {@link FacetMerger} of the metric.
+   */
+  public abstract Object getValue(int slot) throws IOException;
+
+  /** Counts the documents of each slot. */
+  static final class CountSlotAcc extends SlotAcc {
+    final int[] counts;
+
+    CountSlotAcc(FacetContext fcontext, int numSlots) {
+      super(fcontext);
+      counts = new int[numSlots];
+    }
+
+    @Override
+    public void collect(int doc, int slot) {
+      counts[slot]++;
+    }
+
+    @Override
+    public int compare(int slotA, int slotB) {
+      return Integer.compare(counts[slotA], counts[slotB]);
+    }
+
+    @Override
+    public Object getValue(int slot) {
+      return (long) counts[slot];
+    }
+  }
+
+  /** Base class for metrics that are computed on the values of a {@link ValueSource}. */
+  abstract static class FuncSlotAcc extends SlotAcc {
+    protected final ValueSource vs;
+    protected FunctionValues values;
+
+    FuncSlotAcc(ValueSource vs, FacetContext fcontext) throws IOException {
+      super(fcontext);
+      this.vs = vs;
+      vs.createWeight(fcontext.qcontext, fcontext.searcher);
+    }
+
+    @Override
+    public void setNextReader(AtomicReaderContext readerContext) throws IOException {
+      values = vs.getValues(fcontext.qcontext, readerContext);
+    }
+  }
+}
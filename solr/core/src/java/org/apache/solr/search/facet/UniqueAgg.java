@@ -0,0 +1,196 @@
+package org.apache.solr.search.facet;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.SentinelIntSet;
+
+/**
+ * <code>unique(field)</code>: the number of distinct values of a field in the
+ * documents of a bucket.
+ * <p/>
+ * Values are tracked as sets of ordinals, which are hash sets as long as they
+ * are sparse and bit sets otherwise, so that memory usage is proportional to
+ * the number of distinct values of each bucket rather than to the number of
+ * distinct values of the field. Shards return the values themselves so that
+ * the sets of all shards can be merged, unless a bucket has more than
+ * {@link #MAX_SHARD_VALUES} values on a shard, in which case only the count
+ * is returned and the merged result is an upper bound: values that several
+ * shards have in common are counted several times.
+ */
+public class UniqueAgg extends AggValueSource {
+  /** Maximum number of values that a shard returns for a bucket. */
+  public static final int MAX_SHARD_VALUES = 10000;
+
+  private final String field;
+
+  public UniqueAgg(String field) {
+    super("unique");
+    this.field = field;
+  }
+
+  @Override
+  public SlotAcc createSlotAcc(FacetContext fcontext, int numSlots) throws IOException {
+    return new UniqueSlotAcc(new FieldOrdinals(fcontext.searcher, field), fcontext, numSlots);
+  }
+
+  @Override
+  public FacetMerger createFacetMerger() {
+    return new FacetMerger() {
+      final Set<Object> values = new HashSet<>();
+      long truncatedCount; // sum of the counts of the shards that didn't return their values
+
+      @Override
+      public void merge(Object shardResult) {
+        if (shardResult instanceof Number) {
+          truncatedCount += ((Number) shardResult).longValue();
+        } else if (shardResult != null) {
+          values.addAll((Collection<?>) shardResult);
+        }
+      }
+
+      @Override
+      public Object getMergedResult() {
+        return values.size() + truncatedCount;
+      }
+    };
+  }
+
+  @Override
+  public String description() {
+    return name + "(" + field + ")";
+  }
+
+  static class UniqueSlotAcc extends SlotAcc {
+    final FieldOrdinals ords;
+    // the ordinals of each slot are in a hash set until it would take more
+    // memory than a bit set, both are allocated on demand
+    final SentinelIntSet[] sparseSets;
+    final FixedBitSet[] bitSets;
+    final int maxSparseSize;
+    int[] cardinalities; // only computed to sort buckets
+
+    UniqueSlotAcc(FieldOrdinals ords, FacetContext fcontext, int numSlots) {
+      super(fcontext);
+      this.ords = ords;
+      sparseSets = new SentinelIntSet[numSlots];
+      bitSets = new FixedBitSet[numSlots];
+      // a bit set takes 1 bit per value of the field while a hash set takes
+      // 4 bytes per entry, with a load factor between 0.375 and 0.75
+      maxSparseSize = ords.getValueCount() >>> 6;
+    }
+
+    @Override
+    public void setNextReader(AtomicReaderContext readerContext) throws IOException {
+      ords.setNextReader(readerContext);
+    }
+
+    @Override
+    public void collect(int doc, int slot) {
+      ords.setDocument(doc);
+      for (int ord = ords.nextOrd(); ord >= 0; ord = ords.nextOrd()) {
+        final FixedBitSet bits = bitSets[slot];
+        if (bits != null) {
+          bits.set(ord);
+          continue;
+        }
+        SentinelIntSet set = sparseSets[slot];
+        if (set == null) {
+          set = sparseSets[slot] = new SentinelIntSet(4, -1);
+        }
+        set.put(ord);
+        if (set.size() > maxSparseSize) {
+          final FixedBitSet newBits = new FixedBitSet(ords.getValueCount());
+          for (int key : set.keys) {
+            if (key != set.emptyVal) {
+              newBits.set(key);
+            }
+          }
+          bitSets[slot] = newBits;
+          sparseSets[slot] = null;
+        }
+      }
+    }
+
+    private int cardinality(int slot) {
+      if (bitSets[slot] != null) {
+        return bitSets[slot].cardinality();
+      }
+      return sparseSets[slot] == null ? 0 : sparseSets[slot].size();
+    }
+
+    /** Return the ordinals of the given slot in ascending order. */
+    private int[] getOrds(int slot) {
+      final FixedBitSet bits = bitSets[slot];
+      if (bits != null) {
+        final int[] result = new int[bits.cardinality()];
+        int i = 0;
+        for (int ord = bits.nextSetBit(0); ord >= 0; ord = ord + 1 < bits.length() ? bits.nextSetBit(ord + 1) : -1) {
+          result[i++] = ord;
+        }
+        return result;
+      }
+      final SentinelIntSet set = sparseSets[slot];
+      if (set == null) {
+        return new int[0];
+      }
+      final int[] result = new int[set.size()];
+      int i = 0;
+      for (int key : set.keys) {
+        if (key != set.emptyVal) {
+          result[i++] = key;
+        }
+      }
+      Arrays.sort(result);
+      return result;
+    }
+
+    @Override
+    public int compare(int slotA, int slotB) {
+      if (cardinalities == null) {
+        cardinalities = new int[bitSets.length];
+        for (int slot = 0; slot < bitSets.length; slot++) {
+          cardinalities[slot] = cardinality(slot);
+        }
+      }
+      return Integer.compare(cardinalities[slotA], cardinalities[slotB]);
+    }
+
+    @Override
+    public Object getValue(int slot) {
+      final int cardinality = cardinality(slot);
+      if (!fcontext.isShard() || cardinality > MAX_SHARD_VALUES) {
+        return (long) cardinality;
+      }
+      final List<String> values = new ArrayList<>(cardinality);
+      for (int ord : getOrds(slot)) {
+        values.add(ords.readableValue(ord));
+      }
+      return values;
+    }
+  }
+}
@@ -0,0 +1,566 @@
+package org.apache.solr.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A cache bounded by the sum of the weights (usually an estimation of the
+ * RAM usage in bytes) of its entries, which uses a frequency sketch to decide
+ * whether new entries are worth keeping (W-TinyLFU, see Einziger, Friedman and
+ * Manes, "TinyLFU: A Highly Efficient Cache Admission Policy").
+ * <p/>
+ * New entries first go to a small LRU window which absorbs bursts. Entries
+ * that are pushed out of the window compete with the least recently used entry
+ * of the main space: the one whose estimated access frequency is the lowest is
+ * evicted, so that entries which are only used once can't flush out the hot
+ * ones. The main space is a segmented LRU made of a probation and a protected
+ * segment.
+ * <p/>
+ * Lookups never block: they only go to the {@link ConcurrentHashMap} and
+ * record the access in one of several striped, lossy buffers. These buffers
+ * are replayed against the eviction policy in batches by whichever thread
+ * manages to acquire the eviction lock. Insertions and removals update the
+ * eviction policy under this lock.
+ *
+ * @lucene.internal
+ */
+public class ConcurrentTinyLFUCache<K,V> {
+
+  /** Computes the weight of entries. */
+  public static interface Weigher<K,V> {
+    /** Return the weight of the given entry, which must be non-negative. */
+    public long weigh(K key, V value);
+  }
+
+  // queues of the eviction policy
+  private static final int NONE = 0, WINDOW = 1, PROBATION = 2, PROTECTED = 3;
+
+  // percentage of the weight that is dedicated to the window and
+  // percentage of the main space that is dedicated to the protected segment
+  private static final double WINDOW_RATIO = 0.01, PROTECTED_RATIO = 0.8;
+
+  private final ConcurrentHashMap<K, Node<K,V>> map;
+  private final Weigher<K,V> weigher;
+  private final long maxWeight, maxWindowWeight, maxProtectedWeight;
+  private final ReadBuffer<K,V>[] readBuffers;
+  private final ReentrantLock evictionLock = new ReentrantLock();
+  private final Stats stats = new Stats();
+  private volatile boolean islive = true;
+
+  // all fields below are guarded by evictionLock
+  private final FrequencySketch sketch;
+  private final Node<K,V> window = new Node<>(null, null, 0);
+  private final Node<K,V> probation = new Node<>(null, null, 0);
+  private final Node<K,V> protectedSegment = new Node<>(null, null, 0);
+  private long windowWeight, protectedWeight;
+
+  /**
+   * Create a new cache.
+   * @param maxWeight the maximum sum of the weights of the entries
+   * @param initialSize the expected number of entries
+   * @param weigher computes the weight of entries
+   */
+  @SuppressWarnings("unchecked")
+  public ConcurrentTinyLFUCache(long maxWeight, int initialSize, Weigher<K,V> weigher) {
+    if (maxWeight < 1) throw new IllegalArgumentException("maxWeight must be > 0");
+    if (initialSize < 0) throw new IllegalArgumentException("initialSize must be >= 0");
+    this.maxWeight = maxWeight;
+    this.maxWindowWeight = Math.max(1L, (long) (maxWeight * WINDOW_RATIO));
+    this.maxProtectedWeight = (long) ((maxWeight - maxWindowWeight) * PROTECTED_RATIO);
+    this.weigher = weigher;
+    this.map = new ConcurrentHashMap<>(initialSize);
+    this.sketch = new FrequencySketch(initialSize);
+    int numBuffers = 1;
+    while (numBuffers < Runtime.getRuntime().availableProcessors() && numBuffers < 64) {
+      numBuffers <<= 1;
+    }
+    readBuffers = new ReadBuffer[numBuffers];
+    for (int i = 0; i < numBuffers; ++i) {
+      readBuffers[i] = new ReadBuffer<>();
+    }
+    for (Node<K,V> sentinel : new Node[] { window, probation, protectedSegment }) {
+      sentinel.prev = sentinel.next = sentinel;
+    }
+  }
+
+  public void setAlive(boolean live) {
+    islive = live;
+  }
+
+  public V get(K key) {
+    Node<K,V> node = map.get(key);
+    if (node == null) {
+      if (islive) stats.missCounter.incrementAndGet();
+      return null;
+    }
+    if (islive) stats.hitCounter.incrementAndGet();
+    ReadBuffer<K,V> buffer = readBuffers[(int) Thread.currentThread().getId() & (readBuffers.length - 1)];
+    if (buffer.offer(node) && evictionLock.tryLock()) {
+      try {
+        drainReadBuffers();
+      } finally {
+        evictionLock.unlock();
+      }
+    }
+    return node.value;
+  }
+
+  public V put(K key, V value) {
+    if (value == null) return null;
+    final long weight = weigher.weigh(key, value);
+    if (weight < 0) {
+      throw new IllegalArgumentException("Weights must be >= 0, got " + weight);
+    }
+    if (islive) {
+      stats.putCounter.incrementAndGet();
+    } else {
+      stats.nonLivePutCounter.incrementAndGet();
+    }
+    final Node<K,V> node = new Node<>(key, value, weight);
+    final Node<K,V> old = map.put(key, node);
+    evictionLock.lock();
+    try {
+      drainReadBuffers();
+      if (old != null) {
+        unlink(old);
+      }
+      sketch.ensureCapacity(map.size());
+      sketch.increment(key);
+      if (map.get(key) == node) { // else a concurrent put or remove beat us
+        if (weight > maxWeight) {
+          // could never be stored along other entries
+          map.remove(key, node);
+          stats.admissionRejectCounter.incrementAndGet();
+        } else {
+          linkLast(window, node, WINDOW);
+          evict();
+        }
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+    return old == null ? null : old.value;
+  }
+
+  public V remove(K key) {
+    Node<K,V> node = map.remove(key);
+    if (node == null) {
+      return null;
+    }
+    evictionLock.lock();
+    try {
+      unlink(node);
+    } finally {
+      evictionLock.unlock();
+    }
+    return node.value;
+  }
+
+  public void clear() {
+    evictionLock.lock();
+    try {
+      drainReadBuffers();
+      map.clear();
+      for (Node<K,V> sentinel : new Node[] { window, probation, protectedSegment }) {
+        while (sentinel.next != sentinel) {
+          unlink(sentinel.next);
+        }
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  public int size() {
+    return map.size();
+  }
+
+  /** Return a weakly consistent, read-only view of the keys of this cache. */
+  public Set<K> keySet() {
+    return Collections.unmodifiableSet(map.keySet());
+  }
+
+  /** Return the sum of the weights of the entries of this cache. */
+  public long weight() {
+    return stats.weight.get();
+  }
+
+  /** Return the maximum sum of the weights of the entries of this cache. */
+  public long maxWeight() {
+    return maxWeight;
+  }
+
+  /**
+   * Return up to <code>n</code> entries, starting with the entries which are
+   * the most likely to be accessed again: entries of the protected segment,
+   * then entries of the window and finally entries of the probation segment,
+   * most recently used first.
+   */
+  public Map<K,V> getHottestItems(int n) {
+    Map<K,V> result = new LinkedHashMap<>();
+    if (n <= 0) {
+      return result;
+    }
+    evictionLock.lock();
+    try {
+      drainReadBuffers();
+      for (Node<K,V> sentinel : new Node[] { protectedSegment, window, probation }) {
+        for (Node<K,V> node = sentinel.prev; node != sentinel; node = node.prev) {
+          result.put(node.key, node.value);
+          if (result.size() >= n) {
+            return result;
+          }
+        }
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+    return result;
+  }
+
+  public Stats getStats() {
+    return stats;
+  }
+
+  /** Replay recorded accesses against the eviction policy. */
+  private void drainReadBuffers() {
+    assert evictionLock.isHeldByCurrentThread();
+    for (ReadBuffer<K,V> buffer : readBuffers) {
+      long head = buffer.readCounter;
+      final long tail = buffer.writeCounter.get();
+      for (; head < tail; ++head) {
+        final int index = (int) head & ReadBuffer.MASK;
+        final Node<K,V> node = buffer.nodes.get(index);
+        if (node == null) {
+          break; // not published yet, will be drained next time
+        }
+        buffer.nodes.lazySet(index, null);
+        onAccess(node);
+      }
+      buffer.readCounter = head;
+    }
+  }
+
+  private void onAccess(Node<K,V> node) {
+    if (node.queue == NONE) {
+      return; // already evicted
+    }
+    sketch.increment(node.key);
+    switch (node.queue) {
+      case WINDOW:
+        moveToEnd(window, node);
+        break;
+      case PROBATION:
+        unlink(node);
+        linkLast(protectedSegment, node, PROTECTED);
+        // demote the least recently used protected entries
+        while (protectedWeight > maxProtectedWeight) {
+          final Node<K,V> demoted = protectedSegment.next;
+          unlink(demoted);
+          linkLast(probation, demoted, PROBATION);
+        }
+        break;
+      case PROTECTED:
+        moveToEnd(protectedSegment, node);
+        break;
+      default:
+        throw new AssertionError();
+    }
+  }
+
+  /** Evict entries until the weight of the cache is less than the maximum weight. */
+  private void evict() {
+    // entries that overflow the window become candidates for the main space
+    Node<K,V> candidate = null;
+    while (windowWeight > maxWindowWeight) {
+      final Node<K,V> node = window.next;
+      unlink(node);
+      linkLast(probation, node, PROBATION);
+      if (candidate == null) {
+        candidate = node;
+      }
+    }
+
+    while (stats.weight.get() > maxWeight) {
+      Node<K,V> victim = probation.next;
+      if (victim == probation) {
+        victim = protectedSegment.next;
+        if (victim == protectedSegment) {
+          victim = window.next;
+        }
+      }
+      assert victim.queue != NONE;
+
+      if (candidate == null || candidate == victim || victim.queue != PROBATION) {
+        if (candidate == victim) {
+          // there is nothing left to compare candidates with
+          candidate = null;
+        }
+        evictEntry(victim, false);
+      } else if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+        evictEntry(victim, false);
+      } else {
+        // the candidate is not accessed more often than the victim: reject it
+        final Node<K,V> next = candidate.next;
+        evictEntry(candidate, true);
+        candidate = next == probation ? null : next;
+      }
+    }
+  }
+
+  private void evictEntry(Node<K,V> node, boolean rejected) {
+    unlink(node);
+    if (map.remove(node.key, node)) {
+      stats.evictionCounter.incrementAndGet();
+      stats.evictedWeight.addAndGet(node.weight);
+      if (rejected) {
+        stats.admissionRejectCounter.incrementAndGet();
+      }
+    }
+  }
+
+  private void linkLast(Node<K,V> sentinel, Node<K,V> node, int queue) {
+    assert node.queue == NONE;
+    node.queue = queue;
+    node.prev = sentinel.prev;
+    node.next = sentinel;
+    sentinel.prev.next = node;
+    sentinel.prev = node;
+    if (queue == WINDOW) {
+      windowWeight += node.weight;
+    } else if (queue == PROTECTED) {
+      protectedWeight += node.weight;
+    }
+    stats.weight.addAndGet(node.weight);
+  }
+
+  private void unlink(Node<K,V> node) {
+    if (node.queue == NONE) {
+      return;
+    }
+    node.prev.next = node.next;
+    node.next.prev = node.prev;
+    node.prev = node.next = null;
+    if (node.queue == WINDOW) {
+      windowWeight -= node.weight;
+    } else if (node.queue == PROTECTED) {
+      protectedWeight -= node.weight;
+    }
+    stats.weight.addAndGet(-node.weight);
+    node.queue = NONE;
+  }
+
+  private void moveToEnd(Node<K,V> sentinel, Node<K,V> node) {
+    node.prev.next = node.next;
+    node.next.prev = node.prev;
+    node.prev = sentinel.prev;
+    node.next = sentinel;
+    sentinel.prev.next = node;
+    sentinel.prev = node;
+  }
+
+  private static final class Node<K,V> {
+    final K key;
+    final V value;
+    final long weight;
+    // guarded by the eviction lock
+    int queue = NONE;
+    Node<K,V> prev, next;
+
+    Node(K key, V value, long weight) {
+      this.key = key;
+      this.value = value;
+      this.weight = weight;
+    }
+  }
+
+  /**
+   * A lossy buffer of accessed nodes: accesses are simply dropped when the
+   * buffer is full or contended since the eviction policy only needs a sample
+   * of them.
+   */
+  private static final class ReadBuffer<K,V> {
+    static final int SIZE = 32, MASK = SIZE - 1;
+
+    final AtomicReferenceArray<Node<K,V>> nodes = new AtomicReferenceArray<>(SIZE);
+    final AtomicLong writeCounter = new AtomicLong();
+    // only written under the eviction lock
+    volatile long readCounter;
+
+    /** Record an access and return true if the buffer should be drained. */
+    boolean offer(Node<K,V> node) {
+      final long tail = writeCounter.get();
+      final long size = tail - readCounter;
+      if (size >= SIZE) {
+        return true;
+      }
+      if (writeCounter.compareAndSet(tail, tail + 1)) {
+        nodes.lazySet((int) tail & MASK, node);
+        return size + 1 >= SIZE / 2;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * A count-min sketch of the access frequencies of keys, with 4-bit counters
+   * which are all halved after a number of increments that is proportional to
+   * the width of the sketch, so that the frequencies of keys that are not used
+   * anymore decay over time.
+   */
+  static final class FrequencySketch {
+    private static final long[] SEEDS = new long[] {
+      0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAX_CAPACITY = 1 << 24;
+
+    private long[] table;
+    private int sampleSize, size;
+
+    FrequencySketch(int expectedSize) {
+      resize(expectedSize);
+    }
+
+    private void resize(int expectedSize) {
+      final int length = Math.max(16, Integer.highestOneBit(Math.min(expectedSize, MAX_CAPACITY) - 1) << 1);
+      table = new long[length];
+      sampleSize = 10 * length;
+      size = 0;
+    }
+
+    /** Grow the sketch if it has fewer counters per row than the number of entries. */
+    void ensureCapacity(int numEntries) {
+      if (numEntries > table.length && table.length < MAX_CAPACITY) {
+        resize(numEntries);
+      }
+    }
+
+    /** Return the estimated frequency of the given key, between 0 and 15. */
+    int frequency(Object key) {
+      final int hash = spread(key.hashCode());
+      final int start = (hash & 3) << 2;
+      int frequency = Integer.MAX_VALUE;
+      for (int i = 0; i < 4; ++i) {
+        final int index = indexOf(hash, i);
+        final int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xFL);
+        frequency = Math.min(frequency, count);
+      }
+      return frequency;
+    }
+
+    /** Increment the frequency of the given key, unless it is already saturated. */
+    void increment(Object key) {
+      final int hash = spread(key.hashCode());
+      final int start = (hash & 3) << 2;
+      boolean added = false;
+      for (int i = 0; i < 4; ++i) {
+        final int index = indexOf(hash, i);
+        final int offset = (start + i) << 2;
+        if (((table[index] >>> offset) & 0xFL) != 0xFL) {
+          table[index] += 1L << offset;
+          added = true;
+        }
+      }
+      if (added && ++size == sampleSize) {
+        reset();
+      }
+    }
+
+    private void reset() {
+      for (int i = 0; i < table.length; ++i) {
+        table[i] = (table[i] >>> 1) & RESET_MASK;
+      }
+      size >>>= 1;
+    }
+
+    private int indexOf(int hash, int i) {
+      long h = (hash + SEEDS[i]) * SEEDS[i];
+      h += h >>> 32;
+      return (int) h & (table.length - 1);
+    }
+
+    private static int spread(int h) {
+      h = ((h >>> 16) ^ h) * 0x45d9f3b;
+      h = ((h >>> 16) ^ h) * 0x45d9f3b;
+      return (h >>> 16) ^ h;
+    }
+  }
+
+  public static class Stats {
+    private final AtomicLong hitCounter = new AtomicLong(),
+            missCounter = new AtomicLong(),
+            putCounter = new AtomicLong(),
+            nonLivePutCounter = new AtomicLong(),
+            evictionCounter = new AtomicLong(),
+            evictedWeight = new AtomicLong(),
+            admissionRejectCounter = new AtomicLong(),
+            weight = new AtomicLong();
+
+    public long getCumulativeLookups() {
+      return hitCounter.get() + missCounter.get();
+    }
+
+    public long getCumulativeHits() {
+      return hitCounter.get();
+    }
+
+    public long getCumulativePuts() {
+      return putCounter.get();
+    }
+
+    public long getCumulativeNonLivePuts() {
+      return nonLivePutCounter.get();
+    }
+
+    public long getCumulativeEvictions() {
+      return evictionCounter.get();
+    }
+
+    /** Return the sum of the weights of the evicted entries. */
+    public long getCumulativeEvictedWeight() {
+      return evictedWeight.get();
+    }
+
+    /** Return the number of entries that were evicted or not stored by the admission policy. */
+    public long getCumulativeAdmissionRejects() {
+      return admissionRejectCounter.get();
+    }
+
+    public long getCurrentWeight() {
+      return weight.get();
+    }
+
+    public void add(Stats other) {
+      hitCounter.addAndGet(other.hitCounter.get());
+      missCounter.addAndGet(other.missCounter.get());
+      putCounter.addAndGet(other.putCounter.get());
+      nonLivePutCounter.addAndGet(other.nonLivePutCounter.get());
+      evictionCounter.addAndGet(other.evictionCounter.get());
+      evictedWeight.addAndGet(other.evictedWeight.get());
+      admissionRejectCounter.addAndGet(other.admissionRejectCounter.get());
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package org.apache.solr.handler.component;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.solr.BaseDistributedSearchTestCase;
+import org.junit.BeforeClass;
+
+/**
+ * Test for the distributed merging of {@link FacetModuleComponent}: requests
+ * that shards can answer exactly must have the same results as a single core.
+ */
+public class DistributedFacetModuleTest extends BaseDistributedSearchTestCase {
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    initCore("solrconfig.xml", "schema11.xml");
+  }
+
+  @Override
+  public void doTest() throws Exception {
+    del("*:*");
+
+    final int numDocs = atLeast(100);
+    for (int i = 0; i < numDocs; i++) {
+      List<Object> fields = new ArrayList<>();
+      fields.add(id);
+      fields.add(i);
+      for (int j = random().nextInt(4); j > 0; j--) {
+        fields.add("cat_ss");
+        fields.add("c" + random().nextInt(20));
+      }
+      if (random().nextInt(10) > 0) {
+        fields.add("seller_s");
+        fields.add("s" + random().nextInt(30));
+      }
+      if (random().nextInt(10) > 0) {
+        fields.add("price_i");
+        fields.add(random().nextInt(1000));
+      }
+      index(fields.toArray());
+    }
+    commit();
+
+    handle.clear();
+    handle.put("QTime", SKIPVAL);
+    handle.put("timestamp", SKIPVAL);
+    handle.put("maxScore", SKIPVAL);
+
+    final String metrics = "sum:'sum(price_i)', avg:'avg(price_i)', mn:'min(price_i)', mx:'max(price_i)', u:'unique(seller_s)'";
+    query("q", "*:*", "rows", "0", "json.facet", "{" + metrics + "}");
+    query("q", "price_i:[100 TO 600]", "rows", "0", "json.facet", "{" + metrics + "}");
+
+    for (String sort : new String[] {"count desc", "index asc", "index desc", "avg desc", "u asc", "mx desc"}) {
+      // shards return all their buckets so that the merged top buckets are exact
+      query("q", "*:*", "rows", "0", "json.facet",
+          "{cats:{terms:{field:'cat_ss', sort:'" + sort + "', offset:2, limit:5, overrequest:1000, facet:{" + metrics + "}}}}");
+    }
+    query("q", "*:*", "rows", "0", "json.facet",
+        "{cats:{terms:{field:'cat_ss', limit:-1, mincount:3, facet:{" +
+            "sellers:{terms:{field:'seller_s', limit:-1, facet:{" + metrics + "}}}," +
+            "cheap:{query:{q:'price_i:[* TO 100]', facet:{" + metrics + "}}}}}}}");
+    query("q", "*:*", "rows", "0", "json.facet",
+        "{prices:{range:{field:'price_i', start:0, end:1000, gap:100, facet:{" + metrics + "," +
+            "cats:{terms:{field:'cat_ss', limit:-1, prefix:'c1'}}}}}}");
+    query("q", "*:*", "rows", "0", "json.facet",
+        "{prices:{range:{field:'price_i', start:250, end:750, gap:100, mincount:5}}}");
+  }
+}
@@ -299,6 +299,62 @@ public class TestFaceting extends SolrTestCaseJ4 {
     }
   }
 
+  @Test
+  public void testPerSegmentMultiValued() {
+    // 3 segments, counts are a=3 b=3 c=4 d=2 e=1
+    assertU(adoc("id", "1", "mv_ws", "a b"));
+    assertU(adoc("id", "2", "mv_ws", "a c"));
+    assertU(adoc("id", "3", "mv_ws", "a"));
+    assertU(adoc("id", "4"));
+    assertU(commit());
+    assertU(adoc("id", "5", "mv_ws", "b c"));
+    assertU(adoc("id", "6", "mv_ws", "b c"));
+    assertU(adoc("id", "7", "mv_ws", "d"));
+    assertU(adoc("id", "8", "mv_ws", "e"));
+    assertU(commit());
+    assertU(adoc("id", "9", "mv_ws", "c"));
+    assertU(adoc("id", "10", "mv_ws", "d e"));
+    assertU(delI("8"));
+    assertU(commit());
+
+    for (String threads : new String[] {"0", "1", "-1"}) {
+      assertQ(req("q", "*:*", "rows", "0", "facet", "true", "facet.field", "mv_ws", "facet.method", "fcs", "facet.threads", threads,
+              "facet.limit", "2", "facet.missing", "true"),
+          "*[count(//lst[@name='mv_ws']/int)=3]",
+          "//lst[@name='mv_ws']/int[1][@name='c'][.='4']",
+          "//lst[@name='mv_ws']/int[2][@name='a'][.='3']",
+          "//lst[@name='mv_ws']/int[3][not(@name)][.='1']");
+
+      assertQ(req("q", "*:*", "rows", "0", "facet", "true", "facet.field", "mv_ws", "facet.method", "fcs", "facet.threads", threads,
+              "facet.limit", "2", "facet.offset", "1"),
+          "*[count(//lst[@name='mv_ws']/int)=2]",
+          "//lst[@name='mv_ws']/int[1][@name='a'][.='3']",
+          "//lst[@name='mv_ws']/int[2][@name='b'][.='3']");
+
+      assertQ(req("q", "*:* -id:9 -id:10", "rows", "0", "facet", "true", "facet.field", "mv_ws", "facet.method", "fcs", "facet.threads", threads,
+              "facet.sort", "index", "facet.mincount", "0"),
+          "*[count(//lst[@name='mv_ws']/int)=5]",
+          "//lst[@name='mv_ws']/int[@name='a'][.='3']",
+          "//lst[@name='mv_ws']/int[@name='b'][.='3']",
+          "//lst[@name='mv_ws']/int[@name='c'][.='3']",
+          "//lst[@name='mv_ws']/int[@name='d'][.='1']",
+          "//lst[@name='mv_ws']/int[5][@name='e'][.='0']");
+
+      assertQ(req("q", "*:*", "rows", "0", "facet", "true", "facet.field", "mv_ws", "facet.method", "fcs", "facet.threads", threads,
+              "facet.mincount", "3"),
+          "*[count(//lst[@name='mv_ws']/int)=3]",
+          "//lst[@name='mv_ws']/int[1][@name='c'][.='4']",
+          "//lst[@name='mv_ws']/int[2][@name='a'][.='3']",
+          "//lst[@name='mv_ws']/int[3][@name='b'][.='3']");
+
+      assertQ(req("q", "*:*", "rows", "0", "facet", "true", "facet.field", "mv_ws", "facet.method", "fcs", "facet.threads", threads,
+              "facet.prefix", "d", "facet.missing", "true"),
+          "*[count(//lst[@name='mv_ws']/int)=2]",
+          "//lst[@name='mv_ws']/int[1][@name='d'][.='2']",
+          "//lst[@name='mv_ws']/int[2][not(@name)][.='1']");
+    }
+  }
+
   @Test
   public void testFacetSortWithMinCount() {
     assertU(adoc("id", "1.0", "f_td", "-420.126"));
@@ -169,6 +169,18 @@ public class QueryEqualityTest extends SolrTestCaseJ4 {
     }
   }
 
+  public void testHashQuery() throws Exception {
+    SolrQueryRequest req = req("keys", "foo_i,bar_l");
+    try {
+      assertQueryEquals("hash", req,
+          "{!hash workers=4 worker=1 partitionKeys=foo_i,bar_l}",
+          "{!hash workers=4 worker=1 partitionKeys='foo_i, bar_l'}",
+          "{!hash workers=4 worker=1 partitionKeys=$keys}");
+    } finally {
+      req.close();
+    }
+  }
+
   public void testQuerySwitch() throws Exception {
     SolrQueryRequest req = req("myXXX", "XXX", 
                                "myField", "foo_s",
@@ -0,0 +1,100 @@
+package org.apache.solr.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.index.StoredDocument;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.util.RefCounted;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestHashQParserPlugin extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig.xml", "schema11.xml");
+  }
+
+  @Test
+  public void testPartitions() throws Exception {
+    clearIndex();
+    final int numDocs = atLeast(200);
+    for (int i = 0; i < numDocs; i++) {
+      if (random().nextInt(10) == 0) {
+        assertU(adoc("id", Integer.toString(i)));
+      } else {
+        assertU(adoc("id", Integer.toString(i), "a_s", "v" + random().nextInt(20), "b_i", Integer.toString(random().nextInt(5))));
+      }
+      if (random().nextInt(50) == 0) {
+        assertU(commit());
+      }
+    }
+    assertU(commit());
+
+    RefCounted<SolrIndexSearcher> searcher = h.getCore().getSearcher();
+    try {
+      for (String keys : new String[] {"a_s", "b_i", "a_s,b_i"}) {
+        final int workers = 1 + random().nextInt(5);
+        // the worker of the documents, and of their values of the keys
+        Map<Integer,Integer> docWorkers = new HashMap<>();
+        Map<String,Integer> keyWorkers = new HashMap<>();
+        for (int worker = 0; worker < workers; worker++) {
+          DocSet docs = getDocSet(searcher.get(), "{!hash workers=" + workers + " worker=" + worker + "}", keys);
+          for (DocIterator it = docs.iterator(); it.hasNext(); ) {
+            final int doc = it.nextDoc();
+            assertNull("document in two partitions", docWorkers.put(doc, worker));
+            StoredDocument document = searcher.get().doc(doc);
+            String key = keys.contains("a_s") ? document.get("a_s") : "";
+            key += "/" + (keys.contains("b_i") ? document.get("b_i") : "");
+            Integer keyWorker = keyWorkers.put(key, worker);
+            assertTrue("key in two partitions: " + key, keyWorker == null || keyWorker == worker);
+          }
+        }
+        assertEquals(numDocs, docWorkers.size());
+      }
+    } finally {
+      searcher.decref();
+    }
+  }
+
+  private static DocSet getDocSet(SolrIndexSearcher searcher, String q, String keys) throws Exception {
+    SolrQueryRequest req = req("partitionKeys", keys);
+    try {
+      return searcher.getDocSet(QParser.getParser(q, null, req).getQuery());
+    } finally {
+      req.close();
+    }
+  }
+
+  @Test
+  public void testErrors() throws Exception {
+    assertQEx("missing workers", req("q", "*:*", "fq", "{!hash worker=0 partitionKeys=a_s}"),
+        SolrException.ErrorCode.BAD_REQUEST);
+    assertQEx("worker out of range", req("q", "*:*", "fq", "{!hash workers=2 worker=2 partitionKeys=a_s}"),
+        SolrException.ErrorCode.BAD_REQUEST);
+    assertQEx("missing keys", req("q", "*:*", "fq", "{!hash workers=2 worker=0}"),
+        SolrException.ErrorCode.BAD_REQUEST);
+    assertQEx("unknown key", req("q", "*:*", "fq", "{!hash workers=2 worker=0 partitionKeys=nope_nope}"),
+        SolrException.ErrorCode.BAD_REQUEST);
+  }
+}
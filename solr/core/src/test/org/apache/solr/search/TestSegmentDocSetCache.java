@@ -0,0 +1,127 @@
+package org.apache.solr.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FuzzyQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MultiTermQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.util.NamedList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for SegmentDocSetCache
+ *
+ * @see org.apache.solr.search.SegmentDocSetCache
+ */
+public class TestSegmentDocSetCache extends SolrTestCaseJ4 {
+
+  // a new core for every test since the filterCache autowarms the queries of previous tests
+  @Before
+  public void createCore() throws Exception {
+    initCore("solrconfig-segmentfiltercache.xml", "schema.xml");
+  }
+
+  @After
+  public void cleanup() throws Exception {
+    deleteCore();
+  }
+
+  private static long stat(String name) {
+    NamedList stats = h.getCore().getSegmentDocSetCache().getStatistics();
+    return ((Number) stats.get(name)).longValue();
+  }
+
+  @Test
+  public void testIsSegmentLocal() {
+    TermQuery term = new TermQuery(new Term("cat_s", "a"));
+    assertTrue(SegmentDocSetCache.isSegmentLocal(term));
+    assertTrue(SegmentDocSetCache.isSegmentLocal(new PrefixQuery(new Term("cat_s", "a"))));
+    BooleanQuery bq = new BooleanQuery();
+    bq.add(term, BooleanClause.Occur.MUST);
+    bq.add(new TermQuery(new Term("cat_s", "b")), BooleanClause.Occur.MUST_NOT);
+    assertTrue(SegmentDocSetCache.isSegmentLocal(bq));
+    bq.add(new WrappedQuery(term), BooleanClause.Occur.SHOULD);
+    assertFalse(SegmentDocSetCache.isSegmentLocal(bq));
+    assertFalse(SegmentDocSetCache.isSegmentLocal(new MatchAllDocsQuery()));
+
+    // top-terms rewrites pick terms across all segments
+    assertFalse(SegmentDocSetCache.isSegmentLocal(new FuzzyQuery(new Term("cat_s", "a"))));
+    PrefixQuery prefix = new PrefixQuery(new Term("cat_s", "a"));
+    prefix.setRewriteMethod(new MultiTermQuery.TopTermsScoringBooleanQueryRewrite(10));
+    assertFalse(SegmentDocSetCache.isSegmentLocal(prefix));
+    prefix.setRewriteMethod(MultiTermQuery.CONSTANT_SCORE_FILTER_REWRITE);
+    assertTrue(SegmentDocSetCache.isSegmentLocal(prefix));
+  }
+
+  @Test
+  public void testReuseAcrossSearchers() throws Exception {
+    assertNotNull(h.getCore().getSegmentDocSetCache());
+    for (int i = 0; i < 10; i++) {
+      assertU(adoc("id", Integer.toString(i), "cat_s", i % 2 == 0 ? "even" : "odd"));
+    }
+    assertU(commit());
+
+    long inserts = stat("inserts");
+    long hits = stat("hits");
+    assertQ(req("q", "*:*", "fq", "cat_s:even"), "//*[@numFound='5']");
+    // a single segment had to be searched
+    assertEquals(inserts + 1, stat("inserts"));
+    assertEquals(hits, stat("hits"));
+
+    // add a new segment and delete a document of the first one
+    assertU(adoc("id", "10", "cat_s", "even"));
+    assertU(delI("0"));
+    assertU(commit());
+
+    // autowarming of the filterCache only searched the new segment
+    assertEquals(inserts + 2, stat("inserts"));
+    assertEquals(hits + 1, stat("hits"));
+    assertQ(req("q", "*:*", "fq", "cat_s:even"), "//*[@numFound='5']");
+    assertQ(req("q", "*:*", "fq", "-cat_s:even"), "//*[@numFound='5']");
+    assertQ(req("q", "*:*", "fq", "cat_s:even", "fq", "id:[1 TO 9]"), "//*[@numFound='4']");
+
+    // queries that depend on other segments are not cached per segment
+    inserts = stat("inserts");
+    assertQ(req("q", "*:*", "fq", "{!frange l=1 u=3}id"), "//*[@numFound='3']");
+    assertEquals(inserts, stat("inserts"));
+  }
+
+  @Test
+  public void testPurgeOnMerge() throws Exception {
+    for (int i = 0; i < 3; i++) {
+      assertU(adoc("id", Integer.toString(i), "cat_s", "merged"));
+      assertU(commit());
+    }
+    assertQ(req("q", "*:*", "fq", "cat_s:merged"), "//*[@numFound='3']");
+    final long numSegments = stat("segments");
+    assertTrue(numSegments >= 3);
+
+    // the entries of merged away segments must be removed
+    assertU(optimize());
+    assertQ(req("q", "*:*", "fq", "cat_s:merged"), "//*[@numFound='3']");
+    assertTrue(stat("segments") < numSegments);
+  }
+}
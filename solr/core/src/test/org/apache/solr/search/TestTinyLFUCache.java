@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.util.ConcurrentTinyLFUCache;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+
+/**
+ * Test for TinyLFUCache
+ *
+ * @see org.apache.solr.search.TinyLFUCache
+ */
+public class TestTinyLFUCache extends LuceneTestCase {
+
+  private static final ConcurrentTinyLFUCache.Weigher<Integer,Integer> UNIT_WEIGHER = new ConcurrentTinyLFUCache.Weigher<Integer,Integer>() {
+    @Override
+    public long weigh(Integer key, Integer value) {
+      return 1;
+    }
+  };
+
+  private static class SizedValue implements Accountable {
+    final long ramBytesUsed;
+
+    SizedValue(long ramBytesUsed) {
+      this.ramBytesUsed = ramBytesUsed;
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return ramBytesUsed;
+    }
+
+    @Override
+    public Iterable<? extends Accountable> getChildResources() {
+      return Collections.emptyList();
+    }
+  }
+
+  public void testSimple() throws IOException {
+    TinyLFUCache<Object, Object> sc = new TinyLFUCache<>();
+    Map<String, String> params = new HashMap<>();
+    params.put("maxRamMB", "1");
+    params.put("initialSize", "10");
+    params.put("autowarmCount", "25");
+    CacheRegenerator cr = new NoOpRegenerator();
+    Object o = sc.init(params, null, cr);
+    sc.setState(SolrCache.State.LIVE);
+    for (int i = 0; i < 100; i++) {
+      sc.put(i + 1, "" + (i + 1));
+    }
+    assertEquals("25", sc.get(25));
+    assertEquals(null, sc.get(110));
+    NamedList<Serializable> nl = sc.getStatistics();
+    assertEquals(2L, nl.get("lookups"));
+    assertEquals(1L, nl.get("hits"));
+    assertEquals(0.5f, nl.get("hitratio"));
+    assertEquals(100L, nl.get("inserts"));
+    assertEquals(0L, nl.get("evictions"));
+    assertEquals(0L, nl.get("evictedBytes"));
+    assertEquals(0L, nl.get("admissionRejects"));
+    assertEquals(100L, nl.get("size"));
+    assertEquals(100 * TinyLFUCache.RAM_WEIGHER.weigh(1, "1"), nl.get("ramBytesUsed"));
+    assertEquals(1024L * 1024, nl.get("maxRamBytes"));
+
+    TinyLFUCache<Object, Object> scNew = new TinyLFUCache<>();
+    scNew.init(params, o, cr);
+    scNew.warm(null, sc);
+    scNew.setState(SolrCache.State.LIVE);
+    sc.close();
+    assertEquals(25, scNew.size());
+    // the only entry which has been looked up must have been regenerated
+    assertEquals("25", scNew.get(25));
+    scNew.put(103, "103");
+    assertEquals(null, scNew.get(110));
+    nl = scNew.getStatistics();
+    assertEquals(2L, nl.get("lookups"));
+    assertEquals(1L, nl.get("hits"));
+    assertEquals(1L, nl.get("inserts"));
+    assertEquals(4L, nl.get("cumulative_lookups"));
+    assertEquals(2L, nl.get("cumulative_hits"));
+    assertEquals(101L, nl.get("cumulative_inserts"));
+    scNew.close();
+  }
+
+  public void testRamBound() throws IOException {
+    TinyLFUCache<Object, Object> sc = new TinyLFUCache<>();
+    Map<String, String> params = new HashMap<>();
+    params.put("maxRamMB", "1");
+    sc.init(params, null, new NoOpRegenerator());
+    sc.setState(SolrCache.State.LIVE);
+    final long maxRamBytes = 1024 * 1024;
+    long insertedBytes = 0;
+    final Random random = random();
+    final int numInserts = atLeast(1000);
+    for (int i = 0; i < numInserts; i++) {
+      final SizedValue value = new SizedValue(random.nextInt(100000));
+      insertedBytes += TinyLFUCache.RAM_WEIGHER.weigh(i, value);
+      sc.put(i, value);
+      if (random.nextBoolean()) {
+        sc.get(random.nextInt(i + 1));
+      }
+      assertTrue((Long) sc.getStatistics().get("ramBytesUsed") <= maxRamBytes);
+    }
+    NamedList<Serializable> nl = sc.getStatistics();
+    assertTrue((Long) nl.get("evictions") > 0);
+    assertEquals(insertedBytes, (long) (Long) nl.get("ramBytesUsed") + (Long) nl.get("evictedBytes"));
+
+    // entries that are larger than the cache are never stored
+    assertNull(sc.put(-1, new SizedValue(2 * maxRamBytes)));
+    assertNull(sc.get(-1));
+    assertEquals((Long) nl.get("admissionRejects") + 1, sc.getStatistics().get("admissionRejects"));
+    sc.close();
+  }
+
+  public void testDocSetSizing() {
+    DocSet small = new SortedIntDocSet(new int[] {1, 5, 42});
+    DocSet large = new BitDocSet(new FixedBitSet(1 << 20));
+    assertEquals(small.memSize(), TinyLFUCache.ramBytesUsed(small));
+    assertEquals(large.memSize(), TinyLFUCache.ramBytesUsed(large));
+    assertTrue(TinyLFUCache.ramBytesUsed(large) > TinyLFUCache.ramBytesUsed(small));
+    assertEquals(TinyLFUCache.DEFAULT_RAM_BYTES_USED, TinyLFUCache.ramBytesUsed("foo"));
+  }
+
+  public void testFrequencyAdmission() {
+    ConcurrentTinyLFUCache<Integer,Integer> cache = new ConcurrentTinyLFUCache<>(100, 100, UNIT_WEIGHER);
+    for (int i = 0; i < 100; i++) {
+      cache.put(i, i);
+    }
+    for (int iter = 0; iter < 5; iter++) {
+      for (int i = 0; i < 100; i++) {
+        assertEquals(Integer.valueOf(i), cache.get(i));
+      }
+    }
+    // a scan of entries which are only used once should not flush out the hot entries
+    for (int i = 1000; i < 2000; i++) {
+      cache.put(i, i);
+      assertTrue(cache.weight() <= 100);
+    }
+    int numHot = 0;
+    for (int i = 0; i < 100; i++) {
+      if (cache.get(i) != null) {
+        numHot++;
+      }
+    }
+    assertTrue("Only " + numHot + " hot entries are still cached", numHot >= 90);
+    assertEquals(100, cache.size());
+    assertTrue(cache.getStats().getCumulativeAdmissionRejects() >= 900);
+    assertEquals(1000, cache.getStats().getCumulativeEvictions());
+    assertEquals(1000, cache.getStats().getCumulativeEvictedWeight());
+  }
+
+  public void testConcurrentAccess() throws Exception {
+    final int maxWeight = 50 + random().nextInt(200);
+    final ConcurrentTinyLFUCache<Integer,Integer> cache = new ConcurrentTinyLFUCache<>(maxWeight, 0, UNIT_WEIGHER);
+    cache.setAlive(true);
+    Thread[] threads = new Thread[2 + random().nextInt(4)];
+    final int numOps = atLeast(10000);
+    for (int t = 0; t < threads.length; t++) {
+      final long seed = random().nextLong();
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          Random random = new Random(seed);
+          for (int i = 0; i < numOps; i++) {
+            // skewed key distribution
+            final int key = random.nextInt(1 + random.nextInt(maxWeight * 4));
+            final Integer value = cache.get(key);
+            if (value == null) {
+              cache.put(key, key);
+            } else {
+              assertEquals(key, value.intValue());
+            }
+            if (random.nextInt(100) == 0) {
+              cache.remove(random.nextInt(maxWeight * 4));
+            }
+          }
+        }
+      };
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(threads.length * (long) numOps, cache.getStats().getCumulativeLookups());
+    assertTrue(cache.size() <= maxWeight);
+    assertEquals(cache.size(), cache.weight());
+    assertEquals(cache.size(), cache.getHottestItems(Integer.MAX_VALUE).size());
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.weight());
+  }
+}
@@ -0,0 +1,165 @@
+package org.apache.solr.search.facet;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.SolrException;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestFacetModule extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig.xml", "schema11.xml");
+  }
+
+  @Before
+  public void indexDocs() throws Exception {
+    clearIndex();
+    assertU(adoc("id", "1", "cat_ss", "a", "cat_ss", "b", "seller_s", "s1", "price_i", "10"));
+    assertU(adoc("id", "2", "cat_ss", "a", "seller_s", "s2", "price_i", "20"));
+    assertU(commit());
+    assertU(adoc("id", "3", "cat_ss", "b", "cat_ss", "c", "seller_s", "s1", "price_i", "50"));
+    assertU(adoc("id", "4", "cat_ss", "a", "cat_ss", "c", "seller_s", "s3", "price_i", "30"));
+    assertU(commit());
+    assertU(adoc("id", "5", "seller_s", "s2", "price_i", "70"));
+    assertU(adoc("id", "6", "cat_ss", "c", "price_i", "40"));
+    assertU(commit());
+  }
+
+  @Test
+  public void testMetrics() throws Exception {
+    assertJQ(req("q", "*:*", "rows", "0",
+            "json.facet", "{sum:'sum(price_i)', mn:'min(price_i)', mx:'max(price_i)', u:'unique(seller_s)'}"),
+        "/facets=={count:6, sum:220.0, mn:10.0, mx:70.0, u:3}");
+
+    // metrics of no documents
+    assertJQ(req("q", "id:6", "rows", "0",
+            "json.facet", "{sum:'sum(price_i)', mn:'min(weight_f)', avg:'avg(weight_f)', u:'unique(seller_s)'}"),
+        "/facets=={count:1, sum:40.0, u:0}");
+
+    assertJQ(req("q", "cat_ss:a", "rows", "0",
+            "json.facet", "{p:'percentile(price_i,0,50,100)', avg:'avg(sum(price_i,1))'}"),
+        "/facets=={count:3, p:[10.0,20.0,30.0], avg:21.0}");
+  }
+
+  @Test
+  public void testTermsFacet() throws Exception {
+    final String metrics = "facet:{sum:'sum(price_i)', avg:'avg(price_i)', u:'unique(seller_s)'}";
+
+    // ties are sorted by index order
+    assertJQ(req("q", "*:*", "rows", "0",
+            "json.facet", "{cats:{terms:{field:'cat_ss', " + metrics + "}}}"),
+        "/facets/cats=={buckets:[" +
+            "{val:'a', count:3, sum:60.0, avg:20.0, u:3}," +
+            "{val:'c', count:3, sum:120.0, avg:40.0, u:2}," +
+            "{val:'b', count:2, sum:60.0, avg:30.0, u:1}]}");
+
+    assertJQ(req("q", "*:*", "rows", "0",
+            "json.facet", "{cats:{terms:{field:'cat_ss', sort:'avg desc', limit:2, " + metrics + "}}}"),
+        "/facets/cats/buckets/[0]/val=='c'",
+        "/facets/cats/buckets/[1]/val=='b'",
+        "/facets/cats/buckets/[2]==null");
+
+    assertJQ(req("q", "*:*", "rows", "0",
+            "json.facet", "{cats:{terms:{field:'cat_ss', sort:'u asc', offset:1, limit:1, " + metrics + "}}}"),
+        "/facets/cats=={buckets:[{val:'c', count:3, sum:120.0, avg:40.0, u:2}]}");
+
+    assertJQ(req("q", "*:*", "rows", "0",
+            "json.facet", "{cats:{type:'terms', field:'cat_ss', sort:'index desc'}}"),
+        "/facets/cats=={buckets:[{val:'c', count:3}, {val:'b', count:2}, {val:'a', count:3}]}");
+
+    assertJQ(req("q", "*:*", "rows", "0",
+            "json.facet", "{cats:{terms:{field:'cat_ss', mincount:3}}, p:{terms:{field:'cat_ss', prefix:'b'}}}"),
+        "/facets=={count:6, cats:{buckets:[{val:'a', count:3}, {val:'c', count:3}]}, p:{buckets:[{val:'b', count:2}]}}");
+
+    // single-valued field and the main query
+    assertJQ(req("q", "price_i:[20 TO *]", "rows", "0",
+            "json.facet", "{sellers:{terms:'seller_s'}}"),
+        "/facets/sellers=={buckets:[{val:'s2', count:2}, {val:'s1', count:1}, {val:'s3', count:1}]}");
+  }
+
+  @Test
+  public void testUniqueSparseAndDense() throws Exception {
+    // enough distinct sellers for small buckets to keep their values in a hash set
+    for (int i = 0; i < 300; i++) {
+      final String cat = i < 2 ? "small" : i < 10 ? "mid" : "big";
+      assertU(adoc("id", Integer.toString(100 + i), "cat_ss", cat, "cat_ss", "all", "seller_s", "u" + (i % 150)));
+    }
+    assertU(commit());
+    assertJQ(req("q", "id:[100 TO *]", "rows", "0",
+            "json.facet", "{cats:{terms:{field:'cat_ss', sort:'u asc', facet:{u:'unique(seller_s)'}}}}"),
+        "/facets/cats=={buckets:[" +
+            "{val:'small', count:2, u:2}," +
+            "{val:'mid', count:8, u:8}," +
+            "{val:'all', count:300, u:150}," +
+            "{val:'big', count:290, u:150}]}");
+  }
+
+  @Test
+  public void testNestedFacets() throws Exception {
+    assertJQ(req("q", "*:*", "rows", "0",
+            "json.facet", "{cats:{terms:{field:'cat_ss', limit:1, facet:{" +
+                "sellers:{terms:{field:'seller_s', facet:{mx:'max(price_i)'}}}," +
+                "cheap:{query:{q:'price_i:[* TO 15]', facet:{sum:'sum(price_i)'}}}}}}}"),
+        "/facets/cats=={buckets:[{val:'a', count:3," +
+            "sellers:{buckets:[{val:'s1', count:1, mx:10.0}, {val:'s2', count:1, mx:20.0}, {val:'s3', count:1, mx:30.0}]}," +
+            "cheap:{count:1, sum:10.0}}]}");
+
+    // buckets with no documents still have their sub-facets
+    assertJQ(req("q", "*:*", "rows", "0",
+            "json.facet", "{c:{query:'cat_ss:c', facet:{sellers:{terms:'seller_s'}, empty:{query:'seller_s:s2'}}}}"),
+        "/facets/c=={count:3, sellers:{buckets:[{val:'s1', count:1}, {val:'s3', count:1}]}, empty:{count:0}}");
+  }
+
+  @Test
+  public void testRangeFacet() throws Exception {
+    assertJQ(req("q", "*:*", "rows", "0",
+            "json.facet", "{prices:{range:{field:'price_i', start:0, end:80, gap:25, facet:{" +
+                "u:'unique(seller_s)', s1:{query:'seller_s:s1'}}}}}"),
+        "/facets/prices=={buckets:[" +
+            "{val:0, count:2, u:2, s1:{count:1}}," +
+            "{val:25, count:2, u:1, s1:{count:0}}," +
+            "{val:50, count:2, u:2, s1:{count:1}}," +
+            "{val:75, count:0, u:0, s1:{count:0}}]}");
+
+    assertJQ(req("q", "*:*", "rows", "0",
+            "json.facet", "{prices:{range:{field:'price_i', start:20, end:80, gap:25, mincount:1}}}"),
+        "/facets/prices=={buckets:[{val:20, count:3}, {val:45, count:1}, {val:70, count:1}]}");
+  }
+
+  @Test
+  public void testErrors() throws Exception {
+    assertQEx("invalid JSON", req("q", "*:*", "json.facet", "{cats:"), SolrException.ErrorCode.BAD_REQUEST);
+    assertQEx("unknown metric", req("q", "*:*", "json.facet", "{x:'foo(price_i)'}"), SolrException.ErrorCode.BAD_REQUEST);
+    assertQEx("unknown field", req("q", "*:*", "json.facet", "{x:{terms:'nope_nope'}}"), SolrException.ErrorCode.BAD_REQUEST);
+    assertQEx("unknown sort", req("q", "*:*", "json.facet", "{x:{terms:{field:'cat_ss', sort:'avg desc'}}}"),
+        SolrException.ErrorCode.BAD_REQUEST);
+    assertQEx("range on a string field", req("q", "*:*", "json.facet",
+        "{x:{range:{field:'seller_s', start:0, end:10, gap:1}}}"), SolrException.ErrorCode.BAD_REQUEST);
+    // single-valued numeric fields are un-inverted to numbers, which have no ordinals
+    assertQEx("terms on a single-valued numeric field", req("q", "*:*", "json.facet", "{x:{terms:'price_i'}}"),
+        SolrException.ErrorCode.BAD_REQUEST);
+    assertQEx("unique on a single-valued numeric field", req("q", "*:*", "json.facet", "{x:'unique(price_i)'}"),
+        SolrException.ErrorCode.BAD_REQUEST);
+    assertQEx("negative gap", req("q", "*:*", "json.facet",
+        "{x:{range:{field:'price_i', start:0, end:10, gap:-1}}}"), SolrException.ErrorCode.BAD_REQUEST);
+  }
+}
@@ -0,0 +1,216 @@
+package org.apache.solr.client.solrj.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.apache.solr.client.solrj.impl.CloudSolrServer;
+import org.apache.solr.common.cloud.ClusterState;
+import org.apache.solr.common.cloud.Replica;
+import org.apache.solr.common.cloud.Slice;
+import org.apache.solr.common.cloud.ZkCoreNodeProps;
+import org.apache.solr.common.cloud.ZkStateReader;
+import org.apache.solr.common.params.CommonParams;
+
+/**
+ * Streams the tuples of a request to all the shards of a collection, merged
+ * in the order of the <code>sort</code> parameter. Each shard is read from a
+ * random active replica.
+ */
+public class CloudSolrStream extends TupleStream {
+
+  static final String TYPE = "cloud";
+
+  protected final String zkHost;
+  protected final String collection;
+  protected final Map<String,String> params;
+  protected final Comparator<Tuple> comp;
+  protected StreamContext streamContext;
+
+  protected CloudSolrServer cloudSolrServer;
+  protected List<TupleStream> solrStreams;
+  private PriorityQueue<TupleWrapper> queue;
+
+  public CloudSolrStream(String zkHost, String collection, Map<String,String> params) {
+    this(zkHost, collection, params, getComparator(params));
+  }
+
+  protected CloudSolrStream(String zkHost, String collection, Map<String,String> params, Comparator<Tuple> comp) {
+    this.zkHost = zkHost;
+    this.collection = collection;
+    this.params = new HashMap<>(params);
+    this.comp = comp;
+  }
+
+  public String getZkHost() {
+    return zkHost;
+  }
+
+  /** The parameters of the requests of this stream. */
+  public Map<String,String> getParams() {
+    return Collections.unmodifiableMap(params);
+  }
+
+  private static Comparator<Tuple> getComparator(Map<String,String> params) {
+    String sort = params.get(CommonParams.SORT);
+    if (sort == null) {
+      throw new IllegalArgumentException("The sort parameter is required to merge the streams of shards");
+    }
+    return FieldComparator.parse(sort);
+  }
+
+  @Override
+  public void setStreamContext(StreamContext context) {
+    this.streamContext = context;
+  }
+
+  @Override
+  public List<TupleStream> children() {
+    return solrStreams == null ? new ArrayList<TupleStream>() : solrStreams;
+  }
+
+  @Override
+  public void open() throws IOException {
+    cloudSolrServer = new CloudSolrServer(zkHost);
+    cloudSolrServer.connect();
+    solrStreams = constructStreams();
+
+    queue = new PriorityQueue<>(Math.max(1, solrStreams.size()), new Comparator<TupleWrapper>() {
+      @Override
+      public int compare(TupleWrapper a, TupleWrapper b) {
+        return comp.compare(a.tuple, b.tuple);
+      }
+    });
+    for (TupleStream solrStream : solrStreams) {
+      if (streamContext != null) {
+        solrStream.setStreamContext(streamContext);
+      }
+      solrStream.open();
+      TupleWrapper wrapper = new TupleWrapper(solrStream);
+      if (wrapper.next()) {
+        queue.add(wrapper);
+      }
+    }
+  }
+
+  /** Create the streams to merge, one per shard of the collection. */
+  protected List<TupleStream> constructStreams() throws IOException {
+    List<TupleStream> streams = new ArrayList<>();
+    for (String url : getReplicaUrls(collection, false)) {
+      streams.add(new SolrStream(url, params));
+    }
+    return streams;
+  }
+
+  /**
+   * Return the URL of a random active replica of each shard of a collection,
+   * or of all of them.
+   */
+  protected List<String> getReplicaUrls(String collectionName, boolean allReplicas) throws IOException {
+    ZkStateReader zkStateReader = cloudSolrServer.getZkStateReader();
+    ClusterState clusterState = zkStateReader.getClusterState();
+    Collection<Slice> slices = clusterState.getActiveSlices(collectionName);
+    if (slices == null) {
+      throw new IOException("Collection not found: " + collectionName);
+    }
+
+    Random random = new Random();
+    List<String> urls = new ArrayList<>();
+    for (Slice slice : slices) {
+      List<String> sliceUrls = new ArrayList<>();
+      for (Replica replica : slice.getReplicas()) {
+        if (clusterState.liveNodesContain(replica.getNodeName())
+            && ZkStateReader.ACTIVE.equals(replica.getStr(ZkStateReader.STATE_PROP))) {
+          sliceUrls.add(new ZkCoreNodeProps(replica).getCoreUrl());
+        }
+      }
+      if (sliceUrls.isEmpty()) {
+        throw new IOException("No active replica for shard " + slice.getName() + " of " + collectionName);
+      }
+      if (allReplicas) {
+        urls.addAll(sliceUrls);
+      } else {
+        urls.add(sliceUrls.get(random.nextInt(sliceUrls.size())));
+      }
+    }
+    Collections.shuffle(urls, random);
+    return urls;
+  }
+
+  @Override
+  public Tuple read() throws IOException {
+    TupleWrapper wrapper = queue.poll();
+    if (wrapper == null) {
+      return Tuple.eof();
+    }
+    final Tuple tuple = wrapper.tuple;
+    if (wrapper.next()) {
+      queue.add(wrapper);
+    }
+    return tuple;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      if (solrStreams != null) {
+        for (TupleStream solrStream : solrStreams) {
+          solrStream.close();
+        }
+      }
+    } finally {
+      if (cloudSolrServer != null) {
+        cloudSolrServer.shutdown();
+      }
+    }
+  }
+
+  @Override
+  public Map<String,Object> toMap() {
+    Map<String,Object> description = StreamParser.describe(TYPE);
+    description.put("zkHost", zkHost);
+    description.put("collection", collection);
+    description.put("params", new LinkedHashMap<String,Object>(params));
+    return description;
+  }
+
+  /** The current tuple of a stream. */
+  private static class TupleWrapper {
+    final TupleStream stream;
+    Tuple tuple;
+
+    TupleWrapper(TupleStream stream) {
+      this.stream = stream;
+    }
+
+    boolean next() throws IOException {
+      tuple = stream.read();
+      return !tuple.EOF;
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package org.apache.solr.client.solrj.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compares tuples by the value of a field. Tuples without the field sort
+ * last, whatever the direction.
+ */
+public class FieldComparator implements Comparator<Tuple> {
+
+  private final String field;
+  private final boolean ascending;
+
+  public FieldComparator(String field, boolean ascending) {
+    this.field = field;
+    this.ascending = ascending;
+  }
+
+  public String getField() {
+    return field;
+  }
+
+  /**
+   * Parse a sort specification such as <code>"year desc, id asc"</code>
+   * into a comparator, as for the <code>sort</code> parameter of the
+   * <code>/export</code> handler.
+   */
+  public static Comparator<Tuple> parse(String sort) {
+    String[] clauses = sort.trim().split("\\s*,\\s*");
+    @SuppressWarnings("unchecked")
+    Comparator<Tuple>[] comps = new Comparator[clauses.length];
+    for (int i = 0; i < clauses.length; i++) {
+      String[] parts = clauses[i].trim().split("\\s+");
+      if (parts.length != 2) {
+        throw new IllegalArgumentException("Invalid sort clause: " + clauses[i]);
+      }
+      final String direction = parts[1].toLowerCase(Locale.ROOT);
+      if (!"asc".equals(direction) && !"desc".equals(direction)) {
+        throw new IllegalArgumentException("Invalid sort direction: " + clauses[i]);
+      }
+      comps[i] = new FieldComparator(parts[0], "asc".equals(direction));
+    }
+    return comps.length == 1 ? comps[0] : new MultiComparator(comps);
+  }
+
+  @Override
+  public int compare(Tuple a, Tuple b) {
+    final Object valueA = a.get(field);
+    final Object valueB = b.get(field);
+    if (valueA == null || valueB == null) {
+      if (valueA == valueB) {
+        return 0;
+      }
+      return valueA == null ? 1 : -1;
+    }
+    final int cmp = compareValues(valueA, valueB);
+    return ascending ? cmp : -cmp;
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  static int compareValues(Object a, Object b) {
+    if (a instanceof Number && b instanceof Number && a.getClass() != b.getClass()) {
+      return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+    }
+    if (a instanceof List && b instanceof List) {
+      // multi-valued fields, by their first differing value
+      List<?> listA = (List<?>) a;
+      List<?> listB = (List<?>) b;
+      for (int i = 0; i < Math.min(listA.size(), listB.size()); i++) {
+        int cmp = compareValues(listA.get(i), listB.get(i));
+        if (cmp != 0) {
+          return cmp;
+        }
+      }
+      return Integer.compare(listA.size(), listB.size());
+    }
+    return ((Comparable) a).compareTo(b);
+  }
+
+  @Override
+  public String toString() {
+    return field + (ascending ? " asc" : " desc");
+  }
+}
@@ -0,0 +1,127 @@
+package org.apache.solr.client.solrj.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Joins a stream with another stream that is read into memory first, on the
+ * values of the <code>joinOn</code> fields. Neither stream needs to be sorted:
+ * the tuples are returned in the order of the first stream, each merged with
+ * every matching tuple of the hashed stream. Tuples with no value for a join
+ * field never match. With a left outer join, the tuples that have no match are
+ * returned as they are.
+ */
+public class HashJoinStream extends TupleStream {
+
+  static final String TYPE = "hashJoin";
+
+  private final TupleStream stream;
+  private final TupleStream hashed;
+  private final String[] joinOn;
+  private final boolean leftOuter;
+
+  private Map<List<Object>,List<Tuple>> hashTable;
+  private LinkedList<Tuple> pending;
+
+  public HashJoinStream(TupleStream stream, TupleStream hashed, String[] joinOn, boolean leftOuter) {
+    this.stream = stream;
+    this.hashed = hashed;
+    this.joinOn = joinOn;
+    this.leftOuter = leftOuter;
+  }
+
+  @Override
+  public void setStreamContext(StreamContext context) {
+    stream.setStreamContext(context);
+    hashed.setStreamContext(context);
+  }
+
+  @Override
+  public List<TupleStream> children() {
+    List<TupleStream> children = new ArrayList<>();
+    children.add(stream);
+    children.add(hashed);
+    return children;
+  }
+
+  @Override
+  public void open() throws IOException {
+    hashTable = new HashMap<>();
+    pending = new LinkedList<>();
+    hashed.open();
+    try {
+      for (Tuple tuple = hashed.read(); !tuple.EOF; tuple = hashed.read()) {
+        List<Object> key = tuple.getValues(joinOn);
+        if (key.contains(null)) {
+          continue;
+        }
+        List<Tuple> tuples = hashTable.get(key);
+        if (tuples == null) {
+          tuples = new ArrayList<>(1);
+          hashTable.put(key, tuples);
+        }
+        tuples.add(tuple);
+      }
+    } finally {
+      hashed.close();
+    }
+    stream.open();
+  }
+
+  @Override
+  public Tuple read() throws IOException {
+    while (pending.isEmpty()) {
+      Tuple tuple = stream.read();
+      if (tuple.EOF) {
+        return tuple;
+      }
+      List<Tuple> matches = hashTable.get(tuple.getValues(joinOn));
+      if (matches != null) {
+        for (Tuple match : matches) {
+          pending.add(tuple.merge(match));
+        }
+      } else if (leftOuter) {
+        return tuple;
+      }
+    }
+    return pending.removeFirst();
+  }
+
+  @Override
+  public void close() throws IOException {
+    hashTable = null;
+    stream.close();
+  }
+
+  @Override
+  public Map<String,Object> toMap() {
+    Map<String,Object> description = StreamParser.describe(TYPE);
+    description.put("stream", stream.toMap());
+    description.put("hashed", hashed.toMap());
+    description.put("joinOn", Arrays.asList(joinOn));
+    description.put("leftOuter", leftOuter);
+    return description;
+  }
+}
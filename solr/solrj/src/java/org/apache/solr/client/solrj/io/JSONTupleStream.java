@@ -0,0 +1,118 @@
+package org.apache.solr.client.solrj.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Map;
+
+import org.noggit.JSONParser;
+import org.noggit.ObjectBuilder;
+
+/**
+ * Incrementally reads the documents of a JSON response one at a time, so
+ * that arbitrarily large responses can be streamed. The documents are the
+ * objects of the first <code>docs</code> or <code>tuples</code> array of the
+ * response, such as the output of the <code>/export</code> handler.
+ */
+class JSONTupleStream {
+  private final Reader reader;
+  private final JSONParser parser;
+  private ObjectBuilder builder;
+  private boolean atDocs;
+  private boolean done;
+
+  JSONTupleStream(Reader reader) {
+    this.reader = reader;
+    this.parser = new JSONParser(reader);
+  }
+
+  /** Return the next document, or null if there are no more documents. */
+  @SuppressWarnings("unchecked")
+  Map<String,Object> next() throws IOException {
+    if (done) {
+      return null;
+    }
+    try {
+      if (!atDocs) {
+        atDocs = true;
+        if (!advanceToDocs()) {
+          done = true;
+          return null;
+        }
+        builder = new ObjectBuilder(parser);
+      }
+      int event = parser.nextEvent();
+      if (event == JSONParser.ARRAY_END) {
+        done = true;
+        return null;
+      }
+      if (event != JSONParser.OBJECT_START) {
+        throw new IOException("Expected a JSON object but got event " + JSONParser.getEventString(event));
+      }
+      return (Map<String,Object>) builder.getVal();
+    } catch (JSONParser.ParseException e) {
+      throw new IOException("Invalid JSON response: " + e.getMessage(), e);
+    }
+  }
+
+  private boolean advanceToDocs() throws IOException {
+    boolean atKey = false;
+    for (;;) {
+      final int event = parser.nextEvent();
+      switch (event) {
+        case JSONParser.ARRAY_START:
+          if (atKey) {
+            return true;
+          }
+          skipArray();
+          break;
+        case JSONParser.STRING:
+          if (parser.wasKey()) {
+            final String key = parser.getString();
+            atKey = "docs".equals(key) || "tuples".equals(key);
+            continue;
+          }
+          break;
+        case JSONParser.EOF:
+          return false;
+        default:
+          break;
+      }
+      atKey = false;
+    }
+  }
+
+  private void skipArray() throws IOException {
+    int depth = 1;
+    while (depth > 0) {
+      final int event = parser.nextEvent();
+      if (event == JSONParser.ARRAY_START) {
+        depth++;
+      } else if (event == JSONParser.ARRAY_END) {
+        depth--;
+      } else if (event == JSONParser.EOF) {
+        return;
+      }
+    }
+  }
+
+  void close() throws IOException {
+    reader.close();
+  }
+}
@@ -0,0 +1,128 @@
+package org.apache.solr.client.solrj.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Joins two streams that are both sorted according to the comparator, which
+ * compares the join fields. Each tuple of the left stream is merged with every
+ * equal tuple of the right stream; only one run of equal right tuples is held
+ * in memory. With a left outer join, the left tuples that have no match are
+ * returned as they are. The tuples are returned in the order of the left stream.
+ */
+public class MergeJoinStream extends TupleStream {
+
+  static final String TYPE = "mergeJoin";
+
+  private final TupleStream left;
+  private final PushBackStream right;
+  private final Comparator<Tuple> comp;
+  private final boolean leftOuter;
+
+  private List<Tuple> group;
+  private LinkedList<Tuple> pending;
+
+  public MergeJoinStream(TupleStream left, TupleStream right, Comparator<Tuple> comp, boolean leftOuter) {
+    this.left = left;
+    this.right = new PushBackStream(right);
+    this.comp = comp;
+    this.leftOuter = leftOuter;
+  }
+
+  @Override
+  public void setStreamContext(StreamContext context) {
+    left.setStreamContext(context);
+    right.setStreamContext(context);
+  }
+
+  @Override
+  public List<TupleStream> children() {
+    List<TupleStream> children = new ArrayList<>();
+    children.add(left);
+    children.add(right);
+    return children;
+  }
+
+  @Override
+  public void open() throws IOException {
+    group = new ArrayList<>();
+    pending = new LinkedList<>();
+    left.open();
+    right.open();
+  }
+
+  @Override
+  public Tuple read() throws IOException {
+    while (pending.isEmpty()) {
+      Tuple tuple = left.read();
+      if (tuple.EOF) {
+        return tuple;
+      }
+      if (group.isEmpty() || comp.compare(tuple, group.get(0)) != 0) {
+        readGroup(tuple);
+      }
+      if (group.isEmpty()) {
+        if (leftOuter) {
+          return tuple;
+        }
+      } else {
+        for (Tuple match : group) {
+          pending.add(tuple.merge(match));
+        }
+      }
+    }
+    return pending.removeFirst();
+  }
+
+  /** Read the run of right tuples that are equal to the given left tuple. */
+  private void readGroup(Tuple tuple) throws IOException {
+    group.clear();
+    Tuple r = right.read();
+    while (!r.EOF && comp.compare(tuple, r) > 0) {
+      r = right.read();
+    }
+    while (!r.EOF && comp.compare(tuple, r) == 0) {
+      group.add(r);
+      r = right.read();
+    }
+    right.pushBack(r);
+  }
+
+  @Override
+  public void close() throws IOException {
+    group = null;
+    left.close();
+    right.close();
+  }
+
+  @Override
+  public Map<String,Object> toMap() {
+    Map<String,Object> description = StreamParser.describe(TYPE);
+    description.put("left", left.toMap());
+    description.put("right", right.toMap());
+    description.put("sort", StreamParser.toSort(comp));
+    description.put("leftOuter", leftOuter);
+    return description;
+  }
+}
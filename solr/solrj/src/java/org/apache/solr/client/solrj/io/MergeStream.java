@@ -0,0 +1,99 @@
+package org.apache.solr.client.solrj.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges two streams that are sorted by the same comparator into a single
+ * sorted stream.
+ */
+public class MergeStream extends TupleStream {
+
+  static final String TYPE = "merge";
+
+  private final PushBackStream streamA;
+  private final PushBackStream streamB;
+  private final Comparator<Tuple> comp;
+
+  public MergeStream(TupleStream streamA, TupleStream streamB, Comparator<Tuple> comp) {
+    this.streamA = new PushBackStream(streamA);
+    this.streamB = new PushBackStream(streamB);
+    this.comp = comp;
+  }
+
+  @Override
+  public void setStreamContext(StreamContext context) {
+    streamA.setStreamContext(context);
+    streamB.setStreamContext(context);
+  }
+
+  @Override
+  public List<TupleStream> children() {
+    List<TupleStream> children = new ArrayList<>();
+    children.add(streamA);
+    children.add(streamB);
+    return children;
+  }
+
+  @Override
+  public void open() throws IOException {
+    streamA.open();
+    streamB.open();
+  }
+
+  @Override
+  public Tuple read() throws IOException {
+    Tuple a = streamA.read();
+    Tuple b = streamB.read();
+    if (a.EOF) {
+      return b;
+    }
+    if (b.EOF) {
+      return a;
+    }
+    if (comp.compare(a, b) <= 0) {
+      streamB.pushBack(b);
+      return a;
+    }
+    streamA.pushBack(a);
+    return b;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      streamA.close();
+    } finally {
+      streamB.close();
+    }
+  }
+
+  @Override
+  public Map<String,Object> toMap() {
+    Map<String,Object> description = StreamParser.describe(TYPE);
+    description.put("streamA", streamA.toMap());
+    description.put("streamB", streamB.toMap());
+    description.put("sort", StreamParser.toSort(comp));
+    return description;
+  }
+}
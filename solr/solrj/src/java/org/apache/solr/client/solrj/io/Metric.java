@@ -0,0 +1,203 @@
+package org.apache.solr.client.solrj.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * An aggregate of the tuples of a bucket of a {@link RollupStream}, such as
+ * <code>sum(price)</code>. A metric is a prototype: each bucket gets a
+ * {@link #newInstance() new instance} that is updated with its tuples.
+ */
+public abstract class Metric {
+
+  /** The name of the field of the value in the tuples of buckets. */
+  public abstract String getName();
+
+  /** Create a new metric of the same type, for another bucket. */
+  public abstract Metric newInstance();
+
+  public abstract void update(Tuple tuple);
+
+  /** The value of the metric, or null if the bucket had no values. */
+  public abstract Object getValue();
+
+  /** The number of tuples. */
+  public static class Count extends Metric {
+    private long count;
+
+    @Override
+    public String getName() {
+      return "count(*)";
+    }
+
+    @Override
+    public Metric newInstance() {
+      return new Count();
+    }
+
+    @Override
+    public void update(Tuple tuple) {
+      count++;
+    }
+
+    @Override
+    public Object getValue() {
+      return count;
+    }
+  }
+
+  /** Base class of the metrics of the numeric values of a field. */
+  abstract static class FieldMetric extends Metric {
+    protected final String field;
+
+    FieldMetric(String field) {
+      this.field = field;
+    }
+
+    @Override
+    public void update(Tuple tuple) {
+      Double value = tuple.getDouble(field);
+      if (value != null) {
+        update(value);
+      }
+    }
+
+    abstract void update(double value);
+  }
+
+  /** The sum of the values of a field. */
+  public static class Sum extends FieldMetric {
+    private double sum;
+
+    public Sum(String field) {
+      super(field);
+    }
+
+    @Override
+    public String getName() {
+      return "sum(" + field + ")";
+    }
+
+    @Override
+    public Metric newInstance() {
+      return new Sum(field);
+    }
+
+    @Override
+    void update(double value) {
+      sum += value;
+    }
+
+    @Override
+    public Object getValue() {
+      return sum;
+    }
+  }
+
+  /** The minimum of the values of a field. */
+  public static class Min extends FieldMetric {
+    private double min = Double.NaN;
+
+    public Min(String field) {
+      super(field);
+    }
+
+    @Override
+    public String getName() {
+      return "min(" + field + ")";
+    }
+
+    @Override
+    public Metric newInstance() {
+      return new Min(field);
+    }
+
+    @Override
+    void update(double value) {
+      if (Double.isNaN(min) || value < min) {
+        min = value;
+      }
+    }
+
+    @Override
+    public Object getValue() {
+      return Double.isNaN(min) ? null : min;
+    }
+  }
+
+  /** The maximum of the values of a field. */
+  public static class Max extends FieldMetric {
+    private double max = Double.NaN;
+
+    public Max(String field) {
+      super(field);
+    }
+
+    @Override
+    public String getName() {
+      return "max(" + field + ")";
+    }
+
+    @Override
+    public Metric newInstance() {
+      return new Max(field);
+    }
+
+    @Override
+    void update(double value) {
+      if (Double.isNaN(max) || value > max) {
+        max = value;
+      }
+    }
+
+    @Override
+    public Object getValue() {
+      return Double.isNaN(max) ? null : max;
+    }
+  }
+
+  /** The mean of the values of a field. */
+  public static class Mean extends FieldMetric {
+    private double sum;
+    private long count;
+
+    public Mean(String field) {
+      super(field);
+    }
+
+    @Override
+    public String getName() {
+      return "avg(" + field + ")";
+    }
+
+    @Override
+    public Metric newInstance() {
+      return new Mean(field);
+    }
+
+    @Override
+    void update(double value) {
+      sum += value;
+      count++;
+    }
+
+    @Override
+    public Object getValue() {
+      return count == 0 ? null : sum / count;
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package org.apache.solr.client.solrj.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Compares tuples with several comparators, the first ones take precedence.
+ */
+public class MultiComparator implements Comparator<Tuple> {
+
+  final Comparator<Tuple>[] comps;
+
+  @SafeVarargs
+  public MultiComparator(Comparator<Tuple>... comps) {
+    this.comps = comps;
+  }
+
+  @Override
+  public int compare(Tuple a, Tuple b) {
+    for (Comparator<Tuple> comp : comps) {
+      int cmp = comp.compare(a, b);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return 0;
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(comps);
+  }
+}
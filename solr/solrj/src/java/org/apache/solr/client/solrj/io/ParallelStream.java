@@ -0,0 +1,113 @@
+package org.apache.solr.client.solrj.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.solr.common.params.CommonParams;
+
+/**
+ * Runs a stream on several worker nodes in parallel and merges their
+ * results. Each worker gets a copy of the stream with its worker id, and the
+ * {@link SolrStream}s of the copies only read the partition of the documents
+ * of their worker when their {@link SolrStream#PARTITION_KEYS} parameter is
+ * set. Partitioning by the fields that a stream groups or joins on makes
+ * each group, and so the whole computation, local to a worker: for example a
+ * {@link RollupStream} over a {@link CloudSolrStream} partitioned by the
+ * rollup fields computes a collection-wide group-by on N workers.
+ * <p/>
+ * Workers are replicas of the <code>workerCollection</code> that serve the
+ * <code>/stream</code> handler. The results of the workers must be sorted by
+ * the given comparator. The stream is sent to the workers as the JSON of its
+ * {@link TupleStream#toMap() description}, so it can only be made of the
+ * streams, field comparators and metrics of this package, and it can only
+ * read from the cluster of the workers.
+ */
+public class ParallelStream extends CloudSolrStream {
+
+  static final String TYPE = "parallel";
+
+  /** The handler that runs streams on workers. */
+  public static final String STREAM_HANDLER = "/stream";
+
+  private final TupleStream tupleStream;
+  private final int workers;
+
+  public ParallelStream(String zkHost, String workerCollection, TupleStream tupleStream, int workers,
+                        Comparator<Tuple> comp) {
+    super(zkHost, workerCollection, new HashMap<String,String>(), comp);
+    if (workers < 1) {
+      throw new IllegalArgumentException("The number of workers must be positive: " + workers);
+    }
+    this.tupleStream = tupleStream;
+    this.workers = workers;
+  }
+
+  @Override
+  public List<TupleStream> children() {
+    List<TupleStream> children = new ArrayList<>();
+    children.add(tupleStream);
+    return children;
+  }
+
+  @Override
+  protected List<TupleStream> constructStreams() throws IOException {
+    List<String> urls = getReplicaUrls(collection, true);
+    if (urls.size() < workers) {
+      throw new IOException("Only " + urls.size() + " replicas of " + collection + " for " + workers + " workers");
+    }
+    final String serialized = serialize(tupleStream);
+    List<TupleStream> streams = new ArrayList<>();
+    for (int workerID = 0; workerID < workers; workerID++) {
+      Map<String,String> workerParams = new HashMap<>();
+      workerParams.put(CommonParams.QT, STREAM_HANDLER);
+      workerParams.put("stream", serialized);
+      workerParams.put("numWorkers", Integer.toString(workers));
+      workerParams.put("workerID", Integer.toString(workerID));
+      streams.add(new SolrStream(urls.get(workerID), workerParams));
+    }
+    return streams;
+  }
+
+  @Override
+  public void open() throws IOException {
+    // the workers set their own stream context
+    streamContext = null;
+    super.open();
+  }
+
+  /** The JSON description of a stream to send to workers, see {@link TupleStream#toMap()}. */
+  static String serialize(TupleStream stream) {
+    return StreamParser.toJSON(stream);
+  }
+
+  /**
+   * Re-create a stream that has been sent to a worker from its description.
+   * The description comes from a request, so only the streams, comparators
+   * and metrics of this package can be created: no class is loaded or
+   * instantiated by name.
+   */
+  public static TupleStream deserialize(String serialized) throws IOException {
+    return StreamParser.parse(serialized);
+  }
+}
@@ -0,0 +1,82 @@
+package org.apache.solr.client.solrj.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A stream that can push back the last tuple it read, for streams that need
+ * to look one tuple ahead.
+ */
+class PushBackStream extends TupleStream {
+
+  private final TupleStream stream;
+  private Tuple pushedBack;
+
+  PushBackStream(TupleStream stream) {
+    this.stream = stream;
+  }
+
+  @Override
+  public void setStreamContext(StreamContext context) {
+    stream.setStreamContext(context);
+  }
+
+  @Override
+  public List<TupleStream> children() {
+    List<TupleStream> children = new ArrayList<>();
+    children.add(stream);
+    return children;
+  }
+
+  @Override
+  public void open() throws IOException {
+    pushedBack = null;
+    stream.open();
+  }
+
+  /** The next call to {@link #read()} will return the given tuple. */
+  void pushBack(Tuple tuple) {
+    assert pushedBack == null;
+    pushedBack = tuple;
+  }
+
+  @Override
+  public Tuple read() throws IOException {
+    if (pushedBack != null) {
+      Tuple tuple = pushedBack;
+      pushedBack = null;
+      return tuple;
+    }
+    return stream.read();
+  }
+
+  @Override
+  public void close() throws IOException {
+    stream.close();
+  }
+
+  @Override
+  public Map<String,Object> toMap() {
+    // pushing back is an implementation detail of the streams that wrap this one
+    return stream.toMap();
+  }
+}
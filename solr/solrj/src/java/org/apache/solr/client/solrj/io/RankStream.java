@@ -0,0 +1,104 @@
+package org.apache.solr.client.solrj.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Returns the top N tuples of a stream according to a comparator, in order.
+ * The stream does not need to be sorted, and only N tuples are held in
+ * memory.
+ */
+public class RankStream extends TupleStream {
+
+  static final String TYPE = "top";
+
+  private final TupleStream stream;
+  private final int size;
+  private final Comparator<Tuple> comp;
+  private LinkedList<Tuple> top;
+
+  public RankStream(TupleStream stream, int size, Comparator<Tuple> comp) {
+    if (size < 1) {
+      throw new IllegalArgumentException("The size must be positive: " + size);
+    }
+    this.stream = stream;
+    this.size = size;
+    this.comp = comp;
+  }
+
+  @Override
+  public void setStreamContext(StreamContext context) {
+    stream.setStreamContext(context);
+  }
+
+  @Override
+  public List<TupleStream> children() {
+    List<TupleStream> children = new ArrayList<>();
+    children.add(stream);
+    return children;
+  }
+
+  @Override
+  public void open() throws IOException {
+    top = null;
+    stream.open();
+  }
+
+  @Override
+  public Tuple read() throws IOException {
+    if (top == null) {
+      // the least competitive tuple at the head of the queue
+      PriorityQueue<Tuple> queue = new PriorityQueue<>(size, Collections.reverseOrder(comp));
+      for (Tuple tuple = stream.read(); !tuple.EOF; tuple = stream.read()) {
+        if (queue.size() < size) {
+          queue.add(tuple);
+        } else if (comp.compare(tuple, queue.peek()) < 0) {
+          queue.poll();
+          queue.add(tuple);
+        }
+      }
+      top = new LinkedList<>();
+      while (!queue.isEmpty()) {
+        top.addFirst(queue.poll());
+      }
+    }
+    return top.isEmpty() ? Tuple.eof() : top.removeFirst();
+  }
+
+  @Override
+  public void close() throws IOException {
+    stream.close();
+  }
+
+  @Override
+  public Map<String,Object> toMap() {
+    Map<String,Object> description = StreamParser.describe(TYPE);
+    description.put("stream", stream.toMap());
+    description.put("size", size);
+    description.put("sort", StreamParser.toSort(comp));
+    return description;
+  }
+}
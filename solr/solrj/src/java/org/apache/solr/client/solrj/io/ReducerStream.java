@@ -0,0 +1,98 @@
+package org.apache.solr.client.solrj.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups the consecutive tuples of a sorted stream that are equal according
+ * to the comparator. Each group is returned as a copy of its first tuple
+ * that holds the fields of all the tuples of the group under
+ * {@link #GROUP_FIELD}, see {@link Tuple#getGroup()}. Groups are held in
+ * memory, so they should be of a reasonable size.
+ */
+public class ReducerStream extends TupleStream {
+
+  static final String TYPE = "reduce";
+
+  /** The field of the tuples of a group. */
+  public static final String GROUP_FIELD = "group";
+
+  private final PushBackStream stream;
+  private final Comparator<Tuple> comp;
+
+  public ReducerStream(TupleStream stream, Comparator<Tuple> comp) {
+    this.stream = new PushBackStream(stream);
+    this.comp = comp;
+  }
+
+  @Override
+  public void setStreamContext(StreamContext context) {
+    stream.setStreamContext(context);
+  }
+
+  @Override
+  public List<TupleStream> children() {
+    List<TupleStream> children = new ArrayList<>();
+    children.add(stream);
+    return children;
+  }
+
+  @Override
+  public void open() throws IOException {
+    stream.open();
+  }
+
+  @Override
+  public Tuple read() throws IOException {
+    final Tuple first = stream.read();
+    if (first.EOF) {
+      return first;
+    }
+    List<Map<String,Object>> group = new ArrayList<>();
+    group.add(first.fields);
+    for (;;) {
+      Tuple tuple = stream.read();
+      if (tuple.EOF || comp.compare(first, tuple) != 0) {
+        stream.pushBack(tuple);
+        break;
+      }
+      group.add(tuple.fields);
+    }
+    Tuple result = first.clone();
+    result.put(GROUP_FIELD, group);
+    return result;
+  }
+
+  @Override
+  public void close() throws IOException {
+    stream.close();
+  }
+
+  @Override
+  public Map<String,Object> toMap() {
+    Map<String,Object> description = StreamParser.describe(TYPE);
+    description.put("stream", stream.toMap());
+    description.put("sort", StreamParser.toSort(comp));
+    return description;
+  }
+}
@@ -0,0 +1,110 @@
+package org.apache.solr.client.solrj.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes metrics for each bucket of a stream that is sorted by the bucket
+ * fields: a group-by that only holds one bucket in memory. Each bucket is
+ * returned as a tuple with the bucket fields and the values of the metrics,
+ * named after {@link Metric#getName()}.
+ */
+public class RollupStream extends TupleStream {
+
+  static final String TYPE = "rollup";
+
+  private final PushBackStream stream;
+  private final String[] buckets;
+  private final Metric[] metrics;
+
+  public RollupStream(TupleStream stream, String[] buckets, Metric[] metrics) {
+    this.stream = new PushBackStream(stream);
+    this.buckets = buckets;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public void setStreamContext(StreamContext context) {
+    stream.setStreamContext(context);
+  }
+
+  @Override
+  public List<TupleStream> children() {
+    List<TupleStream> children = new ArrayList<>();
+    children.add(stream);
+    return children;
+  }
+
+  @Override
+  public void open() throws IOException {
+    stream.open();
+  }
+
+  @Override
+  public Tuple read() throws IOException {
+    Tuple tuple = stream.read();
+    if (tuple.EOF) {
+      return tuple;
+    }
+    final List<Object> bucket = tuple.getValues(buckets);
+    Metric[] bucketMetrics = new Metric[metrics.length];
+    for (int i = 0; i < metrics.length; i++) {
+      bucketMetrics[i] = metrics[i].newInstance();
+    }
+    do {
+      for (Metric metric : bucketMetrics) {
+        metric.update(tuple);
+      }
+      tuple = stream.read();
+    } while (!tuple.EOF && bucket.equals(tuple.getValues(buckets)));
+    stream.pushBack(tuple);
+
+    Map<String,Object> fields = new HashMap<>();
+    for (int i = 0; i < buckets.length; i++) {
+      fields.put(buckets[i], bucket.get(i));
+    }
+    for (Metric metric : bucketMetrics) {
+      fields.put(metric.getName(), metric.getValue());
+    }
+    return new Tuple(fields);
+  }
+
+  @Override
+  public void close() throws IOException {
+    stream.close();
+  }
+
+  @Override
+  public Map<String,Object> toMap() {
+    Map<String,Object> description = StreamParser.describe(TYPE);
+    description.put("stream", stream.toMap());
+    description.put("buckets", Arrays.asList(buckets));
+    List<String> metricNames = new ArrayList<>();
+    for (Metric metric : metrics) {
+      metricNames.add(metric.getName());
+    }
+    description.put("metrics", metricNames);
+    return description;
+  }
+}
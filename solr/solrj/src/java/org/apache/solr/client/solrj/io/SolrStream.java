@@ -0,0 +1,153 @@
+package org.apache.solr.client.solrj.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.HttpSolrServer;
+import org.apache.solr.client.solrj.impl.NoOpResponseParser;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+
+/**
+ * Streams the tuples of a request to a single core, by default from its
+ * <code>/export</code> handler. The <code>qt</code> parameter selects another
+ * handler, such as <code>/stream</code>.
+ * <p/>
+ * When the stream runs on one of several workers, see {@link ParallelStream},
+ * and the {@link #PARTITION_KEYS} parameter is set, only the documents of the
+ * partition of the worker are read: documents are partitioned by the hash of
+ * the values of these fields.
+ */
+public class SolrStream extends TupleStream {
+
+  static final String TYPE = "solr";
+
+  /** The fields whose values partition the documents among workers. */
+  public static final String PARTITION_KEYS = "partitionKeys";
+
+  public static final String DEFAULT_HANDLER = "/export";
+
+  private final String baseUrl;
+  private final Map<String,String> params;
+  private int workerID;
+  private int numWorkers;
+  private HttpSolrServer server;
+  private JSONTupleStream jsonTupleStream;
+
+  /**
+   * @param baseUrl the URL of a core
+   * @param params the parameters of the request: <code>/export</code> requires
+   *        <code>q</code>, <code>fl</code> and <code>sort</code>.
+   */
+  public SolrStream(String baseUrl, Map<String,String> params) {
+    this.baseUrl = baseUrl;
+    this.params = new HashMap<>(params);
+  }
+
+  public String getBaseUrl() {
+    return baseUrl;
+  }
+
+  /** The parameters of the requests of this stream. */
+  public Map<String,String> getParams() {
+    return Collections.unmodifiableMap(params);
+  }
+
+  @Override
+  public void setStreamContext(StreamContext context) {
+    this.workerID = context.workerID;
+    this.numWorkers = context.numWorkers;
+  }
+
+  @Override
+  public List<TupleStream> children() {
+    return new ArrayList<>();
+  }
+
+  @Override
+  public void open() throws IOException {
+    ModifiableSolrParams requestParams = new ModifiableSolrParams();
+    for (Map.Entry<String,String> param : params.entrySet()) {
+      requestParams.set(param.getKey(), param.getValue());
+    }
+    final String handler = requestParams.get(CommonParams.QT, DEFAULT_HANDLER);
+    requestParams.remove(CommonParams.QT);
+    if (numWorkers > 1 && requestParams.get(PARTITION_KEYS) != null) {
+      requestParams.add(CommonParams.FQ, "{!hash workers=" + numWorkers + " worker=" + workerID + "}");
+    }
+
+    // posted since worker requests carry a whole serialized stream
+    QueryRequest request = new QueryRequest(requestParams, SolrRequest.METHOD.POST);
+    request.setPath(handler);
+    request.setResponseParser(new NoOpResponseParser("json"));
+    server = new HttpSolrServer(baseUrl);
+    try {
+      // without a response parser, the raw response is returned to be parsed incrementally
+      InputStream in = (InputStream) server.request(request, null).get("stream");
+      jsonTupleStream = new JSONTupleStream(new InputStreamReader(in, StandardCharsets.UTF_8));
+    } catch (SolrServerException e) {
+      throw new IOException("Unable to stream from " + baseUrl, e);
+    }
+  }
+
+  @Override
+  public Tuple read() throws IOException {
+    Map<String,Object> fields = jsonTupleStream.next();
+    if (fields == null) {
+      return Tuple.eof();
+    }
+    if (fields.containsKey(Tuple.EXCEPTION_FIELD)) {
+      throw new IOException("Error from " + baseUrl + ": " + fields.get(Tuple.EXCEPTION_FIELD));
+    }
+    return new Tuple(fields);
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      if (jsonTupleStream != null) {
+        jsonTupleStream.close();
+      }
+    } finally {
+      if (server != null) {
+        server.shutdown();
+      }
+    }
+  }
+
+  @Override
+  public Map<String,Object> toMap() {
+    Map<String,Object> description = StreamParser.describe(TYPE);
+    description.put("baseUrl", baseUrl);
+    description.put("params", new LinkedHashMap<String,Object>(params));
+    return description;
+  }
+}
@@ -0,0 +1,40 @@
+package org.apache.solr.client.solrj.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The context in which a stream runs. {@link ParallelStream} gives each
+ * worker its id and the number of workers, so that the streams that read from
+ * Solr only read the partition of the documents of their worker.
+ */
+public class StreamContext {
+  public int workerID;
+  public int numWorkers;
+  private final Map<Object,Object> entries = new HashMap<>();
+
+  public Object get(Object key) {
+    return entries.get(key);
+  }
+
+  public void put(Object key, Object value) {
+    entries.put(key, value);
+  }
+}
@@ -0,0 +1,213 @@
+package org.apache.solr.client.solrj.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.noggit.JSONParser;
+import org.noggit.JSONUtil;
+import org.noggit.ObjectBuilder;
+
+/**
+ * Writes the {@link TupleStream#toMap() descriptions} of streams as JSON and
+ * re-creates streams from them. Descriptions come from requests, so parsing
+ * only ever builds plain JSON values and then the streams, comparators and
+ * metrics of this package: comparators are described by their sort
+ * specification, see {@link FieldComparator#parse(String)}, and metrics by
+ * their {@link Metric#getName() name}.
+ */
+final class StreamParser {
+
+  static final String TYPE = "type";
+
+  private StreamParser() {}
+
+  /** A new description of a stream of the given type. */
+  static Map<String,Object> describe(String type) {
+    Map<String,Object> description = new LinkedHashMap<>();
+    description.put(TYPE, type);
+    return description;
+  }
+
+  /** The sort specification of a comparator, which must be made of {@link FieldComparator}s. */
+  static String toSort(Comparator<Tuple> comp) {
+    if (comp instanceof FieldComparator) {
+      return comp.toString();
+    }
+    if (comp instanceof MultiComparator) {
+      StringBuilder sort = new StringBuilder();
+      for (Comparator<Tuple> c : ((MultiComparator) comp).comps) {
+        if (sort.length() > 0) {
+          sort.append(',');
+        }
+        sort.append(toSort(c));
+      }
+      return sort.toString();
+    }
+    throw new IllegalArgumentException("Only field comparators can be described: " + comp);
+  }
+
+  static String toJSON(TupleStream stream) {
+    return JSONUtil.toJSON(stream.toMap(), -1);
+  }
+
+  static TupleStream parse(String json) throws IOException {
+    final Object description;
+    try {
+      description = ObjectBuilder.fromJSON(json);
+    } catch (JSONParser.ParseException e) {
+      throw new IOException("Invalid stream: " + e.getMessage(), e);
+    }
+    try {
+      return parseStream(description);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Invalid stream: " + e.getMessage(), e);
+    }
+  }
+
+  private static TupleStream parseStream(Object value) throws IOException {
+    if (!(value instanceof Map)) {
+      throw new IOException("Invalid stream, expected an object: " + value);
+    }
+    @SuppressWarnings("unchecked")
+    Map<String,Object> description = (Map<String,Object>) value;
+    final String type = getString(description, TYPE);
+    switch (type) {
+      case SolrStream.TYPE:
+        return new SolrStream(getString(description, "baseUrl"), getParams(description));
+      case CloudSolrStream.TYPE:
+        return new CloudSolrStream(getString(description, "zkHost"), getString(description, "collection"),
+            getParams(description));
+      case ParallelStream.TYPE:
+        return new ParallelStream(getString(description, "zkHost"), getString(description, "collection"),
+            parseStream(description.get("stream")), getInt(description, "workers"), getComparator(description));
+      case MergeStream.TYPE:
+        return new MergeStream(parseStream(description.get("streamA")), parseStream(description.get("streamB")),
+            getComparator(description));
+      case UniqueStream.TYPE:
+        return new UniqueStream(parseStream(description.get("stream")), getComparator(description));
+      case ReducerStream.TYPE:
+        return new ReducerStream(parseStream(description.get("stream")), getComparator(description));
+      case RankStream.TYPE:
+        return new RankStream(parseStream(description.get("stream")), getInt(description, "size"),
+            getComparator(description));
+      case RollupStream.TYPE: {
+        List<String> metricNames = getStrings(description, "metrics");
+        Metric[] metrics = new Metric[metricNames.size()];
+        for (int i = 0; i < metrics.length; i++) {
+          metrics[i] = parseMetric(metricNames.get(i));
+        }
+        List<String> buckets = getStrings(description, "buckets");
+        return new RollupStream(parseStream(description.get("stream")), buckets.toArray(new String[buckets.size()]),
+            metrics);
+      }
+      case HashJoinStream.TYPE: {
+        List<String> joinOn = getStrings(description, "joinOn");
+        return new HashJoinStream(parseStream(description.get("stream")), parseStream(description.get("hashed")),
+            joinOn.toArray(new String[joinOn.size()]), getBoolean(description, "leftOuter"));
+      }
+      case MergeJoinStream.TYPE:
+        return new MergeJoinStream(parseStream(description.get("left")), parseStream(description.get("right")),
+            getComparator(description), getBoolean(description, "leftOuter"));
+      default:
+        throw new IOException("Unknown stream type: " + type);
+    }
+  }
+
+  /** Parse the {@link Metric#getName() name} of a metric. */
+  static Metric parseMetric(String name) throws IOException {
+    if ("count(*)".equals(name)) {
+      return new Metric.Count();
+    }
+    final int open = name.indexOf('(');
+    if (open <= 0 || !name.endsWith(")") || open + 2 >= name.length()) {
+      throw new IOException("Invalid metric: " + name);
+    }
+    final String field = name.substring(open + 1, name.length() - 1);
+    switch (name.substring(0, open)) {
+      case "sum":
+        return new Metric.Sum(field);
+      case "min":
+        return new Metric.Min(field);
+      case "max":
+        return new Metric.Max(field);
+      case "avg":
+        return new Metric.Mean(field);
+      default:
+        throw new IOException("Unknown metric: " + name);
+    }
+  }
+
+  private static Object get(Map<String,Object> description, String key, Class<?> clazz) throws IOException {
+    Object value = description.get(key);
+    if (!clazz.isInstance(value)) {
+      throw new IOException("Invalid stream " + description.get(TYPE) + ", " + key + " is not a "
+          + clazz.getSimpleName() + ": " + value);
+    }
+    return value;
+  }
+
+  private static String getString(Map<String,Object> description, String key) throws IOException {
+    return (String) get(description, key, String.class);
+  }
+
+  private static int getInt(Map<String,Object> description, String key) throws IOException {
+    long value = (Long) get(description, key, Long.class);
+    if (value != (int) value) {
+      throw new IOException("Invalid stream " + description.get(TYPE) + ", " + key + " is out of range: " + value);
+    }
+    return (int) value;
+  }
+
+  private static boolean getBoolean(Map<String,Object> description, String key) throws IOException {
+    return (Boolean) get(description, key, Boolean.class);
+  }
+
+  private static Comparator<Tuple> getComparator(Map<String,Object> description) throws IOException {
+    return FieldComparator.parse(getString(description, "sort"));
+  }
+
+  private static List<String> getStrings(Map<String,Object> description, String key) throws IOException {
+    List<String> strings = new ArrayList<>();
+    for (Object value : (List<?>) get(description, key, List.class)) {
+      if (!(value instanceof String)) {
+        throw new IOException("Invalid stream " + description.get(TYPE) + ", " + key + " has a non string value: "
+            + value);
+      }
+      strings.add((String) value);
+    }
+    return strings;
+  }
+
+  private static Map<String,String> getParams(Map<String,Object> description) throws IOException {
+    Map<String,String> params = new LinkedHashMap<>();
+    for (Map.Entry<?,?> param : ((Map<?,?>) get(description, "params", Map.class)).entrySet()) {
+      if (!(param.getValue() instanceof String)) {
+        throw new IOException("Invalid stream " + description.get(TYPE) + ", parameter " + param.getKey()
+            + " is not a string: " + param.getValue());
+      }
+      params.put((String) param.getKey(), (String) param.getValue());
+    }
+    return params;
+  }
+}
@@ -0,0 +1,126 @@
+package org.apache.solr.client.solrj.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A record of a {@link TupleStream}: a map of field names to values. Values
+ * are Strings, Longs, Doubles or Lists of them, as read from the
+ * <code>/export</code> handler.
+ * <p/>
+ * The last tuple of a stream is an EOF tuple, see {@link #EOF}.
+ */
+public class Tuple implements Cloneable, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /** The field that marks the end of a stream. */
+  public static final String EOF_FIELD = "EOF";
+
+  /** The field that carries the error of a remote stream. */
+  public static final String EXCEPTION_FIELD = "EXCEPTION";
+
+  /** Whether this is the end of the stream, in which case there are no other fields. */
+  public final boolean EOF;
+
+  public final Map<String,Object> fields;
+
+  public Tuple(Map<String,Object> fields) {
+    this.fields = fields;
+    this.EOF = fields.containsKey(EOF_FIELD);
+  }
+
+  /** Create the tuple that marks the end of a stream. */
+  public static Tuple eof() {
+    Map<String,Object> fields = new HashMap<>();
+    fields.put(EOF_FIELD, true);
+    return new Tuple(fields);
+  }
+
+  public Object get(String field) {
+    return fields.get(field);
+  }
+
+  public void put(String field, Object value) {
+    fields.put(field, value);
+  }
+
+  public String getString(String field) {
+    Object value = fields.get(field);
+    return value == null ? null : value.toString();
+  }
+
+  public Long getLong(String field) {
+    Object value = fields.get(field);
+    if (value == null || value instanceof Long) {
+      return (Long) value;
+    }
+    return value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString());
+  }
+
+  public Double getDouble(String field) {
+    Object value = fields.get(field);
+    if (value == null || value instanceof Double) {
+      return (Double) value;
+    }
+    return value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(value.toString());
+  }
+
+  @SuppressWarnings("unchecked")
+  public List<String> getStrings(String field) {
+    return (List<String>) fields.get(field);
+  }
+
+  /** The tuples of a group, see {@link ReducerStream}. */
+  @SuppressWarnings("unchecked")
+  public List<Map<String,Object>> getGroup() {
+    return (List<Map<String,Object>>) fields.get(ReducerStream.GROUP_FIELD);
+  }
+
+  /** A shallow copy of this tuple. */
+  @Override
+  public Tuple clone() {
+    return new Tuple(new HashMap<>(fields));
+  }
+
+  /** Return a new tuple with the fields of both tuples, the ones of <code>other</code> win. */
+  public Tuple merge(Tuple other) {
+    Tuple merged = clone();
+    merged.fields.putAll(other.fields);
+    return merged;
+  }
+
+  /** Return the values of the given fields. */
+  public List<Object> getValues(String[] fieldNames) {
+    List<Object> values = new ArrayList<>(fieldNames.length);
+    for (String fieldName : fieldNames) {
+      values.add(fields.get(fieldName));
+    }
+    return values;
+  }
+
+  @Override
+  public String toString() {
+    return fields.toString();
+  }
+}
@@ -0,0 +1,55 @@
+package org.apache.solr.client.solrj.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A stream of {@link Tuple}s. Streams are usually sorted and are composed by
+ * wrapping each other: for example a {@link UniqueStream} over a
+ * {@link CloudSolrStream} that merges the sorted results of the
+ * <code>/export</code> handler of all the shards of a collection.
+ * <p/>
+ * A {@link ParallelStream} sends streams to worker nodes as the JSON of their
+ * {@link #toMap() description}, from which each worker re-creates them. Only
+ * the streams, comparators and metrics of this package can be re-created.
+ */
+public abstract class TupleStream {
+
+  /** Set the context of this stream, before it is opened. Must be passed on to the child streams. */
+  public abstract void setStreamContext(StreamContext context);
+
+  /** The streams that this stream reads from. */
+  public abstract List<TupleStream> children();
+
+  public abstract void open() throws IOException;
+
+  /** Return the next tuple, or an EOF tuple at the end of the stream and on any later call. */
+  public abstract Tuple read() throws IOException;
+
+  public abstract void close() throws IOException;
+
+  /**
+   * Describe this stream, before it is opened, with maps, lists, strings,
+   * numbers and booleans: its <code>type</code>, its parameters and the
+   * descriptions of the streams it reads from.
+   */
+  public abstract Map<String,Object> toMap();
+}
@@ -0,0 +1,85 @@
+package org.apache.solr.client.solrj.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Removes the duplicates of a sorted stream: only the first tuple of each run
+ * of tuples that are equal according to the comparator is returned. The
+ * comparator is usually on the fields the stream is sorted by.
+ */
+public class UniqueStream extends TupleStream {
+
+  static final String TYPE = "unique";
+
+  private final TupleStream stream;
+  private final Comparator<Tuple> comp;
+  private Tuple last;
+
+  public UniqueStream(TupleStream stream, Comparator<Tuple> comp) {
+    this.stream = stream;
+    this.comp = comp;
+  }
+
+  @Override
+  public void setStreamContext(StreamContext context) {
+    stream.setStreamContext(context);
+  }
+
+  @Override
+  public List<TupleStream> children() {
+    List<TupleStream> children = new ArrayList<>();
+    children.add(stream);
+    return children;
+  }
+
+  @Override
+  public void open() throws IOException {
+    last = null;
+    stream.open();
+  }
+
+  @Override
+  public Tuple read() throws IOException {
+    for (;;) {
+      Tuple tuple = stream.read();
+      if (tuple.EOF || last == null || comp.compare(last, tuple) != 0) {
+        last = tuple;
+        return tuple;
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    stream.close();
+  }
+
+  @Override
+  public Map<String,Object> toMap() {
+    Map<String,Object> description = StreamParser.describe(TYPE);
+    description.put("stream", stream.toMap());
+    description.put("sort", StreamParser.toSort(comp));
+    return description;
+  }
+}
@@ -0,0 +1,288 @@
+package org.apache.solr.client.solrj.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.lucene.util.LuceneTestCase.Slow;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.impl.HttpSolrServer;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.cloud.AbstractFullDistribZkTestBase;
+import org.apache.solr.cloud.AbstractZkTestCase;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.junit.Before;
+import org.junit.BeforeClass;
+
+/**
+ * Tests the streams over a collection of several shards, and in parallel on
+ * several workers, against the same computation over the indexed documents
+ * in memory.
+ */
+@Slow
+public class StreamingTest extends AbstractFullDistribZkTestBase {
+
+  private static final String SOLR_HOME = getFile("solrj" + File.separator + "solr").getAbsolutePath();
+
+  private final List<Map<String,Object>> docs = new ArrayList<>();
+
+  @BeforeClass
+  public static void beforeSuperClass() {
+    AbstractZkTestCase.SOLRHOME = new File(SOLR_HOME);
+  }
+
+  public StreamingTest() {
+    super();
+    schemaString = "schema-streaming.xml";
+    sliceCount = 2;
+    shardCount = 3;
+  }
+
+  @Override
+  protected String getCloudSolrConfig() {
+    return "solrconfig-streaming.xml";
+  }
+
+  @Override
+  public String getSolrHome() {
+    return SOLR_HOME;
+  }
+
+  @Before
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    System.setProperty("numShards", Integer.toString(sliceCount));
+  }
+
+  @Override
+  public void doTest() throws Exception {
+    waitForRecoveriesToFinish(false);
+    del("*:*");
+    final int numDocs = atLeast(100);
+    for (int i = 0; i < numDocs; i++) {
+      Map<String,Object> doc = new HashMap<>();
+      doc.put("id", Integer.toString(i));
+      doc.put("a_s", "s" + random().nextInt(10));
+      doc.put("a_i", random().nextInt(1000));
+      doc.put("a_f", (float) random().nextInt(100));
+      docs.add(doc);
+      index("id", doc.get("id"), "a_s", doc.get("a_s"), "a_i", doc.get("a_i"), "a_f", doc.get("a_f"));
+    }
+    commit();
+
+    testMerge();
+    testRollup();
+    testParallelRollup();
+    testUntrustedStreams();
+  }
+
+  private Map<String,String> params(String q, String sort) {
+    Map<String,String> params = new HashMap<>();
+    params.put("q", q);
+    params.put("fl", "id,a_s,a_i,a_f");
+    params.put("sort", sort);
+    return params;
+  }
+
+  private static List<Tuple> readAll(TupleStream stream) throws IOException {
+    List<Tuple> tuples = new ArrayList<>();
+    stream.open();
+    try {
+      for (Tuple tuple = stream.read(); !tuple.EOF; tuple = stream.read()) {
+        tuples.add(tuple);
+      }
+    } finally {
+      stream.close();
+    }
+    return tuples;
+  }
+
+  /** The ids of the documents that match a filter, sorted by a_s asc, a_i desc, id asc. */
+  private List<Object> sortedIds(int minA_i) {
+    List<Map<String,Object>> matches = new ArrayList<>();
+    for (Map<String,Object> doc : docs) {
+      if ((Integer) doc.get("a_i") >= minA_i) {
+        matches.add(doc);
+      }
+    }
+    Collections.sort(matches, new Comparator<Map<String,Object>>() {
+      @Override
+      public int compare(Map<String,Object> a, Map<String,Object> b) {
+        int cmp = ((String) a.get("a_s")).compareTo((String) b.get("a_s"));
+        if (cmp == 0) {
+          cmp = Integer.compare((Integer) b.get("a_i"), (Integer) a.get("a_i"));
+        }
+        if (cmp == 0) {
+          cmp = ((String) a.get("id")).compareTo((String) b.get("id"));
+        }
+        return cmp;
+      }
+    });
+    List<Object> ids = new ArrayList<>();
+    for (Map<String,Object> doc : matches) {
+      ids.add(doc.get("id"));
+    }
+    return ids;
+  }
+
+  private static List<Object> ids(List<Tuple> tuples) {
+    List<Object> ids = new ArrayList<>();
+    for (Tuple tuple : tuples) {
+      ids.add(tuple.get("id"));
+    }
+    return ids;
+  }
+
+  private void testMerge() throws Exception {
+    final String sort = "a_s asc,a_i desc,id asc";
+    final String zkHost = zkServer.getZkAddress();
+
+    // the sorted streams of the shards are merged
+    List<Tuple> tuples = readAll(new CloudSolrStream(zkHost, DEFAULT_COLLECTION, params("*:*", sort)));
+    assertEquals(sortedIds(0), ids(tuples));
+
+    // as are two sorted streams of the collection
+    TupleStream merged = new MergeStream(
+        new CloudSolrStream(zkHost, DEFAULT_COLLECTION, params("a_i:[0 TO 499]", sort)),
+        new CloudSolrStream(zkHost, DEFAULT_COLLECTION, params("a_i:[500 TO *]", sort)),
+        FieldComparator.parse(sort));
+    assertEquals(sortedIds(0), ids(readAll(merged)));
+
+    tuples = readAll(new CloudSolrStream(zkHost, DEFAULT_COLLECTION, params("a_i:[500 TO *]", sort)));
+    assertEquals(sortedIds(500), ids(tuples));
+  }
+
+  /** The expected buckets of a rollup by a_s, in the order of a_s. */
+  private List<Map<String,Object>> expectedRollup() {
+    Map<String,double[]> buckets = new TreeMap<>();
+    for (Map<String,Object> doc : docs) {
+      double[] bucket = buckets.get(doc.get("a_s"));
+      if (bucket == null) {
+        bucket = new double[] {0, 0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        buckets.put((String) doc.get("a_s"), bucket);
+      }
+      final int a_i = (Integer) doc.get("a_i");
+      final float a_f = (Float) doc.get("a_f");
+      bucket[0]++;
+      bucket[1] += a_i;
+      bucket[2] = Math.min(bucket[2], a_f);
+      bucket[3] = Math.max(bucket[3], a_f);
+    }
+    List<Map<String,Object>> expected = new ArrayList<>();
+    for (Map.Entry<String,double[]> bucket : buckets.entrySet()) {
+      Map<String,Object> fields = new HashMap<>();
+      fields.put("a_s", bucket.getKey());
+      fields.put("count(*)", (long) bucket.getValue()[0]);
+      fields.put("sum(a_i)", bucket.getValue()[1]);
+      fields.put("min(a_f)", bucket.getValue()[2]);
+      fields.put("max(a_f)", bucket.getValue()[3]);
+      fields.put("avg(a_i)", bucket.getValue()[1] / bucket.getValue()[0]);
+      expected.add(fields);
+    }
+    return expected;
+  }
+
+  private static TupleStream rollup(TupleStream stream) {
+    return new RollupStream(stream, new String[] {"a_s"},
+        new Metric[] {new Metric.Count(), new Metric.Sum("a_i"), new Metric.Min("a_f"), new Metric.Max("a_f"),
+            new Metric.Mean("a_i")});
+  }
+
+  private static void assertRollup(List<Map<String,Object>> expected, List<Tuple> tuples) {
+    assertEquals(expected.size(), tuples.size());
+    for (int i = 0; i < expected.size(); i++) {
+      Map<String,Object> bucket = expected.get(i);
+      Tuple tuple = tuples.get(i);
+      assertEquals(bucket.get("a_s"), tuple.getString("a_s"));
+      assertEquals(bucket.get("count(*)"), tuple.getLong("count(*)"));
+      for (String metric : new String[] {"sum(a_i)", "min(a_f)", "max(a_f)", "avg(a_i)"}) {
+        assertEquals(metric, (Double) bucket.get(metric), tuple.getDouble(metric), 1e-6);
+      }
+    }
+  }
+
+  private void testRollup() throws Exception {
+    TupleStream stream = rollup(
+        new CloudSolrStream(zkServer.getZkAddress(), DEFAULT_COLLECTION, params("*:*", "a_s asc")));
+    assertRollup(expectedRollup(), readAll(stream));
+  }
+
+  private void testParallelRollup() throws Exception {
+    Map<String,String> params = params("*:*", "a_s asc");
+    params.put(SolrStream.PARTITION_KEYS, "a_s");
+    final String zkHost = zkServer.getZkAddress();
+    // each worker rolls up the buckets of its partition of the whole collection
+    TupleStream stream = new ParallelStream(zkHost, DEFAULT_COLLECTION,
+        rollup(new CloudSolrStream(zkHost, DEFAULT_COLLECTION, params)), 2, FieldComparator.parse("a_s asc"));
+    assertRollup(expectedRollup(), readAll(stream));
+
+    // and only reads the documents of its partition
+    Map<String,String> partitioned = params("*:*", "a_s asc,a_i desc,id asc");
+    partitioned.put(SolrStream.PARTITION_KEYS, "a_s");
+    stream = new ParallelStream(zkHost, DEFAULT_COLLECTION,
+        new CloudSolrStream(zkHost, DEFAULT_COLLECTION, partitioned), 2,
+        FieldComparator.parse("a_s asc,a_i desc,id asc"));
+    assertEquals(sortedIds(0), ids(readAll(stream)));
+  }
+
+  private void assertRejected(TupleStream stream) throws Exception {
+    ModifiableSolrParams params = new ModifiableSolrParams();
+    params.set("stream", ParallelStream.serialize(stream));
+    QueryRequest request = new QueryRequest(params, SolrRequest.METHOD.POST);
+    request.setPath(ParallelStream.STREAM_HANDLER);
+    try {
+      clients.get(0).request(request);
+      fail("ran an untrusted stream: " + stream.toMap());
+    } catch (SolrException e) {
+      assertEquals(SolrException.ErrorCode.BAD_REQUEST.code, e.code());
+    }
+  }
+
+  private void testUntrustedStreams() throws Exception {
+    // workers only read from their own cluster
+    assertRejected(new CloudSolrStream("localhost:1", DEFAULT_COLLECTION, params("*:*", "id asc")));
+    assertRejected(new UniqueStream(new SolrStream("http://localhost:1/solr/" + DEFAULT_COLLECTION,
+        params("*:*", "id asc")), FieldComparator.parse("id asc")));
+
+    // and only call the export and stream handlers, without content streams
+    String liveUrl = ((HttpSolrServer) clients.get(0)).getBaseURL();
+    Map<String,String> params = params("*:*", "id asc");
+    params.put(CommonParams.QT, "/update");
+    params.put(CommonParams.STREAM_BODY, "<delete><query>*:*</query></delete>");
+    assertRejected(new SolrStream(liveUrl, params));
+    params.remove(CommonParams.STREAM_BODY);
+    assertRejected(new SolrStream(liveUrl, params));
+    assertRejected(new CloudSolrStream(zkServer.getZkAddress(), DEFAULT_COLLECTION, params));
+    params = params("*:*", "id asc");
+    params.put(CommonParams.STREAM_URL, "http://localhost:1/");
+    assertRejected(new SolrStream(liveUrl, params));
+    assertEquals(docs.size(), readAll(new CloudSolrStream(zkServer.getZkAddress(), DEFAULT_COLLECTION,
+        params("*:*", "id asc"))).size());
+  }
+}
@@ -0,0 +1,278 @@
+package org.apache.solr.client.solrj.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.solr.common.util.Base64;
+import org.noggit.JSONUtil;
+
+/**
+ * Tests the streams that process the tuples of other streams, over streams of
+ * in-memory tuples.
+ */
+public class TestTupleStreams extends LuceneTestCase {
+
+  private static Tuple tuple(Object... fieldsAndValues) {
+    Map<String,Object> fields = new HashMap<>();
+    for (int i = 0; i < fieldsAndValues.length; i += 2) {
+      fields.put((String) fieldsAndValues[i], fieldsAndValues[i + 1]);
+    }
+    return new Tuple(fields);
+  }
+
+  private static List<Tuple> readAll(TupleStream stream) throws IOException {
+    List<Tuple> tuples = new ArrayList<>();
+    stream.open();
+    try {
+      for (Tuple tuple = stream.read(); !tuple.EOF; tuple = stream.read()) {
+        tuples.add(tuple);
+      }
+      // streams keep returning EOF tuples
+      assertTrue(stream.read().EOF);
+    } finally {
+      stream.close();
+    }
+    return tuples;
+  }
+
+  private static List<Object> values(List<Tuple> tuples, String field) {
+    List<Object> values = new ArrayList<>();
+    for (Tuple tuple : tuples) {
+      values.add(tuple.get(field));
+    }
+    return values;
+  }
+
+  public void testMerge() throws Exception {
+    TupleStream a = new ListStream(tuple("id", 1L), tuple("id", 4L), tuple("id", 5L));
+    TupleStream b = new ListStream(tuple("id", 2L), tuple("id", 4L), tuple("id", 9L), tuple("id", 10L));
+    List<Tuple> tuples = readAll(new MergeStream(a, b, FieldComparator.parse("id asc")));
+    assertEquals(Arrays.<Object>asList(1L, 2L, 4L, 4L, 5L, 9L, 10L), values(tuples, "id"));
+
+    a = new ListStream(tuple("id", 5L, "x", 1L), tuple("id", 5L, "x", 2L), tuple("id", 1L));
+    b = new ListStream();
+    tuples = readAll(new MergeStream(a, b, FieldComparator.parse("id desc, x asc")));
+    assertEquals(Arrays.<Object>asList(5L, 5L, 1L), values(tuples, "id"));
+  }
+
+  public void testUnique() throws Exception {
+    TupleStream stream = new ListStream(tuple("a", "x", "id", 1L), tuple("a", "x", "id", 2L),
+        tuple("a", "y", "id", 3L), tuple("id", 4L), tuple("id", 5L));
+    List<Tuple> tuples = readAll(new UniqueStream(stream, new FieldComparator("a", true)));
+    assertEquals(Arrays.<Object>asList(1L, 3L, 4L), values(tuples, "id"));
+  }
+
+  public void testReducer() throws Exception {
+    TupleStream stream = new ListStream(tuple("a", "x", "id", 1L), tuple("a", "x", "id", 2L),
+        tuple("a", "y", "id", 3L));
+    List<Tuple> tuples = readAll(new ReducerStream(stream, new FieldComparator("a", true)));
+    assertEquals(2, tuples.size());
+    assertEquals("x", tuples.get(0).getString("a"));
+    assertEquals(Arrays.<Object>asList(1L, 2L), values(group(tuples.get(0)), "id"));
+    assertEquals(Arrays.<Object>asList(3L), values(group(tuples.get(1)), "id"));
+  }
+
+  private static List<Tuple> group(Tuple tuple) {
+    List<Tuple> tuples = new ArrayList<>();
+    for (Map<String,Object> fields : tuple.getGroup()) {
+      tuples.add(new Tuple(fields));
+    }
+    return tuples;
+  }
+
+  public void testRollup() throws Exception {
+    TupleStream stream = new ListStream(tuple("a", "x", "b", 1L, "price", 10.0),
+        tuple("a", "x", "b", 1L, "price", 5.0), tuple("a", "x", "b", 2L, "price", 1.0),
+        tuple("a", "y", "b", 1L), tuple("a", "y", "b", 1L, "price", 3L));
+    Metric[] metrics = {new Metric.Count(), new Metric.Sum("price"), new Metric.Min("price"),
+        new Metric.Max("price"), new Metric.Mean("price")};
+    List<Tuple> tuples = readAll(new RollupStream(stream, new String[] {"a", "b"}, metrics));
+    assertEquals(3, tuples.size());
+    assertEquals(tuple("a", "x", "b", 1L, "count(*)", 2L, "sum(price)", 15.0, "min(price)", 5.0,
+        "max(price)", 10.0, "avg(price)", 7.5).fields, tuples.get(0).fields);
+    assertEquals(tuple("a", "x", "b", 2L, "count(*)", 1L, "sum(price)", 1.0, "min(price)", 1.0,
+        "max(price)", 1.0, "avg(price)", 1.0).fields, tuples.get(1).fields);
+    assertEquals(tuple("a", "y", "b", 1L, "count(*)", 2L, "sum(price)", 3.0, "min(price)", 3.0,
+        "max(price)", 3.0, "avg(price)", 3.0).fields, tuples.get(2).fields);
+
+    // a bucket with no values
+    stream = new ListStream(tuple("a", "x"));
+    tuples = readAll(new RollupStream(stream, new String[] {"a"}, metrics));
+    assertEquals(tuple("a", "x", "count(*)", 1L, "sum(price)", 0.0, "min(price)", null,
+        "max(price)", null, "avg(price)", null).fields, tuples.get(0).fields);
+  }
+
+  public void testHashJoin() throws Exception {
+    TupleStream left = new ListStream(tuple("id", 1L, "k", "a"), tuple("id", 2L, "k", "b"),
+        tuple("id", 3L, "k", "a"), tuple("id", 4L));
+    TupleStream right = new ListStream(tuple("k", "a", "v", 1L), tuple("k", "c", "v", 2L),
+        tuple("k", "a", "v", 3L), tuple("v", 4L));
+    List<Tuple> tuples = readAll(new HashJoinStream(left, right, new String[] {"k"}, false));
+    assertEquals(Arrays.<Object>asList(1L, 1L, 3L, 3L), values(tuples, "id"));
+    assertEquals(Arrays.<Object>asList(1L, 3L, 1L, 3L), values(tuples, "v"));
+
+    tuples = readAll(new HashJoinStream(left, right, new String[] {"k"}, true));
+    assertEquals(Arrays.<Object>asList(1L, 1L, 2L, 3L, 3L, 4L), values(tuples, "id"));
+    assertEquals(Arrays.<Object>asList(1L, 3L, null, 1L, 3L, null), values(tuples, "v"));
+  }
+
+  public void testMergeJoin() throws Exception {
+    TupleStream left = new ListStream(tuple("k", "a", "id", 1L), tuple("k", "a", "id", 2L),
+        tuple("k", "b", "id", 3L), tuple("k", "d", "id", 4L), tuple("k", "f", "id", 5L));
+    TupleStream right = new ListStream(tuple("k", "a", "v", 1L), tuple("k", "a", "v", 2L),
+        tuple("k", "c", "v", 3L), tuple("k", "d", "v", 4L), tuple("k", "e", "v", 5L));
+    Comparator<Tuple> comp = new FieldComparator("k", true);
+    List<Tuple> tuples = readAll(new MergeJoinStream(left, right, comp, false));
+    assertEquals(Arrays.<Object>asList(1L, 1L, 2L, 2L, 4L), values(tuples, "id"));
+    assertEquals(Arrays.<Object>asList(1L, 2L, 1L, 2L, 4L), values(tuples, "v"));
+
+    tuples = readAll(new MergeJoinStream(left, right, comp, true));
+    assertEquals(Arrays.<Object>asList(1L, 1L, 2L, 2L, 3L, 4L, 5L), values(tuples, "id"));
+    assertEquals(Arrays.<Object>asList(1L, 2L, 1L, 2L, null, 4L, null), values(tuples, "v"));
+  }
+
+  public void testRank() throws Exception {
+    List<Tuple> input = new ArrayList<>();
+    for (long i = 0; i < 100; i++) {
+      input.add(tuple("id", i, "score", (i * 37) % 100));
+    }
+    List<Tuple> tuples = readAll(new RankStream(new ListStream(input), 5, FieldComparator.parse("score desc")));
+    assertEquals(Arrays.<Object>asList(99L, 98L, 97L, 96L, 95L), values(tuples, "score"));
+
+    tuples = readAll(new RankStream(new ListStream(input.subList(0, 3)), 5, FieldComparator.parse("score asc")));
+    assertEquals(Arrays.<Object>asList(0L, 37L, 74L), values(tuples, "score"));
+  }
+
+  public void testSerialization() throws Exception {
+    Map<String,String> params = new HashMap<>();
+    params.put("q", "*:*");
+    params.put("fl", "id,a_s,a_f");
+    params.put("sort", "a_s asc,a_f desc");
+    params.put(SolrStream.PARTITION_KEYS, "a_s");
+    TupleStream search = new CloudSolrStream("localhost:9983", "collection1", params);
+    TupleStream rollup = new RollupStream(search, new String[] {"a_s"},
+        new Metric[] {new Metric.Count(), new Metric.Sum("a_f"), new Metric.Min("a_f"), new Metric.Max("a_f"),
+            new Metric.Mean("a_f")});
+    TupleStream joined = new HashJoinStream(
+        new MergeJoinStream(rollup, new SolrStream("http://localhost:8983/solr/collection1", params),
+            FieldComparator.parse("a_s asc"), true),
+        new ReducerStream(new UniqueStream(search, FieldComparator.parse("a_s asc")), FieldComparator.parse("a_s asc")),
+        new String[] {"a_s"}, false);
+    TupleStream stream = new ParallelStream("localhost:9983", "workers",
+        new RankStream(new MergeStream(joined, search, FieldComparator.parse("a_s asc")), 10,
+            FieldComparator.parse("count(*) desc")), 2, FieldComparator.parse("count(*) desc"));
+
+    String serialized = ParallelStream.serialize(stream);
+    TupleStream copy = ParallelStream.deserialize(serialized);
+    assertNotSame(stream, copy);
+    assertEquals(stream.toMap(), copy.toMap());
+
+    // streams are plain JSON, not serialized classes
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(new File("nope"));
+    }
+    assertNotDeserialized(Base64.byteArrayToBase64(bytes.toByteArray(), 0, bytes.size()));
+    assertNotDeserialized("{\"type\":\"java.io.File\"}");
+    assertNotDeserialized("{\"type\":\"unique\",\"stream\":[],\"sort\":\"a_s asc\"}");
+    Map<String,Object> invalid = new RankStream(search, 10, FieldComparator.parse("a_s asc")).toMap();
+    invalid.put("size", 0);
+    assertNotDeserialized(JSONUtil.toJSON(invalid));
+    invalid = rollup.toMap();
+    invalid.put("metrics", Arrays.asList("median(a_f)"));
+    assertNotDeserialized(JSONUtil.toJSON(invalid));
+    invalid = stream.toMap();
+    invalid.put("workers", "2");
+    assertNotDeserialized(JSONUtil.toJSON(invalid));
+
+    // only streams of field comparators can be described
+    try {
+      new UniqueStream(search, new Comparator<Tuple>() {
+        @Override
+        public int compare(Tuple a, Tuple b) {
+          return 0;
+        }
+      }).toMap();
+      fail("described a custom comparator");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private static void assertNotDeserialized(String serialized) {
+    try {
+      ParallelStream.deserialize(serialized);
+      fail("deserialized an invalid stream: " + serialized);
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  /** A stream of in-memory tuples. */
+  static class ListStream extends TupleStream {
+    private final List<Tuple> tuples;
+    private int next;
+
+    ListStream(Tuple... tuples) {
+      this(Arrays.asList(tuples));
+    }
+
+    ListStream(List<Tuple> tuples) {
+      this.tuples = new ArrayList<>(tuples);
+    }
+
+    @Override
+    public void setStreamContext(StreamContext context) {
+    }
+
+    @Override
+    public List<TupleStream> children() {
+      return new ArrayList<>();
+    }
+
+    @Override
+    public void open() throws IOException {
+      next = 0;
+    }
+
+    @Override
+    public Tuple read() throws IOException {
+      return next < tuples.size() ? tuples.get(next++) : Tuple.eof();
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+
+    @Override
+    public Map<String,Object> toMap() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}